@@ -0,0 +1,71 @@
+package com.example.receipt.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe, size-bounded LRU map whose entries expire after a fixed time-to-live
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlMs;
+    private final Map<K, CachedValue<V>> entries;
+
+    public BoundedCache(int maxSize, long ttlMs) {
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+                return size() > BoundedCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get a cached value
+     * @param key the key
+     * @return the value, or null if absent or expired
+     */
+    public synchronized V get(K key) {
+        CachedValue<V> cached = entries.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.expiresAt() < System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return cached.value();
+    }
+
+    public synchronized void put(K key, V value) {
+        if (key == null || value == null) {
+            return;
+        }
+        entries.put(key, new CachedValue<>(value, System.currentTimeMillis() + ttlMs));
+    }
+
+    public synchronized void evict(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void evictValues(Predicate<V> predicate) {
+        entries.values().removeIf(cached -> predicate.test(cached.value()));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private record CachedValue<V>(V value, long expiresAt) {
+    }
+}
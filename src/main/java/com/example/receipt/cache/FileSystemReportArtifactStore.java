@@ -0,0 +1,153 @@
+package com.example.receipt.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Stores report artifacts on local disk as {dir}/{propertyId}/{year}/{reportType}-{dataVersion}.
+ * Files are written to a temp file and moved into place, so readers never see a partial artifact.
+ *
+ * Artifacts for data that changed are never read again, so the directory is pruned at most once a
+ * minute after a write: files older than max-age-ms go, then the least recently used ones until the
+ * total is under max-bytes. Reading an artifact refreshes its modification time.
+ */
+@Component
+public class FileSystemReportArtifactStore implements ReportArtifactStore {
+
+    private static final long PRUNE_INTERVAL_MS = 60_000;
+
+    private final Path root;
+    private final long maxBytes;
+    private final long maxAgeMs;
+    private final AtomicLong lastPruneMillis = new AtomicLong();
+
+    public FileSystemReportArtifactStore(
+            @Value("${app.cache.report-artifacts.dir:${java.io.tmpdir}/receipt-report-artifacts}") String dir,
+            @Value("${app.cache.report-artifacts.max-bytes:1073741824}") long maxBytes,
+            @Value("${app.cache.report-artifacts.max-age-ms:604800000}") long maxAgeMs) {
+        this.root = Paths.get(dir);
+        this.maxBytes = maxBytes;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    @Override
+    public Optional<InputStream> open(ReportArtifactKey key) {
+        Path path = pathFor(key);
+        try {
+            InputStream in = Files.newInputStream(path);
+            touch(path);
+            return Optional.of(in);
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void put(ReportArtifactKey key, InputStream content) {
+        Path target = pathFor(key);
+        try {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        long now = System.currentTimeMillis();
+        long last = lastPruneMillis.get();
+        if (now - last >= PRUNE_INTERVAL_MS && lastPruneMillis.compareAndSet(last, now)) {
+            prune();
+        }
+    }
+
+    @Override
+    public void evict(Long propertyId, Integer year) {
+        Path dir = root.resolve(String.valueOf(propertyId)).resolve(String.valueOf(year));
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Delete artifacts older than maxAgeMs, then the least recently used until at most maxBytes remain
+     */
+    void prune() {
+        List<Artifact> artifacts = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.filter(Files::isRegularFile).filter(path -> !path.toString().endsWith(".tmp")).toList()) {
+                try {
+                    artifacts.add(new Artifact(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+                } catch (NoSuchFileException ex) {
+                    // Evicted meanwhile
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            return;
+        } catch (IOException ex) {
+            System.err.println("Failed to list report artifacts for pruning: " + ex.getMessage());
+            return;
+        }
+
+        artifacts.sort(Comparator.comparingLong(Artifact::lastModified));
+        long totalBytes = artifacts.stream().mapToLong(Artifact::size).sum();
+        long expiredBefore = System.currentTimeMillis() - maxAgeMs;
+        for (Artifact artifact : artifacts) {
+            if (artifact.lastModified() >= expiredBefore && totalBytes <= maxBytes) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(artifact.path());
+                totalBytes -= artifact.size();
+            } catch (IOException ex) {
+                System.err.println("Failed to prune report artifact " + artifact.path() + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    // Best effort: a failed touch only makes the artifact look older to prune
+    private void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ex) {
+            System.err.println("Failed to touch report artifact " + path + ": " + ex.getMessage());
+        }
+    }
+
+    private Path pathFor(ReportArtifactKey key) {
+        return root.resolve(String.valueOf(key.propertyId()))
+                .resolve(String.valueOf(key.year()))
+                .resolve(key.reportType() + "-" + key.dataVersion());
+    }
+
+    private record Artifact(Path path, long size, long lastModified) {
+    }
+}
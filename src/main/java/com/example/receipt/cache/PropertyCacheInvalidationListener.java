@@ -0,0 +1,36 @@
+package com.example.receipt.cache;
+
+import com.example.receipt.entity.Property;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener keeping {@link PropertyNameCache} consistent with property creates, renames and deletes
+ */
+@Component
+public class PropertyCacheInvalidationListener {
+
+    // Optional so the listener can still be instantiated in slices without the cache bean (e.g. @DataJpaTest)
+    @Autowired(required = false)
+    private PropertyNameCache propertyNameCache;
+
+    @PostPersist
+    public void onCreate(Property property) {
+        if (propertyNameCache != null) {
+            propertyNameCache.evict(Property.normalizeName(property.getName()));
+        }
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onChange(Property property) {
+        if (propertyNameCache != null) {
+            propertyNameCache.evictProperty(property.getId());
+            // A rename can give another property's cached name a second match
+            propertyNameCache.evict(Property.normalizeName(property.getName()));
+        }
+    }
+}
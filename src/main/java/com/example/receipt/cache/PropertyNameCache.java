@@ -0,0 +1,53 @@
+package com.example.receipt.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded, least-recently-used cache of normalized property name to property id.
+ * Lets receipt upserts resolve their allocations without hitting the properties table.
+ * Entries expire after a TTL so renames made through another instance are eventually picked up.
+ */
+@Component
+public class PropertyNameCache {
+
+    private final BoundedCache<String, Long> entries;
+
+    public PropertyNameCache(@Value("${app.cache.property-names.max-size:10000}") int maxSize,
+                             @Value("${app.cache.property-names.ttl-ms:600000}") long ttlMs) {
+        this.entries = new BoundedCache<>(maxSize, ttlMs);
+    }
+
+    /**
+     * Get the cached property id for a normalized name
+     * @param normalizedName the normalized property name
+     * @return the property id, or null if absent or expired
+     */
+    public Long get(String normalizedName) {
+        return entries.get(normalizedName);
+    }
+
+    public void put(String normalizedName, Long propertyId) {
+        entries.put(normalizedName, propertyId);
+    }
+
+    public void evict(String normalizedName) {
+        entries.evict(normalizedName);
+    }
+
+    /**
+     * Remove every name mapped to the given property, covering renames where the old name is unknown
+     * @param propertyId the property id
+     */
+    public void evictProperty(Long propertyId) {
+        entries.evictValues(propertyId::equals);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
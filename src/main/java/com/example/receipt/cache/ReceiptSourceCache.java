@@ -0,0 +1,136 @@
+package com.example.receipt.cache;
+
+import com.example.receipt.entity.ReceiptSource;
+import com.example.receipt.repository.ReceiptSourceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of retailer name to receipt source id with atomic get-or-create semantics.
+ *
+ * Concurrent callers asking for the same unknown retailer share a single lookup/insert
+ * (single-flight), and an insert that loses a race against another instance on the unique
+ * retailer_name constraint falls back to reading the winning row instead of failing.
+ */
+@Component
+public class ReceiptSourceCache {
+
+    private final ReceiptSourceRepository receiptSourceRepository;
+    private final TransactionTemplate requiresNewTransaction;
+    private final BoundedCache<String, Integer> sourceIds;
+    private final ConcurrentMap<String, CompletableFuture<Integer>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReceiptSourceCache(ReceiptSourceRepository receiptSourceRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.cache.receipt-sources.max-size:10000}") int maxSize,
+                              @Value("${app.cache.receipt-sources.ttl-ms:3600000}") long ttlMs) {
+        this.receiptSourceRepository = receiptSourceRepository;
+        // Run lookups/inserts in their own transaction so a constraint violation never poisons the caller's
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.sourceIds = new BoundedCache<>(maxSize, ttlMs);
+    }
+
+    /**
+     * Get the id of the receipt source for a retailer, creating the source if it doesn't exist
+     * @param retailerName the retailer name (already upper-cased)
+     * @param description description used only when a new source is created
+     * @return the receipt source id
+     */
+    public Integer getOrCreateId(String retailerName, String description) {
+        Integer cachedId = sourceIds.get(retailerName);
+        if (cachedId != null) {
+            return cachedId;
+        }
+
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        CompletableFuture<Integer> existing = inFlight.putIfAbsent(retailerName, pending);
+        if (existing != null) {
+            return awaitInFlight(existing);
+        }
+
+        try {
+            Integer id = findOrInsert(retailerName, description);
+            sourceIds.put(retailerName, id);
+            pending.complete(id);
+            return id;
+        } catch (RuntimeException ex) {
+            pending.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(retailerName, pending);
+        }
+    }
+
+    /**
+     * Load every uncached retailer from the given set with one query, so a following
+     * series of {@link #getOrCreateId} calls only touches the database for brand-new retailers
+     * @param retailerNames retailer names (already upper-cased)
+     */
+    public void preload(Collection<String> retailerNames) {
+        Set<String> misses = new HashSet<>();
+        for (String retailerName : retailerNames) {
+            if (retailerName != null && sourceIds.get(retailerName) == null) {
+                misses.add(retailerName);
+            }
+        }
+        if (misses.isEmpty()) {
+            return;
+        }
+        requiresNewTransaction.executeWithoutResult(status ->
+                receiptSourceRepository.findByRetailerNameIn(misses)
+                        .forEach(source -> sourceIds.put(source.getRetailerName(), source.getId())));
+    }
+
+    public void evict(String retailerName) {
+        sourceIds.evict(retailerName);
+    }
+
+    public void clear() {
+        sourceIds.clear();
+    }
+
+    private Integer findOrInsert(String retailerName, String description) {
+        Integer existingId = requiresNewTransaction.execute(status ->
+                receiptSourceRepository.findByRetailerName(retailerName).map(ReceiptSource::getId).orElse(null));
+        if (existingId != null) {
+            return existingId;
+        }
+
+        try {
+            return requiresNewTransaction.execute(status ->
+                    receiptSourceRepository.saveAndFlush(new ReceiptSource(retailerName, description)).getId());
+        } catch (DataIntegrityViolationException ex) {
+            // Another instance inserted the same retailer first; use its row
+            return requiresNewTransaction.execute(status ->
+                    receiptSourceRepository.findByRetailerName(retailerName)
+                            .map(ReceiptSource::getId)
+                            .orElseThrow(() -> ex));
+        }
+    }
+
+    private Integer awaitInFlight(CompletableFuture<Integer> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.receipt.cache;
+
+import com.example.receipt.entity.Property;
+import com.example.receipt.entity.PropertyReceipt;
+import com.example.receipt.entity.Receipt;
+import com.example.receipt.service.ChecksumOutputStream;
+import com.example.receipt.service.ReportGenerator;
+import com.example.receipt.service.ReportOutput;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Cache of generated report files, so a property/year report that hasn't changed is rendered once.
+ *
+ * Artifacts are keyed by property, year, report type and a checksum of the property and receipt
+ * fields the reports render. A change to the data therefore always misses, even if an eviction
+ * was lost (e.g. another instance's disk); {@link #evict} just keeps stale files from piling up.
+ * Store failures fall back to generating the report.
+ *
+ * Metrics: report.artifacts.cache (counter, tagged result=hit|miss)
+ */
+@Component
+public class ReportArtifactCache {
+
+    // Bump when a generator's output changes so artifacts rendered by older code are not served
+    static final int FORMAT_VERSION = 3;
+
+    private final ReportArtifactStore store;
+    private final boolean enabled;
+    private final Counter hits;
+    private final Counter misses;
+
+    public ReportArtifactCache(ReportArtifactStore store, MeterRegistry meterRegistry,
+                               @Value("${app.cache.report-artifacts.enabled:true}") boolean enabled) {
+        this.store = store;
+        this.enabled = enabled;
+        this.hits = Counter.builder("report.artifacts.cache").tag("result", "hit")
+                .description("Report artifact cache lookups").register(meterRegistry);
+        this.misses = Counter.builder("report.artifacts.cache").tag("result", "miss")
+                .description("Report artifact cache lookups").register(meterRegistry);
+    }
+
+    /**
+     * Write the report for this data to a file, copying the cached artifact on a hit and generating
+     * and storing it on a miss. The report is streamed throughout, never held in memory whole.
+     * @return size and SHA-256 of the file written
+     */
+    public ReportOutput writeReport(Property property, Integer year, List<PropertyReceipt> receipts,
+                                    String reportType, ReportGenerator generator, Path target) throws Exception {
+        if (!enabled) {
+            return generate(property, year, receipts, generator, target);
+        }
+
+        ReportArtifactKey key = new ReportArtifactKey(property.getId(), year, reportType, dataVersion(property, year, receipts));
+        Optional<ReportOutput> cached = copyCached(key, target);
+        if (cached.isPresent()) {
+            hits.increment();
+            return cached.get();
+        }
+
+        misses.increment();
+        ReportOutput output = generate(property, year, receipts, generator, target);
+        try (InputStream content = Files.newInputStream(target)) {
+            store.put(key, content);
+        } catch (Exception ex) {
+            System.err.println("Failed to cache report artifact: " + ex.getMessage());
+        }
+        return output;
+    }
+
+    /**
+     * Drop every cached report for a property and year, after receipts touching them changed
+     */
+    public void evict(Long propertyId, Integer year) {
+        if (propertyId == null || year == null) {
+            return;
+        }
+        try {
+            store.evict(propertyId, year);
+        } catch (Exception ex) {
+            System.err.println("Failed to evict report artifacts: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * SHA-256 over the property details and each allocation's receipt fields, in receipt id order
+     */
+    static String dataVersion(Property property, Integer year, List<PropertyReceipt> receipts) {
+        StringBuilder data = new StringBuilder()
+                .append(FORMAT_VERSION).append('\n')
+                .append(property.getName()).append('|').append(property.getStreetNumber()).append('|')
+                .append(property.getStreetName()).append('|').append(property.getCity()).append('|')
+                .append(property.getState()).append('|').append(property.getZipCode()).append('|')
+                .append(year).append('\n');
+
+        List<PropertyReceipt> ordered = receipts.stream()
+                .sorted(Comparator.comparing((PropertyReceipt pr) -> pr.getReceipt().getId(),
+                        Comparator.nullsFirst(Comparator.naturalOrder())))
+                .toList();
+        for (PropertyReceipt propertyReceipt : ordered) {
+            Receipt receipt = propertyReceipt.getReceipt();
+            data.append(receipt.getId()).append('|').append(receipt.getReceiptDate()).append('|')
+                    .append(receipt.getDescription()).append('|').append(receipt.getAmount()).append('|')
+                    .append(receipt.getReceiptSource() != null ? receipt.getReceiptSource().getRetailerName() : null).append('|')
+                    .append(propertyReceipt.getPercentage()).append('|').append(propertyReceipt.getPortion()).append('\n');
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(data.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private ReportOutput generate(Property property, Integer year, List<PropertyReceipt> receipts,
+                                  ReportGenerator generator, Path target) throws Exception {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+            return generator.writeReport(property, year, receipts, out);
+        }
+    }
+
+    // A read failure, even part way through, is treated as a miss; generating truncates the target again
+    private Optional<ReportOutput> copyCached(ReportArtifactKey key, Path target) {
+        try {
+            Optional<InputStream> cached = store.open(key);
+            if (cached.isEmpty()) {
+                return Optional.empty();
+            }
+            try (InputStream in = cached.get();
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+                ChecksumOutputStream checksumOut = new ChecksumOutputStream(out);
+                in.transferTo(checksumOut);
+                checksumOut.flush();
+                return Optional.of(checksumOut.result());
+            }
+        } catch (Exception ex) {
+            System.err.println("Failed to read cached report artifact: " + ex.getMessage());
+            return Optional.empty();
+        }
+    }
+}
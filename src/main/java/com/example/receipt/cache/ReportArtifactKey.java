@@ -0,0 +1,8 @@
+package com.example.receipt.cache;
+
+/**
+ * Identifies one generated report. dataVersion is a checksum of everything the report renders,
+ * so an artifact is only ever served for exactly the data it was generated from.
+ */
+public record ReportArtifactKey(Long propertyId, Integer year, String reportType, String dataVersion) {
+}
@@ -0,0 +1,26 @@
+package com.example.receipt.cache;
+
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Blob storage for generated report artifacts. Content is streamed both ways so reports are never
+ * held in memory whole.
+ */
+public interface ReportArtifactStore {
+
+    /**
+     * Open a stored artifact for reading; the caller closes the stream
+     */
+    Optional<InputStream> open(ReportArtifactKey key);
+
+    /**
+     * Store an artifact read from the given stream, which the caller closes
+     */
+    void put(ReportArtifactKey key, InputStream content);
+
+    /**
+     * Remove every artifact for a property and year, whatever its report type or data version
+     */
+    void evict(Long propertyId, Integer year);
+}
@@ -1,8 +1,18 @@
 package com.example.receipt.config;
 
+import com.example.receipt.messaging.ReportRetryPolicy;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
 
 @Configuration
 public class RabbitMQConfig {
@@ -17,6 +27,31 @@ public class RabbitMQConfig {
     public static final String REPORT_DLQ_EXCHANGE = "report.dlq.exchange";
     public static final String REPORT_DLQ_ROUTING_KEY = "report.dlq";
 
+    // Retry Configuration: messages wait in a TTL'd queue, then dead-letter back to the main queue
+    public static final String REPORT_RETRY_EXCHANGE = "report.retry.exchange";
+    public static final String REPORT_RETRY_QUEUE_PREFIX = "report.retry.queue.";
+    public static final String REPORT_RETRY_ROUTING_KEY_PREFIX = "report.retry.";
+
+    // Batch Report Queue Configuration: one message per portfolio-wide run, on the same exchange
+    public static final String REPORT_BATCH_QUEUE = "report.batch.queue";
+    public static final String REPORT_BATCH_ROUTING_KEY = "report.batch";
+
+    // Email Delivery Queue Configuration: outbox ids of generated emails, delivered and retried apart from generation
+    public static final String EMAIL_DELIVERY_QUEUE = "report.email.queue";
+    public static final String EMAIL_DELIVERY_ROUTING_KEY = "report.email";
+    public static final String EMAIL_RETRY_QUEUE_PREFIX = "report.email.retry.queue.";
+    public static final String EMAIL_RETRY_ROUTING_KEY_PREFIX = "report.email.retry.";
+    public static final String EMAIL_COALESCE_QUEUE_PREFIX = "report.email.coalesce.queue.";
+    public static final String EMAIL_COALESCE_ROUTING_KEY_PREFIX = "report.email.coalesce.";
+
+    // Listener container factories for the report consumers
+    public static final String REPORT_LISTENER_CONTAINER_FACTORY = "reportListenerContainerFactory";
+    public static final String REPORT_BATCH_LISTENER_CONTAINER_FACTORY = "reportBatchListenerContainerFactory";
+    public static final String EMAIL_DELIVERY_LISTENER_CONTAINER_FACTORY = "emailDeliveryListenerContainerFactory";
+
+    // Listener id of the email delivery consumer, which is paused while the SendGrid circuit is open
+    public static final String EMAIL_DELIVERY_LISTENER_ID = "emailDeliveryListener";
+
     // Dead Letter Queue
     @Bean
     public Queue reportDLQueue() {
@@ -55,4 +90,168 @@ public class RabbitMQConfig {
                 .to(reportExchange)
                 .with(REPORT_ROUTING_KEY);
     }
+
+    // Batch reports are not retried: a failed batch is recorded on its ReportBatch and resubmitted by hand
+    @Bean
+    public Queue reportBatchQueue() {
+        return new Queue(REPORT_BATCH_QUEUE, true);
+    }
+
+    @Bean
+    public Binding reportBatchBinding(Queue reportBatchQueue, TopicExchange reportExchange) {
+        return BindingBuilder.bind(reportBatchQueue)
+                .to(reportExchange)
+                .with(REPORT_BATCH_ROUTING_KEY);
+    }
+
+    @Bean
+    public Queue emailDeliveryQueue() {
+        return QueueBuilder.durable(EMAIL_DELIVERY_QUEUE)
+                .deadLetterExchange(REPORT_DLQ_EXCHANGE)
+                .deadLetterRoutingKey(REPORT_DLQ_ROUTING_KEY)
+                .build();
+    }
+
+    @Bean
+    public Binding emailDeliveryBinding(Queue emailDeliveryQueue, TopicExchange reportExchange) {
+        return BindingBuilder.bind(emailDeliveryQueue)
+                .to(reportExchange)
+                .with(EMAIL_DELIVERY_ROUTING_KEY);
+    }
+
+    // Retry wait queues, one per distinct backoff delay. Names include the TTL so changing the
+    // backoff settings declares new queues instead of failing on mismatched arguments.
+    @Bean
+    public DirectExchange reportRetryExchange() {
+        return new DirectExchange(REPORT_RETRY_EXCHANGE, true, false);
+    }
+
+    @Bean
+    public Declarables reportRetryQueues(DirectExchange reportRetryExchange, ReportRetryPolicy reportRetryPolicy) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (long ttlMs : reportRetryPolicy.waitQueueTtls()) {
+            Queue waitQueue = QueueBuilder.durable(retryQueueName(ttlMs))
+                    .ttl((int) ttlMs)
+                    .deadLetterExchange(REPORT_EXCHANGE)
+                    .deadLetterRoutingKey(REPORT_ROUTING_KEY)
+                    .build();
+            declarables.add(waitQueue);
+            declarables.add(BindingBuilder.bind(waitQueue).to(reportRetryExchange).with(retryRoutingKey(ttlMs)));
+        }
+        return new Declarables(declarables);
+    }
+
+    // Email deliveries back off on the same schedule, in their own wait queues on the retry exchange
+    @Bean
+    public Declarables emailRetryQueues(DirectExchange reportRetryExchange, ReportRetryPolicy reportRetryPolicy) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (long ttlMs : reportRetryPolicy.waitQueueTtls()) {
+            Queue waitQueue = QueueBuilder.durable(emailRetryQueueName(ttlMs))
+                    .ttl((int) ttlMs)
+                    .deadLetterExchange(REPORT_EXCHANGE)
+                    .deadLetterRoutingKey(EMAIL_DELIVERY_ROUTING_KEY)
+                    .build();
+            declarables.add(waitQueue);
+            declarables.add(BindingBuilder.bind(waitQueue).to(reportRetryExchange).with(emailRetryRoutingKey(ttlMs)));
+        }
+        return new Declarables(declarables);
+    }
+
+    // New emails wait out their coalescing window here, so one delivery can pick up a recipient's other emails
+    @Bean
+    public Declarables emailCoalesceQueues(DirectExchange reportRetryExchange,
+                                           @Value("${app.email.coalesce.window-ms:0}") long windowMs,
+                                           @Value("${app.email.coalesce.batch-window-ms:15000}") long batchWindowMs) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (long ttlMs : new TreeSet<>(List.of(windowMs, batchWindowMs))) {
+            if (ttlMs <= 0) {
+                continue;
+            }
+            Queue waitQueue = QueueBuilder.durable(emailCoalesceQueueName(ttlMs))
+                    .ttl((int) ttlMs)
+                    .deadLetterExchange(REPORT_EXCHANGE)
+                    .deadLetterRoutingKey(EMAIL_DELIVERY_ROUTING_KEY)
+                    .build();
+            declarables.add(waitQueue);
+            declarables.add(BindingBuilder.bind(waitQueue).to(reportRetryExchange).with(emailCoalesceRoutingKey(ttlMs)));
+        }
+        return new Declarables(declarables);
+    }
+
+    public static String retryQueueName(long ttlMs) {
+        return REPORT_RETRY_QUEUE_PREFIX + ttlMs + "ms";
+    }
+
+    public static String retryRoutingKey(long ttlMs) {
+        return REPORT_RETRY_ROUTING_KEY_PREFIX + ttlMs + "ms";
+    }
+
+    public static String emailRetryQueueName(long ttlMs) {
+        return EMAIL_RETRY_QUEUE_PREFIX + ttlMs + "ms";
+    }
+
+    public static String emailRetryRoutingKey(long ttlMs) {
+        return EMAIL_RETRY_ROUTING_KEY_PREFIX + ttlMs + "ms";
+    }
+
+    public static String emailCoalesceQueueName(long windowMs) {
+        return EMAIL_COALESCE_QUEUE_PREFIX + windowMs + "ms";
+    }
+
+    public static String emailCoalesceRoutingKey(long windowMs) {
+        return EMAIL_COALESCE_ROUTING_KEY_PREFIX + windowMs + "ms";
+    }
+
+    // Report consumers: several concurrent consumers so one slow PDF or SendGrid call doesn't block the queue.
+    // Prefetch stays low because jobs are long-running; a high prefetch would park work behind a busy consumer.
+    @Bean(name = REPORT_LISTENER_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory reportListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            @Value("${app.messaging.report-consumers.concurrency:2}") int concurrency,
+            @Value("${app.messaging.report-consumers.max-concurrency:8}") int maxConcurrency,
+            @Value("${app.messaging.report-consumers.prefetch:1}") int prefetch,
+            @Value("${app.messaging.report-consumers.virtual-threads:false}") boolean virtualThreads) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(Math.max(concurrency, maxConcurrency));
+        factory.setPrefetchCount(prefetch);
+        if (virtualThreads) {
+            // Consumers spend most of their time blocked on the database and SendGrid
+            factory.setTaskExecutor(new VirtualThreadTaskExecutor("report-consumer-"));
+        }
+        return factory;
+    }
+
+    // Batch consumers: one batch at a time per instance, since a single batch already keeps the shared
+    // generation pool busy. Prefetch 1 leaves queued batches to other instances.
+    @Bean(name = REPORT_BATCH_LISTENER_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory reportBatchListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            SimpleRabbitListenerContainerFactoryConfigurer configurer) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(1);
+        return factory;
+    }
+
+    // Email delivery consumers: separate from report consumers, so a slow SendGrid holds a delivery slot
+    // rather than one that could be rendering reports.
+    @Bean(name = EMAIL_DELIVERY_LISTENER_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory emailDeliveryListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            @Value("${app.messaging.email-consumers.concurrency:2}") int concurrency,
+            @Value("${app.messaging.email-consumers.max-concurrency:4}") int maxConcurrency,
+            @Value("${app.messaging.email-consumers.prefetch:1}") int prefetch) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(Math.max(concurrency, maxConcurrency));
+        factory.setPrefetchCount(prefetch);
+        return factory;
+    }
 }
@@ -1,6 +1,7 @@
 package com.example.receipt.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -29,6 +30,10 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
 
+    // Actuator's own port when it runs apart from the API; -1 when it shares the API port
+    @Value("${management.server.port:-1}")
+    private int managementPort;
+
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
         return new JwtAuthenticationFilter();
@@ -61,6 +66,10 @@ public class SecurityConfig {
             .authorizeHttpRequests(authorizeRequests ->
                 authorizeRequests
                     .requestMatchers("/api/auth/**").permitAll()
+                    .requestMatchers("/actuator/health/**").permitAll()
+                    // Scraped without a token on the management port, which only the network policy's monitoring peers reach
+                    .requestMatchers(request -> managementPort > 0 && request.getLocalPort() == managementPort).permitAll()
+                    .requestMatchers("/actuator/**").hasRole("ADMIN")
                     .requestMatchers("/api/properties/**").hasAnyRole("USER", "ADMIN")
                     .requestMatchers("/api/receipts/**").hasAnyRole("USER", "ADMIN")
                     .anyRequest().authenticated()
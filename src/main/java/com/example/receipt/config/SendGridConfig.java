@@ -0,0 +1,60 @@
+package com.example.receipt.config;
+
+import com.sendgrid.Client;
+import com.sendgrid.SendGrid;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One SendGrid client for the whole application, backed by a pooled keep-alive HTTP client,
+ * so emails reuse open connections instead of each paying for a new client and TLS handshake.
+ */
+@Configuration
+public class SendGridConfig {
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient sendGridHttpClient(
+            @Value("${sendgrid.http.max-connections:20}") int maxConnections,
+            @Value("${sendgrid.http.connect-timeout-ms:5000}") int connectTimeoutMs,
+            @Value("${sendgrid.http.connection-request-timeout-ms:5000}") int connectionRequestTimeoutMs,
+            @Value("${sendgrid.http.socket-timeout-ms:30000}") int socketTimeoutMs,
+            @Value("${sendgrid.http.idle-timeout-ms:30000}") long idleTimeoutMs) {
+        // Every request goes to the same host, so the whole pool is available to that one route
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMs)
+                .setSocketTimeout(socketTimeoutMs)
+                .build();
+
+        // Connections idle for longer than the timeout are closed before the server drops them
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Bean
+    public SendGrid sendGrid(CloseableHttpClient sendGridHttpClient,
+                             @Value("${sendgrid.api.key}") String apiKey,
+                             @Value("${sendgrid.api.host:api.sendgrid.com}") String host,
+                             @Value("${sendgrid.api.plain-http:false}") boolean plainHttp) {
+        // plainHttp talks http instead of https, for a local stand-in for the API
+        SendGrid sendGrid = new SendGrid(apiKey, new Client(sendGridHttpClient, plainHttp));
+        sendGrid.setHost(host);
+        return sendGrid;
+    }
+}
@@ -4,10 +4,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.example.receipt.service.ReceiptBulkIngestService;
+import com.example.receipt.service.ReceiptExportService;
 import com.example.receipt.service.ReceiptService;
+import com.example.receipt.dto.BulkReceiptResult;
+import com.example.receipt.dto.ReceiptCursor;
+import com.example.receipt.dto.ReceiptCursorPage;
 import com.example.receipt.dto.ReceiptDto;
 import com.example.receipt.dto.ReceiptUpsertRequest;
 import com.example.receipt.dto.ReceiptDtoMapper;
@@ -15,6 +23,8 @@ import com.example.receipt.dto.ErrorResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,6 +38,12 @@ public class ReceiptController {
     @Autowired
     private ReceiptDtoMapper receiptDtoMapper;
     
+    @Autowired
+    private ReceiptBulkIngestService receiptBulkIngestService;
+    
+    @Autowired
+    private ReceiptExportService receiptExportService;
+    
     // Upsert receipt (create or update)
     @PostMapping("/upsert")
     public ResponseEntity<?> upsertReceipt(@Valid @RequestBody ReceiptUpsertRequest request) {
@@ -57,6 +73,27 @@ public class ReceiptController {
         }
     }
     
+    // Bulk create receipts from a JSON array; returns one result per item
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BulkReceiptResult>> bulkCreateReceipts(@RequestBody List<ReceiptUpsertRequest> requests) {
+        return ResponseEntity.ok(receiptBulkIngestService.ingest(requests));
+    }
+    
+    // Bulk create receipts from a newline-delimited JSON stream; returns one result per line
+    @PostMapping(value = "/bulk", consumes = "application/x-ndjson")
+    public ResponseEntity<?> bulkCreateReceiptsNdjson(InputStream body) {
+        try {
+            return ResponseEntity.ok(receiptBulkIngestService.ingestNdjson(body));
+        } catch (IOException e) {
+            ErrorResponse errorResponse = new ErrorResponse(
+                    HttpStatus.BAD_REQUEST.value(),
+                    "Error reading receipt stream",
+                    e.getMessage()
+            );
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+    
     // Get all receipts with pagination (default 100 per page)
     @GetMapping
     public ResponseEntity<Page<ReceiptDto>> getAllReceipts(
@@ -67,6 +104,21 @@ public class ReceiptController {
         return ResponseEntity.ok(receipts);
     }
     
+    // Scroll all receipts with a cursor instead of page numbers (opt in with ?after=, then pass nextCursor back)
+    // Cost per page stays constant because there is no OFFSET and no COUNT(*)
+    @GetMapping(params = "after")
+    public ResponseEntity<ReceiptCursorPage> getReceiptsAfter(
+            @RequestParam String after,
+            @RequestParam(defaultValue = "ID") String order,
+            @RequestParam(defaultValue = "100") @Min(value = 1, message = "Size must be >= 1") int size) {
+        ReceiptCursor cursor = after.isBlank() ? ReceiptCursor.start(order) : ReceiptCursor.decode(after);
+        Slice<ReceiptDto> receipts = receiptService.getReceiptsAfter(cursor, size);
+        String nextCursor = receipts.hasNext()
+                ? cursor.after(receipts.getContent().get(receipts.getNumberOfElements() - 1)).encode()
+                : null;
+        return ResponseEntity.ok(new ReceiptCursorPage(receipts.getContent(), receipts.getNumberOfElements(), receipts.hasNext(), nextCursor));
+    }
+    
     // Get receipt by ID
     @GetMapping("/{id}")
     public ResponseEntity<ReceiptDto> getReceiptById(
@@ -101,6 +153,21 @@ public class ReceiptController {
         return ResponseEntity.ok(receipts);
     }
     
+    // Export receipts, optionally filtered by year and/or source, streamed as a JSON array or NDJSON
+    // Rows are written as they are read from the database, so memory stays flat for any result size
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportReceipts(
+            @RequestParam(required = false) @Min(value = 1900, message = "Year must be >= 1900") Integer year,
+            @RequestParam(required = false) @Min(value = 1, message = "Source ID must be > 0") Integer sourceId,
+            @RequestParam(defaultValue = "JSON") String format) {
+        String exportFormat = receiptExportService.normalizeFormat(format);
+        MediaType contentType = ReceiptExportService.FORMAT_NDJSON.equals(exportFormat)
+                ? MediaType.parseMediaType("application/x-ndjson")
+                : MediaType.APPLICATION_JSON;
+        StreamingResponseBody body = out -> receiptExportService.exportReceipts(year, sourceId, exportFormat, out);
+        return ResponseEntity.ok().contentType(contentType).body(body);
+    }
+    
     // Delete receipt
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteReceipt(
@@ -0,0 +1,59 @@
+package com.example.receipt.controller;
+
+import com.example.receipt.entity.ReceiptImportJob;
+import com.example.receipt.service.ReceiptImportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+
+/**
+ * REST Controller for streaming receipt imports (NDJSON or CSV)
+ * Provides endpoints to start an import, resume it from its checkpoint, and check progress
+ */
+@RestController
+@RequestMapping("/api/receipts/imports")
+public class ReceiptImportController {
+
+    @Autowired
+    private ReceiptImportService receiptImportService;
+
+    /**
+     * Import receipts from the request body
+     * @param format NDJSON (default) or CSV
+     * @param body the content to import
+     * @return the import job with row counts and checkpoint
+     */
+    @PostMapping
+    public ResponseEntity<ReceiptImportJob> importReceipts(
+            @RequestParam(defaultValue = "NDJSON") String format, InputStream body) {
+        return ResponseEntity.ok(receiptImportService.importStream(body, format, "request-body"));
+    }
+
+    /**
+     * Resume an interrupted import; the body must be the same content as the original request
+     * @param id Import job ID
+     * @param body the content to import, from its first byte
+     * @return the import job with row counts and checkpoint, or 409 while another run is still making progress
+     */
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<ReceiptImportJob> resumeImport(@PathVariable Long id, InputStream body) {
+        if (receiptImportService.getJob(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(receiptImportService.resumeImport(id, body));
+    }
+
+    /**
+     * Get progress of an import job
+     * @param id Import job ID
+     * @return the import job
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ReceiptImportJob> getImportJob(@PathVariable Long id) {
+        return receiptImportService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
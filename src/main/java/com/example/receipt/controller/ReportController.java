@@ -8,13 +8,21 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import com.example.receipt.dto.ReportBatchRequest;
 import com.example.receipt.dto.YearlyReportRequest;
 import com.example.receipt.dto.YearlyReportResponse;
 import com.example.receipt.messaging.ReportMessageProducer;
 import com.example.receipt.repository.UserRepository;
+import com.example.receipt.service.ReportBatchService;
+import com.example.receipt.service.ReportJobService;
+import com.example.receipt.entity.ReportBatch;
+import com.example.receipt.entity.ReportJob;
 import com.example.receipt.entity.User;
+import com.example.receipt.enums.ReportType;
 
-import java.util.UUID;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/reports")
@@ -26,11 +34,18 @@ public class ReportController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @Autowired
+    private ReportBatchService reportBatchService;
+
     @PostMapping("/yearly")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<?> generateYearlyReport(
             @RequestParam @NotBlank String propertyName,
             @RequestParam @NotNull Integer year,
+            @RequestParam(required = false) List<String> formats,
             Authentication authentication) {
         
         try {
@@ -40,6 +55,16 @@ public class ReportController {
                         .body("Invalid year. Must be between 1900 and 2100.");
             }
 
+            // Validate formats; none means PDF
+            if (formats != null) {
+                for (String format : formats) {
+                    if (!ReportType.isSupported(format)) {
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                .body("Unsupported report format: " + format + ". Supported formats are pdf and csv.");
+                    }
+                }
+            }
+
             // Get current authenticated user
             String username = authentication.getName();
             User user = userRepository.findByUsername(username)
@@ -52,21 +77,123 @@ public class ReportController {
                     user.getEmail(),
                     user.getId()
             );
+            reportRequest.setReportTypes(formats);
+
+            // An identical request inside the dedup window gets the existing job instead of a second report
+            Optional<ReportJob> duplicate = reportJobService.findActiveDuplicate(reportRequest);
+            if (duplicate.isPresent()) {
+                return existingReport(duplicate.get());
+            }
+
+            // Record the job first so its id travels with the message; a concurrent identical request may win the job
+            ReportJob job = reportJobService.createJob(reportRequest);
+            if (!job.getId().equals(reportRequest.getReportJobId())) {
+                return existingReport(job);
+            }
 
             // Send to RabbitMQ for asynchronous processing and get response
             ResponseEntity<?> producerResponse = reportMessageProducer.sendReportRequest(reportRequest);
             
             if (producerResponse.getStatusCode() == HttpStatus.OK) {
-                // Message was successfully queued
-                String reportId = UUID.randomUUID().toString();
+                // Message was successfully queued; clients poll the job instead of resubmitting
                 YearlyReportResponse response = new YearlyReportResponse(
-                        "Report generation started. You will receive the PDF via email shortly.",
+                        "Report generation started. You will receive the "
+                                + String.join(", ", reportRequest.getReportTypes()).toUpperCase() + " report via email shortly.",
                         "PROCESSING",
-                        reportId
+                        job.getId()
                 );
-                return ResponseEntity.status(HttpStatus.OK).body(response);
+                return ResponseEntity.accepted()
+                        .location(URI.create("/api/reports/" + job.getId()))
+                        .body(response);
             } else {
                 // Failed to queue the message
+                reportJobService.markFailed(job.getId(), "Failed to queue report request");
+                return producerResponse;
+            }
+
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Status of a report job. Users only see their own jobs; admins see all of them.
+     */
+    @GetMapping("/{id}")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<ReportJob> getReportJob(@PathVariable String id, Authentication authentication) {
+        boolean admin = authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+        Long userId = userRepository.findByUsername(authentication.getName()).map(User::getId).orElse(null);
+
+        return reportJobService.getJob(id)
+                .filter(job -> admin || (userId != null && userId.equals(job.getUserId())))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Generate the yearly reports of every property with receipts for the year, or only those whose
+     * name contains propertyFilter, and email them to the requesting admin in bundles.
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> generateBatchReport(
+            @RequestParam @NotNull Integer year,
+            @RequestParam(required = false) String propertyFilter,
+            @RequestParam(required = false) List<String> formats,
+            Authentication authentication) {
+
+        try {
+            // Validate year
+            if (year < 1900 || year > 2100) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("Invalid year. Must be between 1900 and 2100.");
+            }
+
+            // Validate formats; none means PDF
+            if (formats != null) {
+                for (String format : formats) {
+                    if (!ReportType.isSupported(format)) {
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                .body("Unsupported report format: " + format + ". Supported formats are pdf and csv.");
+                    }
+                }
+            }
+
+            // Get current authenticated user
+            String username = authentication.getName();
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+
+            List<String> reportTypes = ReportType.fromCodes(formats).stream().map(ReportType::getCode).toList();
+            ReportBatchRequest batchRequest = new ReportBatchRequest(
+                    null,
+                    year,
+                    propertyFilter != null && !propertyFilter.isBlank() ? propertyFilter.trim() : null,
+                    reportTypes,
+                    user.getEmail(),
+                    user.getId()
+            );
+
+            // Record the batch first so its id travels with the message
+            ReportBatch batch = reportBatchService.createBatch(batchRequest);
+
+            ResponseEntity<?> producerResponse = reportMessageProducer.sendBatchRequest(batchRequest);
+
+            if (producerResponse.getStatusCode() == HttpStatus.OK) {
+                YearlyReportResponse response = new YearlyReportResponse(
+                        "Batch report generation started. You will receive the "
+                                + String.join(", ", reportTypes).toUpperCase() + " reports via email in bundles.",
+                        "PROCESSING",
+                        batch.getId()
+                );
+                return ResponseEntity.accepted()
+                        .location(URI.create("/api/reports/batch/" + batch.getId()))
+                        .body(response);
+            } else {
+                reportBatchService.markFailed(batch.getId(), "Failed to queue batch report request");
                 return producerResponse;
             }
 
@@ -76,8 +203,30 @@ public class ReportController {
         }
     }
 
+    /**
+     * Progress of a batch report
+     */
+    @GetMapping("/batch/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReportBatch> getReportBatch(@PathVariable String id) {
+        return reportBatchService.getBatch(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> reportServiceHealth() {
         return ResponseEntity.ok("Report service is running");
     }
+
+    private ResponseEntity<YearlyReportResponse> existingReport(ReportJob existing) {
+        YearlyReportResponse response = new YearlyReportResponse(
+                "An identical report was already requested. Returning the existing report.",
+                existing.getStatus(),
+                existing.getId()
+        );
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/reports/" + existing.getId()))
+                .body(response);
+    }
 }
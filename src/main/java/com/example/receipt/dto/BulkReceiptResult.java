@@ -0,0 +1,66 @@
+package com.example.receipt.dto;
+
+/**
+ * Outcome of a single item in a bulk receipt ingest, reported in request order
+ */
+public class BulkReceiptResult {
+
+    public static final String STATUS_CREATED = "CREATED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private int index;
+    private String status;
+    private Long receiptId;
+    private String error;
+
+    public BulkReceiptResult() {
+    }
+
+    public BulkReceiptResult(int index, String status, Long receiptId, String error) {
+        this.index = index;
+        this.status = status;
+        this.receiptId = receiptId;
+        this.error = error;
+    }
+
+    public static BulkReceiptResult created(int index, Long receiptId) {
+        return new BulkReceiptResult(index, STATUS_CREATED, receiptId, null);
+    }
+
+    public static BulkReceiptResult failed(int index, String error) {
+        return new BulkReceiptResult(index, STATUS_FAILED, null, error);
+    }
+
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getReceiptId() {
+        return receiptId;
+    }
+
+    public void setReceiptId(Long receiptId) {
+        this.receiptId = receiptId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.receipt.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Position in a keyset scroll over receipts, passed to clients as an opaque token.
+ * ID order resumes after the last receipt id; YEAR order resumes after the last (year, id) pair.
+ */
+public class ReceiptCursor {
+
+    public static final String ORDER_ID = "ID";
+    public static final String ORDER_YEAR = "YEAR";
+
+    private final String order;
+    private final int year;
+    private final long id;
+
+    private ReceiptCursor(String order, int year, long id) {
+        this.order = order;
+        this.year = year;
+        this.id = id;
+    }
+
+    /**
+     * Cursor for the first page in the given order
+     * @param order ID or YEAR (case-insensitive)
+     */
+    public static ReceiptCursor start(String order) {
+        String normalized = order == null ? ORDER_ID : order.trim().toUpperCase(Locale.ROOT);
+        if (!ORDER_ID.equals(normalized) && !ORDER_YEAR.equals(normalized)) {
+            throw new IllegalArgumentException("Unsupported order: " + order + ". Use ID or YEAR");
+        }
+        return new ReceiptCursor(normalized, Integer.MIN_VALUE, 0L);
+    }
+
+    /**
+     * Cursor pointing just past the given receipt
+     */
+    public ReceiptCursor after(ReceiptDto receipt) {
+        return new ReceiptCursor(order, receipt.getYear(), receipt.getId());
+    }
+
+    public String encode() {
+        String raw = ORDER_YEAR.equals(order) ? order + ":" + year + ":" + id : order + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ReceiptCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if (parts.length == 2 && ORDER_ID.equals(parts[0])) {
+                return new ReceiptCursor(ORDER_ID, Integer.MIN_VALUE, Long.parseLong(parts[1]));
+            }
+            if (parts.length == 3 && ORDER_YEAR.equals(parts[0])) {
+                return new ReceiptCursor(ORDER_YEAR, Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+            }
+        } catch (IllegalArgumentException ex) {
+            // Fall through to the error below; NumberFormatException is an IllegalArgumentException too
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + token);
+    }
+
+    // Getters
+    public String getOrder() {
+        return order;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.receipt.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset scroll over receipts. Pass nextCursor as "after" to fetch the following page.
+ */
+public class ReceiptCursorPage {
+    private List<ReceiptDto> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+
+    public ReceiptCursorPage() {
+    }
+
+    public ReceiptCursorPage(List<ReceiptDto> content, int size, boolean hasNext, String nextCursor) {
+        this.content = content;
+        this.size = size;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ReceiptDto> getContent() {
+        return content;
+    }
+
+    public void setContent(List<ReceiptDto> content) {
+        this.content = content;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -31,6 +31,12 @@ public class ReceiptDto {
         this.receiptSourceId = receiptSourceId;
     }
     
+    // Used by JPQL constructor projections, which skip entity hydration entirely
+    public ReceiptDto(Long id, String description, Double amount, String receiptDate, Integer year, Integer receiptSourceId) {
+        this(description, amount, receiptDate, year, receiptSourceId);
+        this.id = id;
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -4,15 +4,13 @@ import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import com.example.receipt.repository.ReceiptSourceRepository;
-import com.example.receipt.entity.ReceiptSource;
-import java.util.Optional;
+import com.example.receipt.cache.ReceiptSourceCache;
 
 @Component
 public class ReceiptDtoMapper {
     
     @Autowired
-    private ReceiptSourceRepository receiptSourceRepository;
+    private ReceiptSourceCache receiptSourceCache;
     
     /**
      * Maps ReceiptUpsertRequest to ReceiptDto
@@ -38,24 +36,8 @@ public class ReceiptDtoMapper {
         int year = extractYear(request.getReceiptDate());
         dto.setYear(year);
         
-        // Search for existing ReceiptSource by storeName and set ID if found, or create new
-        if (request.getStoreName() != null && !request.getStoreName().isEmpty()) {
-            String upperCaseStoreName = request.getStoreName().toUpperCase();
-            Optional<ReceiptSource> existingSource = receiptSourceRepository.findByRetailerName(upperCaseStoreName);
-            
-            if (existingSource.isPresent()) {
-                dto.setReceiptSourceId(existingSource.get().getId());
-            } else {
-                // Create new ReceiptSource if not found
-                ReceiptSource newSource = new ReceiptSource();
-                newSource.setRetailerName(upperCaseStoreName);
-                newSource.setDescription(request.getReceiptDescription() != null ? 
-                    request.getReceiptDescription() : "Auto-created receipt source");
-                
-                ReceiptSource savedSource = receiptSourceRepository.save(newSource);
-                dto.setReceiptSourceId(savedSource.getId());
-            }
-        }
+        // Resolve ReceiptSource by storeName, creating it if needed (cached, race-safe)
+        dto.setReceiptSourceId(resolveReceiptSourceId(request));
         
         // Validate and map properties
         if (request.getProperties() != null && !request.getProperties().isEmpty()) {
@@ -66,6 +48,22 @@ public class ReceiptDtoMapper {
         return dto;
     }
     
+    /**
+     * Resolves the receipt source for the request's store name, creating it if needed
+     * 
+     * @param request the receipt upsert request
+     * @return the receipt source id, or null when the request has no store name
+     */
+    public Integer resolveReceiptSourceId(ReceiptUpsertRequest request) {
+        if (request.getStoreName() == null || request.getStoreName().isEmpty()) {
+            return null;
+        }
+        String upperCaseStoreName = request.getStoreName().toUpperCase();
+        String sourceDescription = request.getReceiptDescription() != null ? 
+            request.getReceiptDescription() : "Auto-created receipt source";
+        return receiptSourceCache.getOrCreateId(upperCaseStoreName, sourceDescription);
+    }
+    
     /**
      * Validates that the sum of property percentages equals 100
      * 
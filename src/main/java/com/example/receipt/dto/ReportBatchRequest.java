@@ -0,0 +1,88 @@
+package com.example.receipt.dto;
+
+import com.example.receipt.enums.ReportType;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message asking for the yearly reports of every property matching an optional name filter
+ */
+public class ReportBatchRequest implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private String reportBatchId; // ReportBatch tracking this request
+    private Integer year;
+    private String propertyFilter; // case-insensitive substring of the property name; null for every property
+    private ArrayList<String> reportTypes; // every format to generate per property
+    private String userEmail;
+    private Long userId;
+
+    public ReportBatchRequest() {
+    }
+
+    public ReportBatchRequest(String reportBatchId, Integer year, String propertyFilter, List<String> reportTypes,
+                              String userEmail, Long userId) {
+        this.reportBatchId = reportBatchId;
+        this.year = year;
+        this.propertyFilter = propertyFilter;
+        this.reportTypes = reportTypes != null ? new ArrayList<>(reportTypes) : null;
+        this.userEmail = userEmail;
+        this.userId = userId;
+    }
+
+    // Getters and Setters
+    public String getReportBatchId() {
+        return reportBatchId;
+    }
+
+    public void setReportBatchId(String reportBatchId) {
+        this.reportBatchId = reportBatchId;
+    }
+
+    public Integer getYear() {
+        return year;
+    }
+
+    public void setYear(Integer year) {
+        this.year = year;
+    }
+
+    public String getPropertyFilter() {
+        return propertyFilter;
+    }
+
+    public void setPropertyFilter(String propertyFilter) {
+        this.propertyFilter = propertyFilter;
+    }
+
+    /**
+     * Every format to generate, distinct and in ReportType order; PDF when none were given
+     */
+    public List<String> getReportTypes() {
+        return ReportType.fromCodes(reportTypes).stream().map(ReportType::getCode).toList();
+    }
+
+    public void setReportTypes(List<String> reportTypes) {
+        this.reportTypes = reportTypes != null ? new ArrayList<>(reportTypes) : null;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    public void setUserEmail(String userEmail) {
+        this.userEmail = userEmail;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+}
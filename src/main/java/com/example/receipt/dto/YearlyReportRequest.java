@@ -1,7 +1,11 @@
 package com.example.receipt.dto;
 
+import com.example.receipt.enums.ReportType;
+
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 public class YearlyReportRequest implements Serializable {
     @Serial
@@ -11,7 +15,9 @@ public class YearlyReportRequest implements Serializable {
     private Integer year;
     private String userEmail;
     private Long userId;
-    private String reportType;  // "pdf" or "csv"
+    private String reportType;  // "pdf" or "csv"; the first of reportTypes when several were requested
+    private ArrayList<String> reportTypes; // every format to generate; null for messages queued before multi-format requests
+    private String reportJobId; // ReportJob tracking this request; null for messages queued before tracking existed
 
     public YearlyReportRequest() {
     }
@@ -72,4 +78,27 @@ public class YearlyReportRequest implements Serializable {
     public void setReportType(String reportType) {
         this.reportType = reportType != null ? reportType : "pdf";
     }
+
+    /**
+     * Every format to generate, distinct and in ReportType order, falling back to reportType
+     */
+    public List<String> getReportTypes() {
+        List<String> codes = reportTypes != null && !reportTypes.isEmpty() ? reportTypes : List.of(getReportType());
+        return ReportType.fromCodes(codes).stream().map(ReportType::getCode).toList();
+    }
+
+    public void setReportTypes(List<String> reportTypes) {
+        this.reportTypes = reportTypes != null ? new ArrayList<>(reportTypes) : null;
+        if (reportTypes != null && !reportTypes.isEmpty()) {
+            this.reportType = getReportTypes().get(0);
+        }
+    }
+
+    public String getReportJobId() {
+        return reportJobId;
+    }
+
+    public void setReportJobId(String reportJobId) {
+        this.reportJobId = reportJobId;
+    }
 }
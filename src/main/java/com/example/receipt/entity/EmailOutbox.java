@@ -0,0 +1,193 @@
+package com.example.receipt.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * An email waiting to be, or already, handed to SendGrid.
+ * The entry holds everything needed to send it, body and attachments included, so any instance
+ * can retry the delivery without regenerating anything. The content is cleared once the email
+ * is sent or given up on. Attachments are kept apart in email_outbox_attachments: looking an entry
+ * up never reads them, and delivery streams them with {@code EmailOutboxAttachmentRepository} when it sends.
+ *
+ * Pending emails for the same recipient can be coalesced into one send: the delivery that claims
+ * them moves them to SENDING and stamps its own entry's id on each as deliveryId.
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+    @Index(name = "idx_email_outbox_status_created", columnList = "status, created_at"),
+    @Index(name = "idx_email_outbox_to_status", columnList = "to_email, status"),
+    @Index(name = "idx_email_outbox_delivery", columnList = "delivery_id")
+})
+public class EmailOutbox {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_SENDING = "SENDING";
+    public static final String STATUS_SENT = "SENT";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    // Report job the email delivers, if any; error emails have none
+    @Column(length = 36)
+    private String reportJobId;
+
+    @Column(nullable = false)
+    private String toEmail;
+
+    @Column(nullable = false, length = 512)
+    private String subject;
+
+    @Column(nullable = true, columnDefinition = "LONGTEXT")
+    private String htmlContent;
+
+    @Column(nullable = false)
+    private String status; // PENDING, SENDING, SENT, FAILED
+
+    // Entry whose delivery claimed this one, itself included; null while pending
+    @Column(name = "delivery_id", length = 36)
+    private String deliveryId;
+
+    // Total size of the attachments, so coalescing can be bounded without loading them
+    @Column(nullable = false)
+    private long attachmentBytes;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = true, columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = true)
+    private LocalDateTime sentAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public EmailOutbox() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+        this.status = STATUS_PENDING;
+    }
+
+    public EmailOutbox(String id, String reportJobId, String toEmail, String subject, String htmlContent,
+                       long attachmentBytes) {
+        this();
+        this.id = id;
+        this.reportJobId = reportJobId;
+        this.toEmail = toEmail;
+        this.subject = subject;
+        this.htmlContent = htmlContent;
+        this.attachmentBytes = attachmentBytes;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getReportJobId() {
+        return reportJobId;
+    }
+
+    public void setReportJobId(String reportJobId) {
+        this.reportJobId = reportJobId;
+    }
+
+    public String getToEmail() {
+        return toEmail;
+    }
+
+    public void setToEmail(String toEmail) {
+        this.toEmail = toEmail;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getHtmlContent() {
+        return htmlContent;
+    }
+
+    public void setHtmlContent(String htmlContent) {
+        this.htmlContent = htmlContent;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getDeliveryId() {
+        return deliveryId;
+    }
+
+    public void setDeliveryId(String deliveryId) {
+        this.deliveryId = deliveryId;
+    }
+
+    public long getAttachmentBytes() {
+        return attachmentBytes;
+    }
+
+    public void setAttachmentBytes(long attachmentBytes) {
+        this.attachmentBytes = attachmentBytes;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(LocalDateTime sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
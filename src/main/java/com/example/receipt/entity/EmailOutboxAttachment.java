@@ -0,0 +1,91 @@
+package com.example.receipt.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One attachment of an outbox email, with the name it is sent under.
+ * Rows are written and read by {@code EmailOutboxAttachmentRepository} over JDBC, so the content
+ * streams in and out of the database instead of being held by an entity; this mapping only
+ * describes the table.
+ */
+@Entity
+@Table(name = "email_outbox_attachments")
+@IdClass(EmailOutboxAttachment.Key.class)
+public class EmailOutboxAttachment {
+
+    @Id
+    @Column(name = "outbox_id", length = 36)
+    private String outboxId;
+
+    @Id
+    @Column(name = "attachment_index")
+    private int attachmentIndex;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private String mimeType;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] content;
+
+    public EmailOutboxAttachment() {
+    }
+
+    public String getOutboxId() {
+        return outboxId;
+    }
+
+    public int getAttachmentIndex() {
+        return attachmentIndex;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public static class Key implements Serializable {
+
+        private String outboxId;
+        private int attachmentIndex;
+
+        public Key() {
+        }
+
+        public Key(String outboxId, int attachmentIndex) {
+            this.outboxId = outboxId;
+            this.attachmentIndex = attachmentIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return attachmentIndex == key.attachmentIndex && Objects.equals(outboxId, key.outboxId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(outboxId, attachmentIndex);
+        }
+    }
+}
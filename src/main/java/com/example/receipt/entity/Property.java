@@ -1,15 +1,23 @@
 package com.example.receipt.entity;
+import com.example.receipt.cache.PropertyCacheInvalidationListener;
 import jakarta.persistence.*;
 import java.util.List;
+import java.util.Locale;
 
 @Entity
-@Table(name = "properties")
+@Table(name = "properties", indexes = {
+    @Index(name = "idx_properties_normalized_name", columnList = "normalized_name")
+})
+@EntityListeners(PropertyCacheInvalidationListener.class)
 public class Property {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     @Column(unique = true, nullable = false)
     private String name;
+    // Trimmed, lower-cased copy of name so case-insensitive lookups can use an index
+    @Column(name = "normalized_name")
+    private String normalizedName;
     @Column(unique = true, nullable = true)
     private String Alias;
     @Column(nullable = false)
@@ -40,6 +48,7 @@ public class Property {
     }
     public void setName(String name) {
         this.name = name;
+        this.normalizedName = normalizeName(name);
     }
     public String getAlias() {
         return Alias;
@@ -94,6 +103,21 @@ public class Property {
         this.propertyReceipts = propertyReceipts;
     }
 
+    @PrePersist
+    @PreUpdate
+    private void syncNormalizedName() {
+        this.normalizedName = normalizeName(name);
+    }
+
+    /**
+     * Normalizes a property name for case-insensitive matching
+     * @param name the raw property name
+     * @return trimmed, lower-cased name, or null if name is null
+     */
+    public static String normalizeName(String name) {
+        return name != null ? name.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
     @Override
     public String toString() {
         return "Property [id=" + id + ", name=" + name + ", Alias=" + Alias + ", streetNumber=" + streetNumber
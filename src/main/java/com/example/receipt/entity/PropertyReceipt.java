@@ -3,7 +3,12 @@ package com.example.receipt.entity;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "property_receipts")
+@Table(name = "property_receipts", indexes = {
+        // Property reports join from the property to its receipts
+        @Index(name = "idx_property_receipts_property_receipt", columnList = "property_id, receipt_id"),
+        // Receipt updates and deletes look up allocations by receipt
+        @Index(name = "idx_property_receipts_receipt", columnList = "receipt_id")
+})
 public class PropertyReceipt {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -5,7 +5,12 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import java.util.List;
 
 @Entity
-@Table(name = "receipts")
+@Table(name = "receipts", indexes = {
+        // Year searches and reports; the trailing id also supports keyset scrolling in (year, id) order
+        @Index(name = "idx_receipts_year_id", columnList = "receipt_year, id"),
+        // Source searches, with or without a year
+        @Index(name = "idx_receipts_source_year", columnList = "receipt_source_id, receipt_year")
+})
 public class Receipt {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
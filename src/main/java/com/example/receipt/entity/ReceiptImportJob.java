@@ -0,0 +1,171 @@
+package com.example.receipt.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a streaming receipt import.
+ * byteOffset and rowNumber are the checkpoint: they point just past the last committed chunk.
+ */
+@Entity
+@Table(name = "receipt_import_jobs")
+public class ReceiptImportJob {
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String format; // NDJSON, CSV
+
+    @Column(nullable = false)
+    private String sourceName;
+
+    @Column(nullable = false)
+    private String status; // RUNNING, COMPLETED, FAILED
+
+    @Column(nullable = false)
+    private long byteOffset;
+
+    // row_number is reserved in MySQL 8
+    @Column(name = "checkpoint_row", nullable = false)
+    private long rowNumber;
+
+    @Column(nullable = false)
+    private long rowsCreated;
+
+    @Column(nullable = false)
+    private long rowsFailed;
+
+    @Column(nullable = false)
+    private long processingMillis;
+
+    @Column(nullable = true, columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public ReceiptImportJob() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+        this.status = STATUS_RUNNING;
+    }
+
+    public ReceiptImportJob(String format, String sourceName) {
+        this();
+        this.format = format;
+        this.sourceName = sourceName;
+    }
+
+    /**
+     * Rows (created or failed) handled per second of processing time, across all runs of this job
+     */
+    public double getRowsPerSecond() {
+        return processingMillis == 0 ? 0 : rowNumber * 1000.0 / processingMillis;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public void setSourceName(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    public void setByteOffset(long byteOffset) {
+        this.byteOffset = byteOffset;
+    }
+
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    public void setRowNumber(long rowNumber) {
+        this.rowNumber = rowNumber;
+    }
+
+    public long getRowsCreated() {
+        return rowsCreated;
+    }
+
+    public void setRowsCreated(long rowsCreated) {
+        this.rowsCreated = rowsCreated;
+    }
+
+    public long getRowsFailed() {
+        return rowsFailed;
+    }
+
+    public void setRowsFailed(long rowsFailed) {
+        this.rowsFailed = rowsFailed;
+    }
+
+    public long getProcessingMillis() {
+        return processingMillis;
+    }
+
+    public void setProcessingMillis(long processingMillis) {
+        this.processingMillis = processingMillis;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
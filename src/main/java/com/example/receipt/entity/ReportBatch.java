@@ -0,0 +1,229 @@
+package com.example.receipt.entity;
+
+import jakarta.persistence.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * A yearly report run over every property (optionally narrowed by a name filter) and its progress.
+ * Counts are updated as bundles go out, so the batch can be polled while it runs.
+ */
+@Entity
+@Table(name = "report_batches", indexes = {
+    @Index(name = "idx_report_batches_user_created", columnList = "user_id, created_at")
+})
+public class ReportBatch {
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "report_year", nullable = false)
+    private Integer year;
+
+    // Case-insensitive substring of the property name; null means every property
+    @Column(nullable = true)
+    private String propertyFilter;
+
+    @Column(nullable = false)
+    private String reportTypes;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(nullable = false)
+    private String userEmail;
+
+    @Column(nullable = false)
+    private String status; // QUEUED, RUNNING, COMPLETED, FAILED
+
+    // Properties with receipts for the year, counted when the batch starts
+    @Column(nullable = false)
+    private int totalProperties;
+
+    // Properties whose reports were emailed
+    @Column(nullable = false)
+    private int completedProperties;
+
+    // Properties whose reports failed to render or whose bundle failed to send
+    @Column(nullable = false)
+    private int failedProperties;
+
+    @Column(nullable = false)
+    private int bundlesSent;
+
+    @Column(nullable = true, columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = true)
+    private LocalDateTime startedAt;
+
+    @Column(nullable = true)
+    private LocalDateTime completedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public ReportBatch() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+        this.status = STATUS_QUEUED;
+    }
+
+    public ReportBatch(String id, Integer year, String propertyFilter, String reportTypes, Long userId, String userEmail) {
+        this();
+        this.id = id;
+        this.year = year;
+        this.propertyFilter = propertyFilter;
+        this.reportTypes = reportTypes;
+        this.userId = userId;
+        this.userEmail = userEmail;
+    }
+
+    /**
+     * Time from the batch starting until it finished, or so far while it is still running
+     */
+    public Long getWallTimeMillis() {
+        if (startedAt == null) {
+            return null;
+        }
+        return Duration.between(startedAt, completedAt != null ? completedAt : LocalDateTime.now()).toMillis();
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Integer getYear() {
+        return year;
+    }
+
+    public void setYear(Integer year) {
+        this.year = year;
+    }
+
+    public String getPropertyFilter() {
+        return propertyFilter;
+    }
+
+    public void setPropertyFilter(String propertyFilter) {
+        this.propertyFilter = propertyFilter;
+    }
+
+    public String getReportTypes() {
+        return reportTypes;
+    }
+
+    public void setReportTypes(String reportTypes) {
+        this.reportTypes = reportTypes;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    public void setUserEmail(String userEmail) {
+        this.userEmail = userEmail;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getTotalProperties() {
+        return totalProperties;
+    }
+
+    public void setTotalProperties(int totalProperties) {
+        this.totalProperties = totalProperties;
+    }
+
+    public int getCompletedProperties() {
+        return completedProperties;
+    }
+
+    public void setCompletedProperties(int completedProperties) {
+        this.completedProperties = completedProperties;
+    }
+
+    public int getFailedProperties() {
+        return failedProperties;
+    }
+
+    public void setFailedProperties(int failedProperties) {
+        this.failedProperties = failedProperties;
+    }
+
+    public int getBundlesSent() {
+        return bundlesSent;
+    }
+
+    public void setBundlesSent(int bundlesSent) {
+        this.bundlesSent = bundlesSent;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
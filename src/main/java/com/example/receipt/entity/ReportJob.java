@@ -0,0 +1,237 @@
+package com.example.receipt.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * A yearly report request and where it is in the pipeline.
+ * The id is handed back to the client when the request is queued and travels with the message,
+ * so the consumer can record each state transition.
+ */
+@Entity
+@Table(name = "report_jobs", indexes = {
+    @Index(name = "idx_report_jobs_user_created", columnList = "user_id, created_at"),
+    @Index(name = "idx_report_jobs_dedup_key_created", columnList = "dedup_key, created_at")
+})
+public class ReportJob {
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_DELIVERING = "DELIVERING";
+    public static final String STATUS_SENT = "SENT";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(nullable = false)
+    private String propertyName;
+
+    @Column(name = "report_year", nullable = false)
+    private Integer year;
+
+    @Column(nullable = false)
+    private String reportType;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(nullable = false)
+    private String userEmail;
+
+    @Column(nullable = false)
+    private String status; // QUEUED, RUNNING, DELIVERING, SENT, FAILED
+
+    // user|normalized property|year|report type; identical requests within the dedup window share a job
+    @Column(name = "dedup_key", length = 512)
+    private String dedupKey;
+
+    // Copy of dedupKey while the job is queued, running or delivering; unique, so only one such job per key
+    @Column(name = "active_dedup_key", length = 512, unique = true)
+    private String activeDedupKey;
+
+    // Set when the consumer skipped this job because an identical report was already sent
+    @Column(length = 36)
+    private String duplicateOf;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = true, columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = true)
+    private LocalDateTime startedAt;
+
+    @Column(nullable = true)
+    private LocalDateTime completedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public ReportJob() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+        this.status = STATUS_QUEUED;
+    }
+
+    public ReportJob(String id, String propertyName, Integer year, String reportType, Long userId, String userEmail) {
+        this();
+        this.id = id;
+        this.propertyName = propertyName;
+        this.year = year;
+        this.reportType = reportType;
+        this.userId = userId;
+        this.userEmail = userEmail;
+    }
+
+    /**
+     * Time from the request being queued until the latest attempt started, or null if it hasn't started
+     */
+    public Long getQueuedMillis() {
+        return startedAt == null ? null : Duration.between(createdAt, startedAt).toMillis();
+    }
+
+    /**
+     * Time spent on the latest attempt, or null if it hasn't finished
+     */
+    public Long getProcessingMillis() {
+        return startedAt == null || completedAt == null ? null : Duration.between(startedAt, completedAt).toMillis();
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public void setPropertyName(String propertyName) {
+        this.propertyName = propertyName;
+    }
+
+    public Integer getYear() {
+        return year;
+    }
+
+    public void setYear(Integer year) {
+        this.year = year;
+    }
+
+    public String getReportType() {
+        return reportType;
+    }
+
+    public void setReportType(String reportType) {
+        this.reportType = reportType;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    public void setUserEmail(String userEmail) {
+        this.userEmail = userEmail;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getDedupKey() {
+        return dedupKey;
+    }
+
+    public void setDedupKey(String dedupKey) {
+        this.dedupKey = dedupKey;
+    }
+
+    @JsonIgnore
+    public String getActiveDedupKey() {
+        return activeDedupKey;
+    }
+
+    public void setActiveDedupKey(String activeDedupKey) {
+        this.activeDedupKey = activeDedupKey;
+    }
+
+    public String getDuplicateOf() {
+        return duplicateOf;
+    }
+
+    public void setDuplicateOf(String duplicateOf) {
+        this.duplicateOf = duplicateOf;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -1,5 +1,9 @@
 package com.example.receipt.enums;
 
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
 /**
  * Enum representing the different report types available
  */
@@ -28,4 +32,33 @@ public enum ReportType {
         }
         return PDF;
     }
+
+    /**
+     * Whether the code names a supported report type (case-insensitive)
+     */
+    public static boolean isSupported(String code) {
+        for (ReportType type : ReportType.values()) {
+            if (type.code.equalsIgnoreCase(code)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Distinct report types for the given codes, in declaration order whatever order they were given in.
+     * Codes resolve as in {@link #fromCode}; no codes at all means PDF.
+     */
+    public static List<ReportType> fromCodes(Collection<String> codes) {
+        EnumSet<ReportType> types = EnumSet.noneOf(ReportType.class);
+        if (codes != null) {
+            for (String code : codes) {
+                types.add(fromCode(code));
+            }
+        }
+        if (types.isEmpty()) {
+            types.add(PDF);
+        }
+        return List.copyOf(types);
+    }
 }
@@ -0,0 +1,20 @@
+package com.example.receipt.exception;
+
+import java.io.IOException;
+
+/**
+ * An email was not sent because the SendGrid circuit breaker is open; nothing reached SendGrid
+ */
+public class EmailCircuitOpenException extends IOException {
+
+    private final long retryAfterMs;
+
+    public EmailCircuitOpenException(long retryAfterMs) {
+        super("Email circuit breaker is open, retry in " + retryAfterMs + " ms");
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
@@ -14,6 +14,12 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
     }
 
+    @ExceptionHandler(ImportJobInProgressException.class)
+    public ResponseEntity<ErrorResponse> handleImportJobInProgress(ImportJobInProgressException ex) {
+        ErrorResponse error = new ErrorResponse("IMPORT_IN_PROGRESS", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ErrorResponse> handleIllegalArgument(IllegalArgumentException ex) {
         ErrorResponse error = new ErrorResponse("INVALID_ARGUMENT", ex.getMessage());
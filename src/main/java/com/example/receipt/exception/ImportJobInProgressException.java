@@ -0,0 +1,7 @@
+package com.example.receipt.exception;
+
+public class ImportJobInProgressException extends RuntimeException {
+    public ImportJobInProgressException(String message) {
+        super(message);
+    }
+}
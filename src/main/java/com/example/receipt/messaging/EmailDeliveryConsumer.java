@@ -0,0 +1,145 @@
+package com.example.receipt.messaging;
+
+import com.example.receipt.config.RabbitMQConfig;
+import com.example.receipt.entity.EmailOutbox;
+import com.example.receipt.entity.ReportJob;
+import com.example.receipt.exception.EmailCircuitOpenException;
+import com.example.receipt.service.EmailOutboxService;
+import com.example.receipt.service.FailureReportService;
+import com.example.receipt.service.ReportJobService;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Delivers outbox emails queued by the report consumer. A failed send is retried on the report
+ * backoff schedule from the copy stored in the outbox, so the report is never generated again
+ * just because SendGrid was briefly unavailable. Emails coalesced into one send succeed, retry
+ * and fail together. While the SendGrid circuit breaker is open, deliveries are parked on the queue
+ * rather than failed and retried.
+ */
+@Service
+public class EmailDeliveryConsumer {
+
+    private static final String RETRY_COUNT_HEADER = "x-retry-count";
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @Autowired
+    private FailureReportService failureReportService;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private ReportRetryPolicy reportRetryPolicy;
+
+    @Autowired
+    private EmailDeliveryMetrics emailDeliveryMetrics;
+
+    @Autowired
+    private EmailDeliveryPause emailDeliveryPause;
+
+    @RabbitListener(id = RabbitMQConfig.EMAIL_DELIVERY_LISTENER_ID, queues = RabbitMQConfig.EMAIL_DELIVERY_QUEUE,
+            containerFactory = RabbitMQConfig.EMAIL_DELIVERY_LISTENER_CONTAINER_FACTORY)
+    public void processDelivery(String outboxId, @Header(name = RETRY_COUNT_HEADER, required = false) Integer retryCount) {
+        int currentRetryCount = retryCount != null ? retryCount : 0;
+        int maxRetries = reportRetryPolicy.getMaxRetries();
+
+        // Claims the entry, along with the recipient's other pending emails when coalescing
+        Optional<EmailOutbox> entry = emailOutboxService.getEntry(outboxId);
+        List<EmailOutbox> group = entry.isPresent() ? emailOutboxService.claim(entry.get()) : List.of();
+        if (group.isEmpty()) {
+            // Redelivery of an email that was already sent, given up on, or sent with another one
+            System.out.println("Skipping email delivery " + outboxId + " (no pending outbox entry)");
+            return;
+        }
+
+        try {
+            emailOutboxService.deliver(group);
+        } catch (EmailCircuitOpenException ex) {
+            // Not attempted: the delivery goes back on the queue, which waits until the circuit lets sends through
+            System.out.println("Parking email delivery " + outboxId + ": " + ex.getMessage());
+            emailDeliveryPause.pause();
+            throw new ImmediateRequeueAmqpException("Email circuit breaker is open", ex);
+        } catch (Exception ex) {
+            System.err.println("Error delivering email " + outboxId + " (Attempt " + (currentRetryCount + 1) + "): " + ex.getMessage());
+            if (currentRetryCount < maxRetries - 1) {
+                emailDeliveryMetrics.sendFinished(EmailDeliveryMetrics.OUTCOME_RETRIED, group.size());
+                trackDelivery(() -> emailOutboxService.markRetrying(group, ex.getMessage()));
+                retryDelivery(outboxId, currentRetryCount + 1);
+            } else {
+                System.err.println("Max retries exceeded for email " + outboxId + ". Giving up on delivery.");
+                emailDeliveryMetrics.sendFinished(EmailDeliveryMetrics.OUTCOME_FAILED, group.size());
+                String error = "Email delivery failed after " + maxRetries + " attempts: " + ex.getMessage();
+                trackDelivery(() -> emailOutboxService.markFailed(group, error));
+                for (EmailOutbox failed : group) {
+                    trackDelivery(() -> reportJobService.markFailed(failed.getReportJobId(), error));
+                    recordFailure(failed, error);
+                }
+            }
+            return;
+        }
+
+        System.out.println("Email " + outboxId + " sent successfully to " + group.get(0).getToEmail()
+                + (group.size() > 1 ? " with " + (group.size() - 1) + " coalesced emails" : ""));
+        emailDeliveryMetrics.sendFinished(EmailDeliveryMetrics.OUTCOME_SENT, group.size());
+        // The email is out: a failed status write must not send it again
+        trackDelivery(() -> emailOutboxService.markSent(group));
+        for (EmailOutbox sent : group) {
+            trackDelivery(() -> reportJobService.markSent(sent.getReportJobId()));
+        }
+    }
+
+    private void trackDelivery(Runnable update) {
+        try {
+            update.run();
+        } catch (Exception ex) {
+            System.err.println("Failed to update email delivery status: " + ex.getMessage());
+        }
+    }
+
+    private void retryDelivery(String outboxId, int retryCount) {
+        try {
+            long delayMs = reportRetryPolicy.jitteredDelayMs(retryCount);
+            rabbitTemplate.convertAndSend(
+                RabbitMQConfig.REPORT_RETRY_EXCHANGE,
+                RabbitMQConfig.emailRetryRoutingKey(reportRetryPolicy.waitQueueTtlMs(retryCount)),
+                outboxId,
+                message -> {
+                    message.getMessageProperties().setHeader(RETRY_COUNT_HEADER, retryCount);
+                    message.getMessageProperties().setExpiration(String.valueOf(delayMs));
+                    return message;
+                }
+            );
+            System.out.println("Email " + outboxId + " scheduled for retry " + retryCount + " in " + delayMs + " ms");
+        } catch (Exception retryEx) {
+            System.err.println("Failed to retry email delivery: " + retryEx.getMessage());
+        }
+    }
+
+    // Undeliverable report emails are recorded with the other report failures
+    private void recordFailure(EmailOutbox entry, String error) {
+        try {
+            Optional<ReportJob> job = entry.getReportJobId() != null
+                    ? reportJobService.getJob(entry.getReportJobId()) : Optional.empty();
+            if (job.isPresent()) {
+                failureReportService.createFailureReport(job.get().getPropertyName(), job.get().getYear(),
+                        error, LocalDateTime.now());
+            }
+        } catch (Exception ex) {
+            System.err.println("Failed to save email delivery failure: " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.receipt.messaging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Metrics for outbox deliveries: email.sends (counter of SendGrid calls, tagged by outcome),
+ * email.sends.emails (outbox emails delivered) and email.sends.saved (calls saved by coalescing)
+ */
+@Component
+public class EmailDeliveryMetrics {
+
+    public static final String OUTCOME_SENT = "sent";
+    public static final String OUTCOME_RETRIED = "retried";
+    public static final String OUTCOME_FAILED = "failed";
+
+    private final MeterRegistry meterRegistry;
+    private final Counter emailsDelivered;
+    private final Counter sendsSaved;
+
+    public EmailDeliveryMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.emailsDelivered = Counter.builder("email.sends.emails")
+                .description("Outbox emails delivered to SendGrid")
+                .register(meterRegistry);
+        this.sendsSaved = Counter.builder("email.sends.saved")
+                .description("SendGrid calls saved by coalescing emails for the same recipient")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record one SendGrid call carrying the given number of outbox emails
+     * @param outcome one of the OUTCOME_ constants
+     */
+    public void sendFinished(String outcome, int emails) {
+        Counter.builder("email.sends")
+                .description("SendGrid calls made for outbox deliveries")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+        if (OUTCOME_SENT.equals(outcome)) {
+            emailsDelivered.increment(emails);
+            sendsSaved.increment(emails - 1);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.receipt.messaging;
+
+import com.example.receipt.config.RabbitMQConfig;
+import com.example.receipt.service.EmailCircuitBreaker;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Stops the email delivery consumer while the SendGrid circuit is open, so queued deliveries wait in
+ * the queue instead of being attempted and retried, and starts it again once the circuit lets a
+ * trial send through.
+ */
+@Component
+public class EmailDeliveryPause implements InitializingBean, DisposableBean {
+
+    // Shortest pause, for a half-open circuit whose trial send is still under way
+    static final long MIN_PAUSE_MS = 1000;
+
+    @Autowired
+    private EmailCircuitBreaker emailCircuitBreaker;
+
+    @Autowired
+    private RabbitListenerEndpointRegistry rabbitListenerEndpointRegistry;
+
+    private final AtomicBoolean paused = new AtomicBoolean();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "email-delivery-pause");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void afterPropertiesSet() {
+        emailCircuitBreaker.addListener(state -> {
+            if (state == EmailCircuitBreaker.State.OPEN) {
+                pause();
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Stop consuming deliveries until the circuit lets sends through again; does nothing if already paused
+     */
+    public void pause() {
+        if (!paused.compareAndSet(false, true)) {
+            return;
+        }
+        long pauseMs = Math.max(emailCircuitBreaker.getRetryAfterMs(), MIN_PAUSE_MS);
+        System.out.println("Pausing email delivery for " + pauseMs + " ms");
+        // Stopped off the listener thread, since stopping waits for in-flight deliveries to finish
+        scheduler.execute(() -> withContainer(MessageListenerContainer::stop));
+        scheduler.schedule(this::resume, pauseMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isPaused() {
+        return paused.get();
+    }
+
+    private void resume() {
+        System.out.println("Resuming email delivery");
+        paused.set(false);
+        withContainer(MessageListenerContainer::start);
+    }
+
+    private void withContainer(Consumer<MessageListenerContainer> action) {
+        MessageListenerContainer container = rabbitListenerEndpointRegistry.getListenerContainer(RabbitMQConfig.EMAIL_DELIVERY_LISTENER_ID);
+        if (container == null) {
+            return;
+        }
+        try {
+            action.accept(container);
+        } catch (RuntimeException ex) {
+            System.err.println("Failed to pause or resume email delivery: " + ex.getMessage());
+        }
+    }
+}
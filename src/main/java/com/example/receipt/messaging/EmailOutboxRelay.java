@@ -0,0 +1,78 @@
+package com.example.receipt.messaging;
+
+import com.example.receipt.service.EmailOutboxService;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically re-publishes outbox emails that stayed PENDING past app.email.outbox.stale-after-ms,
+ * so an email whose delivery message was never published, or was lost, is still delivered, and
+ * deliveries left SENDING past app.email.outbox.sending-stale-after-ms by an instance that stopped
+ * mid-send. Skipped while email delivery is paused, since pending emails are expected to wait then.
+ */
+@Component
+public class EmailOutboxRelay implements InitializingBean, DisposableBean {
+
+    @Value("${app.email.outbox.relay-interval-ms:60000}")
+    private long relayIntervalMs;
+
+    @Value("${app.email.outbox.stale-after-ms:300000}")
+    private long staleAfterMs;
+
+    // Longer than the longest retry backoff, so a group waiting for its retry is not taken for abandoned
+    @Value("${app.email.outbox.sending-stale-after-ms:900000}")
+    private long sendingStaleAfterMs;
+
+    @Value("${app.email.outbox.relay-batch-size:100}")
+    private int relayBatchSize;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private EmailDeliveryPause emailDeliveryPause;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "email-outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void afterPropertiesSet() {
+        if (relayIntervalMs > 0) {
+            scheduler.scheduleWithFixedDelay(this::relay, relayIntervalMs, relayIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    void relay() {
+        if (emailDeliveryPause.isPaused()) {
+            return;
+        }
+        try {
+            int relayed = emailOutboxService.relayStalePending(staleAfterMs, relayBatchSize);
+            if (relayed > 0) {
+                System.out.println("Re-published " + relayed + " stale pending outbox emails");
+            }
+            int resumed = emailOutboxService.relayStaleSending(sendingStaleAfterMs, relayBatchSize);
+            if (resumed > 0) {
+                System.out.println("Re-published " + resumed + " abandoned outbox deliveries");
+            }
+        } catch (Exception ex) {
+            // Runs again on the next interval
+            System.err.println("Failed to relay stale outbox emails: " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.example.receipt.messaging;
+
+import com.example.receipt.cache.ReportArtifactCache;
+import com.example.receipt.config.RabbitMQConfig;
+import com.example.receipt.dto.ReportBatchRequest;
+import com.example.receipt.entity.Property;
+import com.example.receipt.entity.PropertyReceipt;
+import com.example.receipt.entity.ReportBatch;
+import com.example.receipt.enums.ReportType;
+import com.example.receipt.factory.ReportGeneratorFactory;
+import com.example.receipt.repository.PropertyRepository;
+import com.example.receipt.service.EmailAttachment;
+import com.example.receipt.service.EmailOutboxService;
+import com.example.receipt.service.ReportBatchService;
+import com.example.receipt.service.ReportGenerator;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the yearly reports of every property in a batch.
+ *
+ * Property ids are paged through in id order and each property's receipts for the year are loaded
+ * with a query of their own, so no transaction or cursor stays open while reports render. Each
+ * property is rendered on the shared ReportGenerationExecutor, and finished reports are collected in
+ * property order and queued in the email outbox for the requester in bundles of at most
+ * app.reports.batch.bundle-size properties and app.reports.batch.bundle-max-bytes of attachments.
+ * At most app.reports.batch.max-in-flight properties are rendered or waiting at once, so memory stays
+ * flat however large the portfolio is.
+ *
+ * A property that fails to render, or whose bundle cannot be queued, is counted as failed without
+ * stopping the batch.
+ */
+@Service
+public class ReportBatchConsumer {
+
+    private static final int PROPERTY_PAGE_SIZE = 100;
+
+    @Value("${app.reports.batch.bundle-size:25}")
+    private int bundleSize;
+
+    @Value("${app.reports.batch.bundle-max-bytes:20971520}")
+    private long bundleMaxBytes;
+
+    @Value("${app.reports.batch.max-in-flight:8}")
+    private int maxInFlight;
+
+    @Autowired
+    private PropertyRepository propertyRepository;
+
+    @Autowired
+    private ReportBatchService reportBatchService;
+
+    @Autowired
+    private ReportGeneratorFactory reportGeneratorFactory;
+
+    @Autowired
+    private ReportArtifactCache reportArtifactCache;
+
+    @Autowired
+    private ReportGenerationExecutor reportGenerationExecutor;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @RabbitListener(queues = RabbitMQConfig.REPORT_BATCH_QUEUE, containerFactory = RabbitMQConfig.REPORT_BATCH_LISTENER_CONTAINER_FACTORY)
+    public void processBatchRequest(ReportBatchRequest batchRequest) {
+        String batchId = batchRequest.getReportBatchId();
+
+        // A redelivered message for a batch that already finished must not email everything again
+        Optional<ReportBatch> existing = findBatch(batchId);
+        if (existing.isPresent() && (ReportBatch.STATUS_COMPLETED.equals(existing.get().getStatus())
+                || ReportBatch.STATUS_FAILED.equals(existing.get().getStatus()))) {
+            System.out.println("Skipping batch report " + batchId + " (already " + existing.get().getStatus() + ")");
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        BatchRun run = new BatchRun(batchRequest);
+        try {
+            String namePattern = ReportBatchService.namePattern(batchRequest.getPropertyFilter());
+            int totalProperties = (int) propertyRepository.countPropertiesWithReceiptsForYear(batchRequest.getYear(), namePattern);
+            trackBatch(() -> reportBatchService.markRunning(batchId, totalProperties));
+            System.out.println("Processing batch report " + batchId + ": " + totalProperties + " properties for year " +
+                             batchRequest.getYear() + " with report types: " + run.reportTypes);
+
+            run.readAll(namePattern);
+            run.finish();
+
+            trackBatch(() -> reportBatchService.markCompleted(batchId, run.completedProperties, run.failedProperties,
+                    run.bundlesSent, run.lastError));
+        } catch (Exception ex) {
+            System.err.println("Error processing batch report " + batchId + ": " + ex.getMessage());
+            ex.printStackTrace();
+            run.abort();
+            trackBatch(() -> reportBatchService.markFailed(batchId, ex.getMessage()));
+        } finally {
+            long wallTimeMs = (System.nanoTime() - startNanos) / 1_000_000;
+            System.out.println("Batch report " + batchId + " finished in " + wallTimeMs + " ms: " +
+                             run.completedProperties + " properties sent in " + run.bundlesSent + " bundles, " +
+                             run.failedProperties + " failed");
+        }
+    }
+
+    /**
+     * State of one batch while it runs. Only the listener thread touches it; workers just render.
+     */
+    private class BatchRun {
+
+        private final ReportBatchRequest request;
+        private final List<ReportType> reportTypes;
+        private final Deque<PendingProperty> inFlight = new ArrayDeque<>();
+        private final List<PendingProperty> bundle = new ArrayList<>();
+        private long bundleBytes;
+        private int bundlesStarted;
+        private int completedProperties;
+        private int failedProperties;
+        private int bundlesSent;
+        private String lastError;
+
+        BatchRun(ReportBatchRequest request) {
+            this.request = request;
+            this.reportTypes = ReportType.fromCodes(request.getReportTypes());
+        }
+
+        /**
+         * Load each matching property's receipts in id order and hand the property to the pool
+         */
+        void readAll(String namePattern) {
+            Long afterId = 0L;
+            List<Long> propertyIds;
+            do {
+                propertyIds = propertyRepository.findPropertyIdsWithReceiptsForYear(request.getYear(), namePattern,
+                        afterId, PageRequest.of(0, PROPERTY_PAGE_SIZE));
+                for (Long propertyId : propertyIds) {
+                    List<PropertyReceipt> receipts = propertyRepository.findReceiptsForYearByPropertyId(propertyId, request.getYear());
+                    // Empty if the receipts were removed since the page was read
+                    if (!receipts.isEmpty()) {
+                        submit(receipts.get(0).getProperty(), receipts);
+                    }
+                    afterId = propertyId;
+                }
+            } while (propertyIds.size() == PROPERTY_PAGE_SIZE);
+        }
+
+        /**
+         * Collect the properties still rendering and queue the last bundle
+         */
+        void finish() {
+            while (!inFlight.isEmpty()) {
+                collect(inFlight.poll());
+            }
+            sendBundle();
+        }
+
+        /**
+         * Wait for the properties still rendering and delete every report that was not queued
+         */
+        void abort() {
+            while (!inFlight.isEmpty()) {
+                PendingProperty pending = inFlight.poll();
+                try {
+                    pending.attachments = pending.render.get();
+                    bundle.add(pending);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    pending.render.cancel(true);
+                } catch (ExecutionException ex) {
+                    // Nothing was left behind by a failed render
+                }
+            }
+            bundle.forEach(pending -> pending.attachments.forEach(ReportBatchConsumer.this::deleteReportFile));
+            bundle.clear();
+        }
+
+        private void submit(Property property, List<PropertyReceipt> receipts) {
+            List<PropertyReceipt> propertyReceipts = receipts;
+            Future<List<EmailAttachment>> render = reportGenerationExecutor.submit(
+                () -> renderProperty(property, request.getYear(), propertyReceipts, reportTypes));
+            inFlight.add(new PendingProperty(property, propertyReceipts, render));
+
+            // Collect in property order; block only once too many properties are outstanding
+            while (!inFlight.isEmpty() && (inFlight.size() > maxInFlight || inFlight.peek().render.isDone())) {
+                collect(inFlight.poll());
+            }
+        }
+
+        private void collect(PendingProperty pending) {
+            try {
+                pending.attachments = pending.render.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                pending.render.cancel(true);
+                throw new IllegalStateException("Interrupted while generating batch reports", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                System.err.println("Failed to generate report for property " + pending.property.getName() +
+                                 " in batch " + request.getReportBatchId() + ": " + cause.getMessage());
+                failedProperties++;
+                lastError = pending.property.getName() + ": " + cause.getMessage();
+                return;
+            }
+
+            long bytes = pending.size();
+            if (!bundle.isEmpty() && bundleBytes + bytes > bundleMaxBytes) {
+                sendBundle();
+            }
+            bundle.add(pending);
+            bundleBytes += bytes;
+            if (bundle.size() >= bundleSize || bundleBytes >= bundleMaxBytes) {
+                sendBundle();
+            }
+        }
+
+        private void sendBundle() {
+            if (bundle.isEmpty()) {
+                return;
+            }
+            int bundleNumber = ++bundlesStarted;
+            List<EmailAttachment> attachments = bundle.stream()
+                .flatMap(pending -> pending.attachments.stream())
+                .toList();
+            try {
+                // The outbox keeps its own copy of the attachments and delivers it with the batch's other emails
+                String formats = reportTypes.stream().map(ReportType::getCode).collect(Collectors.joining(", "));
+                emailOutboxService.enqueueBatched(
+                    null,
+                    request.getUserEmail(),
+                    "Yearly Receipt Reports (" + formats + ") - " + request.getYear() + " - Batch part " + bundleNumber,
+                    createBundleHtml(bundleNumber, formats),
+                    attachments
+                );
+                completedProperties += bundle.size();
+                bundlesSent++;
+            } catch (Exception ex) {
+                System.err.println("Failed to queue bundle " + bundleNumber + " of batch " + request.getReportBatchId() +
+                                 ": " + ex.getMessage());
+                failedProperties += bundle.size();
+                lastError = "Bundle " + bundleNumber + ": " + ex.getMessage();
+            } finally {
+                attachments.forEach(ReportBatchConsumer.this::deleteReportFile);
+            }
+            bundle.clear();
+            bundleBytes = 0;
+            trackBatch(() -> reportBatchService.recordProgress(request.getReportBatchId(), completedProperties,
+                    failedProperties, bundlesSent, lastError));
+        }
+
+        private String createBundleHtml(int bundleNumber, String formats) {
+            StringBuilder html = new StringBuilder();
+            html.append("<html><body style='font-family: Arial, sans-serif;'>");
+            html.append("<div style='max-width: 600px; margin: 0 auto;'>");
+            html.append("<h2 style='color: #2980b9;'>Yearly Receipt Reports (").append(formats).append(")</h2>");
+            html.append("<p><strong>Year:</strong> ").append(request.getYear()).append("</p>");
+            html.append("<p><strong>Batch part:</strong> ").append(bundleNumber).append("</p>");
+
+            html.append("<hr>");
+            html.append("<table style='width: 100%; border-collapse: collapse; margin-top: 20px;'>");
+            html.append("<thead style='background-color: #2980b9; color: white;'>");
+            html.append("<tr>");
+            html.append("<th style='padding: 10px; text-align: left; border: 1px solid #ddd;'>Property</th>");
+            html.append("<th style='padding: 10px; text-align: right; border: 1px solid #ddd;'>Receipts</th>");
+            html.append("<th style='padding: 10px; text-align: right; border: 1px solid #ddd;'>Total Amount</th>");
+            html.append("</tr>");
+            html.append("</thead>");
+            html.append("<tbody>");
+            for (PendingProperty pending : bundle) {
+                double totalAmount = pending.receipts.stream().mapToDouble(PropertyReceipt::getPortion).sum();
+                html.append("<tr>");
+                html.append("<td style='padding: 8px; border: 1px solid #ddd;'>").append(pending.property.getName()).append("</td>");
+                html.append("<td style='padding: 8px; border: 1px solid #ddd; text-align: right;'>").append(pending.receipts.size()).append("</td>");
+                html.append("<td style='padding: 8px; border: 1px solid #ddd; text-align: right;'>$").append("%.2f".formatted(totalAmount)).append("</td>");
+                html.append("</tr>");
+            }
+            html.append("</tbody>");
+            html.append("</table>");
+
+            html.append("<hr>");
+            html.append("<p style='font-size: 12px; color: #666;'><em>This is an automated report generated by the Receipt System. Please see attached ").append(formats.toUpperCase()).append(" files for each property's detailed report.</em></p>");
+            html.append("</div>");
+            html.append("</body></html>");
+            return html.toString();
+        }
+    }
+
+    private static class PendingProperty {
+
+        private final Property property;
+        private final List<PropertyReceipt> receipts;
+        private final Future<List<EmailAttachment>> render;
+        private List<EmailAttachment> attachments;
+
+        PendingProperty(Property property, List<PropertyReceipt> receipts, Future<List<EmailAttachment>> render) {
+            this.property = property;
+            this.receipts = receipts;
+            this.render = render;
+        }
+
+        long size() {
+            long total = 0;
+            for (EmailAttachment attachment : attachments) {
+                try {
+                    total += attachment.size();
+                } catch (IOException ex) {
+                    // Counted as empty; the send will surface a missing file
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Render every requested format of one property to temp files, deleting them all if any fails
+     */
+    private List<EmailAttachment> renderProperty(Property property, Integer year, List<PropertyReceipt> receipts,
+                                                 List<ReportType> reportTypes) throws Exception {
+        List<EmailAttachment> attachments = new ArrayList<>(reportTypes.size());
+        try {
+            for (ReportType reportType : reportTypes) {
+                ReportGenerator reportGenerator = reportGeneratorFactory.getGenerator(reportType);
+                Path reportFile = Files.createTempFile("report-", "." + reportGenerator.getFileExtension());
+                String reportFileName = property.getName().replaceAll(" ", "_") + "_Report_" + year +
+                                       "." + reportGenerator.getFileExtension();
+                attachments.add(EmailAttachment.ofFile(reportFile, reportFileName, reportGenerator.getMimeType()));
+                reportArtifactCache.writeReport(property, year, receipts, reportType.getCode(), reportGenerator, reportFile);
+            }
+            return attachments;
+        } catch (Exception ex) {
+            attachments.forEach(this::deleteReportFile);
+            throw ex;
+        }
+    }
+
+    private void deleteReportFile(EmailAttachment attachment) {
+        try {
+            Files.deleteIfExists(attachment.getPath());
+        } catch (IOException ex) {
+            System.err.println("Failed to delete report file " + attachment.getPath() + ": " + ex.getMessage());
+        }
+    }
+
+    private Optional<ReportBatch> findBatch(String batchId) {
+        try {
+            return batchId != null ? reportBatchService.getBatch(batchId) : Optional.empty();
+        } catch (Exception ex) {
+            System.err.println("Failed to look up report batch " + batchId + ": " + ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // Progress tracking is best-effort: a status write failing must not stop the batch
+    private void trackBatch(Runnable update) {
+        try {
+            update.run();
+        } catch (Exception ex) {
+            System.err.println("Failed to update report batch status: " + ex.getMessage());
+        }
+    }
+}
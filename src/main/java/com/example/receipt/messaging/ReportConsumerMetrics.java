@@ -0,0 +1,58 @@
+package com.example.receipt.messaging;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metrics for report jobs consumed from the report queue:
+ * report.jobs.in_flight (gauge) and report.jobs.duration (timer, tagged by outcome)
+ */
+@Component
+public class ReportConsumerMetrics {
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_REJECTED = "rejected";
+    public static final String OUTCOME_RETRIED = "retried";
+    public static final String OUTCOME_FAILED = "failed";
+    public static final String OUTCOME_DUPLICATE = "duplicate";
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public ReportConsumerMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("report.jobs.in_flight", inFlight, AtomicInteger::get)
+                .description("Report jobs currently being processed by this instance")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Mark a job as started
+     * @return a sample to pass to {@link #jobFinished}
+     */
+    public Timer.Sample jobStarted() {
+        inFlight.incrementAndGet();
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Mark a job as finished and record its duration
+     * @param sample the sample returned by {@link #jobStarted}
+     * @param outcome one of the OUTCOME_ constants
+     */
+    public void jobFinished(Timer.Sample sample, String outcome) {
+        inFlight.decrementAndGet();
+        sample.stop(Timer.builder("report.jobs.duration")
+                .description("Time spent processing a report job")
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.receipt.messaging;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bounded pool that renders the formats of one report request, or the properties of a batch, in parallel.
+ *
+ * Shared by every consumer thread: at most {threads} reports render at once and {queue-capacity} more
+ * wait. Beyond that the submitting consumer thread renders the report itself, which slows intake
+ * instead of rejecting work. Deliberately not an Executor bean, so Spring Boot's own task executor
+ * is left alone.
+ */
+@Component
+public class ReportGenerationExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    public ReportGenerationExecutor(@Value("${app.reports.generation.threads:4}") int threads,
+                                    @Value("${app.reports.generation.queue-capacity:16}") int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "report-generation-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run every task and return the results in task order. A single task runs on the calling thread.
+     *
+     * Waits for all tasks even when one fails, then passes the results that did succeed to
+     * {@code discard} (e.g. to delete their files) and rethrows the first failure.
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks, Consumer<T> discard) throws Exception {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            if (tasks.size() == 1) {
+                FutureTask<T> inline = new FutureTask<>(task);
+                inline.run();
+                futures.add(inline);
+            } else {
+                futures.add(executor.submit(task));
+            }
+        }
+
+        List<T> results = new ArrayList<>(tasks.size());
+        Exception failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause() instanceof Exception cause ? cause : ex;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+
+        if (failure != null) {
+            results.forEach(discard);
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Run one task on the pool, or on the calling thread when the pool and its queue are full
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
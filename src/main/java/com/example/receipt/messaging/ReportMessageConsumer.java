@@ -1,26 +1,37 @@
 package com.example.receipt.messaging;
 
+import com.example.receipt.cache.ReportArtifactCache;
 import com.example.receipt.config.RabbitMQConfig;
 import com.example.receipt.dto.YearlyReportRequest;
 import com.example.receipt.entity.Property;
 import com.example.receipt.entity.PropertyReceipt;
+import com.example.receipt.entity.ReportJob;
 import com.example.receipt.enums.ReportType;
 import com.example.receipt.factory.ReportGeneratorFactory;
 import com.example.receipt.repository.PropertyRepository;
-import com.example.receipt.service.EmailService;
+import com.example.receipt.service.EmailAttachment;
+import com.example.receipt.service.EmailOutboxService;
 import com.example.receipt.service.FailureReportService;
 import com.example.receipt.service.ReportGenerator;
+import com.example.receipt.service.ReportJobService;
+import com.example.receipt.service.ReportOutput;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,9 +39,6 @@ public class ReportMessageConsumer {
 
     private static final String RETRY_COUNT_HEADER = "x-retry-count";
 
-    @Value("${app.messaging.max-retries:3}")
-    private int maxRetries;
-
     @Autowired
     private PropertyRepository propertyRepository;
 
@@ -38,7 +46,7 @@ public class ReportMessageConsumer {
     private ReportGeneratorFactory reportGeneratorFactory;
 
     @Autowired
-    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
 
     @Autowired
     private RabbitTemplate rabbitTemplate;
@@ -46,76 +54,111 @@ public class ReportMessageConsumer {
     @Autowired
     private FailureReportService failureReportService;
 
-    @RabbitListener(queues = RabbitMQConfig.REPORT_QUEUE)
+    @Autowired
+    private ReportConsumerMetrics reportConsumerMetrics;
+
+    @Autowired
+    private ReportRetryPolicy reportRetryPolicy;
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @Autowired
+    private ReportArtifactCache reportArtifactCache;
+
+    @Autowired
+    private ReportGenerationExecutor reportGenerationExecutor;
+
+    @RabbitListener(queues = RabbitMQConfig.REPORT_QUEUE, containerFactory = RabbitMQConfig.REPORT_LISTENER_CONTAINER_FACTORY)
     public void processReportRequest(YearlyReportRequest reportRequest, Message message, 
                                     @Header(name = RETRY_COUNT_HEADER, required = false) Integer retryCount) {
         int currentRetryCount = retryCount != null ? retryCount : 0;
+        int maxRetries = reportRetryPolicy.getMaxRetries();
+        Timer.Sample sample = reportConsumerMetrics.jobStarted();
+        String outcome = ReportConsumerMetrics.OUTCOME_SUCCESS;
+        String jobError = null;
+
+        // Skip redeliveries and duplicates of a report that was already emailed or is being produced by another job
+        Optional<ReportJob> sentDuplicate = findSentDuplicate(reportRequest);
+        if (sentDuplicate.isPresent()) {
+            String sentJobId = sentDuplicate.get().getId();
+            System.out.println("Skipping report request for property: " + reportRequest.getPropertyName() +
+                             " (already " + sentDuplicate.get().getStatus().toLowerCase() + " by job " + sentJobId + ")");
+            trackJob(() -> reportJobService.markDuplicate(reportRequest.getReportJobId(), sentJobId));
+            reportConsumerMetrics.jobFinished(sample, ReportConsumerMetrics.OUTCOME_DUPLICATE);
+            return;
+        }
+        trackJob(() -> reportJobService.markRunning(reportRequest.getReportJobId()));
         
         try {
             System.out.println("Processing report request for property: " + reportRequest.getPropertyName() + 
-                             " with report type: " + reportRequest.getReportType() + 
+                             " with report types: " + reportRequest.getReportTypes() + 
                              " (Attempt " + (currentRetryCount + 1) + "/" + maxRetries + ")");
             
-            // Find property by name
-            List<Property> properties = propertyRepository.findAll().stream()
-                .filter(p -> p.getName().equalsIgnoreCase(reportRequest.getPropertyName()))
-                .collect(Collectors.toList());
-
-            if (properties.isEmpty()) {
-                sendErrorEmail(reportRequest.getUserEmail(), reportRequest.getPropertyName(), 
-                    "Property not found with name: " + reportRequest.getPropertyName());
-                return;
-            }
+            // Pick the property among every one sharing the name, then load its receipts for the year
+            String normalizedName = Property.normalizeName(reportRequest.getPropertyName());
+            List<Property> candidates = propertyRepository.findByNormalizedName(normalizedName);
+            Optional<Property> requestedProperty = selectProperty(candidates, reportRequest.getPropertyName());
+            Optional<Property> propertyWithReceipts = requestedProperty.flatMap(requested -> propertyRepository
+                .findByNormalizedNameWithReceiptsForYear(normalizedName, reportRequest.getYear()).stream()
+                .filter(candidate -> candidate.getId().equals(requested.getId()))
+                .findFirst());
 
-            Property property = properties.getFirst();
-            
-            // Filter receipts by year
-            List<PropertyReceipt> yearlyReceipts = property.getPropertyReceipts().stream()
-                .filter(pr -> pr.getReceipt().getYear().equals(reportRequest.getYear()))
-                .collect(Collectors.toList());
-
-            if (yearlyReceipts.isEmpty()) {
-                sendErrorEmail(reportRequest.getUserEmail(), reportRequest.getPropertyName(),
-                    "No receipts found for year " + reportRequest.getYear());
+            if (propertyWithReceipts.isEmpty()) {
+                if (candidates.isEmpty()) {
+                    jobError = "Property not found with name: " + reportRequest.getPropertyName();
+                } else if (requestedProperty.isEmpty()) {
+                    jobError = "Property name " + reportRequest.getPropertyName() +
+                               " matches several properties; request the report with the exact property name";
+                } else {
+                    jobError = "No receipts found for year " + reportRequest.getYear();
+                }
+                sendErrorEmail(reportRequest.getUserEmail(), reportRequest.getPropertyName(), jobError);
+                outcome = ReportConsumerMetrics.OUTCOME_REJECTED;
                 return;
             }
 
-            // Get the appropriate report generator based on report type
-            ReportType reportType = ReportType.fromCode(reportRequest.getReportType());
-            ReportGenerator reportGenerator = reportGeneratorFactory.getGenerator(reportType);
+            Property property = propertyWithReceipts.get();
+            List<PropertyReceipt> yearlyReceipts = property.getPropertyReceipts();
 
-            // Generate report
-            byte[] reportContent = reportGenerator.generateReport(
-                property, 
-                reportRequest.getYear(), 
-                yearlyReceipts
-            );
+            // Render every requested format from the one data load, in parallel when there are several
+            List<ReportType> reportTypes = ReportType.fromCodes(reportRequest.getReportTypes());
+            List<Callable<EmailAttachment>> renders = new ArrayList<>();
+            for (ReportType reportType : reportTypes) {
+                renders.add(() -> renderReport(property, reportRequest.getYear(), yearlyReceipts, reportType));
+            }
+            List<EmailAttachment> attachments = reportGenerationExecutor.invokeAll(renders, this::deleteReportFile);
 
-            // Create email HTML content
-            String htmlContent = createEmailHtml(property, reportRequest.getYear(), yearlyReceipts, reportType);
-            
-            // Send email with report attachment
-            String reportFileName = property.getName().replaceAll(" ", "_") + "_Report_" + reportRequest.getYear() + 
-                                   "." + reportGenerator.getFileExtension();
-            emailService.sendReportEmail(
-                reportRequest.getUserEmail(),
-                "Yearly Receipt Report (" + reportType.getCode() + ") - " + property.getName() + " (" + reportRequest.getYear() + ")",
-                htmlContent,
-                reportContent,
-                reportFileName
-            );
+            try {
+                // Create email HTML content
+                String formats = reportTypes.stream().map(ReportType::getCode).collect(Collectors.joining(", "));
+                String htmlContent = createEmailHtml(property, reportRequest.getYear(), yearlyReceipts, formats);
+
+                // Queue the email with every report attached; it is delivered, and retried, apart from generation
+                emailOutboxService.enqueue(
+                    reportRequest.getReportJobId(),
+                    reportRequest.getUserEmail(),
+                    "Yearly Receipt Report (" + formats + ") - " + property.getName() + " (" + reportRequest.getYear() + ")",
+                    htmlContent,
+                    attachments
+                );
+            } finally {
+                attachments.forEach(this::deleteReportFile);
+            }
 
-            System.out.println("Report sent successfully to " + reportRequest.getUserEmail());
+            System.out.println("Report queued for delivery to " + reportRequest.getUserEmail());
 
         } catch (Exception ex) {
             System.err.println("Error processing report request (Attempt " + (currentRetryCount + 1) + "): " + ex.getMessage());
             ex.printStackTrace();
+            jobError = ex.getMessage();
             
             if (currentRetryCount < maxRetries - 1) {
                 // Retry logic - send back to queue with incremented retry count
                 System.out.println("Retrying report request for property: " + reportRequest.getPropertyName() + 
                                  " (Retry " + (currentRetryCount + 1) + "/" + (maxRetries - 1) + ")");
                 retryReportRequest(reportRequest, currentRetryCount + 1);
+                outcome = ReportConsumerMetrics.OUTCOME_RETRIED;
             } else {
                 // Max retries exceeded - send to DLQ
                 System.err.println("Max retries exceeded for report request. Sending to Dead Letter Queue.");
@@ -127,23 +170,100 @@ public class ReportMessageConsumer {
                 } catch (Exception emailEx) {
                     System.err.println("Failed to send error email: " + emailEx.getMessage());
                 }
+                outcome = ReportConsumerMetrics.OUTCOME_FAILED;
             }
+        } finally {
+            recordJobOutcome(reportRequest.getReportJobId(), outcome, jobError);
+            reportConsumerMetrics.jobFinished(sample, outcome);
+        }
+    }
+
+    /**
+     * Stream one format of the report to a temp file, or copy the one already rendered from the same data,
+     * so it is attached from disk rather than held in memory whole
+     */
+    private EmailAttachment renderReport(Property property, Integer year, List<PropertyReceipt> receipts,
+                                         ReportType reportType) throws Exception {
+        ReportGenerator reportGenerator = reportGeneratorFactory.getGenerator(reportType);
+        Path reportFile = Files.createTempFile("report-", "." + reportGenerator.getFileExtension());
+        try {
+            ReportOutput reportOutput = reportArtifactCache.writeReport(
+                property, 
+                year, 
+                receipts,
+                reportType.getCode(),
+                reportGenerator,
+                reportFile
+            );
+            System.out.println("Generated " + reportType.getCode() + " report (" + reportOutput.size() +
+                             " bytes, sha256 " + reportOutput.sha256() + ")");
+
+            String reportFileName = property.getName().replaceAll(" ", "_") + "_Report_" + year + 
+                                   "." + reportGenerator.getFileExtension();
+            return EmailAttachment.ofFile(reportFile, reportFileName, reportGenerator.getMimeType());
+        } catch (Exception ex) {
+            Files.deleteIfExists(reportFile);
+            throw ex;
+        }
+    }
+
+    private void deleteReportFile(EmailAttachment attachment) {
+        try {
+            Files.deleteIfExists(attachment.getPath());
+        } catch (IOException ex) {
+            System.err.println("Failed to delete report file " + attachment.getPath() + ": " + ex.getMessage());
+        }
+    }
+
+    private void recordJobOutcome(String jobId, String outcome, String error) {
+        switch (outcome) {
+            case ReportConsumerMetrics.OUTCOME_SUCCESS -> trackJob(() -> reportJobService.markDelivering(jobId));
+            case ReportConsumerMetrics.OUTCOME_RETRIED -> trackJob(() -> reportJobService.markRetrying(jobId, error));
+            default -> trackJob(() -> reportJobService.markFailed(jobId, error));
+        }
+    }
+
+    // Names that differ only in case or spacing share a normalized name; the exact name picks between them
+    private Optional<Property> selectProperty(List<Property> candidates, String requestedName) {
+        if (candidates.size() <= 1) {
+            return candidates.stream().findFirst();
+        }
+        return candidates.stream().filter(candidate -> candidate.getName().equals(requestedName)).findFirst();
+    }
+
+    private Optional<ReportJob> findSentDuplicate(YearlyReportRequest reportRequest) {
+        try {
+            return reportJobService.findSentDuplicate(reportRequest);
+        } catch (Exception ex) {
+            System.err.println("Failed to check for duplicate report request: " + ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // Job tracking is best-effort: a status write failing must not fail or re-queue the report itself
+    private void trackJob(Runnable update) {
+        try {
+            update.run();
+        } catch (Exception ex) {
+            System.err.println("Failed to update report job status: " + ex.getMessage());
         }
     }
 
     private void retryReportRequest(YearlyReportRequest reportRequest, int retryCount) {
         try {
-            // Send message back to queue with retry count header
+            // Park the message in the wait queue for this retry; it dead-letters back to the report queue when it expires
+            long delayMs = reportRetryPolicy.jitteredDelayMs(retryCount);
             rabbitTemplate.convertAndSend(
-                RabbitMQConfig.REPORT_EXCHANGE,
-                RabbitMQConfig.REPORT_ROUTING_KEY,
+                RabbitMQConfig.REPORT_RETRY_EXCHANGE,
+                RabbitMQConfig.retryRoutingKey(reportRetryPolicy.waitQueueTtlMs(retryCount)),
                 reportRequest,
                 message -> {
                     message.getMessageProperties().setHeader(RETRY_COUNT_HEADER, retryCount);
+                    message.getMessageProperties().setExpiration(String.valueOf(delayMs));
                     return message;
                 }
             );
-            System.out.println("Report request requeued with retry count: " + retryCount);
+            System.out.println("Report request scheduled for retry " + retryCount + " in " + delayMs + " ms");
         } catch (Exception retryEx) {
             System.err.println("Failed to retry report request: " + retryEx.getMessage());
         }
@@ -193,7 +313,7 @@ public class ReportMessageConsumer {
         // TODO: Integrate with monitoring/alerting system
     }
 
-    private String createEmailHtml(Property property, Integer year, List<PropertyReceipt> receipts, ReportType reportType) {
+    private String createEmailHtml(Property property, Integer year, List<PropertyReceipt> receipts, String formats) {
         double totalAmount = receipts.stream().mapToDouble(PropertyReceipt::getPortion).sum();
         
         StringBuilder html = new StringBuilder();
@@ -201,13 +321,13 @@ public class ReportMessageConsumer {
         html.append("<div style='max-width: 600px; margin: 0 auto;'>");
         
         // Header
-        html.append("<h2 style='color: #2980b9;'>Yearly Receipt Report (").append(reportType.getCode()).append(")</h2>");
+        html.append("<h2 style='color: #2980b9;'>Yearly Receipt Report (").append(formats).append(")</h2>");
         html.append("<p><strong>Property:</strong> ").append(property.getName()).append("</p>");
         html.append("<p><strong>Address:</strong> ").append(property.getStreetNumber()).append(" ")
             .append(property.getStreetName()).append(", ").append(property.getCity()).append(", ")
             .append(property.getState()).append(" ").append(property.getZipCode()).append("</p>");
         html.append("<p><strong>Year:</strong> ").append(year).append("</p>");
-        html.append("<p><strong>Report Type:</strong> ").append(reportType.getCode()).append("</p>");
+        html.append("<p><strong>Report Type:</strong> ").append(formats).append("</p>");
         html.append("<p><strong>Generated:</strong> ").append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).append("</p>");
         
         // Summary
@@ -244,7 +364,7 @@ public class ReportMessageConsumer {
         
         // Footer
         html.append("<hr>");
-        html.append("<p style='font-size: 12px; color: #666;'><em>This is an automated report generated by the Receipt System. Please see attached ").append(reportType.getCode().toUpperCase()).append(" for detailed report.</em></p>");
+        html.append("<p style='font-size: 12px; color: #666;'><em>This is an automated report generated by the Receipt System. Please see attached ").append(formats.toUpperCase()).append(" for detailed report.</em></p>");
         html.append("</div>");
         html.append("</body></html>");
         
@@ -261,6 +381,6 @@ public class ReportMessageConsumer {
         htmlContent += "</div>";
         htmlContent += "</body></html>";
         
-        emailService.sendReportEmail(toEmail, "Report Generation Failed - " + propertyName, htmlContent);
+        emailOutboxService.enqueue(null, toEmail, "Report Generation Failed - " + propertyName, htmlContent, List.of());
     }
 }
@@ -6,6 +6,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import com.example.receipt.config.RabbitMQConfig;
+import com.example.receipt.dto.ReportBatchRequest;
 import com.example.receipt.dto.YearlyReportRequest;
 import java.util.HashMap;
 import java.util.Map;
@@ -44,4 +45,33 @@ public class ReportMessageProducer {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
+
+    public ResponseEntity<?> sendBatchRequest(ReportBatchRequest batchRequest) {
+        try {
+            rabbitTemplate.convertAndSend(
+                RabbitMQConfig.REPORT_EXCHANGE,
+                RabbitMQConfig.REPORT_BATCH_ROUTING_KEY,
+                batchRequest
+            );
+
+            System.out.println("Batch report request sent to RabbitMQ: " + batchRequest.getReportBatchId() + " for year " + batchRequest.getYear());
+
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Batch report request accepted successfully");
+            response.put("reportBatchId", batchRequest.getReportBatchId());
+            response.put("year", batchRequest.getYear().toString());
+            response.put("status", "QUEUED");
+
+            return ResponseEntity.status(HttpStatus.OK).body(response);
+        } catch (Exception ex) {
+            System.err.println("Error sending batch report request: " + ex.getMessage());
+            ex.printStackTrace();
+
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Failed to queue batch report request");
+            errorResponse.put("details", ex.getMessage());
+
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
 }
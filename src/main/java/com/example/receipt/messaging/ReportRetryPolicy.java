@@ -0,0 +1,81 @@
+package com.example.receipt.messaging;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter for report retries.
+ *
+ * Retry n waits retryDelayMs * multiplier^(n-1), capped at maxDelayMs, plus up to jitter * delay extra.
+ * Each distinct delay gets its own wait queue whose TTL is the top of its jitter window; the
+ * message's own expiration picks the point inside that window. Keeping the window narrow bounds
+ * how long a message can sit behind a later-expiring one at the head of its wait queue.
+ */
+@Component
+public class ReportRetryPolicy {
+
+    private final int maxRetries;
+    private final long retryDelayMs;
+    private final double multiplier;
+    private final long maxDelayMs;
+    private final double jitter;
+
+    public ReportRetryPolicy(@Value("${app.messaging.max-retries:3}") int maxRetries,
+                             @Value("${app.messaging.retry-delay-ms:5000}") long retryDelayMs,
+                             @Value("${app.messaging.retry-multiplier:2.0}") double multiplier,
+                             @Value("${app.messaging.retry-max-delay-ms:300000}") long maxDelayMs,
+                             @Value("${app.messaging.retry-jitter:0.2}") double jitter) {
+        this.maxRetries = maxRetries;
+        this.retryDelayMs = retryDelayMs;
+        this.multiplier = multiplier;
+        this.maxDelayMs = maxDelayMs;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Total attempts allowed, including the first
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Delay before retry number retryCount (1-based), without jitter
+     */
+    public long baseDelayMs(int retryCount) {
+        double delay = retryDelayMs * Math.pow(multiplier, Math.max(0, retryCount - 1));
+        return (long) Math.min(delay, maxDelayMs);
+    }
+
+    /**
+     * TTL of the wait queue used for retry number retryCount: the top of its jitter window
+     */
+    public long waitQueueTtlMs(int retryCount) {
+        long base = baseDelayMs(retryCount);
+        return base + (long) (base * jitter);
+    }
+
+    /**
+     * Randomized delay for retry number retryCount, between the base delay and the wait queue TTL
+     */
+    public long jitteredDelayMs(int retryCount) {
+        return ThreadLocalRandom.current().nextLong(baseDelayMs(retryCount), waitQueueTtlMs(retryCount) + 1);
+    }
+
+    /**
+     * Distinct wait queue TTLs needed for every retry this policy can schedule
+     */
+    public List<Long> waitQueueTtls() {
+        Set<Long> ttls = new LinkedHashSet<>();
+        for (int retryCount = 1; retryCount < maxRetries; retryCount++) {
+            ttls.add(waitQueueTtlMs(retryCount));
+        }
+        return new ArrayList<>(ttls);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.receipt.repository;
+
+import com.example.receipt.service.EmailAttachment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * JDBC access to the attachments of outbox emails.
+ *
+ * Content is streamed from the caller's attachment into the database and read back one attachment
+ * at a time, as the message body is written, so neither queueing nor sending a group of emails holds
+ * all of its attachments in memory.
+ */
+@Repository
+public class EmailOutboxAttachmentRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO email_outbox_attachments (outbox_id, attachment_index, file_name, mime_type, content) VALUES (?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Store the attachments of an outbox entry, in order; the entry must already be written
+     */
+    public void insert(String outboxId, List<EmailAttachment> attachments) throws IOException {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL)) {
+                    for (int index = 0; index < attachments.size(); index++) {
+                        EmailAttachment attachment = attachments.get(index);
+                        try (InputStream content = attachment.openStream()) {
+                            ps.setString(1, outboxId);
+                            ps.setInt(2, index);
+                            ps.setString(3, attachment.getFileName());
+                            ps.setString(4, attachment.getMimeType());
+                            ps.setBinaryStream(5, content, attachment.size());
+                            ps.executeUpdate();
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * An entry's attachments in order. Only names and sizes are read here; each attachment's content
+     * is fetched when it is opened.
+     */
+    public List<EmailAttachment> find(String outboxId) {
+        return jdbcTemplate.query(
+                "SELECT attachment_index, file_name, mime_type, OCTET_LENGTH(content) FROM email_outbox_attachments " +
+                "WHERE outbox_id = ? ORDER BY attachment_index",
+                (rs, rowNum) -> {
+                    int index = rs.getInt(1);
+                    return EmailAttachment.ofSource(() -> openContent(outboxId, index), rs.getLong(4),
+                            rs.getString(2), rs.getString(3));
+                },
+                outboxId);
+    }
+
+    // Drop the content of a sent or failed email
+    public int delete(String outboxId) {
+        return jdbcTemplate.update("DELETE FROM email_outbox_attachments WHERE outbox_id = ?", outboxId);
+    }
+
+    // Drop the content of every email a delivery sent or gave up on
+    public int deleteByDeliveryId(String deliveryId) {
+        return jdbcTemplate.update(
+                "DELETE FROM email_outbox_attachments WHERE outbox_id IN (SELECT id FROM email_outbox WHERE delivery_id = ?)",
+                deliveryId);
+    }
+
+    private InputStream openContent(String outboxId, int index) throws IOException {
+        byte[] content = jdbcTemplate.query(
+                "SELECT content FROM email_outbox_attachments WHERE outbox_id = ? AND attachment_index = ?",
+                rs -> rs.next() ? rs.getBytes(1) : null,
+                outboxId, index);
+        if (content == null) {
+            throw new IOException("Attachment " + index + " of outbox entry " + outboxId + " no longer exists");
+        }
+        return new ByteArrayInputStream(content);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.receipt.repository;
+
+import com.example.receipt.entity.EmailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, String> {
+
+    /**
+     * Id and attachment size of a pending email, without its content
+     */
+    interface PendingEmail {
+        String getId();
+
+        long getAttachmentBytes();
+    }
+
+    // Pending emails for a recipient, oldest first, for choosing which to coalesce
+    @Query("SELECT e.id AS id, e.attachmentBytes AS attachmentBytes FROM EmailOutbox e " +
+           "WHERE e.toEmail = :toEmail AND e.status = 'PENDING' ORDER BY e.createdAt, e.id")
+    List<PendingEmail> findPendingByToEmail(@Param("toEmail") String toEmail);
+
+    // Atomically claim whichever of the given emails are still pending for one delivery; returns how many it got
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE EmailOutbox e SET e.status = 'SENDING', e.deliveryId = :deliveryId, e.updatedAt = :now " +
+           "WHERE e.id IN :ids AND e.status = 'PENDING'")
+    int claimPending(@Param("ids") Collection<String> ids, @Param("deliveryId") String deliveryId,
+                     @Param("now") LocalDateTime now);
+
+    List<EmailOutbox> findByDeliveryIdOrderByCreatedAtAscIdAsc(String deliveryId);
+
+    // Finish a delivery's whole group in one statement, so a crash cannot leave part of it SENDING
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE EmailOutbox e SET e.status = 'SENT', e.attempts = e.attempts + 1, e.lastError = NULL, " +
+           "e.sentAt = :now, e.htmlContent = NULL, e.updatedAt = :now " +
+           "WHERE e.deliveryId = :deliveryId AND e.status = 'SENDING'")
+    int markSent(@Param("deliveryId") String deliveryId, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE EmailOutbox e SET e.status = 'FAILED', e.attempts = e.attempts + 1, e.lastError = :error, " +
+           "e.htmlContent = NULL, e.updatedAt = :now " +
+           "WHERE e.deliveryId = :deliveryId AND e.status = 'SENDING'")
+    int markFailed(@Param("deliveryId") String deliveryId, @Param("error") String error,
+                   @Param("now") LocalDateTime now);
+
+    // A failed attempt that will be retried; the group stays claimed
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE EmailOutbox e SET e.attempts = e.attempts + 1, e.lastError = :error, e.updatedAt = :now " +
+           "WHERE e.deliveryId = :deliveryId AND e.status = 'SENDING'")
+    int markRetrying(@Param("deliveryId") String deliveryId, @Param("error") String error,
+                     @Param("now") LocalDateTime now);
+
+    // Emails still pending since before the given time, oldest first; their delivery message was lost
+    @Query("SELECT e.id FROM EmailOutbox e WHERE e.status = 'PENDING' AND e.updatedAt < :staleBefore ORDER BY e.updatedAt")
+    List<String> findStalePendingIds(@Param("staleBefore") LocalDateTime staleBefore, Pageable pageable);
+
+    // Atomically take a stale pending email for re-publishing, so only one instance relays it
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE EmailOutbox e SET e.updatedAt = :now WHERE e.id = :id AND e.status = 'PENDING' " +
+           "AND e.updatedAt < :staleBefore")
+    int touchStalePending(@Param("id") String id, @Param("staleBefore") LocalDateTime staleBefore,
+                          @Param("now") LocalDateTime now);
+
+    // Deliveries whose group has been SENDING, untouched, since before the given time, oldest first;
+    // the instance sending them stopped before it recorded the outcome
+    @Query("SELECT e.id FROM EmailOutbox e WHERE e.status = 'SENDING' AND e.deliveryId = e.id " +
+           "AND e.updatedAt < :staleBefore ORDER BY e.updatedAt")
+    List<String> findStaleSendingIds(@Param("staleBefore") LocalDateTime staleBefore, Pageable pageable);
+
+    // Atomically take a stale delivery's group for re-publishing, so only one instance relays it
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE EmailOutbox e SET e.updatedAt = :now WHERE e.deliveryId = :deliveryId AND e.status = 'SENDING' " +
+           "AND e.updatedAt < :staleBefore")
+    int touchStaleSending(@Param("deliveryId") String deliveryId, @Param("staleBefore") LocalDateTime staleBefore,
+                          @Param("now") LocalDateTime now);
+}
@@ -1,23 +1,77 @@
 package com.example.receipt.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import com.example.receipt.entity.Property;
+import com.example.receipt.entity.PropertyReceipt;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PropertyRepository extends JpaRepository<Property, Long> {
 
     @Query("SELECT p FROM Property p LEFT JOIN FETCH p.propertyReceipts pr LEFT JOIN FETCH pr.receipt r " +
+           "LEFT JOIN FETCH r.receiptSource " +
            "WHERE p.id = :propertyId " +
            "AND (:year IS NULL OR r.year = :year)")
     Optional<Property> findPropertyWithReceipts(@Param("propertyId") Long propertyId, 
                                                  @Param("year") Integer year);
 
     @Query("SELECT p FROM Property p LEFT JOIN FETCH p.propertyReceipts pr LEFT JOIN FETCH pr.receipt r " +
+           "LEFT JOIN FETCH r.receiptSource " +
            "WHERE p.id = :propertyId")
     Optional<Property> findPropertyWithAllReceipts(@Param("propertyId") Long propertyId);
-}
 
+    // Case-insensitive lookup by name, served by idx_properties_normalized_name. Names that differ only
+    // in case or spacing share a normalized name, so there can be more than one match.
+    @Query("SELECT p FROM Property p WHERE p.normalizedName = :normalizedName ORDER BY p.id")
+    List<Property> findByNormalizedName(@Param("normalizedName") String normalizedName);
+
+    // Batched case-insensitive lookup used to resolve all allocations of a receipt in one query
+    @Query("SELECT p FROM Property p WHERE p.normalizedName IN :normalizedNames ORDER BY p.id")
+    List<Property> findByNormalizedNameIn(@Param("normalizedNames") Collection<String> normalizedNames);
+
+    // Case-insensitive lookup by name fetching only the given year's receipts (and their sources, which
+    // the report generators read) in a single query, so report generation never lazy-loads per receipt.
+    // Leaves out properties with no receipts for that year; use findByNormalizedName to tell a missing
+    // property apart from an empty year. Like findByNormalizedName, it can match more than one property.
+    @Query("SELECT DISTINCT p FROM Property p JOIN FETCH p.propertyReceipts pr JOIN FETCH pr.receipt r " +
+           "LEFT JOIN FETCH r.receiptSource " +
+           "WHERE p.normalizedName = :normalizedName " +
+           "AND r.year = :year " +
+           "ORDER BY p.id")
+    List<Property> findByNormalizedNameWithReceiptsForYear(@Param("normalizedName") String normalizedName,
+                                                               @Param("year") Integer year);
+
+    // Batch reports: the next page of property ids with receipts for the year, after afterId in id order.
+    // A null filter matches every property, otherwise it is a LIKE pattern on the normalized name.
+    @Query("SELECT DISTINCT p.id FROM PropertyReceipt pr JOIN pr.property p JOIN pr.receipt r " +
+           "WHERE r.year = :year " +
+           "AND (:namePattern IS NULL OR p.normalizedName LIKE :namePattern) " +
+           "AND p.id > :afterId " +
+           "ORDER BY p.id")
+    List<Long> findPropertyIdsWithReceiptsForYear(@Param("year") Integer year,
+                                                  @Param("namePattern") String namePattern,
+                                                  @Param("afterId") Long afterId,
+                                                  Pageable pageable);
+
+    // Batch reports: one property's receipts for the year, with the property and sources the report
+    // generators read, so they render detached
+    @Query("SELECT pr FROM PropertyReceipt pr JOIN FETCH pr.property p JOIN FETCH pr.receipt r " +
+           "LEFT JOIN FETCH r.receiptSource " +
+           "WHERE p.id = :propertyId AND r.year = :year " +
+           "ORDER BY r.id")
+    List<PropertyReceipt> findReceiptsForYearByPropertyId(@Param("propertyId") Long propertyId,
+                                                          @Param("year") Integer year);
+
+    // Number of properties findPropertyIdsWithReceiptsForYear pages through, for batch progress
+    @Query("SELECT COUNT(DISTINCT pr.property.id) FROM PropertyReceipt pr " +
+           "WHERE pr.receipt.year = :year " +
+           "AND (:namePattern IS NULL OR pr.property.normalizedName LIKE :namePattern)")
+    long countPropertiesWithReceiptsForYear(@Param("year") Integer year,
+                                            @Param("namePattern") String namePattern);
+}
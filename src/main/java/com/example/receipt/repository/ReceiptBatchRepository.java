@@ -0,0 +1,89 @@
+package com.example.receipt.repository;
+
+import com.example.receipt.dto.ReceiptDto;
+import com.example.receipt.entity.PropertyReceipt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC batch writer for receipts and their property allocations.
+ *
+ * Receipt ids are IDENTITY-generated, which stops Hibernate from batching inserts,
+ * so bulk ingest writes rows with plain JDBC batches and reads the generated keys back.
+ */
+@Repository
+public class ReceiptBatchRepository {
+
+    private static final String INSERT_RECEIPT_SQL =
+            "INSERT INTO receipts (description, amount, receipt_date, receipt_year, receipt_source_id) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String INSERT_PROPERTY_RECEIPT_SQL =
+            "INSERT INTO property_receipts (property_id, receipt_id, portion, percentage) VALUES (?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert receipts in a single JDBC batch
+     * @param receipts receipts to insert (ids are ignored)
+     * @return generated receipt ids, in the same order as the input
+     */
+    public List<Long> insertReceipts(List<ReceiptDto> receipts) {
+        if (receipts.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_RECEIPT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (ReceiptDto receipt : receipts) {
+                    ps.setString(1, receipt.getDescription());
+                    ps.setDouble(2, receipt.getAmount());
+                    ps.setString(3, receipt.getReceiptDate());
+                    ps.setInt(4, receipt.getYear());
+                    if (receipt.getReceiptSourceId() != null) {
+                        ps.setInt(5, receipt.getReceiptSourceId());
+                    } else {
+                        ps.setNull(5, Types.INTEGER);
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Long> ids = new ArrayList<>(receipts.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+                if (ids.size() != receipts.size()) {
+                    throw new IllegalStateException("Expected " + receipts.size() + " generated receipt ids but got " + ids.size());
+                }
+                return ids;
+            }
+        });
+    }
+
+    /**
+     * Insert property allocations in a single JDBC batch
+     * @param propertyReceipts allocations whose property and receipt carry only ids
+     */
+    public void insertPropertyReceipts(List<PropertyReceipt> propertyReceipts) {
+        if (propertyReceipts.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_PROPERTY_RECEIPT_SQL, propertyReceipts, propertyReceipts.size(), (ps, propertyReceipt) -> {
+            ps.setLong(1, propertyReceipt.getProperty().getId());
+            ps.setLong(2, propertyReceipt.getReceipt().getId());
+            ps.setDouble(3, propertyReceipt.getPortion());
+            ps.setInt(4, propertyReceipt.getPercentage());
+        });
+    }
+}
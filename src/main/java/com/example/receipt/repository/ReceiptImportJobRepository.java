@@ -0,0 +1,25 @@
+package com.example.receipt.repository;
+
+import com.example.receipt.entity.ReceiptImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ReceiptImportJobRepository extends JpaRepository<ReceiptImportJob, Long> {
+
+    List<ReceiptImportJob> findByStatus(String status);
+
+    // Atomically mark an unfinished job RUNNING for one run; a RUNNING job only qualifies once its last checkpoint is stale
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReceiptImportJob j SET j.status = 'RUNNING', j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.status <> 'COMPLETED' AND (j.status <> 'RUNNING' OR j.updatedAt < :staleBefore)")
+    int claimForRun(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+}
@@ -1,11 +1,19 @@
 package com.example.receipt.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import com.example.receipt.dto.ReceiptDto;
 import com.example.receipt.entity.Receipt;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ReceiptRepository extends JpaRepository<Receipt, Long> {
@@ -14,14 +22,49 @@ public interface ReceiptRepository extends JpaRepository<Receipt, Long> {
     List<Receipt> findByYear(Integer year);
     
     // Search by receipt source ID
-    List<Receipt> findByReceiptSourceId(Integer receiptSourceId);
+    // Inner join so the planner can start from the source row and seek idx_receipts_source_year;
+    // the derived query used an outer join filtered on the source table, which scanned all receipts
+    @Query("SELECT r FROM Receipt r JOIN FETCH r.receiptSource rs WHERE rs.id = :receiptSourceId")
+    List<Receipt> findByReceiptSourceId(@Param("receiptSourceId") Integer receiptSourceId);
     
     // Search by receipt source ID and year
-    List<Receipt> findByReceiptSourceIdAndYear(Integer receiptSourceId, Integer year);
+    @Query("SELECT r FROM Receipt r JOIN FETCH r.receiptSource rs WHERE rs.id = :receiptSourceId AND r.year = :year")
+    List<Receipt> findByReceiptSourceIdAndYear(@Param("receiptSourceId") Integer receiptSourceId, @Param("year") Integer year);
     
     // Check if receipt exists by ID
     boolean existsById(Long id);
     
     // Get all receipts with pagination
     Page<Receipt> findAll(Pageable pageable);
+    
+    // Keyset scroll by id: seeks on the primary key, no OFFSET and no COUNT query
+    @Query("SELECT r FROM Receipt r LEFT JOIN FETCH r.receiptSource WHERE r.id > :afterId ORDER BY r.id")
+    Slice<Receipt> findSliceAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // Keyset scroll by (year, id): seeks on idx_receipts_year_id, no OFFSET and no COUNT query
+    @Query("SELECT r FROM Receipt r LEFT JOIN FETCH r.receiptSource " +
+           "WHERE r.year > :afterYear OR (r.year = :afterYear AND r.id > :afterId) ORDER BY r.year, r.id")
+    Slice<Receipt> findSliceAfterYearAndId(@Param("afterYear") Integer afterYear, @Param("afterId") Long afterId, Pageable pageable);
+    
+    // Streaming exports: DTO projections read through a JDBC cursor, so memory stays flat regardless of result size.
+    // Must be consumed inside a transaction and closed afterwards.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.example.receipt.dto.ReceiptDto(r.id, r.description, r.amount, r.receiptDate, r.year, r.receiptSource.id) " +
+           "FROM Receipt r ORDER BY r.id")
+    Stream<ReceiptDto> streamAll();
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.example.receipt.dto.ReceiptDto(r.id, r.description, r.amount, r.receiptDate, r.year, r.receiptSource.id) " +
+           "FROM Receipt r WHERE r.year = :year ORDER BY r.id")
+    Stream<ReceiptDto> streamByYear(@Param("year") Integer year);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.example.receipt.dto.ReceiptDto(r.id, r.description, r.amount, r.receiptDate, r.year, r.receiptSource.id) " +
+           "FROM Receipt r WHERE r.receiptSource.id = :sourceId ORDER BY r.id")
+    Stream<ReceiptDto> streamBySource(@Param("sourceId") Integer sourceId);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.example.receipt.dto.ReceiptDto(r.id, r.description, r.amount, r.receiptDate, r.year, r.receiptSource.id) " +
+           "FROM Receipt r WHERE r.receiptSource.id = :sourceId AND r.year = :year ORDER BY r.id")
+    Stream<ReceiptDto> streamBySourceAndYear(@Param("sourceId") Integer sourceId, @Param("year") Integer year);
 }
@@ -0,0 +1,9 @@
+package com.example.receipt.repository;
+
+import com.example.receipt.entity.ReportBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReportBatchRepository extends JpaRepository<ReportBatch, String> {
+}
@@ -0,0 +1,94 @@
+package com.example.receipt.repository;
+
+import com.example.receipt.entity.ReportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ReportJobRepository extends JpaRepository<ReportJob, String> {
+
+    List<ReportJob> findByStatus(String status);
+
+    Optional<ReportJob> findFirstByDedupKeyAndStatusInAndCreatedAtAfterOrderByCreatedAtDesc(
+            String dedupKey, Collection<String> statuses, LocalDateTime createdAfter);
+
+    Optional<ReportJob> findFirstByDedupKeyAndStatusAndCompletedAtAfterOrderByCompletedAtDesc(
+            String dedupKey, String status, LocalDateTime completedAfter);
+
+    Optional<ReportJob> findFirstByDedupKeyAndIdNotAndStatusInAndCreatedAtAfterOrderByCreatedAtDesc(
+            String dedupKey, String id, Collection<String> statuses, LocalDateTime createdAfter);
+
+    Optional<ReportJob> findByActiveDedupKey(String activeDedupKey);
+
+    // Free the dedup key held by a job created before the window, so a new identical request can take it
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReportJob j SET j.activeDedupKey = NULL WHERE j.id = :id AND j.activeDedupKey = :key " +
+           "AND j.createdAt < :createdBefore")
+    int releaseExpiredDedupKey(@Param("id") String id, @Param("key") String key,
+                               @Param("createdBefore") LocalDateTime createdBefore);
+
+    // Status transitions are conditional updates, so the report and delivery consumers never overwrite
+    // each other's writes and a late message never moves a finished job back
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReportJob j SET j.status = 'RUNNING', j.attempts = j.attempts + 1, j.startedAt = :now, " +
+           "j.completedAt = NULL, j.updatedAt = :now WHERE j.id = :id AND j.status IN ('QUEUED', 'RUNNING')")
+    int markRunning(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReportJob j SET j.status = 'DELIVERING', j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.status NOT IN ('SENT', 'FAILED')")
+    int markDelivering(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReportJob j SET j.status = 'QUEUED', j.lastError = :error, j.completedAt = :now, j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.status IN ('QUEUED', 'RUNNING')")
+    int markRetrying(@Param("id") String id, @Param("error") String error, @Param("now") LocalDateTime now);
+
+    // The email went out, so this wins over anything but an earlier SENT
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReportJob j SET j.status = 'SENT', j.activeDedupKey = NULL, j.completedAt = :now, j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.status <> 'SENT'")
+    int markSent(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReportJob j SET j.status = 'FAILED', j.activeDedupKey = NULL, j.lastError = :error, " +
+           "j.completedAt = :now, j.updatedAt = :now WHERE j.id = :id AND j.status NOT IN ('SENT', 'FAILED')")
+    int markFailed(@Param("id") String id, @Param("error") String error, @Param("now") LocalDateTime now);
+
+    // A duplicate stays QUEUED, linked to the job it duplicates, until that job finishes
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReportJob j SET j.duplicateOf = :duplicateOf, j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.status NOT IN ('SENT', 'FAILED')")
+    int linkDuplicate(@Param("id") String id, @Param("duplicateOf") String duplicateOf, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReportJob j SET j.status = 'SENT', j.activeDedupKey = NULL, j.completedAt = :now, j.updatedAt = :now " +
+           "WHERE j.duplicateOf = :duplicateOf AND j.status NOT IN ('SENT', 'FAILED')")
+    int markDuplicatesSent(@Param("duplicateOf") String duplicateOf, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReportJob j SET j.status = 'FAILED', j.activeDedupKey = NULL, j.lastError = :error, " +
+           "j.completedAt = :now, j.updatedAt = :now " +
+           "WHERE j.duplicateOf = :duplicateOf AND j.status NOT IN ('SENT', 'FAILED')")
+    int markDuplicatesFailed(@Param("duplicateOf") String duplicateOf, @Param("error") String error,
+                             @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,53 @@
+package com.example.receipt.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Passes bytes through to another stream while counting them and feeding them to a SHA-256 digest.
+ * Closing it only flushes: the underlying stream belongs to the caller.
+ */
+public class ChecksumOutputStream extends FilterOutputStream {
+
+    private final MessageDigest digest;
+    private long size;
+
+    public ChecksumOutputStream(OutputStream out) {
+        super(out);
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        digest.update((byte) b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        digest.update(b, off, len);
+        size += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Size and checksum of everything written so far. Call once, after the last write.
+     */
+    public ReportOutput result() {
+        return new ReportOutput(size, HexFormat.of().formatHex(digest.digest()));
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.receipt.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Writes CSV reports as UTF-8 to an OutputStream with as little per-row garbage as possible.
+ *
+ * Fields are escaped and numbers formatted straight into one reusable char buffer, which is handed to
+ * the encoder whenever it fills up, so rows are never built as Strings and money is never run through
+ * Formatter. Fields are separated by commas and rows end with the platform line separator, matching
+ * what the PrintWriter-based report wrote. The output stream is flushed but never closed.
+ */
+public class CsvReportWriter {
+
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+
+    // Buffered chars are encoded and written out once this many have accumulated
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    // Fast money formatting is exact below this magnitude; larger values go through String.format
+    private static final double MAX_FAST_MONEY = 1e9;
+
+    private final Writer out;
+    private char[] buffer = new char[FLUSH_THRESHOLD + 1024];
+    private int position;
+    private boolean rowStarted;
+
+    public CsvReportWriter(OutputStream out) {
+        this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write text as-is, outside any field (e.g. a byte order mark)
+     */
+    public CsvReportWriter raw(String text) throws IOException {
+        ensureCapacity(text.length());
+        text.getChars(0, text.length(), buffer, position);
+        position += text.length();
+        return this;
+    }
+
+    /**
+     * Write a text field, quoting it if it contains a comma, quote or line break.
+     * Quotes are doubled and null is written as an empty field.
+     */
+    public CsvReportWriter field(String value) throws IOException {
+        separate();
+        if (value == null) {
+            return this;
+        }
+
+        // Room for the value with every char a doubled quote, plus the surrounding quotes
+        int length = value.length();
+        ensureCapacity(length * 2 + 2);
+        int start = position;
+        boolean quote = false;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                buffer[position++] = '"';
+                quote = true;
+            } else if (c == ',' || c == '\n' || c == '\r') {
+                quote = true;
+            }
+            buffer[position++] = c;
+        }
+
+        if (quote) {
+            System.arraycopy(buffer, start, buffer, start + 1, position - start);
+            buffer[start] = '"';
+            position++;
+            buffer[position++] = '"';
+        }
+        return this;
+    }
+
+    /**
+     * Write an integer field; null is written as an empty field
+     */
+    public CsvReportWriter field(Long value) throws IOException {
+        separate();
+        if (value != null) {
+            appendLong(value);
+        }
+        return this;
+    }
+
+    /**
+     * Write an integer field; null is written as an empty field
+     */
+    public CsvReportWriter field(Integer value) throws IOException {
+        return field(value != null ? Long.valueOf(value) : null);
+    }
+
+    /**
+     * Write an amount with two decimals, rounded half-up exactly as String.format("%.2f") would.
+     * The decimal separator is always '.', whatever the default locale. Null is written as an empty field.
+     */
+    public CsvReportWriter money(Double value) throws IOException {
+        separate();
+        if (value == null) {
+            return this;
+        }
+
+        double amount = value;
+        if (!(Math.abs(amount) < MAX_FAST_MONEY)) {
+            // Also catches NaN and infinities
+            appendFormatted(amount);
+            return this;
+        }
+
+        // Formatter rounds the shortest decimal representation of the double half-up. Away from a
+        // half-cent boundary that is the same as rounding the scaled value; within the error of the
+        // scaling it can differ, so those few values take the slow path.
+        double cents = Math.abs(amount) * 100;
+        double whole = Math.floor(cents);
+        double fraction = cents - whole;
+        if (Math.abs(fraction - 0.5) < 1e-4) {
+            appendFormatted(amount);
+            return this;
+        }
+
+        long rounded = (long) whole + (fraction > 0.5 ? 1 : 0);
+        ensureCapacity(24);
+        if (Double.doubleToRawLongBits(amount) < 0) {
+            buffer[position++] = '-';
+        }
+        appendLong(rounded / 100);
+        long remainder = rounded % 100;
+        buffer[position++] = '.';
+        buffer[position++] = (char) ('0' + remainder / 10);
+        buffer[position++] = (char) ('0' + remainder % 10);
+        return this;
+    }
+
+    /**
+     * End the current row, or write an empty line if no field was written
+     */
+    public CsvReportWriter endRow() throws IOException {
+        ensureCapacity(LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, buffer, position, LINE_SEPARATOR.length);
+        position += LINE_SEPARATOR.length;
+        rowStarted = false;
+        if (position >= FLUSH_THRESHOLD) {
+            drain();
+        }
+        return this;
+    }
+
+    /**
+     * Write out everything buffered and flush the underlying stream, leaving it open
+     */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    private void separate() throws IOException {
+        if (rowStarted) {
+            ensureCapacity(1);
+            buffer[position++] = ',';
+        }
+        rowStarted = true;
+    }
+
+    private void appendFormatted(double amount) throws IOException {
+        String formatted = String.format(Locale.ROOT, "%.2f", amount);
+        ensureCapacity(formatted.length());
+        formatted.getChars(0, formatted.length(), buffer, position);
+        position += formatted.length();
+    }
+
+    // Digits are written backwards from the end of the number's slot, so no temporary String is needed
+    private void appendLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            raw(Long.toString(value));
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        position = end;
+    }
+
+    private void ensureCapacity(int chars) throws IOException {
+        if (position + chars <= buffer.length) {
+            return;
+        }
+        // Everything before the value about to be written is complete, so it can go out first
+        drain();
+        if (chars > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, chars));
+        }
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.receipt.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A file to attach to an email, read from disk or another store when the email is built, or held in memory
+ */
+public final class EmailAttachment {
+
+    /**
+     * Opens the content of an attachment kept somewhere other than a file
+     */
+    @FunctionalInterface
+    public interface ContentSource {
+        InputStream open() throws IOException;
+    }
+
+    private final String fileName;
+    private final String mimeType;
+    private final Path path;
+    private final byte[] content;
+    private final ContentSource source;
+    private final long sourceSize;
+
+    private EmailAttachment(String fileName, String mimeType, Path path, byte[] content, ContentSource source, long sourceSize) {
+        this.fileName = fileName;
+        this.mimeType = mimeType;
+        this.path = path;
+        this.content = content;
+        this.source = source;
+        this.sourceSize = sourceSize;
+    }
+
+    /**
+     * Attachment streamed from a file, so it is never loaded into memory whole
+     */
+    public static EmailAttachment ofFile(Path path, String fileName, String mimeType) {
+        return new EmailAttachment(fileName, mimeType, path, null, null, 0);
+    }
+
+    public static EmailAttachment ofBytes(byte[] content, String fileName, String mimeType) {
+        return new EmailAttachment(fileName, mimeType, null, content, null, 0);
+    }
+
+    /**
+     * Attachment of a known size opened from the given source each time it is read, e.g. a stored blob
+     */
+    public static EmailAttachment ofSource(ContentSource source, long size, String fileName, String mimeType) {
+        return new EmailAttachment(fileName, mimeType, null, null, source, size);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * The backing file, or null for an in-memory attachment
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    public long size() throws IOException {
+        if (path != null) {
+            return Files.size(path);
+        }
+        return source != null ? sourceSize : content.length;
+    }
+
+    public InputStream openStream() throws IOException {
+        if (path != null) {
+            return Files.newInputStream(path);
+        }
+        return source != null ? source.open() : new ByteArrayInputStream(content);
+    }
+}
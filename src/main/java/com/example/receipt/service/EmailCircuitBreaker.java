@@ -0,0 +1,162 @@
+package com.example.receipt.service;
+
+import com.example.receipt.exception.EmailCircuitOpenException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker around SendGrid: CLOSED -> OPEN -> HALF_OPEN -> CLOSED.
+ *
+ * {sendgrid.circuit-breaker.failure-threshold} consecutive failed sends (throttling, server errors or
+ * no response) open the circuit, and sends are refused without calling SendGrid for
+ * {sendgrid.circuit-breaker.open-ms}. After that one trial send is let through: success closes the
+ * circuit, failure opens it again. Other error responses mean SendGrid is up and count as successes.
+ *
+ * The state is exposed as email.circuit.state (1 for the current state, tagged by state) and refused
+ * sends as email.circuit.rejected.
+ */
+@Component
+public class EmailCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    private final Counter rejected;
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    @Autowired
+    public EmailCircuitBreaker(@Value("${sendgrid.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                               @Value("${sendgrid.circuit-breaker.open-ms:30000}") long openMs,
+                               MeterRegistry meterRegistry) {
+        this(failureThreshold, openMs, meterRegistry, System::nanoTime);
+    }
+
+    EmailCircuitBreaker(int failureThreshold, long openMs, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.nanoClock = nanoClock;
+        for (State gaugedState : State.values()) {
+            Gauge.builder("email.circuit.state", this, breaker -> breaker.getState() == gaugedState ? 1 : 0)
+                    .description("SendGrid circuit breaker state")
+                    .tag("state", gaugedState.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        this.rejected = Counter.builder("email.circuit.rejected")
+                .description("Sends refused while the SendGrid circuit breaker was open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Call on every state change, after it has happened
+     */
+    public void addListener(Consumer<State> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Ask to make a send; every permitted send must be followed by recordSuccess, recordFailure or releasePermission
+     * @throws EmailCircuitOpenException if the circuit is open, or half open with its trial under way
+     */
+    public void acquirePermission() throws EmailCircuitOpenException {
+        boolean halfOpened;
+        synchronized (this) {
+            halfOpened = state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos;
+            if (halfOpened) {
+                state = State.HALF_OPEN;
+            }
+            if (state == State.OPEN || (state == State.HALF_OPEN && trialInFlight)) {
+                rejected.increment();
+                throw new EmailCircuitOpenException(getRetryAfterMs());
+            }
+            if (state == State.HALF_OPEN) {
+                trialInFlight = true;
+            }
+        }
+        if (halfOpened) {
+            notifyListeners(State.HALF_OPEN);
+        }
+    }
+
+    /**
+     * Give back a permission whose send was never made, so a half open circuit can try again
+     */
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    public void recordSuccess() {
+        boolean closed;
+        synchronized (this) {
+            consecutiveFailures = 0;
+            // Late results of sends started before the circuit opened don't close it
+            closed = state == State.HALF_OPEN;
+            if (closed) {
+                state = State.CLOSED;
+                trialInFlight = false;
+            }
+        }
+        if (closed) {
+            notifyListeners(State.CLOSED);
+        }
+    }
+
+    public void recordFailure() {
+        boolean opened;
+        synchronized (this) {
+            consecutiveFailures++;
+            opened = state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold);
+            if (opened) {
+                state = State.OPEN;
+                openedAt = nanoClock.getAsLong();
+                trialInFlight = false;
+            }
+        }
+        if (opened) {
+            notifyListeners(State.OPEN);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Milliseconds until an open circuit lets a trial send through; 0 otherwise
+     */
+    public synchronized long getRetryAfterMs() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openedAt + openNanos - nanoClock.getAsLong()));
+    }
+
+    private void notifyListeners(State newState) {
+        System.out.println("Email circuit breaker is now " + newState);
+        for (Consumer<State> listener : listeners) {
+            try {
+                listener.accept(newState);
+            } catch (RuntimeException ex) {
+                System.err.println("Email circuit breaker listener failed: " + ex.getMessage());
+            }
+        }
+    }
+}
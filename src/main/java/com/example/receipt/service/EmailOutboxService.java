@@ -0,0 +1,284 @@
+package com.example.receipt.service;
+
+import com.example.receipt.config.RabbitMQConfig;
+import com.example.receipt.entity.EmailOutbox;
+import com.example.receipt.repository.EmailOutboxAttachmentRepository;
+import com.example.receipt.repository.EmailOutboxRepository;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Hands generated emails over to the delivery queue: PENDING -> SENDING -> SENT or FAILED.
+ *
+ * Enqueueing stores the whole email in the outbox and publishes its id, so the report consumer is
+ * done once the email is queued. The delivery consumer sends it from the stored copy, as often as it
+ * has to, on whichever instance picks it up.
+ *
+ * Emails can wait out a coalescing window before they are delivered: app.email.coalesce.window-ms for
+ * emails queued with {@link #enqueue}, which is 0 by default so report emails go out straight away, and
+ * app.email.coalesce.batch-window-ms for those queued with {@link #enqueueBatched}. While either is above 0,
+ * a delivery claims every other email still pending for the same recipient, up to
+ * app.email.coalesce.max-emails emails and app.email.coalesce.max-bytes of attachments, and sends them
+ * as one message. The deliveries of the emails it claimed find nothing left to send.
+ */
+@Service
+public class EmailOutboxService {
+
+    @Value("${app.email.coalesce.window-ms:0}")
+    private long coalesceWindowMs;
+
+    @Value("${app.email.coalesce.batch-window-ms:15000}")
+    private long batchCoalesceWindowMs;
+
+    @Value("${app.email.coalesce.max-emails:25}")
+    private int coalesceMaxEmails;
+
+    @Value("${app.email.coalesce.max-bytes:20971520}")
+    private long coalesceMaxBytes;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private EmailOutboxAttachmentRepository emailOutboxAttachmentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    /**
+     * Queue an email for delivery. Attachments are streamed into the outbox, so the caller can delete
+     * their files once this returns; if queueing fails nothing is left behind and the error is rethrown.
+     */
+    public EmailOutbox enqueue(String reportJobId, String toEmail, String subject, String htmlContent,
+                               List<EmailAttachment> attachments) throws IOException {
+        return enqueue(reportJobId, toEmail, subject, htmlContent, attachments, coalesceWindowMs);
+    }
+
+    /**
+     * Queue an email sent as part of a batch; it waits out the batch coalescing window, so the
+     * recipient's other batch emails can go in the same send
+     */
+    public EmailOutbox enqueueBatched(String reportJobId, String toEmail, String subject, String htmlContent,
+                                      List<EmailAttachment> attachments) throws IOException {
+        return enqueue(reportJobId, toEmail, subject, htmlContent, attachments, batchCoalesceWindowMs);
+    }
+
+    private EmailOutbox enqueue(String reportJobId, String toEmail, String subject, String htmlContent,
+                                List<EmailAttachment> attachments, long windowMs) throws IOException {
+        long attachmentBytes = 0;
+        for (EmailAttachment attachment : attachments) {
+            attachmentBytes += attachment.size();
+        }
+        EmailOutbox pending = new EmailOutbox(UUID.randomUUID().toString(), reportJobId, toEmail, subject, htmlContent,
+                attachmentBytes);
+
+        // The entry and its attachments commit together, so a relayed entry always has all of them
+        EmailOutbox entry;
+        try {
+            entry = new TransactionTemplate(transactionManager).execute(status -> {
+                EmailOutbox saved = emailOutboxRepository.saveAndFlush(pending);
+                try {
+                    emailOutboxAttachmentRepository.insert(saved.getId(), attachments);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                return saved;
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        try {
+            if (windowMs > 0) {
+                // Parked for the window; it dead-letters to the delivery queue when it expires
+                rabbitTemplate.convertAndSend(RabbitMQConfig.REPORT_RETRY_EXCHANGE,
+                        RabbitMQConfig.emailCoalesceRoutingKey(windowMs), entry.getId());
+            } else {
+                rabbitTemplate.convertAndSend(RabbitMQConfig.REPORT_EXCHANGE, RabbitMQConfig.EMAIL_DELIVERY_ROUTING_KEY, entry.getId());
+            }
+        } catch (RuntimeException ex) {
+            discard(entry.getId());
+            throw ex;
+        }
+        return entry;
+    }
+
+    public Optional<EmailOutbox> getEntry(String id) {
+        return emailOutboxRepository.findById(id);
+    }
+
+    /**
+     * Claim the emails the entry's delivery sends: the entry itself and, when coalescing, the other
+     * emails pending for its recipient, oldest first. A redelivered or retried delivery gets the group
+     * it claimed before. Empty when another delivery already took the entry.
+     */
+    public List<EmailOutbox> claim(EmailOutbox entry) {
+        String deliveryId = entry.getId();
+        if (EmailOutbox.STATUS_SENDING.equals(entry.getStatus()) && deliveryId.equals(entry.getDeliveryId())) {
+            return emailOutboxRepository.findByDeliveryIdOrderByCreatedAtAscIdAsc(deliveryId);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (!EmailOutbox.STATUS_PENDING.equals(entry.getStatus())
+                || emailOutboxRepository.claimPending(List.of(deliveryId), deliveryId, now) == 0) {
+            return List.of();
+        }
+
+        if (coalesceWindowMs > 0 || batchCoalesceWindowMs > 0) {
+            List<String> others = new ArrayList<>();
+            long bytes = entry.getAttachmentBytes();
+            for (EmailOutboxRepository.PendingEmail pending : emailOutboxRepository.findPendingByToEmail(entry.getToEmail())) {
+                if (others.size() + 1 >= coalesceMaxEmails) {
+                    break;
+                }
+                // Too large to fit alongside the rest; it goes in a later send
+                if (bytes + pending.getAttachmentBytes() > coalesceMaxBytes) {
+                    continue;
+                }
+                others.add(pending.getId());
+                bytes += pending.getAttachmentBytes();
+            }
+            if (!others.isEmpty()) {
+                emailOutboxRepository.claimPending(others, deliveryId, now);
+            }
+        }
+        return emailOutboxRepository.findByDeliveryIdOrderByCreatedAtAscIdAsc(deliveryId);
+    }
+
+    /**
+     * Send a claimed group of emails for one recipient as a single message, with every attachment in order.
+     * Each attachment is read from the outbox only while it is written into the message.
+     */
+    public void deliver(List<EmailOutbox> group) throws IOException {
+        List<EmailAttachment> attachments = new ArrayList<>();
+        for (EmailOutbox entry : group) {
+            attachments.addAll(emailOutboxAttachmentRepository.find(entry.getId()));
+        }
+        EmailOutbox first = group.get(0);
+        if (group.size() == 1) {
+            emailService.sendReportEmail(first.getToEmail(), first.getSubject(), first.getHtmlContent(), attachments);
+        } else {
+            emailService.sendReportEmail(first.getToEmail(), "Receipt System - " + group.size() + " report emails",
+                    createCombinedHtml(group), attachments);
+        }
+    }
+
+    public void markSent(List<EmailOutbox> group) {
+        String deliveryId = group.get(0).getDeliveryId();
+        finish(deliveryId, () -> emailOutboxRepository.markSent(deliveryId, LocalDateTime.now()));
+    }
+
+    /**
+     * Delivery attempt failed but will be retried from the stored copies; the group stays claimed
+     */
+    public void markRetrying(List<EmailOutbox> group, String error) {
+        emailOutboxRepository.markRetrying(group.get(0).getDeliveryId(), error, LocalDateTime.now());
+    }
+
+    public void markFailed(List<EmailOutbox> group, String error) {
+        String deliveryId = group.get(0).getDeliveryId();
+        finish(deliveryId, () -> emailOutboxRepository.markFailed(deliveryId, error, LocalDateTime.now()));
+    }
+
+    /**
+     * Publish again the emails that have been pending for longer than staleAfterMs, whose delivery
+     * message must have been lost (e.g. the instance stopped between saving and publishing).
+     * Each one is taken with a conditional update first, so concurrent relays publish it once.
+     * @return how many were published
+     */
+    public int relayStalePending(long staleAfterMs, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minusNanos(staleAfterMs * 1_000_000);
+        int relayed = 0;
+        for (String id : emailOutboxRepository.findStalePendingIds(staleBefore, PageRequest.of(0, limit))) {
+            if (emailOutboxRepository.touchStalePending(id, staleBefore, now) == 1) {
+                // It has waited well past the coalescing window already
+                rabbitTemplate.convertAndSend(RabbitMQConfig.REPORT_EXCHANGE, RabbitMQConfig.EMAIL_DELIVERY_ROUTING_KEY, id);
+                relayed++;
+            }
+        }
+        return relayed;
+    }
+
+    /**
+     * Publish again the deliveries whose group has been SENDING for longer than staleAfterMs without a
+     * retry being recorded, because the instance sending it stopped before it marked the outcome.
+     * The lead entry's delivery picks the group up where it was claimed; the email may have gone out
+     * already, in which case the recipient gets it twice. Taken with a conditional update first, so
+     * concurrent relays publish each group once.
+     * @return how many groups were published
+     */
+    public int relayStaleSending(long staleAfterMs, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minusNanos(staleAfterMs * 1_000_000);
+        int relayed = 0;
+        for (String deliveryId : emailOutboxRepository.findStaleSendingIds(staleBefore, PageRequest.of(0, limit))) {
+            if (emailOutboxRepository.touchStaleSending(deliveryId, staleBefore, now) > 0) {
+                rabbitTemplate.convertAndSend(RabbitMQConfig.REPORT_EXCHANGE, RabbitMQConfig.EMAIL_DELIVERY_ROUTING_KEY, deliveryId);
+                relayed++;
+            }
+        }
+        return relayed;
+    }
+
+    // Finished entries keep the envelope and outcome; the content is not needed any more.
+    // The status and the content go in one transaction.
+    private void finish(String deliveryId, Runnable markOutcome) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            markOutcome.run();
+            emailOutboxAttachmentRepository.deleteByDeliveryId(deliveryId);
+        });
+    }
+
+    private void discard(String id) {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                emailOutboxAttachmentRepository.delete(id);
+                emailOutboxRepository.deleteById(id);
+            });
+        } catch (RuntimeException ex) {
+            System.err.println("Failed to remove unqueued outbox entry " + id + ": " + ex.getMessage());
+        }
+    }
+
+    private String createCombinedHtml(List<EmailOutbox> group) {
+        StringBuilder html = new StringBuilder();
+        html.append("<html><body style='font-family: Arial, sans-serif;'>");
+        html.append("<div style='max-width: 600px; margin: 0 auto;'>");
+        html.append("<p><em>").append(group.size())
+            .append(" emails from the Receipt System were combined into this message. Every report is attached.</em></p>");
+        for (EmailOutbox entry : group) {
+            html.append("<hr>");
+            html.append("<h3>").append(entry.getSubject()).append("</h3>");
+            html.append(bodyOf(entry.getHtmlContent()));
+        }
+        html.append("</div>");
+        html.append("</body></html>");
+        return html.toString();
+    }
+
+    // The markup inside <body>, so each email nests in the combined one
+    private static String bodyOf(String html) {
+        int bodyStart = html.indexOf("<body");
+        int contentStart = bodyStart >= 0 ? html.indexOf('>', bodyStart) + 1 : 0;
+        int contentEnd = html.lastIndexOf("</body>");
+        return contentStart > 0 && contentEnd >= contentStart ? html.substring(contentStart, contentEnd) : html;
+    }
+}
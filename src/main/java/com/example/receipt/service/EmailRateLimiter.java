@@ -0,0 +1,82 @@
+package com.example.receipt.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket in front of SendGrid, sized to the plan's quota: {sendgrid.rate-limit.per-second}
+ * sends per second with bursts of up to {sendgrid.rate-limit.burst}. Each instance has its own
+ * bucket, so the per-second rate is the quota divided by the number of replicas.
+ *
+ * A send that finds the bucket empty reserves the next token and waits for it, so callers are served
+ * in arrival order. Waits are recorded as email.rate_limit.wait.
+ */
+@Component
+public class EmailRateLimiter {
+
+    private final double permitsPerSecond;
+    private final double burst;
+    private final LongSupplier nanoClock;
+    private final Timer waits;
+
+    // Negative once sends have reserved tokens that are not refilled yet
+    private double tokens;
+    private long refilledAt;
+
+    @Autowired
+    public EmailRateLimiter(@Value("${sendgrid.rate-limit.per-second:10}") double permitsPerSecond,
+                            @Value("${sendgrid.rate-limit.burst:20}") int burst,
+                            MeterRegistry meterRegistry) {
+        this(permitsPerSecond, burst, meterRegistry, System::nanoTime);
+    }
+
+    EmailRateLimiter(double permitsPerSecond, int burst, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.nanoClock = nanoClock;
+        this.waits = Timer.builder("email.rate_limit.wait")
+                .description("Time sends waited for the SendGrid rate limit")
+                .register(meterRegistry);
+        this.tokens = this.burst;
+        this.refilledAt = nanoClock.getAsLong();
+    }
+
+    /**
+     * Wait until the next send is within the rate limit
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public void acquire() throws InterruptedIOException {
+        long waitNanos = reserve();
+        waits.record(waitNanos, TimeUnit.NANOSECONDS);
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the email rate limit");
+            }
+        }
+    }
+
+    /**
+     * Take a token, reserving the next one if the bucket is empty
+     * @return nanoseconds until the reserved token is available, 0 if one was available now
+     */
+    synchronized long reserve() {
+        if (permitsPerSecond <= 0) {
+            return 0;
+        }
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        refilledAt = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.receipt.service;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface EmailService {
 
@@ -16,6 +18,31 @@ public interface EmailService {
     void sendReportEmail(String toEmail, String subject, String htmlContent, 
                         byte[] pdfContent, String pdfFileName) throws IOException;
 
+    /**
+     * Send an email with HTML content and any number of attachments. Attachments are base64-encoded
+     * straight onto the request as it uploads rather than loaded into memory first.
+     * @param toEmail recipient email address
+     * @param subject email subject
+     * @param htmlContent HTML content of the email
+     * @param attachments files to attach, in order
+     * @throws IOException if email sending fails
+     */
+    void sendReportEmail(String toEmail, String subject, String htmlContent,
+                        List<EmailAttachment> attachments) throws IOException;
+
+    /**
+     * Send an email with HTML content and any number of attachments without waiting for SendGrid.
+     * Attachments are read while the request uploads, so attachment files must be kept until the
+     * returned future completes.
+     * @param toEmail recipient email address
+     * @param subject email subject
+     * @param htmlContent HTML content of the email
+     * @param attachments files to attach, in order
+     * @return completes once SendGrid accepted the email, or exceptionally with the IOException that failed it
+     */
+    CompletableFuture<Void> sendReportEmailAsync(String toEmail, String subject, String htmlContent,
+                                                 List<EmailAttachment> attachments);
+
     /**
      * Send an email with HTML content only (no attachment)
      * @param toEmail recipient email address
@@ -8,52 +8,63 @@ import com.itextpdf.text.pdf.PdfPTable;
 import com.itextpdf.text.pdf.PdfWriter;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.OutputStream;
 import java.util.List;
 
 @Service
 public class PdfGeneratorService implements ReportGenerator {
 
+    // Rows laid out and flushed to the output at a time
+    static final int ROWS_PER_CHUNK = 500;
+
+    // Fonts are immutable once built, so one set is shared by every report
+    private static final Font TITLE_FONT = new Font(Font.FontFamily.HELVETICA, 24, Font.BOLD);
+    private static final Font HEADER_FONT = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD);
+    private static final Font REGULAR_FONT = new Font(Font.FontFamily.HELVETICA, 11);
+    private static final Font TABLE_HEADER_FONT = new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD, BaseColor.WHITE);
+    private static final Font TABLE_DATA_FONT = new Font(Font.FontFamily.HELVETICA, 10);
+    private static final BaseColor HEADER_BACKGROUND = new BaseColor(41, 128, 185);
+
+    // Table cells wrap at whitespace only. iText's default split check compiles and runs a date regex
+    // for every character it lays out, which dominated the time spent on large tables.
+    private static final SplitCharacter WHITESPACE_SPLIT = (start, current, end, chars, chunks) -> chars[current] <= ' ';
+
     /**
      * Generate yearly receipt report in PDF format (legacy method for backward compatibility)
      */
-    public byte[] generateYearlyReportPdf(Property property, Integer year, List<PropertyReceipt> receipts) throws DocumentException {
-        return (byte[]) generateReport(property, year, receipts);
+    public byte[] generateYearlyReportPdf(Property property, Integer year, List<PropertyReceipt> receipts) throws Exception {
+        return generateReport(property, year, receipts);
     }
 
     /**
-     * Generate yearly receipt report in PDF format
+     * Stream the yearly receipt report to an OutputStream.
+     *
+     * The receipt table is a large table: every ROWS_PER_CHUNK rows it is added to the document, which
+     * lays those rows out, writes any finished pages and frees them. Memory stays flat whatever the
+     * number of receipts, and the header row repeats on every page. The stream is not closed.
      */
     @Override
-    public byte[] generateReport(Property property, Integer year, List<PropertyReceipt> receipts) throws DocumentException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    public void generateReport(Property property, Integer year, List<PropertyReceipt> receipts, OutputStream out) throws DocumentException {
         Document document = new Document(PageSize.A4, 50, 50, 50, 50);
-        PdfWriter.getInstance(document, byteArrayOutputStream);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        writer.setCloseStream(false);
         document.open();
 
         // Title
-        Font titleFont = new Font(Font.FontFamily.HELVETICA, 24, Font.BOLD);
-        Paragraph title = new Paragraph("Yearly Receipt Report", titleFont);
+        Paragraph title = new Paragraph("Yearly Receipt Report", TITLE_FONT);
         title.setAlignment(Element.ALIGN_CENTER);
         title.setSpacingAfter(20);
         document.add(title);
 
         // Report Header
-        Font headerFont = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD);
-        Font regularFont = new Font(Font.FontFamily.HELVETICA, 11);
-
         Paragraph reportHeader = new Paragraph();
-        reportHeader.add(new Chunk("Property: ", headerFont));
-        reportHeader.add(new Chunk(property.getName() + "\n", regularFont));
-        reportHeader.add(new Chunk("Address: ", headerFont));
+        reportHeader.add(new Chunk("Property: ", HEADER_FONT));
+        reportHeader.add(new Chunk(property.getName() + "\n", REGULAR_FONT));
+        reportHeader.add(new Chunk("Address: ", HEADER_FONT));
         reportHeader.add(new Chunk(property.getStreetNumber() + " " + property.getStreetName() + 
-                ", " + property.getCity() + ", " + property.getState() + " " + property.getZipCode() + "\n", regularFont));
-        reportHeader.add(new Chunk("Year: ", headerFont));
-        reportHeader.add(new Chunk(year.toString() + "\n", regularFont));
-        reportHeader.add(new Chunk("Report Generated: ", headerFont));
-        reportHeader.add(new Chunk(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "\n", regularFont));
+                ", " + property.getCity() + ", " + property.getState() + " " + property.getZipCode() + "\n", REGULAR_FONT));
+        reportHeader.add(new Chunk("Year: ", HEADER_FONT));
+        reportHeader.add(new Chunk(year.toString() + "\n", REGULAR_FONT));
         reportHeader.setSpacingAfter(20);
         document.add(reportHeader);
 
@@ -61,9 +72,9 @@ public class PdfGeneratorService implements ReportGenerator {
         double totalAmount = receipts.stream().mapToDouble(PropertyReceipt::getPortion).sum();
         
         Paragraph summary = new Paragraph();
-        summary.add(new Chunk("Summary:\n", headerFont));
-        summary.add(new Chunk("Total Receipts: " + receipts.size() + "\n", regularFont));
-        summary.add(new Chunk("Total Amount: $" + "%.2f".formatted(totalAmount) + "\n", regularFont));
+        summary.add(new Chunk("Summary:\n", HEADER_FONT));
+        summary.add(new Chunk("Total Receipts: " + receipts.size() + "\n", REGULAR_FONT));
+        summary.add(new Chunk("Total Amount: $" + "%.2f".formatted(totalAmount) + "\n", REGULAR_FONT));
         summary.setSpacingAfter(20);
         document.add(summary);
 
@@ -71,39 +82,43 @@ public class PdfGeneratorService implements ReportGenerator {
         PdfPTable table = new PdfPTable(5);
         table.setWidthPercentage(100);
         table.setSpacingBefore(10f);
-
-        Font tableHeaderFont = new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD, BaseColor.WHITE);
-        BaseColor headerBackgroundColor = new BaseColor(41, 128, 185);
+        table.setComplete(false);
+        table.setHeaderRows(1);
 
         String[] headers = {"Date", "Description", "Amount", "Portion", "Receipt ID"};
+        PdfPCell headerCell = table.getDefaultCell();
+        headerCell.setBackgroundColor(HEADER_BACKGROUND);
+        headerCell.setHorizontalAlignment(Element.ALIGN_CENTER);
+        headerCell.setPadding(10);
         for (String header : headers) {
-            PdfPCell cell = new PdfPCell(new Phrase(header, tableHeaderFont));
-            cell.setBackgroundColor(headerBackgroundColor);
-            cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-            cell.setPadding(10);
-            table.addCell(cell);
+            table.addCell(new Phrase(header, TABLE_HEADER_FONT));
         }
 
-        // Table Data
-        Font tableDataFont = new Font(Font.FontFamily.HELVETICA, 10);
+        // Table Data: rows are built from the default cell as a template rather than a new PdfPCell per value
+        PdfPCell dataCell = table.getDefaultCell();
+        dataCell.setBackgroundColor(null);
+        dataCell.setPadding(8);
+        int rowsInChunk = 0;
         for (PropertyReceipt receipt : receipts) {
             addTableRow(table, 
                 receipt.getReceipt().getReceiptDate(),
                 receipt.getReceipt().getDescription(),
                     "$%.2f".formatted(receipt.getReceipt().getAmount()),
                     "$%.2f".formatted(receipt.getPortion()),
-                receipt.getReceipt().getId().toString(),
-                tableDataFont
+                receipt.getReceipt().getId().toString()
             );
+            if (++rowsInChunk == ROWS_PER_CHUNK) {
+                document.add(table);
+                rowsInChunk = 0;
+            }
         }
 
+        table.setComplete(true);
         document.add(table);
 
         // Footer
         document.addCreationDate();
         document.close();
-
-        return byteArrayOutputStream.toByteArray();
     }
 
     @Override
@@ -116,18 +131,16 @@ public class PdfGeneratorService implements ReportGenerator {
         return "application/pdf";
     }
 
-    private void addTableRow(PdfPTable table, String date, String description, String amount, String portion, String receiptId, Font font) {
-        table.addCell(createCell(date, font, Element.ALIGN_LEFT));
-        table.addCell(createCell(description, font, Element.ALIGN_LEFT));
-        table.addCell(createCell(amount, font, Element.ALIGN_RIGHT));
-        table.addCell(createCell(portion, font, Element.ALIGN_RIGHT));
-        table.addCell(createCell(receiptId, font, Element.ALIGN_CENTER));
+    private void addTableRow(PdfPTable table, String date, String description, String amount, String portion, String receiptId) {
+        addCell(table, date, Element.ALIGN_LEFT);
+        addCell(table, description, Element.ALIGN_LEFT);
+        addCell(table, amount, Element.ALIGN_RIGHT);
+        addCell(table, portion, Element.ALIGN_RIGHT);
+        addCell(table, receiptId, Element.ALIGN_CENTER);
     }
 
-    private PdfPCell createCell(String content, Font font, int alignment) {
-        PdfPCell cell = new PdfPCell(new Phrase(content, font));
-        cell.setHorizontalAlignment(alignment);
-        cell.setPadding(8);
-        return cell;
+    private void addCell(PdfPTable table, String content, int alignment) {
+        table.getDefaultCell().setHorizontalAlignment(alignment);
+        table.addCell(new Phrase(new Chunk(content, TABLE_DATA_FONT).setSplitCharacter(WHITESPACE_SPLIT)));
     }
 }
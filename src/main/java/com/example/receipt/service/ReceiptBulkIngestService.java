@@ -0,0 +1,189 @@
+package com.example.receipt.service;
+
+import com.example.receipt.cache.ReceiptSourceCache;
+import com.example.receipt.dto.BulkReceiptResult;
+import com.example.receipt.dto.ReceiptDto;
+import com.example.receipt.dto.ReceiptDtoMapper;
+import com.example.receipt.dto.ReceiptUpsertRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Service for ingesting many receipts at once.
+ *
+ * Items are processed in chunks: each chunk is validated with the same rules as
+ * single upserts, has its receipt sources and properties resolved in bulk, and is
+ * written with JDBC batch inserts. Every item gets a result in request order.
+ */
+@Service
+public class ReceiptBulkIngestService {
+
+    @Value("${app.bulk.batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private ReceiptService receiptService;
+
+    @Autowired
+    private ReceiptDtoMapper receiptDtoMapper;
+
+    @Autowired
+    private ReceiptSourceCache receiptSourceCache;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Ingest an already parsed list of receipts
+     * @param requests receipts to create
+     * @return one result per request, in request order
+     */
+    public List<BulkReceiptResult> ingest(List<ReceiptUpsertRequest> requests) {
+        List<BulkReceiptResult> results = new ArrayList<>(requests.size());
+        for (int start = 0; start < requests.size(); start += batchSize) {
+            int end = Math.min(start + batchSize, requests.size());
+            results.addAll(processChunk(start, requests.subList(start, end)));
+        }
+        return results;
+    }
+
+    /**
+     * Resolve (creating where needed) the receipt sources of every valid request up front.
+     * Callers that ingest inside their own transaction use this first, so that new sources
+     * are created before that transaction holds a connection and the chunk only hits the cache.
+     * @param requests receipts about to be ingested
+     */
+    public void resolveReceiptSources(List<ReceiptUpsertRequest> requests) {
+        receiptSourceCache.preload(requests.stream()
+                .filter(request -> request != null && request.getStoreName() != null && !request.getStoreName().isEmpty())
+                .map(request -> request.getStoreName().toUpperCase())
+                .collect(Collectors.toSet()));
+        for (ReceiptUpsertRequest request : requests) {
+            if (validate(request) == null) {
+                receiptDtoMapper.resolveReceiptSourceId(request);
+            }
+        }
+    }
+
+    /**
+     * Ingest newline-delimited JSON, one receipt per line, without holding the whole body in memory
+     * @param body the NDJSON stream
+     * @return one result per non-blank line, in input order
+     * @throws IOException if the stream can't be read
+     */
+    public List<BulkReceiptResult> ingestNdjson(InputStream body) throws IOException {
+        List<BulkReceiptResult> results = new ArrayList<>();
+        List<ReceiptUpsertRequest> chunk = new ArrayList<>(batchSize);
+        int chunkStart = 0;
+        int index = 0;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            ReceiptUpsertRequest request;
+            try {
+                request = objectMapper.readValue(line, ReceiptUpsertRequest.class);
+            } catch (JsonProcessingException ex) {
+                // Keep results ordered: flush what we have, then record the unparseable line
+                results.addAll(processChunk(chunkStart, chunk));
+                chunk.clear();
+                results.add(BulkReceiptResult.failed(index, "Malformed JSON: " + ex.getOriginalMessage()));
+                index++;
+                chunkStart = index;
+                continue;
+            }
+            chunk.add(request);
+            index++;
+            if (chunk.size() == batchSize) {
+                results.addAll(processChunk(chunkStart, chunk));
+                chunk.clear();
+                chunkStart = index;
+            }
+        }
+        results.addAll(processChunk(chunkStart, chunk));
+        return results;
+    }
+
+    private List<BulkReceiptResult> processChunk(int firstIndex, List<ReceiptUpsertRequest> requests) {
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+
+        BulkReceiptResult[] results = new BulkReceiptResult[requests.size()];
+
+        // Warm the receipt source cache for the whole chunk with one query
+        receiptSourceCache.preload(requests.stream()
+                .map(ReceiptUpsertRequest::getStoreName)
+                .filter(storeName -> storeName != null && !storeName.isEmpty())
+                .map(String::toUpperCase)
+                .collect(Collectors.toSet()));
+
+        List<ReceiptDto> dtos = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ReceiptUpsertRequest request = requests.get(i);
+            String violations = validate(request);
+            if (violations != null) {
+                results[i] = BulkReceiptResult.failed(firstIndex + i, violations);
+                continue;
+            }
+            try {
+                dtos.add(receiptDtoMapper.mapRequestToDto(request));
+                positions.add(i);
+            } catch (IllegalArgumentException ex) {
+                results[i] = BulkReceiptResult.failed(firstIndex + i, ex.getMessage());
+            }
+        }
+
+        if (!dtos.isEmpty()) {
+            try {
+                List<Long> ids = receiptService.createReceiptsInBatch(dtos);
+                for (int j = 0; j < positions.size(); j++) {
+                    results[positions.get(j)] = BulkReceiptResult.created(firstIndex + positions.get(j), ids.get(j));
+                }
+            } catch (Exception ex) {
+                System.err.println("Bulk receipt batch starting at index " + firstIndex + " failed: " + ex.getMessage());
+                for (Integer position : positions) {
+                    results[position] = BulkReceiptResult.failed(firstIndex + position, "Batch insert failed: " + ex.getMessage());
+                }
+            }
+        }
+
+        return List.of(results);
+    }
+
+    private String validate(ReceiptUpsertRequest request) {
+        if (request == null) {
+            return "Receipt is required";
+        }
+        Set<ConstraintViolation<ReceiptUpsertRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+}
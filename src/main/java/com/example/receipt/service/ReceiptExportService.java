@@ -0,0 +1,129 @@
+package com.example.receipt.service;
+
+import com.example.receipt.dto.ReceiptDto;
+import com.example.receipt.repository.ReceiptRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Service for exporting receipts straight to an output stream.
+ *
+ * Rows are read through a database cursor and written one at a time, so neither the
+ * result list nor the serialized body is ever held in memory.
+ */
+@Service
+public class ReceiptExportService {
+
+    public static final String FORMAT_JSON = "JSON";
+    public static final String FORMAT_NDJSON = "NDJSON";
+
+    @Autowired
+    private ReceiptRepository receiptRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Validate and normalize an export format
+     * @param format JSON or NDJSON (case-insensitive)
+     * @return the normalized format
+     */
+    public String normalizeFormat(String format) {
+        String normalized = format == null ? FORMAT_JSON : format.trim().toUpperCase(Locale.ROOT);
+        if (!FORMAT_JSON.equals(normalized) && !FORMAT_NDJSON.equals(normalized)) {
+            throw new IllegalArgumentException("Unsupported export format: " + format + ". Use JSON or NDJSON");
+        }
+        return normalized;
+    }
+
+    /**
+     * Write receipts matching the optional filters, ordered by id
+     * @param year only receipts for this year, or null for all years
+     * @param sourceId only receipts from this source, or null for all sources
+     * @param format JSON (a single array) or NDJSON (one receipt per line)
+     * @param out where to write; not closed
+     * @return the number of receipts written
+     * @throws IOException if writing fails
+     */
+    public long exportReceipts(Integer year, Integer sourceId, String format, OutputStream out) throws IOException {
+        boolean ndjson = FORMAT_NDJSON.equals(normalizeFormat(format));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        try {
+            Long written = transactionTemplate.execute(status -> {
+                try (Stream<ReceiptDto> receipts = openStream(year, sourceId)) {
+                    return ndjson ? writeNdjson(receipts.iterator(), out) : writeJsonArray(receipts.iterator(), out);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            return written == null ? 0 : written;
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private Stream<ReceiptDto> openStream(Integer year, Integer sourceId) {
+        if (year != null && sourceId != null) {
+            return receiptRepository.streamBySourceAndYear(sourceId, year);
+        }
+        if (year != null) {
+            return receiptRepository.streamByYear(year);
+        }
+        if (sourceId != null) {
+            return receiptRepository.streamBySource(sourceId);
+        }
+        return receiptRepository.streamAll();
+    }
+
+    // Flushing after every row would turn each receipt into its own network write
+    private ObjectWriter rowWriter() {
+        return objectMapper.writerFor(ReceiptDto.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    private long writeJsonArray(Iterator<ReceiptDto> receipts, OutputStream out) throws IOException {
+        long count = 0;
+        ObjectWriter writer = rowWriter();
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartArray();
+        while (receipts.hasNext()) {
+            writer.writeValue(generator, receipts.next());
+            count++;
+        }
+        generator.writeEndArray();
+        generator.flush();
+        return count;
+    }
+
+    private long writeNdjson(Iterator<ReceiptDto> receipts, OutputStream out) throws IOException {
+        long count = 0;
+        ObjectWriter writer = rowWriter();
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        while (receipts.hasNext()) {
+            writer.writeValue(generator, receipts.next());
+            generator.writeRaw('\n');
+            count++;
+        }
+        generator.flush();
+        return count;
+    }
+}
@@ -0,0 +1,419 @@
+package com.example.receipt.service;
+
+import com.example.receipt.dto.BulkReceiptResult;
+import com.example.receipt.dto.PropertyAllocationDto;
+import com.example.receipt.dto.ReceiptUpsertRequest;
+import com.example.receipt.entity.ReceiptImportJob;
+import com.example.receipt.exception.ImportJobInProgressException;
+import com.example.receipt.repository.ReceiptImportJobRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Service for importing large receipt exports (NDJSON or CSV) as a stream.
+ *
+ * Rows are read one line at a time and handed to {@link ReceiptBulkIngestService} in chunks,
+ * so the reader never gets more than one chunk ahead of the database. Each chunk is committed
+ * together with the job's checkpoint (byte offset and row number), which lets a crashed or
+ * interrupted import be resumed from the last committed chunk without duplicating receipts.
+ *
+ * CSV input needs a header row naming the columns receiptDate, total, storeName,
+ * receiptDescription and properties. Properties are written as "Main Building:60;Annex:40".
+ * Quoted fields may contain commas and doubled quotes, but not line breaks.
+ */
+@Service
+public class ReceiptImportService {
+
+    public static final String FORMAT_NDJSON = "NDJSON";
+    public static final String FORMAT_CSV = "CSV";
+
+    @Value("${app.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.import.stale-after-ms:600000}")
+    private long staleAfterMs;
+
+    @Autowired
+    private ReceiptBulkIngestService receiptBulkIngestService;
+
+    @Autowired
+    private ReceiptImportJobRepository receiptImportJobRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Import receipts from a stream, tracking progress in a new import job
+     * @param body the NDJSON or CSV content
+     * @param format NDJSON or CSV (case-insensitive)
+     * @param sourceName where the content came from, kept on the job for reference
+     * @return the finished (or failed) import job
+     */
+    public ReceiptImportJob importStream(InputStream body, String format, String sourceName) {
+        ReceiptImportJob job = receiptImportJobRepository.save(new ReceiptImportJob(normalizeFormat(format), sourceName));
+        return run(job, body);
+    }
+
+    /**
+     * Resume an import from its last checkpoint
+     * @param jobId the import job to resume
+     * @param body the same content as the original import, from its first byte
+     * @return the import job; completed jobs are returned unchanged
+     * @throws ImportJobInProgressException if another run of the job is still making progress
+     */
+    public ReceiptImportJob resumeImport(Long jobId, InputStream body) {
+        ReceiptImportJob job = receiptImportJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Import job not found: " + jobId));
+        if (ReceiptImportJob.STATUS_COMPLETED.equals(job.getStatus())) {
+            return job;
+        }
+        // Take the job over atomically, so two resumes can't both insert the rows after the checkpoint.
+        // A RUNNING job is only taken over once its last checkpoint is older than staleAfterMs (its run died).
+        LocalDateTime now = LocalDateTime.now();
+        if (receiptImportJobRepository.claimForRun(jobId, now, now.minusNanos(staleAfterMs * 1_000_000)) == 0) {
+            throw new ImportJobInProgressException("Import job " + jobId + " is already running");
+        }
+        return run(receiptImportJobRepository.findById(jobId).orElseThrow(), body);
+    }
+
+    /**
+     * Get an import job by ID
+     * @param jobId the import job ID
+     * @return the job if it exists
+     */
+    public Optional<ReceiptImportJob> getJob(Long jobId) {
+        return receiptImportJobRepository.findById(jobId);
+    }
+
+    private ReceiptImportJob run(ReceiptImportJob job, InputStream body) {
+        LineReader reader = new LineReader(body);
+        List<ReceiptUpsertRequest> chunk = new ArrayList<>(chunkSize);
+        ChunkErrors parseErrors = new ChunkErrors();
+        long chunkStartNanos = System.nanoTime();
+
+        try {
+            Map<String, Integer> csvColumns = null;
+            if (FORMAT_CSV.equals(job.getFormat())) {
+                String header = reader.readLine();
+                if (header == null) {
+                    return finish(job, ReceiptImportJob.STATUS_COMPLETED, null);
+                }
+                csvColumns = parseCsvHeader(header);
+            }
+            reader.skipTo(job.getByteOffset());
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    chunk.add(csvColumns != null ? parseCsvRow(line, csvColumns) : parseNdjsonRow(line));
+                } catch (IllegalArgumentException ex) {
+                    parseErrors.add(ex.getMessage());
+                }
+                if (chunk.size() + parseErrors.count == chunkSize) {
+                    commitChunk(job, chunk, parseErrors, reader.getPosition(), chunkStartNanos);
+                    chunk.clear();
+                    parseErrors = new ChunkErrors();
+                    chunkStartNanos = System.nanoTime();
+                }
+            }
+            if (!chunk.isEmpty() || parseErrors.count > 0) {
+                commitChunk(job, chunk, parseErrors, reader.getPosition(), chunkStartNanos);
+            }
+            return finish(job, ReceiptImportJob.STATUS_COMPLETED, null);
+        } catch (IOException ex) {
+            // Rows up to the last checkpoint are committed; the job can be resumed from there
+            System.err.println("Receipt import job " + job.getId() + " stopped at row " + job.getRowNumber() + ": " + ex.getMessage());
+            return finish(job, ReceiptImportJob.STATUS_FAILED, "Error reading import stream: " + ex.getMessage());
+        }
+    }
+
+    private void commitChunk(ReceiptImportJob job, List<ReceiptUpsertRequest> chunk, ChunkErrors parseErrors,
+                             long endOffset, long chunkStartNanos) {
+        long rows = chunk.size() + parseErrors.count;
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            // Create new receipt sources before opening the chunk transaction; the cache does that
+            // in its own transaction and would otherwise need a second pooled connection per import
+            receiptBulkIngestService.resolveReceiptSources(chunk);
+            transactionTemplate.executeWithoutResult(status -> {
+                ChunkErrors errors = new ChunkErrors();
+                errors.count = parseErrors.count;
+                errors.lastError = parseErrors.lastError;
+                for (BulkReceiptResult result : receiptBulkIngestService.ingest(chunk)) {
+                    if (BulkReceiptResult.STATUS_FAILED.equals(result.getStatus())) {
+                        errors.add(result.getError());
+                    }
+                }
+                recordCheckpoint(job, rows, errors, endOffset, chunkStartNanos);
+                receiptImportJobRepository.save(job);
+            });
+        } catch (TransactionException | DataAccessException ex) {
+            // The chunk rolled back as a whole: reload the last committed checkpoint and skip past it
+            System.err.println("Receipt import job " + job.getId() + " chunk ending at byte " + endOffset + " failed: " + ex.getMessage());
+            ReceiptImportJob committed = receiptImportJobRepository.findById(job.getId()).orElse(job);
+            copyCheckpoint(committed, job);
+            ChunkErrors errors = new ChunkErrors();
+            errors.count = rows;
+            errors.lastError = "Chunk insert failed: " + ex.getMessage();
+            recordCheckpoint(job, rows, errors, endOffset, chunkStartNanos);
+            receiptImportJobRepository.save(job);
+        }
+        System.out.println(String.format("Receipt import job %d: %d rows (%d created, %d failed), %.0f rows/sec",
+                job.getId(), job.getRowNumber(), job.getRowsCreated(), job.getRowsFailed(), job.getRowsPerSecond()));
+    }
+
+    private void recordCheckpoint(ReceiptImportJob job, long rows, ChunkErrors errors, long endOffset, long chunkStartNanos) {
+        job.setByteOffset(endOffset);
+        job.setRowNumber(job.getRowNumber() + rows);
+        job.setRowsCreated(job.getRowsCreated() + rows - errors.count);
+        job.setRowsFailed(job.getRowsFailed() + errors.count);
+        if (errors.lastError != null) {
+            job.setLastError(errors.lastError);
+        }
+        job.setProcessingMillis(job.getProcessingMillis() + (System.nanoTime() - chunkStartNanos) / 1_000_000);
+        job.setUpdatedAt(LocalDateTime.now());
+    }
+
+    private void copyCheckpoint(ReceiptImportJob from, ReceiptImportJob to) {
+        to.setByteOffset(from.getByteOffset());
+        to.setRowNumber(from.getRowNumber());
+        to.setRowsCreated(from.getRowsCreated());
+        to.setRowsFailed(from.getRowsFailed());
+        to.setProcessingMillis(from.getProcessingMillis());
+        to.setLastError(from.getLastError());
+    }
+
+    private ReceiptImportJob finish(ReceiptImportJob job, String status, String error) {
+        job.setStatus(status);
+        if (error != null) {
+            job.setLastError(error);
+        }
+        job.setUpdatedAt(LocalDateTime.now());
+        return receiptImportJobRepository.save(job);
+    }
+
+    private String normalizeFormat(String format) {
+        String normalized = format == null ? FORMAT_NDJSON : format.trim().toUpperCase(Locale.ROOT);
+        if (!FORMAT_NDJSON.equals(normalized) && !FORMAT_CSV.equals(normalized)) {
+            throw new IllegalArgumentException("Unsupported import format: " + format + ". Use NDJSON or CSV");
+        }
+        return normalized;
+    }
+
+    private ReceiptUpsertRequest parseNdjsonRow(String line) {
+        try {
+            return objectMapper.readValue(line, ReceiptUpsertRequest.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Malformed JSON: " + ex.getOriginalMessage());
+        }
+    }
+
+    private Map<String, Integer> parseCsvHeader(String header) {
+        List<String> names = parseCsvLine(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        return columns;
+    }
+
+    private ReceiptUpsertRequest parseCsvRow(String line, Map<String, Integer> columns) {
+        List<String> cells = parseCsvLine(line);
+        ReceiptUpsertRequest request = new ReceiptUpsertRequest();
+        request.setReceiptDate(cell(cells, columns, "receiptdate"));
+        request.setStoreName(cell(cells, columns, "storename"));
+        request.setReceiptDescription(cell(cells, columns, "receiptdescription"));
+
+        String total = cell(cells, columns, "total");
+        if (total != null) {
+            try {
+                request.setTotal(Double.valueOf(total));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid total: " + total);
+            }
+        }
+
+        String properties = cell(cells, columns, "properties");
+        if (properties != null) {
+            List<PropertyAllocationDto> allocations = new ArrayList<>();
+            for (String allocation : properties.split(";")) {
+                int separator = allocation.lastIndexOf(':');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Invalid property allocation '" + allocation + "', expected name:percentage");
+                }
+                try {
+                    allocations.add(new PropertyAllocationDto(allocation.substring(0, separator).trim(),
+                            Integer.valueOf(allocation.substring(separator + 1).trim())));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Invalid property percentage in '" + allocation + "'");
+                }
+            }
+            request.setProperties(allocations);
+        }
+        return request;
+    }
+
+    private String cell(List<String> cells, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= cells.size()) {
+            return null;
+        }
+        String value = cells.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private List<String> parseCsvLine(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        cells.add(current.toString());
+        return cells;
+    }
+
+    /**
+     * Failed row count and the most recent failure message for one chunk
+     */
+    private static class ChunkErrors {
+        private long count;
+        private String lastError;
+
+        private void add(String error) {
+            count++;
+            lastError = error;
+        }
+    }
+
+    /**
+     * Reads UTF-8 lines while tracking the byte position, so checkpoints can be
+     * expressed as offsets into the original content. Input is read in blocks and
+     * scanned for newlines; a line only gets copied when it spans two blocks.
+     */
+    private static class LineReader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[64 * 1024];
+        private final ByteArrayOutputStream spill = new ByteArrayOutputStream();
+        private int start;
+        private int end;
+        private long position;
+
+        private LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        private String readLine() throws IOException {
+            spill.reset();
+            while (true) {
+                if (start == end && !fill()) {
+                    return spill.size() == 0 ? null : decode(spill.toByteArray(), spill.size());
+                }
+                for (int i = start; i < end; i++) {
+                    if (buffer[i] == '\n') {
+                        int length = i - start;
+                        position += length + 1;
+                        String line;
+                        if (spill.size() == 0) {
+                            line = decode(buffer, start, length);
+                        } else {
+                            spill.write(buffer, start, length);
+                            line = decode(spill.toByteArray(), spill.size());
+                        }
+                        start = i + 1;
+                        return line;
+                    }
+                }
+                spill.write(buffer, start, end - start);
+                position += end - start;
+                start = end;
+            }
+        }
+
+        private void skipTo(long offset) throws IOException {
+            if (offset <= position) {
+                return;
+            }
+            long remaining = offset - position;
+            int buffered = (int) Math.min(remaining, end - start);
+            start += buffered;
+            remaining -= buffered;
+            if (remaining > 0) {
+                try {
+                    in.skipNBytes(remaining);
+                } catch (EOFException ex) {
+                    throw new IOException("Input ends before the checkpoint at byte " + offset);
+                }
+            }
+            position = offset;
+        }
+
+        private long getPosition() {
+            return position;
+        }
+
+        private boolean fill() throws IOException {
+            int read = in.read(buffer);
+            if (read < 0) {
+                return false;
+            }
+            start = 0;
+            end = read;
+            return true;
+        }
+
+        private String decode(byte[] bytes, int length) {
+            return decode(bytes, 0, length);
+        }
+
+        private String decode(byte[] bytes, int offset, int length) {
+            if (length > 0 && bytes[offset + length - 1] == '\r') {
+                length--;
+            }
+            return new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+    }
+}
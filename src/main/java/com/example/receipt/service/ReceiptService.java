@@ -1,8 +1,10 @@
 package com.example.receipt.service;
 
+import com.example.receipt.dto.ReceiptCursor;
 import com.example.receipt.dto.ReceiptDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,12 +13,18 @@ public interface ReceiptService {
     // Upsert a receipt (create or update)
     ReceiptDto upsertReceipt(ReceiptDto receiptDto);
     
+    // Create receipts and their property allocations with batched inserts, returning ids in input order
+    List<Long> createReceiptsInBatch(List<ReceiptDto> receiptDtos);
+    
     // Get receipt by ID
     Optional<ReceiptDto> getReceiptById(Long id);
     
     // Get all receipts with pagination (default 100 per page)
     Page<ReceiptDto> getAllReceipts(Pageable pageable);
     
+    // Get the page of receipts following the cursor, in the cursor's order, without counting
+    Slice<ReceiptDto> getReceiptsAfter(ReceiptCursor cursor, int size);
+    
     // Delete receipt by ID
     void deleteReceipt(Long id);
     
@@ -0,0 +1,118 @@
+package com.example.receipt.service;
+
+import com.example.receipt.dto.ReportBatchRequest;
+import com.example.receipt.entity.Property;
+import com.example.receipt.entity.ReportBatch;
+import com.example.receipt.repository.ReportBatchRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Records the lifecycle and progress of batch reports: QUEUED -> RUNNING -> COMPLETED or FAILED.
+ *
+ * Updates commit in their own transaction, so progress written while the batch is still streaming
+ * properties is visible to pollers straight away.
+ */
+@Service
+public class ReportBatchService {
+
+    @Autowired
+    private ReportBatchRepository reportBatchRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Create a QUEUED batch for the request and stamp its id onto the request
+     */
+    public ReportBatch createBatch(ReportBatchRequest request) {
+        ReportBatch batch = new ReportBatch(UUID.randomUUID().toString(), request.getYear(), request.getPropertyFilter(),
+                String.join(",", request.getReportTypes()), request.getUserId(), request.getUserEmail());
+        batch = reportBatchRepository.save(batch);
+        request.setReportBatchId(batch.getId());
+        return batch;
+    }
+
+    public Optional<ReportBatch> getBatch(String id) {
+        return reportBatchRepository.findById(id);
+    }
+
+    public void markRunning(String id, int totalProperties) {
+        update(id, batch -> {
+            batch.setStatus(ReportBatch.STATUS_RUNNING);
+            batch.setTotalProperties(totalProperties);
+            batch.setStartedAt(LocalDateTime.now());
+            batch.setCompletedAt(null);
+        });
+    }
+
+    public void recordProgress(String id, int completedProperties, int failedProperties, int bundlesSent, String lastError) {
+        update(id, batch -> {
+            batch.setCompletedProperties(completedProperties);
+            batch.setFailedProperties(failedProperties);
+            batch.setBundlesSent(bundlesSent);
+            batch.setLastError(lastError);
+        });
+    }
+
+    /**
+     * Every property was processed; some may still have failed individually
+     */
+    public void markCompleted(String id, int completedProperties, int failedProperties, int bundlesSent, String lastError) {
+        update(id, batch -> {
+            batch.setStatus(ReportBatch.STATUS_COMPLETED);
+            batch.setCompletedProperties(completedProperties);
+            batch.setFailedProperties(failedProperties);
+            batch.setBundlesSent(bundlesSent);
+            batch.setLastError(lastError);
+            batch.setCompletedAt(LocalDateTime.now());
+        });
+    }
+
+    /**
+     * The batch stopped before every property was processed
+     */
+    public void markFailed(String id, String error) {
+        update(id, batch -> {
+            batch.setStatus(ReportBatch.STATUS_FAILED);
+            batch.setLastError(error);
+            batch.setCompletedAt(LocalDateTime.now());
+        });
+    }
+
+    /**
+     * LIKE pattern matching property names that contain the filter, ignoring case; null for no filter
+     */
+    public static String namePattern(String propertyFilter) {
+        if (propertyFilter == null || propertyFilter.isBlank()) {
+            return null;
+        }
+        String escaped = Property.normalizeName(propertyFilter)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    private void update(String id, Consumer<ReportBatch> transition) {
+        if (id == null) {
+            return;
+        }
+        TransactionTemplate requiresNewTransaction = new TransactionTemplate(transactionManager);
+        requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        requiresNewTransaction.executeWithoutResult(status ->
+            reportBatchRepository.findById(id).ifPresent(batch -> {
+                transition.accept(batch);
+                batch.setUpdatedAt(LocalDateTime.now());
+                reportBatchRepository.save(batch);
+            }));
+    }
+}
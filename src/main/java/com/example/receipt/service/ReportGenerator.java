@@ -2,6 +2,11 @@ package com.example.receipt.service;
 
 import com.example.receipt.entity.Property;
 import com.example.receipt.entity.PropertyReceipt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 
 /**
@@ -10,14 +15,51 @@ import java.util.List;
 public interface ReportGenerator {
     
     /**
-     * Generate a report in the specific format
+     * Write a report in the specific format to an OutputStream. Implementations write as they go
+     * rather than buffering the whole report, and leave the stream open.
+     * @param property the property entity
+     * @param year the year for the report
+     * @param receipts the list of property receipts
+     * @param out stream to write the report to
+     * @throws Exception if report generation fails
+     */
+    void generateReport(Property property, Integer year, List<PropertyReceipt> receipts, OutputStream out) throws Exception;
+
+    /**
+     * Stream a report to an OutputStream and return its size and checksum
+     * @return size and SHA-256 of the bytes written
+     * @throws Exception if report generation fails
+     */
+    default ReportOutput writeReport(Property property, Integer year, List<PropertyReceipt> receipts, OutputStream out) throws Exception {
+        ChecksumOutputStream checksumOut = new ChecksumOutputStream(out);
+        generateReport(property, year, receipts, checksumOut);
+        checksumOut.flush();
+        return checksumOut.result();
+    }
+
+    /**
+     * Stream a report to a channel (e.g. a FileChannel) and return its size and checksum.
+     * The channel is not closed.
+     * @throws Exception if report generation fails
+     */
+    default ReportOutput writeReport(Property property, Integer year, List<PropertyReceipt> receipts, WritableByteChannel channel) throws Exception {
+        return writeReport(property, year, receipts, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Generate a report in the specific format into memory. Prefer the streaming methods for
+     * anything that may be large.
      * @param property the property entity
      * @param year the year for the report
      * @param receipts the list of property receipts
      * @return byte array containing the report content
      * @throws Exception if report generation fails
      */
-    byte[] generateReport(Property property, Integer year, List<PropertyReceipt> receipts) throws Exception;
+    default byte[] generateReport(Property property, Integer year, List<PropertyReceipt> receipts) throws Exception {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        generateReport(property, year, receipts, byteArrayOutputStream);
+        return byteArrayOutputStream.toByteArray();
+    }
     
     /**
      * Get the file extension for this report type
@@ -0,0 +1,223 @@
+package com.example.receipt.service;
+
+import com.example.receipt.dto.YearlyReportRequest;
+import com.example.receipt.entity.ReportJob;
+import com.example.receipt.repository.ReportJobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Records the lifecycle of yearly report requests: QUEUED -> RUNNING -> DELIVERING -> SENT or FAILED.
+ * A failed attempt that will be retried goes back to QUEUED with the error kept in lastError.
+ * DELIVERING means the report was generated and its email is in the outbox; retried deliveries
+ * leave the job there until the email is sent or given up on.
+ *
+ * Transitions are conditional updates, so the report and delivery consumers can't overwrite each
+ * other and a finished job stays finished. Transitions for an unknown id are ignored, so messages
+ * queued before job tracking existed still process normally.
+ *
+ * A request found to duplicate a job that is running, delivering or sent is linked to that job
+ * through duplicateOf and stays QUEUED until the job is sent or fails, then ends the same way.
+ *
+ * Requests are de-duplicated on (user, exact property name, year, report type) within app.reports.dedup-window-ms:
+ * a repeat submission gets the existing queued, running or sent job back instead of a new one.
+ * While a job is queued, running or delivering it holds its key in the unique active_dedup_key
+ * column, so concurrent identical submissions can't both create a job. A window of 0 turns
+ * de-duplication off.
+ */
+@Service
+public class ReportJobService {
+
+    private static final List<String> DEDUP_STATUSES =
+            List.of(ReportJob.STATUS_QUEUED, ReportJob.STATUS_RUNNING, ReportJob.STATUS_DELIVERING, ReportJob.STATUS_SENT);
+
+    private static final List<String> IN_PROGRESS_STATUSES =
+            List.of(ReportJob.STATUS_RUNNING, ReportJob.STATUS_DELIVERING);
+
+    @Value("${app.reports.dedup-window-ms:600000}")
+    private long dedupWindowMs;
+
+    @Autowired
+    private ReportJobRepository reportJobRepository;
+
+    /**
+     * Create a QUEUED job for the request and stamp its id onto the request.
+     * If an identical job inside the dedup window is still queued, running or delivering, that job is
+     * returned instead and the request is left unstamped.
+     */
+    public ReportJob createJob(YearlyReportRequest request) {
+        String dedupKey = dedupKey(request);
+        ReportJob job = new ReportJob(UUID.randomUUID().toString(), request.getPropertyName(), request.getYear(),
+                String.join(",", request.getReportTypes()), request.getUserId(), request.getUserEmail());
+        job.setDedupKey(dedupKey);
+        if (dedupWindowMs > 0) {
+            job.setActiveDedupKey(dedupKey);
+            Optional<ReportJob> holder = insertOrFindKeyHolder(job);
+            if (holder.isPresent()) {
+                return holder.get();
+            }
+        } else {
+            job = reportJobRepository.save(job);
+        }
+        request.setReportJobId(job.getId());
+        return job;
+    }
+
+    /**
+     * Queued, running, delivering or sent job for an identical request made within the dedup window
+     */
+    public Optional<ReportJob> findActiveDuplicate(YearlyReportRequest request) {
+        if (dedupWindowMs <= 0) {
+            return Optional.empty();
+        }
+        return reportJobRepository.findFirstByDedupKeyAndStatusInAndCreatedAtAfterOrderByCreatedAtDesc(
+                dedupKey(request), DEDUP_STATUSES, windowStart());
+    }
+
+    /**
+     * Job that already delivered this request or is delivering it: the request's own job if it was generated
+     * and handed to the outbox or sent (a redelivered message), otherwise an identical job that another
+     * consumer is running or delivering, or that was sent, within the dedup window
+     */
+    public Optional<ReportJob> findSentDuplicate(YearlyReportRequest request) {
+        if (request.getReportJobId() != null) {
+            Optional<ReportJob> own = reportJobRepository.findById(request.getReportJobId());
+            if (own.isPresent() && (ReportJob.STATUS_SENT.equals(own.get().getStatus())
+                    || ReportJob.STATUS_DELIVERING.equals(own.get().getStatus()))) {
+                return own;
+            }
+        }
+        if (dedupWindowMs <= 0) {
+            return Optional.empty();
+        }
+        String ownId = request.getReportJobId() != null ? request.getReportJobId() : "";
+        Optional<ReportJob> inProgress = reportJobRepository
+                .findFirstByDedupKeyAndIdNotAndStatusInAndCreatedAtAfterOrderByCreatedAtDesc(
+                        dedupKey(request), ownId, IN_PROGRESS_STATUSES, windowStart());
+        if (inProgress.isPresent()) {
+            return inProgress;
+        }
+        return reportJobRepository.findFirstByDedupKeyAndStatusAndCompletedAtAfterOrderByCompletedAtDesc(
+                dedupKey(request), ReportJob.STATUS_SENT, windowStart());
+    }
+
+    public Optional<ReportJob> getJob(String id) {
+        return reportJobRepository.findById(id);
+    }
+
+    public void markRunning(String id) {
+        if (id != null) {
+            reportJobRepository.markRunning(id, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Report generated and its email queued in the outbox. The outbox may already have sent it
+     * and marked the job SENT (or FAILED); a finished job is left as it is.
+     */
+    public void markDelivering(String id) {
+        if (id != null) {
+            reportJobRepository.markDelivering(id, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Email sent; the job's waiting duplicates are sent with it
+     */
+    public void markSent(String id) {
+        if (id == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        reportJobRepository.markSent(id, now);
+        reportJobRepository.markDuplicatesSent(id, now);
+    }
+
+    /**
+     * Attempt failed but will be retried
+     */
+    public void markRetrying(String id, String error) {
+        if (id != null) {
+            reportJobRepository.markRetrying(id, error, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Given up on; the job's waiting duplicates fail with it, since nothing was sent for them either
+     */
+    public void markFailed(String id, String error) {
+        if (id == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        reportJobRepository.markFailed(id, error, now);
+        reportJobRepository.markDuplicatesFailed(id, duplicateError(id, error), now);
+    }
+
+    /**
+     * Skipped because duplicateOfId sent, or is producing, the same report. The job stays QUEUED until
+     * duplicateOfId is sent or fails, and then ends the same way.
+     */
+    public void markDuplicate(String id, String duplicateOfId) {
+        if (id == null || id.equals(duplicateOfId)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (reportJobRepository.linkDuplicate(id, duplicateOfId, now) == 0) {
+            return;
+        }
+        // The original may have finished before the link was made, without taking this job along
+        reportJobRepository.findById(duplicateOfId).ifPresent(original -> {
+            if (ReportJob.STATUS_SENT.equals(original.getStatus())) {
+                reportJobRepository.markDuplicatesSent(duplicateOfId, now);
+            } else if (ReportJob.STATUS_FAILED.equals(original.getStatus())) {
+                reportJobRepository.markDuplicatesFailed(duplicateOfId,
+                        duplicateError(duplicateOfId, original.getLastError()), now);
+            }
+        });
+    }
+
+    // The exact property name: names differing only in case are different properties
+    static String dedupKey(YearlyReportRequest request) {
+        return request.getUserId() + "|" + request.getPropertyName() + "|"
+                + request.getYear() + "|" + String.join(",", request.getReportTypes());
+    }
+
+    private static String duplicateError(String duplicateOfId, String error) {
+        return "Report job " + duplicateOfId + " failed: " + error;
+    }
+
+    // Insert the job unless another job holds its dedup key; a holder created before the window gives the key up
+    private Optional<ReportJob> insertOrFindKeyHolder(ReportJob job) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                reportJobRepository.saveAndFlush(job);
+                return Optional.empty();
+            } catch (DataIntegrityViolationException ex) {
+                Optional<ReportJob> holder = reportJobRepository.findByActiveDedupKey(job.getActiveDedupKey());
+                if (holder.isEmpty()) {
+                    // The holder finished in between; try again
+                    continue;
+                }
+                if (!holder.get().getCreatedAt().isBefore(windowStart())
+                        || reportJobRepository.releaseExpiredDedupKey(holder.get().getId(),
+                                job.getActiveDedupKey(), windowStart()) == 0) {
+                    return holder;
+                }
+            }
+        }
+        throw new IllegalStateException("Could not claim report dedup key " + job.getActiveDedupKey());
+    }
+
+    private LocalDateTime windowStart() {
+        return LocalDateTime.now().minus(Duration.ofMillis(dedupWindowMs));
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.receipt.service;
+
+/**
+ * What a streamed report wrote: its size in bytes and the SHA-256 (hex) of those bytes
+ */
+public record ReportOutput(long size, String sha256) {
+}
@@ -1,20 +1,52 @@
 package com.example.receipt.service.impl;
 
-import com.sendgrid.Method;
-import com.sendgrid.Request;
-import com.sendgrid.Response;
 import com.sendgrid.SendGrid;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import com.example.receipt.service.EmailCircuitBreaker;
+import com.example.receipt.service.EmailRateLimiter;
 import com.example.receipt.service.EmailService;
+import com.example.receipt.service.EmailAttachment;
 import java.io.IOException;
-import java.util.Base64;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Sends email through the shared SendGrid client and its pooled HTTP client (see SendGridConfig).
+ * The request body is streamed onto the connection (see MailSendEntity), so attachments are never
+ * held in memory as encoded JSON.
+ *
+ * Asynchronous sends run on a small pool of {sendgrid.async.threads} threads with room for
+ * {sendgrid.async.queue-capacity} waiting emails; beyond that the caller sends the email itself,
+ * which bounds how many uploads are pending at once.
+ *
+ * Every send waits for the rate limiter and goes through the circuit breaker, so a throttled or
+ * unavailable SendGrid is not hammered with more requests.
+ */
 @Service
-public class EmailServiceImpl implements EmailService {
+public class EmailServiceImpl implements EmailService, DisposableBean {
 
-    @Value("${sendgrid.api.key}")
-    private String sendGridApiKey;
+    private final SendGrid sendGrid;
+    private final CloseableHttpClient httpClient;
+    private final EmailRateLimiter rateLimiter;
+    private final EmailCircuitBreaker circuitBreaker;
+    private final boolean plainHttp;
+    private final ThreadPoolExecutor sendExecutor;
 
     @Value("${sendgrid.from.email}")
     private String fromEmail;
@@ -22,69 +54,116 @@ public class EmailServiceImpl implements EmailService {
     @Value("${sendgrid.from.name:Receipt System}")
     private String fromName;
 
+    @Autowired
+    public EmailServiceImpl(SendGrid sendGrid,
+                            CloseableHttpClient sendGridHttpClient,
+                            EmailRateLimiter rateLimiter,
+                            EmailCircuitBreaker circuitBreaker,
+                            @Value("${sendgrid.api.plain-http:false}") boolean plainHttp,
+                            @Value("${sendgrid.async.threads:4}") int asyncThreads,
+                            @Value("${sendgrid.async.queue-capacity:4}") int asyncQueueCapacity) {
+        this.sendGrid = sendGrid;
+        this.httpClient = sendGridHttpClient;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.plainHttp = plainHttp;
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "sendgrid-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.sendExecutor = new ThreadPoolExecutor(asyncThreads, asyncThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(asyncQueueCapacity), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.sendExecutor.allowCoreThreadTimeOut(true);
+    }
+
     @Override
     public void sendReportEmail(String toEmail, String subject, String htmlContent, 
                                byte[] pdfContent, String pdfFileName) throws IOException {
-        
-        try {
-            SendGrid sg = new SendGrid(sendGridApiKey);
-            Request request = new Request();
-            request.setMethod(Method.POST);
-            request.setEndpoint("mail/send");
+        if (pdfContent == null || pdfContent.length == 0) {
+            sendReportEmail(toEmail, subject, htmlContent, List.of());
+            return;
+        }
+        sendReportEmail(toEmail, subject, htmlContent,
+                List.of(EmailAttachment.ofBytes(pdfContent, pdfFileName, "application/pdf")));
+    }
 
-            // Build email JSON manually
-            String emailJson = buildEmailJson(toEmail, subject, htmlContent, pdfContent, pdfFileName);
-            request.setBody(emailJson);
+    @Override
+    public void sendReportEmail(String toEmail, String subject, String htmlContent) throws IOException {
+        sendReportEmail(toEmail, subject, htmlContent, List.of());
+    }
 
-            Response response = sg.api(request);
+    @Override
+    public void sendReportEmail(String toEmail, String subject, String htmlContent,
+                               List<EmailAttachment> attachments) throws IOException {
+        send(toEmail, buildEmailEntity(toEmail, subject, htmlContent, attachments));
+    }
 
-            if (response.getStatusCode() >= 200 && response.getStatusCode() < 300) {
-                System.out.println("Email sent successfully to " + toEmail);
-            } else {
-                throw new IOException("SendGrid API error: " + response.getStatusCode() + " - " + response.getBody());
-            }
+    @Override
+    public CompletableFuture<Void> sendReportEmailAsync(String toEmail, String subject, String htmlContent,
+                                                        List<EmailAttachment> attachments) {
+        HttpEntity body;
+        try {
+            body = buildEmailEntity(toEmail, subject, htmlContent, attachments);
         } catch (IOException ex) {
-            throw new IOException("Failed to send email: " + ex.getMessage(), ex);
+            return CompletableFuture.failedFuture(new IOException("Failed to send email: " + ex.getMessage(), ex));
         }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                send(toEmail, body);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, sendExecutor);
     }
 
     @Override
-    public void sendReportEmail(String toEmail, String subject, String htmlContent) throws IOException {
-        sendReportEmail(toEmail, subject, htmlContent, null, null);
+    public void destroy() {
+        sendExecutor.shutdown();
     }
 
-    private String buildEmailJson(String toEmail, String subject, String htmlContent, 
-                                  byte[] pdfContent, String pdfFileName) {
-        StringBuilder json = new StringBuilder();
-        json.append("{");
-        json.append("\"personalizations\":[{");
-        json.append("\"to\":[{\"email\":\"").append(toEmail).append("\"}]");
-        json.append("}],");
-        json.append("\"from\":{\"email\":\"").append(fromEmail).append("\",\"name\":\"").append(fromName).append("\"},");
-        json.append("\"subject\":\"").append(escapeJson(subject)).append("\",");
-        json.append("\"content\":[{\"type\":\"text/html\",\"value\":\"").append(escapeJson(htmlContent)).append("\"}]");
+    private HttpEntity buildEmailEntity(String toEmail, String subject, String htmlContent,
+                                        List<EmailAttachment> attachments) throws IOException {
+        return new MailSendEntity(fromEmail, fromName, toEmail, subject, htmlContent,
+                attachments != null ? attachments : List.of());
+    }
 
-        if (pdfContent != null && pdfContent.length > 0) {
-            String base64Content = Base64.getEncoder().encodeToString(pdfContent);
-            json.append(",\"attachments\":[{");
-            json.append("\"content\":\"").append(base64Content).append("\",");
-            json.append("\"type\":\"application/pdf\",");
-            json.append("\"filename\":\"").append(pdfFileName).append("\",");
-            json.append("\"disposition\":\"attachment\"");
-            json.append("}]");
-        }
+    private void send(String toEmail, HttpEntity body) throws IOException {
+        // Posted on the shared HTTP client rather than through the SDK, whose requests only take a String body
+        HttpPost post = new HttpPost((plainHttp ? "http" : "https") + "://" + sendGrid.getHost() + "/"
+                + sendGrid.getVersion() + "/mail/send");
+        sendGrid.getRequestHeaders().forEach(post::setHeader);
+        post.setEntity(body);
 
-        json.append("}");
-        return json.toString();
-    }
+        // Check the circuit first, so sends rejected while it is open don't take rate limit tokens
+        circuitBreaker.acquirePermission();
+        try {
+            rateLimiter.acquire();
+        } catch (InterruptedIOException ex) {
+            circuitBreaker.releasePermission();
+            throw ex;
+        }
+        boolean sendGridAvailable = false;
+        try (CloseableHttpResponse response = httpClient.execute(post)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            String responseBody = response.getEntity() != null ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+            // Throttling and server errors count against the circuit; other errors are this email's fault
+            sendGridAvailable = statusCode != 429 && statusCode < 500;
 
-    private String escapeJson(String input) {
-        if (input == null) return "";
-        return input
-            .replace("\\", "\\\\")
-            .replace("\"", "\\\"")
-            .replace("\n", "\\n")
-            .replace("\r", "\\r")
-            .replace("\t", "\\t");
+            if (statusCode >= 200 && statusCode < 300) {
+                System.out.println("Email sent successfully to " + toEmail);
+            } else {
+                throw new IOException("SendGrid API error: " + statusCode + " - " + responseBody);
+            }
+        } catch (IOException ex) {
+            throw new IOException("Failed to send email: " + ex.getMessage(), ex);
+        } finally {
+            if (sendGridAvailable) {
+                circuitBreaker.recordSuccess();
+            } else {
+                circuitBreaker.recordFailure();
+            }
+        }
     }
 }
@@ -0,0 +1,161 @@
+package com.example.receipt.service.impl;
+
+import com.example.receipt.service.EmailAttachment;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * JSON body of a SendGrid mail/send request, written to the connection as the request goes out.
+ *
+ * Everything except the attachment contents is rendered up front, which is small; each attachment is
+ * base64-encoded straight from its stream onto the wire, so no encoded copy of it is ever held in memory.
+ * The length is known in advance, and attachments are re-opened on every write, so the body can be
+ * sent again on a retried request.
+ */
+final class MailSendEntity extends AbstractHttpEntity {
+
+    // segments.get(i) precedes attachment i; the last segment follows the final attachment
+    private final List<byte[]> segments = new ArrayList<>();
+    private final List<EmailAttachment> attachments;
+    private final long contentLength;
+
+    MailSendEntity(String fromEmail, String fromName, String toEmail, String subject, String htmlContent,
+                   List<EmailAttachment> attachments) throws IOException {
+        this.attachments = attachments;
+        setContentType(ContentType.APPLICATION_JSON.getMimeType());
+
+        StringBuilder json = new StringBuilder(256 + (htmlContent != null ? htmlContent.length() + htmlContent.length() / 8 : 0));
+        json.append("{\"personalizations\":[{\"to\":[{\"email\":\"");
+        appendEscaped(json, toEmail);
+        json.append("\"}]}],\"from\":{\"email\":\"");
+        appendEscaped(json, fromEmail);
+        json.append("\",\"name\":\"");
+        appendEscaped(json, fromName);
+        json.append("\"},\"subject\":\"");
+        appendEscaped(json, subject);
+        json.append("\",\"content\":[{\"type\":\"text/html\",\"value\":\"");
+        appendEscaped(json, htmlContent);
+        json.append("\"}]");
+
+        long length = 0;
+        for (int i = 0; i < attachments.size(); i++) {
+            EmailAttachment attachment = attachments.get(i);
+            json.append(i == 0 ? ",\"attachments\":[{" : ",{").append("\"content\":\"");
+            length += segment(json);
+            length += 4 * ((attachment.size() + 2) / 3);
+            json.append("\",\"type\":\"");
+            appendEscaped(json, attachment.getMimeType());
+            json.append("\",\"filename\":\"");
+            appendEscaped(json, attachment.getFileName());
+            json.append("\",\"disposition\":\"attachment\"}");
+        }
+        if (!attachments.isEmpty()) {
+            json.append("]");
+        }
+        json.append("}");
+        length += segment(json);
+        this.contentLength = length;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * The whole body, buffered in memory. Sending never calls this: it writes the body with writeTo
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream((int) Math.min(contentLength, Integer.MAX_VALUE - 8));
+        writeTo(body);
+        return new ByteArrayInputStream(body.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        for (int i = 0; i < attachments.size(); i++) {
+            out.write(segments.get(i));
+            // Closing the encoder writes the final padding but leaves the connection open
+            try (InputStream content = attachments.get(i).openStream();
+                 OutputStream base64 = Base64.getEncoder().wrap(new UnclosableOutputStream(out))) {
+                content.transferTo(base64);
+            }
+        }
+        out.write(segments.get(segments.size() - 1));
+        out.flush();
+    }
+
+    private int segment(StringBuilder json) {
+        byte[] segment = json.toString().getBytes(StandardCharsets.UTF_8);
+        segments.add(segment);
+        json.setLength(0);
+        return segment.length;
+    }
+
+    /**
+     * Append a JSON string value in one pass over the input
+     */
+    static void appendEscaped(StringBuilder json, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                case '\b' -> json.append("\\b");
+                case '\f' -> json.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        json.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class UnclosableOutputStream extends FilterOutputStream {
+
+        UnclosableOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
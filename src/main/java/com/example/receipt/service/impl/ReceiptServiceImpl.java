@@ -2,22 +2,34 @@ package com.example.receipt.service.impl;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import com.example.receipt.cache.PropertyNameCache;
+import com.example.receipt.cache.ReportArtifactCache;
 import com.example.receipt.service.ReceiptService;
+import com.example.receipt.dto.ReceiptCursor;
 import com.example.receipt.dto.ReceiptDto;
 import com.example.receipt.dto.PropertyAllocationDto;
 import com.example.receipt.entity.Receipt;
-import com.example.receipt.entity.ReceiptSource;
 import com.example.receipt.entity.Property;
 import com.example.receipt.entity.PropertyReceipt;
+import com.example.receipt.repository.ReceiptBatchRepository;
 import com.example.receipt.repository.ReceiptRepository;
 import com.example.receipt.repository.ReceiptSourceRepository;
 import com.example.receipt.repository.PropertyRepository;
 import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 
 @Service
 public class ReceiptServiceImpl implements ReceiptService {
@@ -31,13 +43,26 @@ public class ReceiptServiceImpl implements ReceiptService {
     @Autowired
     private PropertyRepository propertyRepository;
 
+    @Autowired
+    private PropertyNameCache propertyNameCache;
+
+    @Autowired
+    private ReceiptBatchRepository receiptBatchRepository;
+
+    // Optional so the service can still be built in slices without the artifact cache (e.g. @DataJpaTest)
+    @Autowired(required = false)
+    private ReportArtifactCache reportArtifactCache;
+
     @Override
+    @Transactional
     public ReceiptDto upsertReceipt(ReceiptDto receiptDto) {
         Receipt receipt;
         
         if (receiptDto.getId() != null && receiptRepository.existsById(receiptDto.getId())) {
             // Update existing receipt
             receipt = receiptRepository.findById(receiptDto.getId()).get();
+            // Reports for the receipt's current properties and year change too, not just the new ones
+            evictReports(receipt);
             receipt.setDescription(receiptDto.getDescription());
             receipt.setAmount(receiptDto.getAmount());
             receipt.setReceiptDate(receiptDto.getReceiptDate());
@@ -45,16 +70,7 @@ public class ReceiptServiceImpl implements ReceiptService {
             
             // Update receipt source if provided
             if (receiptDto.getReceiptSourceId() != null) {
-                Optional<ReceiptSource> existingSource = receiptSourceRepository.findById(receiptDto.getReceiptSourceId());
-                if (existingSource.isPresent()) {
-                    receipt.setReceiptSource(existingSource.get());
-                } else {
-                    // Create and persist new receipt source if not found
-                    ReceiptSource source = new ReceiptSource();
-                    source.setRetailerName(receiptDto.getDescription().toUpperCase());
-                    ReceiptSource savedSource = receiptSourceRepository.save(source);
-                    receipt.setReceiptSource(savedSource);
-                }
+                receipt.setReceiptSource(receiptSourceRepository.getReferenceById(receiptDto.getReceiptSourceId()));
             }
             
             // Update property allocations
@@ -67,17 +83,10 @@ public class ReceiptServiceImpl implements ReceiptService {
             receipt.setReceiptDate(receiptDto.getReceiptDate());
             receipt.setYear(receiptDto.getYear());
             
+            // Receipt source ids are resolved (and created if needed) by ReceiptSourceCache,
+            // so only a reference is needed here
             if (receiptDto.getReceiptSourceId() != null) {
-                Optional<ReceiptSource> existingSource = receiptSourceRepository.findById(receiptDto.getReceiptSourceId());
-                if (existingSource.isPresent()) {
-                    receipt.setReceiptSource(existingSource.get());
-                } else {
-                    // Create and persist new receipt source if not found
-                    ReceiptSource source = new ReceiptSource();
-                    source.setRetailerName(receiptDto.getDescription().toUpperCase());
-                    ReceiptSource savedSource = receiptSourceRepository.save(source);
-                    receipt.setReceiptSource(savedSource);
-                }
+                receipt.setReceiptSource(receiptSourceRepository.getReferenceById(receiptDto.getReceiptSourceId()));
             }
             
             // Set property allocations for new receipt
@@ -85,9 +94,22 @@ public class ReceiptServiceImpl implements ReceiptService {
         }
         
         receipt = receiptRepository.save(receipt);
+        evictReports(receipt);
         return convertToDto(receipt);
     }
 
+    /**
+     * Drop cached report artifacts for every property/year the receipt is allocated to
+     */
+    private void evictReports(Receipt receipt) {
+        if (reportArtifactCache == null || receipt.getPropertyReceipts() == null) {
+            return;
+        }
+        for (PropertyReceipt propertyReceipt : receipt.getPropertyReceipts()) {
+            reportArtifactCache.evict(propertyReceipt.getProperty().getId(), receipt.getYear());
+        }
+    }
+
     private void updatePropertyAllocations(Receipt receipt, List<PropertyAllocationDto> allocations) {
         // Clear existing property allocations
         if (receipt.getPropertyReceipts() == null) {
@@ -98,14 +120,13 @@ public class ReceiptServiceImpl implements ReceiptService {
         
         // Add new property allocations if provided
         if (allocations != null && !allocations.isEmpty()) {
+            Map<String, Long> propertyIds = resolvePropertyIds(allocations);
+            
             for (PropertyAllocationDto allocation : allocations) {
-                // Find property by name
-                List<Property> properties = propertyRepository.findAll().stream()
-                        .filter(p -> p.getName().equalsIgnoreCase(allocation.getPropertyName()))
-                        .collect(Collectors.toList());
+                Long propertyId = propertyIds.get(allocation.getPropertyName());
                 
-                if (!properties.isEmpty()) {
-                    Property property = properties.get(0);
+                if (propertyId != null) {
+                    Property property = propertyRepository.getReferenceById(propertyId);
                     PropertyReceipt propertyReceipt = new PropertyReceipt();
                     propertyReceipt.setReceipt(receipt);
                     propertyReceipt.setProperty(property);
@@ -115,8 +136,7 @@ public class ReceiptServiceImpl implements ReceiptService {
                     propertyReceipt.setPercentage(percentage);
                     
                     // Calculate portion from percentage
-                    Double portion = (receipt.getAmount() * percentage) / 100.0;
-                    propertyReceipt.setPortion(portion);
+                    propertyReceipt.setPortion(calculatePortion(receipt.getAmount(), percentage));
                     
                     receipt.getPropertyReceipts().add(propertyReceipt);
                 }
@@ -124,6 +144,108 @@ public class ReceiptServiceImpl implements ReceiptService {
         }
     }
 
+    @Override
+    @Transactional
+    public List<Long> createReceiptsInBatch(List<ReceiptDto> receiptDtos) {
+        List<Long> receiptIds = receiptBatchRepository.insertReceipts(receiptDtos);
+        
+        List<PropertyAllocationDto> allAllocations = receiptDtos.stream()
+                .filter(dto -> dto.getPropertyAllocations() != null)
+                .flatMap(dto -> dto.getPropertyAllocations().stream())
+                .collect(Collectors.toList());
+        if (allAllocations.isEmpty()) {
+            return receiptIds;
+        }
+        
+        // One resolution pass for every allocation in the batch
+        Map<String, Long> propertyIds = resolvePropertyIds(allAllocations);
+        
+        List<PropertyReceipt> propertyReceipts = new ArrayList<>();
+        for (int i = 0; i < receiptDtos.size(); i++) {
+            ReceiptDto dto = receiptDtos.get(i);
+            if (dto.getPropertyAllocations() == null) {
+                continue;
+            }
+            Receipt receiptRef = new Receipt();
+            receiptRef.setId(receiptIds.get(i));
+            
+            for (PropertyAllocationDto allocation : dto.getPropertyAllocations()) {
+                Long propertyId = propertyIds.get(allocation.getPropertyName());
+                if (propertyId == null) {
+                    continue;
+                }
+                Property propertyRef = new Property();
+                propertyRef.setId(propertyId);
+                
+                PropertyReceipt propertyReceipt = new PropertyReceipt();
+                propertyReceipt.setReceipt(receiptRef);
+                propertyReceipt.setProperty(propertyRef);
+                propertyReceipt.setPercentage(allocation.getPropertyPercentage());
+                propertyReceipt.setPortion(calculatePortion(dto.getAmount(), allocation.getPropertyPercentage()));
+                propertyReceipts.add(propertyReceipt);
+                if (reportArtifactCache != null) {
+                    reportArtifactCache.evict(propertyId, dto.getYear());
+                }
+            }
+        }
+        receiptBatchRepository.insertPropertyReceipts(propertyReceipts);
+        
+        return receiptIds;
+    }
+
+    private Double calculatePortion(Double amount, Integer percentage) {
+        return (amount * percentage) / 100.0;
+    }
+
+    /**
+     * Resolves allocation property names to ids, serving hits from the cache and
+     * loading all misses with a single batched query. Names match case-insensitively; when several
+     * properties share a normalized name the exact name wins, otherwise the lowest id, as for reports.
+     * Only names matching a single property are cached, since the pick among several depends on the
+     * exact name requested.
+     * 
+     * @param allocations the property allocations of a receipt
+     * @return map of allocation property name to property id for every name that exists
+     */
+    private Map<String, Long> resolvePropertyIds(List<PropertyAllocationDto> allocations) {
+        Map<String, Long> propertyIds = new HashMap<>();
+        Set<String> misses = new HashSet<>();
+        
+        for (PropertyAllocationDto allocation : allocations) {
+            String normalizedName = Property.normalizeName(allocation.getPropertyName());
+            Long cachedId = propertyNameCache.get(normalizedName);
+            if (cachedId != null) {
+                propertyIds.put(allocation.getPropertyName(), cachedId);
+            } else if (normalizedName != null) {
+                misses.add(normalizedName);
+            }
+        }
+        
+        if (!misses.isEmpty()) {
+            Map<String, List<Property>> candidates = propertyRepository.findByNormalizedNameIn(misses).stream()
+                    .collect(Collectors.groupingBy(property -> Property.normalizeName(property.getName())));
+            for (PropertyAllocationDto allocation : allocations) {
+                String name = allocation.getPropertyName();
+                List<Property> matches = candidates.get(Property.normalizeName(name));
+                if (matches == null || propertyIds.containsKey(name)) {
+                    continue;
+                }
+                propertyIds.put(name, matches.stream()
+                        .filter(property -> property.getName().equals(name))
+                        .findFirst()
+                        .orElseGet(() -> Collections.min(matches, Comparator.comparing(Property::getId)))
+                        .getId());
+            }
+            candidates.forEach((normalizedName, matches) -> {
+                if (matches.size() == 1) {
+                    propertyNameCache.put(normalizedName, matches.get(0).getId());
+                }
+            });
+        }
+        
+        return propertyIds;
+    }
+
     @Override
     public Optional<ReceiptDto> getReceiptById(Long id) {
         return receiptRepository.findById(id)
@@ -156,8 +278,21 @@ public class ReceiptServiceImpl implements ReceiptService {
     }
 
     @Override
+    public Slice<ReceiptDto> getReceiptsAfter(ReceiptCursor cursor, int size) {
+        Pageable limit = PageRequest.of(0, size);
+        Slice<Receipt> receipts = ReceiptCursor.ORDER_YEAR.equals(cursor.getOrder())
+                ? receiptRepository.findSliceAfterYearAndId(cursor.getYear(), cursor.getId(), limit)
+                : receiptRepository.findSliceAfterId(cursor.getId(), limit);
+        return receipts.map(this::convertToDto);
+    }
+
+    @Override
+    @Transactional
     public void deleteReceipt(Long id) {
         if (receiptRepository.existsById(id)) {
+            if (reportArtifactCache != null) {
+                receiptRepository.findById(id).ifPresent(this::evictReports);
+            }
             receiptRepository.deleteById(id);
         }
     }
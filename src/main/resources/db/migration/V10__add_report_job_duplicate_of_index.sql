@@ -0,0 +1,2 @@
+-- Duplicates wait on the job they duplicate and finish with it
+create index idx_report_jobs_duplicate_of on report_jobs (duplicate_of);
@@ -0,0 +1,97 @@
+-- Baseline of the schema previously maintained by hibernate ddl-auto=update, as it stood before
+-- the migrations that follow. Databases created that way are baselined at this version and skip
+-- this script, so anything added since belongs in a later migration.
+
+create table properties (
+    id bigint not null auto_increment,
+    alias varchar(255),
+    city varchar(255) not null,
+    name varchar(255) not null,
+    state varchar(255) not null,
+    street_name varchar(255) not null,
+    street_number varchar(255) not null,
+    unit varchar(255),
+    zip_code varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table receipt_sources (
+    id integer not null auto_increment,
+    description varchar(255) not null,
+    retailer_name varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table receipts (
+    id bigint not null auto_increment,
+    amount float(53) not null,
+    description varchar(255),
+    receipt_date varchar(255) not null,
+    receipt_year integer not null,
+    receipt_source_id integer not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table property_receipts (
+    id bigint not null auto_increment,
+    percentage integer not null,
+    portion float(53) not null,
+    property_id bigint not null,
+    receipt_id bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table failure_reports (
+    id bigint not null auto_increment,
+    property_name varchar(255) not null,
+    year integer,
+    error_message TEXT not null,
+    failed_timestamp datetime(6) not null,
+    created_at datetime(6) not null,
+    status varchar(255) not null,
+    resolution TEXT,
+    resolved_at datetime(6),
+    primary key (id)
+) engine=InnoDB;
+
+create table users (
+    id bigint not null auto_increment,
+    username varchar(255) not null,
+    email varchar(255) not null,
+    password varchar(255) not null,
+    enabled bit not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table roles (
+    id bigint not null auto_increment,
+    name varchar(255) not null,
+    description varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table user_roles (
+    user_id bigint not null,
+    role_id bigint not null,
+    primary key (role_id, user_id)
+) engine=InnoDB;
+
+-- Unique constraints (names match the ones hibernate generated)
+alter table properties add constraint UK_p5y7iih608g0xwvro8nq20o6o unique (name);
+alter table properties add constraint UK_8uloms46gucxy0q18lo35rkop unique (alias);
+alter table receipt_sources add constraint UK_oovxhf6neutj1xusefov68yuu unique (retailer_name);
+alter table roles add constraint UK_ofx66keruapi6vyqpv6f2or37 unique (name);
+alter table users add constraint UK_r43af9ap4edm43mmtq01oddj6 unique (username);
+alter table users add constraint UK_6dotkott2kjsp8vw4d0m25fb7 unique (email);
+
+-- Foreign keys
+alter table receipts add constraint FKeok121dmj5dc1jt3i7j9889d4
+    foreign key (receipt_source_id) references receipt_sources (id);
+alter table property_receipts add constraint FK8433dduo1io8b7m8tw319k8n4
+    foreign key (property_id) references properties (id);
+alter table property_receipts add constraint FK50g9f1ncpnyqgo0p2q7b7igbi
+    foreign key (receipt_id) references receipts (id);
+alter table user_roles add constraint FKh8ciramu9cc9q3qcqiv4ue8a6
+    foreign key (role_id) references roles (id);
+alter table user_roles add constraint FKhfh9dx7w3ubf1co1vdev94g3f
+    foreign key (user_id) references users (id);
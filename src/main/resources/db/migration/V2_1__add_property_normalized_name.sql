@@ -0,0 +1,4 @@
+-- Normalized property names for report lookups; V3 backfills existing rows
+alter table properties add column normalized_name varchar(255);
+
+create index idx_properties_normalized_name on properties (normalized_name);
@@ -0,0 +1,5 @@
+-- Search and report indexes
+create index idx_receipts_year_id on receipts (receipt_year, id);
+create index idx_receipts_source_year on receipts (receipt_source_id, receipt_year);
+create index idx_property_receipts_property_receipt on property_receipts (property_id, receipt_id);
+create index idx_property_receipts_receipt on property_receipts (receipt_id);
@@ -0,0 +1,16 @@
+-- Checkpointed streaming receipt imports
+create table receipt_import_jobs (
+    id bigint not null auto_increment,
+    format varchar(255) not null,
+    source_name varchar(255) not null,
+    status varchar(255) not null,
+    byte_offset bigint not null,
+    checkpoint_row bigint not null,
+    rows_created bigint not null,
+    rows_failed bigint not null,
+    processing_millis bigint not null,
+    last_error TEXT,
+    created_at datetime(6) not null,
+    updated_at datetime(6) not null,
+    primary key (id)
+) engine=InnoDB;
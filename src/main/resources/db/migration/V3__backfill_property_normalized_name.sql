@@ -0,0 +1,2 @@
+-- Properties created before normalized_name existed have it unset, which hides them from name lookups
+update properties set normalized_name = lower(trim(name)) where normalized_name is null;
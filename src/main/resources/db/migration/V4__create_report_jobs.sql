@@ -0,0 +1,19 @@
+-- Status tracking for queued yearly reports
+create table report_jobs (
+    id varchar(36) not null,
+    property_name varchar(255) not null,
+    report_year integer not null,
+    report_type varchar(255) not null,
+    user_id bigint,
+    user_email varchar(255) not null,
+    status varchar(255) not null,
+    attempts integer not null,
+    last_error TEXT,
+    created_at datetime(6) not null,
+    started_at datetime(6),
+    completed_at datetime(6),
+    updated_at datetime(6) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_report_jobs_user_created on report_jobs (user_id, created_at);
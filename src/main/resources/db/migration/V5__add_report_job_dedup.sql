@@ -0,0 +1,5 @@
+-- De-duplication of identical report requests
+alter table report_jobs add column dedup_key varchar(512);
+alter table report_jobs add column duplicate_of varchar(36);
+
+create index idx_report_jobs_dedup_key_created on report_jobs (dedup_key, created_at);
@@ -0,0 +1,22 @@
+-- Progress tracking for portfolio-wide batch reports
+create table report_batches (
+    id varchar(36) not null,
+    report_year integer not null,
+    property_filter varchar(255),
+    report_types varchar(255) not null,
+    user_id bigint,
+    user_email varchar(255) not null,
+    status varchar(255) not null,
+    total_properties integer not null,
+    completed_properties integer not null,
+    failed_properties integer not null,
+    bundles_sent integer not null,
+    last_error TEXT,
+    created_at datetime(6) not null,
+    started_at datetime(6),
+    completed_at datetime(6),
+    updated_at datetime(6) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_report_batches_user_created on report_batches (user_id, created_at);
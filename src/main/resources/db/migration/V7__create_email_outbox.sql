@@ -0,0 +1,30 @@
+-- Emails queued for delivery separately from report generation
+create table email_outbox (
+    id varchar(36) not null,
+    report_job_id varchar(36),
+    to_email varchar(255) not null,
+    subject varchar(512) not null,
+    html_content LONGTEXT,
+    status varchar(255) not null,
+    attempts integer not null,
+    last_error TEXT,
+    created_at datetime(6) not null,
+    sent_at datetime(6),
+    updated_at datetime(6) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table email_outbox_attachments (
+    outbox_id varchar(36) not null,
+    attachment_index integer not null,
+    file_name varchar(255) not null,
+    mime_type varchar(255) not null,
+    content LONGBLOB not null,
+    primary key (outbox_id, attachment_index)
+) engine=InnoDB;
+
+alter table email_outbox_attachments
+    add constraint fk_email_outbox_attachments_outbox
+    foreign key (outbox_id) references email_outbox (id);
+
+create index idx_email_outbox_status_created on email_outbox (status, created_at);
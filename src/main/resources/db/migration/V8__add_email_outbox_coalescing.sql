@@ -0,0 +1,6 @@
+-- Coalescing of pending emails for the same recipient into one send
+alter table email_outbox add column delivery_id varchar(36);
+alter table email_outbox add column attachment_bytes bigint not null default 0;
+
+create index idx_email_outbox_to_status on email_outbox (to_email, status);
+create index idx_email_outbox_delivery on email_outbox (delivery_id);
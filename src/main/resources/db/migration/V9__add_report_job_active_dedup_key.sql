@@ -0,0 +1,4 @@
+-- At most one queued, running or delivering job per dedup key
+alter table report_jobs add column active_dedup_key varchar(512);
+
+alter table report_jobs add constraint uk_report_jobs_active_dedup_key unique (active_dedup_key);
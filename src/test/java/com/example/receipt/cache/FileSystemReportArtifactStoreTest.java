@@ -0,0 +1,69 @@
+package com.example.receipt.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+public class FileSystemReportArtifactStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static ReportArtifactKey key(String dataVersion) {
+        return new ReportArtifactKey(1L, 2024, "pdf", dataVersion);
+    }
+
+    private static void put(FileSystemReportArtifactStore store, ReportArtifactKey key, int bytes) {
+        store.put(key, new ByteArrayInputStream("x".repeat(bytes).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void age(ReportArtifactKey key, long minutes) throws Exception {
+        Path path = tempDir.resolve("1").resolve("2024").resolve("pdf-" + key.dataVersion());
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes)));
+    }
+
+    @Test
+    public void testPruneDropsArtifactsOlderThanMaxAge() throws Exception {
+        FileSystemReportArtifactStore store = new FileSystemReportArtifactStore(tempDir.toString(), 1024 * 1024,
+                TimeUnit.HOURS.toMillis(1));
+        put(store, key("old"), 10);
+        put(store, key("new"), 10);
+        age(key("old"), 120);
+
+        store.prune();
+
+        assertTrue(store.open(key("old")).isEmpty());
+        try (InputStream in = store.open(key("new")).orElseThrow()) {
+            assertEquals(10, in.readAllBytes().length);
+        }
+    }
+
+    @Test
+    public void testPruneDropsLeastRecentlyUsedOverMaxBytes() throws Exception {
+        FileSystemReportArtifactStore store = new FileSystemReportArtifactStore(tempDir.toString(), 25,
+                TimeUnit.HOURS.toMillis(1));
+        put(store, key("a"), 10);
+        put(store, key("b"), 10);
+        put(store, key("c"), 10);
+        age(key("a"), 30);
+        age(key("b"), 20);
+        age(key("c"), 10);
+        // Reading a makes it the most recently used
+        store.open(key("a")).orElseThrow().close();
+
+        store.prune();
+
+        assertTrue(store.open(key("b")).isEmpty());
+        assertTrue(store.open(key("a")).isPresent());
+        assertTrue(store.open(key("c")).isPresent());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.receipt.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class PropertyNameCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+        PropertyNameCache cache = new PropertyNameCache(10, 60000);
+
+        cache.put("main building", 1L);
+
+        assertEquals(1L, cache.get("main building"));
+        assertNull(cache.get("other building"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWhenFull() {
+        PropertyNameCache cache = new PropertyNameCache(2, 60000);
+        cache.put("a", 1L);
+        cache.put("b", 2L);
+
+        // Touch "a" so "b" becomes the eldest entry
+        cache.get("a");
+        cache.put("c", 3L);
+
+        assertEquals(2, cache.size());
+        assertEquals(1L, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(3L, cache.get("c"));
+    }
+
+    @Test
+    public void testExpiredEntriesAreNotReturned() throws Exception {
+        PropertyNameCache cache = new PropertyNameCache(10, 1);
+        cache.put("main building", 1L);
+
+        Thread.sleep(5);
+
+        assertNull(cache.get("main building"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEvictPropertyRemovesAllNamesForId() {
+        PropertyNameCache cache = new PropertyNameCache(10, 60000);
+        cache.put("old name", 1L);
+        cache.put("alias", 1L);
+        cache.put("other", 2L);
+
+        cache.evictProperty(1L);
+
+        assertNull(cache.get("old name"));
+        assertNull(cache.get("alias"));
+        assertEquals(2L, cache.get("other"));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.receipt.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.receipt.entity.ReceiptSource;
+import com.example.receipt.repository.ReceiptSourceRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@ExtendWith(MockitoExtension.class)
+public class ReceiptSourceCacheTest {
+
+    @Mock
+    private ReceiptSourceRepository receiptSourceRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ReceiptSourceCache receiptSourceCache;
+
+    @BeforeEach
+    public void setUp() {
+        receiptSourceCache = new ReceiptSourceCache(receiptSourceRepository, transactionManager, 100, 60000);
+    }
+
+    @Test
+    public void testExistingSourceIsCachedAfterFirstLookup() {
+        when(receiptSourceRepository.findByRetailerName("WALMART")).thenReturn(Optional.of(source(1, "WALMART")));
+
+        assertEquals(1, receiptSourceCache.getOrCreateId("WALMART", "Groceries"));
+        assertEquals(1, receiptSourceCache.getOrCreateId("WALMART", "Groceries"));
+
+        verify(receiptSourceRepository, times(1)).findByRetailerName("WALMART");
+        verify(receiptSourceRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    public void testMissingSourceIsCreated() {
+        when(receiptSourceRepository.findByRetailerName("COSTCO")).thenReturn(Optional.empty());
+        when(receiptSourceRepository.saveAndFlush(any(ReceiptSource.class))).thenReturn(source(5, "COSTCO"));
+
+        assertEquals(5, receiptSourceCache.getOrCreateId("COSTCO", "Bulk items"));
+
+        verify(receiptSourceRepository).saveAndFlush(argThat(s ->
+                s.getRetailerName().equals("COSTCO") && s.getDescription().equals("Bulk items")));
+    }
+
+    @Test
+    public void testConstraintViolationFallsBackToExistingRow() {
+        when(receiptSourceRepository.findByRetailerName("TARGET"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(source(9, "TARGET")));
+        when(receiptSourceRepository.saveAndFlush(any(ReceiptSource.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate retailer_name"));
+
+        assertEquals(9, receiptSourceCache.getOrCreateId("TARGET", "Home goods"));
+    }
+
+    @Test
+    public void testConcurrentRequestsForNewRetailerInsertOnce() throws Exception {
+        CountDownLatch insertStarted = new CountDownLatch(1);
+        CountDownLatch releaseInsert = new CountDownLatch(1);
+        when(receiptSourceRepository.findByRetailerName("NEW STORE")).thenReturn(Optional.empty());
+        when(receiptSourceRepository.saveAndFlush(any(ReceiptSource.class))).thenAnswer(invocation -> {
+            insertStarted.countDown();
+            releaseInsert.await();
+            return source(3, "NEW STORE");
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            results.add(executor.submit(() -> receiptSourceCache.getOrCreateId("NEW STORE", "First")));
+            insertStarted.await();
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> receiptSourceCache.getOrCreateId("NEW STORE", "Other")));
+            }
+            releaseInsert.countDown();
+
+            for (Future<Integer> result : results) {
+                assertEquals(3, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(receiptSourceRepository, times(1)).saveAndFlush(any(ReceiptSource.class));
+    }
+
+    private ReceiptSource source(Integer id, String retailerName) {
+        ReceiptSource source = new ReceiptSource(retailerName, "description");
+        source.setId(id);
+        return source;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.receipt.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.receipt.entity.Property;
+import com.example.receipt.entity.PropertyReceipt;
+import com.example.receipt.entity.Receipt;
+import com.example.receipt.service.ReportGenerator;
+import com.example.receipt.service.ReportOutput;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReportArtifactCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReportArtifactCache cache;
+    private ReportGenerator generator;
+    private Property property;
+    private List<PropertyReceipt> receipts;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ReportArtifactCache(new FileSystemReportArtifactStore(tempDir.toString(), 1024 * 1024, 3600000), meterRegistry, true);
+        generator = mock(ReportGenerator.class, CALLS_REAL_METHODS);
+        AtomicInteger generated = new AtomicInteger();
+        doAnswer(invocation -> {
+            String content = generated.incrementAndGet() == 1 ? "REPORT" : "REPORT-" + generated.get();
+            invocation.getArgument(3, OutputStream.class).write(content.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(generator).generateReport(any(), any(), any(), any(OutputStream.class));
+
+        property = new Property();
+        property.setId(1L);
+        property.setName("Main Building");
+        receipts = List.of(allocation(10L, 100.0, 50), allocation(11L, 40.0, 100));
+    }
+
+    private PropertyReceipt allocation(Long receiptId, Double amount, Integer percentage) {
+        Receipt receipt = new Receipt();
+        receipt.setId(receiptId);
+        receipt.setAmount(amount);
+        receipt.setYear(2024);
+        receipt.setDescription("Receipt " + receiptId);
+        PropertyReceipt propertyReceipt = new PropertyReceipt();
+        propertyReceipt.setReceipt(receipt);
+        propertyReceipt.setProperty(property);
+        propertyReceipt.setPercentage(percentage);
+        propertyReceipt.setPortion(amount * percentage / 100.0);
+        return propertyReceipt;
+    }
+
+    private String write(ReportArtifactCache reportCache, Integer year, String reportType) throws Exception {
+        Path target = Files.createTempFile(tempDir, "report-", ".out");
+        ReportOutput output = reportCache.writeReport(property, year, receipts, reportType, generator, target);
+        assertEquals(Files.size(target), output.size());
+        return Files.readString(target);
+    }
+
+    private void verifyGenerated(int times) throws Exception {
+        verify(generator, times(times)).generateReport(any(), any(), any(), any(OutputStream.class));
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("report.artifacts.cache").tag("result", result).counter().count();
+    }
+
+    @Test
+    public void testSecondRequestIsServedFromCache() throws Exception {
+        Path first = Files.createTempFile(tempDir, "first-", ".out");
+        Path second = Files.createTempFile(tempDir, "second-", ".out");
+        ReportOutput generatedOutput = cache.writeReport(property, 2024, receipts, "pdf", generator, first);
+        ReportOutput cachedOutput = cache.writeReport(property, 2024, receipts, "pdf", generator, second);
+
+        assertEquals("REPORT", Files.readString(first));
+        assertEquals("REPORT", Files.readString(second));
+        assertEquals(generatedOutput, cachedOutput);
+        assertEquals(6, cachedOutput.size());
+        verifyGenerated(1);
+        assertEquals(1.0, count("hit"));
+        assertEquals(1.0, count("miss"));
+    }
+
+    @Test
+    public void testChangedDataMissesEvenWithoutEviction() throws Exception {
+        write(cache, 2024, "pdf");
+        receipts.get(0).setPercentage(60);
+        receipts.get(0).setPortion(60.0);
+
+        assertEquals("REPORT-2", write(cache, 2024, "pdf"));
+        verifyGenerated(2);
+    }
+
+    @Test
+    public void testReportTypesAreCachedSeparately() throws Exception {
+        write(cache, 2024, "pdf");
+        write(cache, 2024, "csv");
+
+        verifyGenerated(2);
+    }
+
+    @Test
+    public void testDataVersionIgnoresReceiptOrder() {
+        assertEquals(ReportArtifactCache.dataVersion(property, 2024, receipts),
+                ReportArtifactCache.dataVersion(property, 2024, List.of(receipts.get(1), receipts.get(0))));
+        assertNotEquals(ReportArtifactCache.dataVersion(property, 2024, receipts),
+                ReportArtifactCache.dataVersion(property, 2023, receipts));
+    }
+
+    @Test
+    public void testEvictRemovesOnlyThatPropertyYear() throws Exception {
+        write(cache, 2024, "pdf");
+        write(cache, 2023, "pdf");
+
+        cache.evict(1L, 2024);
+        write(cache, 2024, "pdf");
+        write(cache, 2023, "pdf");
+
+        verifyGenerated(3);
+        verify(generator, times(2)).generateReport(any(), eq(2024), any(), any(OutputStream.class));
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysGenerates() throws Exception {
+        ReportArtifactStore store = mock(ReportArtifactStore.class);
+        ReportArtifactCache disabled = new ReportArtifactCache(store, meterRegistry, false);
+
+        write(disabled, 2024, "pdf");
+        write(disabled, 2024, "pdf");
+
+        verifyGenerated(2);
+        verifyNoInteractions(store);
+    }
+
+    @Test
+    public void testStoreFailureFallsBackToGenerating() throws Exception {
+        ReportArtifactStore store = mock(ReportArtifactStore.class);
+        when(store.open(any())).thenThrow(new IllegalStateException("disk unavailable"));
+        doThrow(new IllegalStateException("disk unavailable")).when(store).put(any(), any());
+        ReportArtifactCache failing = new ReportArtifactCache(store, new SimpleMeterRegistry(), true);
+
+        assertEquals("REPORT", write(failing, 2024, "pdf"));
+    }
+
+    @Test
+    public void testTruncatedReadRegeneratesTheWholeReport() throws Exception {
+        ReportArtifactStore store = mock(ReportArtifactStore.class);
+        InputStream broken = new InputStream() {
+            private int remaining = 3;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining-- > 0) {
+                    return 'X';
+                }
+                throw new IOException("connection reset");
+            }
+        };
+        when(store.open(any())).thenReturn(Optional.of(broken));
+        ReportArtifactCache failing = new ReportArtifactCache(store, new SimpleMeterRegistry(), true);
+
+        assertEquals("REPORT", write(failing, 2024, "pdf"));
+        verifyGenerated(1);
+    }
+}
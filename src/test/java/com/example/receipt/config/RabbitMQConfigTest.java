@@ -0,0 +1,50 @@
+package com.example.receipt.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.boot.autoconfigure.amqp.RabbitProperties;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class RabbitMQConfigTest {
+
+    private final RabbitMQConfig rabbitMQConfig = new RabbitMQConfig();
+
+    private SimpleMessageListenerContainer createContainer(int concurrency, int maxConcurrency, int prefetch, boolean virtualThreads) {
+        SimpleRabbitListenerContainerFactory factory = rabbitMQConfig.reportListenerContainerFactory(
+                mock(ConnectionFactory.class),
+                new SimpleRabbitListenerContainerFactoryConfigurer(new RabbitProperties()),
+                concurrency, maxConcurrency, prefetch, virtualThreads);
+        return factory.createListenerContainer();
+    }
+
+    @Test
+    public void testReportContainerUsesConfiguredConcurrencyAndPrefetch() {
+        SimpleMessageListenerContainer container = createContainer(3, 10, 2, false);
+
+        assertEquals(3, ReflectionTestUtils.getField(container, "concurrentConsumers"));
+        assertEquals(10, ReflectionTestUtils.getField(container, "maxConcurrentConsumers"));
+        assertEquals(2, ReflectionTestUtils.getField(container, "prefetchCount"));
+        assertFalse(ReflectionTestUtils.getField(container, "taskExecutor") instanceof VirtualThreadTaskExecutor);
+    }
+
+    @Test
+    public void testMaxConcurrencyNeverBelowConcurrency() {
+        SimpleMessageListenerContainer container = createContainer(4, 1, 1, false);
+
+        assertEquals(4, ReflectionTestUtils.getField(container, "maxConcurrentConsumers"));
+    }
+
+    @Test
+    public void testVirtualThreadExecutorIsOptIn() {
+        SimpleMessageListenerContainer container = createContainer(2, 8, 1, true);
+
+        assertTrue(ReflectionTestUtils.getField(container, "taskExecutor") instanceof VirtualThreadTaskExecutor);
+    }
+}
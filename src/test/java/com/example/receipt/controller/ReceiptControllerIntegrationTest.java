@@ -13,9 +13,12 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import com.example.receipt.dto.ReceiptCursor;
+import com.example.receipt.dto.ReceiptCursorPage;
 import com.example.receipt.dto.ReceiptDto;
 import com.example.receipt.dto.ReceiptUpsertRequest;
 import com.example.receipt.dto.PropertyAllocationDto;
@@ -313,4 +316,44 @@ public class ReceiptControllerIntegrationTest {
         assertNotNull(body.getId());
         verify(receiptService, times(1)).upsertReceipt(any(ReceiptDto.class));
     }
+
+    @Test
+    public void testGetReceiptsAfterReturnsNextCursorFromLastReceipt() {
+        // Arrange
+        when(receiptService.getReceiptsAfter(any(ReceiptCursor.class), eq(1)))
+                .thenReturn(new SliceImpl<>(List.of(testReceiptDto), PageRequest.of(0, 1), true));
+
+        // Act
+        ResponseEntity<ReceiptCursorPage> response = receiptController.getReceiptsAfter("", "year", 1);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().isHasNext());
+        ReceiptCursor next = ReceiptCursor.decode(response.getBody().getNextCursor());
+        assertEquals(ReceiptCursor.ORDER_YEAR, next.getOrder());
+        assertEquals(2024, next.getYear());
+        assertEquals(1L, next.getId());
+    }
+
+    @Test
+    public void testGetReceiptsAfterLastPageHasNoCursor() {
+        // Arrange
+        String token = ReceiptCursor.start("id").after(testReceiptDto).encode();
+        when(receiptService.getReceiptsAfter(any(ReceiptCursor.class), eq(100)))
+                .thenReturn(new SliceImpl<>(List.of(testReceiptDto), PageRequest.of(0, 100), false));
+
+        // Act
+        ResponseEntity<ReceiptCursorPage> response = receiptController.getReceiptsAfter(token, "ID", 100);
+
+        // Assert
+        assertFalse(response.getBody().isHasNext());
+        assertNull(response.getBody().getNextCursor());
+        verify(receiptService).getReceiptsAfter(argThat(cursor -> cursor.getId() == 1L), eq(100));
+    }
+
+    @Test
+    public void testGetReceiptsAfterRejectsInvalidCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> receiptController.getReceiptsAfter("not-a-cursor", "ID", 100));
+    }
 }
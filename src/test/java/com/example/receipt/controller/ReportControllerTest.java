@@ -1,9 +1,15 @@
 package com.example.receipt.controller;
 
+import com.example.receipt.dto.ReportBatchRequest;
+import com.example.receipt.dto.YearlyReportRequest;
 import com.example.receipt.dto.YearlyReportResponse;
+import com.example.receipt.entity.ReportBatch;
+import com.example.receipt.entity.ReportJob;
 import com.example.receipt.entity.User;
 import com.example.receipt.messaging.ReportMessageProducer;
 import com.example.receipt.repository.UserRepository;
+import com.example.receipt.service.ReportBatchService;
+import com.example.receipt.service.ReportJobService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,10 +19,13 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +37,12 @@ public class ReportControllerTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private ReportJobService reportJobService;
+
+    @Mock
+    private ReportBatchService reportBatchService;
+
     @Mock
     private Authentication authentication;
 
@@ -43,6 +58,22 @@ public class ReportControllerTest {
         testUser.setUsername("testuser");
         testUser.setEmail("test@example.com");
         testUser.setEnabled(true);
+
+        lenient().when(reportJobService.createJob(any())).thenAnswer(invocation -> {
+            YearlyReportRequest request = invocation.getArgument(0);
+            request.setReportJobId("job-1");
+            return new ReportJob("job-1", request.getPropertyName(), request.getYear(), request.getReportType(),
+                    request.getUserId(), request.getUserEmail());
+        });
+    }
+
+    private ReportJob jobOwnedBy(Long userId) {
+        return new ReportJob("job-1", "Main Building", 2024, "pdf", userId, "test@example.com");
+    }
+
+    private void authenticateAs(String username, String role) {
+        when(authentication.getName()).thenReturn(username);
+        doReturn(List.of(new SimpleGrantedAuthority("ROLE_" + role))).when(authentication).getAuthorities();
     }
 
     @Test
@@ -50,12 +81,13 @@ public class ReportControllerTest {
         // Arrange
         when(authentication.getName()).thenReturn("testuser");
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-        doNothing().when(reportMessageProducer).sendReportRequest(any());
+        doReturn(ResponseEntity.ok().build()).when(reportMessageProducer).sendReportRequest(any());
 
         // Act
         ResponseEntity<?> response = reportController.generateYearlyReport(
                 "Main Building",
                 2024,
+                null,
                 authentication
         );
 
@@ -65,7 +97,204 @@ public class ReportControllerTest {
         YearlyReportResponse reportResponse = (YearlyReportResponse) response.getBody();
         assertEquals("PROCESSING", reportResponse.getStatus());
         assertTrue(reportResponse.getMessage().contains("Report generation started"));
-        verify(reportMessageProducer, times(1)).sendReportRequest(any());
+        assertEquals("job-1", reportResponse.getReportId());
+        assertEquals("/api/reports/job-1", response.getHeaders().getLocation().toString());
+        verify(reportMessageProducer, times(1)).sendReportRequest(argThat(request -> "job-1".equals(request.getReportJobId())));
+    }
+
+    @Test
+    public void testGenerateYearlyReportWithSeveralFormats() {
+        // Arrange
+        when(authentication.getName()).thenReturn("testuser");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        doReturn(ResponseEntity.ok().build()).when(reportMessageProducer).sendReportRequest(any());
+
+        // Act
+        ResponseEntity<?> response = reportController.generateYearlyReport("Main Building", 2024, List.of("CSV", "pdf", "csv"), authentication);
+
+        // Assert - one request carrying both formats, in a fixed order
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertTrue(((YearlyReportResponse) response.getBody()).getMessage().contains("PDF, CSV"));
+        verify(reportMessageProducer, times(1)).sendReportRequest(argThat(request ->
+                List.of("pdf", "csv").equals(request.getReportTypes()) && "pdf".equals(request.getReportType())));
+    }
+
+    @Test
+    public void testGenerateYearlyReportRejectsUnsupportedFormat() {
+        // Act
+        ResponseEntity<?> response = reportController.generateYearlyReport("Main Building", 2024, List.of("pdf", "xlsx"), authentication);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertTrue(response.getBody().toString().contains("xlsx"));
+        verifyNoInteractions(reportJobService, reportMessageProducer);
+    }
+
+    @Test
+    public void testGenerateYearlyReportMarksJobFailedWhenQueueingFails() {
+        // Arrange
+        when(authentication.getName()).thenReturn("testuser");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        doReturn(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build()).when(reportMessageProducer).sendReportRequest(any());
+
+        // Act
+        ResponseEntity<?> response = reportController.generateYearlyReport("Main Building", 2024, null, authentication);
+
+        // Assert
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        verify(reportJobService).markFailed(eq("job-1"), anyString());
+    }
+
+    @Test
+    public void testDuplicateRequestReturnsExistingJobWithoutQueueing() {
+        // Arrange
+        when(authentication.getName()).thenReturn("testuser");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        ReportJob existing = jobOwnedBy(1L);
+        existing.setStatus(ReportJob.STATUS_RUNNING);
+        when(reportJobService.findActiveDuplicate(any())).thenReturn(Optional.of(existing));
+
+        // Act
+        ResponseEntity<?> response = reportController.generateYearlyReport("Main Building", 2024, null, authentication);
+
+        // Assert
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        YearlyReportResponse reportResponse = (YearlyReportResponse) response.getBody();
+        assertEquals("job-1", reportResponse.getReportId());
+        assertEquals(ReportJob.STATUS_RUNNING, reportResponse.getStatus());
+        verify(reportJobService, never()).createJob(any());
+        verify(reportMessageProducer, never()).sendReportRequest(any());
+    }
+
+    @Test
+    public void testRequestLosingTheDedupKeyRaceReturnsWinningJobWithoutQueueing() {
+        // Arrange
+        when(authentication.getName()).thenReturn("testuser");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        ReportJob winner = new ReportJob("job-0", "Main Building", 2024, "pdf", 1L, "test@example.com");
+        doReturn(winner).when(reportJobService).createJob(any());
+
+        // Act
+        ResponseEntity<?> response = reportController.generateYearlyReport("Main Building", 2024, null, authentication);
+
+        // Assert
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        YearlyReportResponse reportResponse = (YearlyReportResponse) response.getBody();
+        assertEquals("job-0", reportResponse.getReportId());
+        assertEquals(ReportJob.STATUS_QUEUED, reportResponse.getStatus());
+        verify(reportMessageProducer, never()).sendReportRequest(any());
+    }
+
+    @Test
+    public void testGetReportJobForOwner() {
+        // Arrange
+        authenticateAs("testuser", "USER");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(reportJobService.getJob("job-1")).thenReturn(Optional.of(jobOwnedBy(1L)));
+
+        // Act
+        ResponseEntity<ReportJob> response = reportController.getReportJob("job-1", authentication);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(ReportJob.STATUS_QUEUED, response.getBody().getStatus());
+    }
+
+    @Test
+    public void testGetReportJobHidesOtherUsersJobs() {
+        // Arrange
+        authenticateAs("testuser", "USER");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(reportJobService.getJob("job-1")).thenReturn(Optional.of(jobOwnedBy(2L)));
+
+        // Act & Assert
+        assertEquals(HttpStatus.NOT_FOUND, reportController.getReportJob("job-1", authentication).getStatusCode());
+    }
+
+    @Test
+    public void testGetReportJobForAdmin() {
+        // Arrange
+        authenticateAs("admin", "ADMIN");
+        when(reportJobService.getJob("job-1")).thenReturn(Optional.of(jobOwnedBy(2L)));
+
+        // Act & Assert
+        assertEquals(HttpStatus.OK, reportController.getReportJob("job-1", authentication).getStatusCode());
+    }
+
+    @Test
+    public void testGetReportJobNotFound() {
+        // Arrange
+        authenticateAs("testuser", "USER");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(reportJobService.getJob("missing")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertEquals(HttpStatus.NOT_FOUND, reportController.getReportJob("missing", authentication).getStatusCode());
+    }
+
+    @Test
+    public void testGenerateBatchReportQueuesOneBatch() {
+        // Arrange
+        when(authentication.getName()).thenReturn("testuser");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(reportBatchService.createBatch(any())).thenAnswer(invocation -> {
+            ReportBatchRequest request = invocation.getArgument(0);
+            request.setReportBatchId("batch-1");
+            return new ReportBatch("batch-1", request.getYear(), request.getPropertyFilter(),
+                    String.join(",", request.getReportTypes()), request.getUserId(), request.getUserEmail());
+        });
+        doReturn(ResponseEntity.ok().build()).when(reportMessageProducer).sendBatchRequest(any());
+
+        // Act
+        ResponseEntity<?> response = reportController.generateBatchReport(2024, "  Building ", List.of("csv", "pdf"), authentication);
+
+        // Assert
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        YearlyReportResponse reportResponse = (YearlyReportResponse) response.getBody();
+        assertEquals("batch-1", reportResponse.getReportId());
+        assertTrue(reportResponse.getMessage().contains("PDF, CSV"));
+        assertEquals("/api/reports/batch/batch-1", response.getHeaders().getLocation().toString());
+        verify(reportMessageProducer, times(1)).sendBatchRequest(argThat(request ->
+                "batch-1".equals(request.getReportBatchId()) && "Building".equals(request.getPropertyFilter())
+                        && List.of("pdf", "csv").equals(request.getReportTypes())
+                        && "test@example.com".equals(request.getUserEmail())));
+        verify(reportMessageProducer, never()).sendReportRequest(any());
+    }
+
+    @Test
+    public void testGenerateBatchReportRejectsInvalidInput() {
+        assertEquals(HttpStatus.BAD_REQUEST,
+                reportController.generateBatchReport(1800, null, null, authentication).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST,
+                reportController.generateBatchReport(2024, null, List.of("xlsx"), authentication).getStatusCode());
+        verify(reportBatchService, never()).createBatch(any());
+        verify(reportMessageProducer, never()).sendBatchRequest(any());
+    }
+
+    @Test
+    public void testGenerateBatchReportMarksBatchFailedWhenQueueingFails() {
+        // Arrange
+        when(authentication.getName()).thenReturn("testuser");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(reportBatchService.createBatch(any())).thenReturn(new ReportBatch("batch-1", 2024, null, "pdf", 1L, "test@example.com"));
+        doReturn(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build()).when(reportMessageProducer).sendBatchRequest(any());
+
+        // Act
+        ResponseEntity<?> response = reportController.generateBatchReport(2024, null, null, authentication);
+
+        // Assert
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        verify(reportBatchService).markFailed(eq("batch-1"), anyString());
+    }
+
+    @Test
+    public void testGetReportBatch() {
+        ReportBatch batch = new ReportBatch("batch-1", 2024, null, "pdf", 1L, "test@example.com");
+        when(reportBatchService.getBatch("batch-1")).thenReturn(Optional.of(batch));
+        when(reportBatchService.getBatch("missing")).thenReturn(Optional.empty());
+
+        assertSame(batch, reportController.getReportBatch("batch-1").getBody());
+        assertEquals(HttpStatus.NOT_FOUND, reportController.getReportBatch("missing").getStatusCode());
     }
 
     @Test
@@ -74,6 +303,7 @@ public class ReportControllerTest {
         ResponseEntity<?> response = reportController.generateYearlyReport(
                 "Main Building",
                 1800,
+                null,
                 authentication
         );
 
@@ -89,6 +319,7 @@ public class ReportControllerTest {
         ResponseEntity<?> response = reportController.generateYearlyReport(
                 "Main Building",
                 2101,
+                null,
                 authentication
         );
 
@@ -103,12 +334,13 @@ public class ReportControllerTest {
         // Arrange
         when(authentication.getName()).thenReturn("testuser");
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-        doNothing().when(reportMessageProducer).sendReportRequest(any());
+        doReturn(ResponseEntity.ok().build()).when(reportMessageProducer).sendReportRequest(any());
 
         // Act & Assert for year 1900
         ResponseEntity<?> response1 = reportController.generateYearlyReport(
                 "Main Building",
                 1900,
+                null,
                 authentication
         );
         assertEquals(HttpStatus.ACCEPTED, response1.getStatusCode());
@@ -117,6 +349,7 @@ public class ReportControllerTest {
         ResponseEntity<?> response2 = reportController.generateYearlyReport(
                 "Main Building",
                 2100,
+                null,
                 authentication
         );
         assertEquals(HttpStatus.ACCEPTED, response2.getStatusCode());
@@ -132,6 +365,7 @@ public class ReportControllerTest {
         ResponseEntity<?> response = reportController.generateYearlyReport(
                 "Main Building",
                 2024,
+                null,
                 authentication
         );
 
@@ -157,11 +391,14 @@ public class ReportControllerTest {
         when(authentication.getName()).thenReturn("testuser");
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
 
+        doReturn(ResponseEntity.ok().build()).when(reportMessageProducer).sendReportRequest(any());
+
         // Act - Empty string should be handled by @NotBlank validation
         // This test verifies controller behavior when validation passes
         ResponseEntity<?> response = reportController.generateYearlyReport(
                 "Valid Property",
                 2024,
+                null,
                 authentication
         );
 
@@ -174,17 +411,19 @@ public class ReportControllerTest {
         // Arrange
         when(authentication.getName()).thenReturn("testuser");
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-        doNothing().when(reportMessageProducer).sendReportRequest(any());
+        doReturn(ResponseEntity.ok().build()).when(reportMessageProducer).sendReportRequest(any());
 
         // Act - Generate reports for different years
         ResponseEntity<?> response1 = reportController.generateYearlyReport(
                 "Main Building",
                 2023,
+                null,
                 authentication
         );
         ResponseEntity<?> response2 = reportController.generateYearlyReport(
                 "Main Building",
                 2024,
+                null,
                 authentication
         );
 
@@ -1,6 +1,7 @@
 package com.example.receipt.dto;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -10,18 +11,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import com.example.receipt.entity.ReceiptSource;
-import com.example.receipt.repository.ReceiptSourceRepository;
+import com.example.receipt.cache.ReceiptSourceCache;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 @ExtendWith(MockitoExtension.class)
 public class ReceiptDtoMapperTest {
     
     @Mock
-    private ReceiptSourceRepository receiptSourceRepository;
+    private ReceiptSourceCache receiptSourceCache;
     
     @InjectMocks
     private ReceiptDtoMapper receiptDtoMapper;
@@ -44,12 +43,7 @@ public class ReceiptDtoMapperTest {
         properties.add(new PropertyAllocationDto("Property 2", 40));
         request.setProperties(properties);
         
-        ReceiptSource savedSource = new ReceiptSource();
-        savedSource.setId(1);
-        savedSource.setRetailerName("WALMART");
-        
-        when(receiptSourceRepository.findByRetailerName("WALMART")).thenReturn(Optional.empty());
-        when(receiptSourceRepository.save(any(ReceiptSource.class))).thenReturn(savedSource);
+        when(receiptSourceCache.getOrCreateId(eq("WALMART"), anyString())).thenReturn(1);
         
         ReceiptDto dto = receiptDtoMapper.mapRequestToDto(request);
         
@@ -69,12 +63,7 @@ public class ReceiptDtoMapperTest {
         properties.add(new PropertyAllocationDto("Property 2", 30));
         request.setProperties(properties);
         
-        ReceiptSource savedSource = new ReceiptSource();
-        savedSource.setId(1);
-        savedSource.setRetailerName("WALMART");
-        
-        when(receiptSourceRepository.findByRetailerName("WALMART")).thenReturn(Optional.empty());
-        when(receiptSourceRepository.save(any(ReceiptSource.class))).thenReturn(savedSource);
+        when(receiptSourceCache.getOrCreateId(eq("WALMART"), anyString())).thenReturn(1);
         
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, 
             () -> receiptDtoMapper.mapRequestToDto(request));
@@ -85,11 +74,7 @@ public class ReceiptDtoMapperTest {
     
     @Test
     public void testMapRequestToDto_ReceiptSourceFound() {
-        ReceiptSource existingSource = new ReceiptSource();
-        existingSource.setId(1);
-        existingSource.setRetailerName("WALMART");
-        
-        when(receiptSourceRepository.findByRetailerName("WALMART")).thenReturn(Optional.of(existingSource));
+        when(receiptSourceCache.getOrCreateId(eq("WALMART"), anyString())).thenReturn(1);
         
         ReceiptDto dto = receiptDtoMapper.mapRequestToDto(request);
         
@@ -100,46 +85,32 @@ public class ReceiptDtoMapperTest {
     
     @Test
     public void testMapRequestToDto_ReceiptSourceNotFound() {
-        ReceiptSource savedSource = new ReceiptSource();
-        savedSource.setId(1);
-        savedSource.setRetailerName("WALMART");
-        
-        when(receiptSourceRepository.findByRetailerName("WALMART")).thenReturn(Optional.empty());
-        when(receiptSourceRepository.save(any(ReceiptSource.class))).thenReturn(savedSource);
+        when(receiptSourceCache.getOrCreateId(eq("WALMART"), anyString())).thenReturn(1);
         
         ReceiptDto dto = receiptDtoMapper.mapRequestToDto(request);
         
         assertNotNull(dto);
         assertNotNull(dto.getReceiptSourceId());
         assertEquals(1, (int) dto.getReceiptSourceId());
-        verify(receiptSourceRepository).save(any(ReceiptSource.class));
+        verify(receiptSourceCache).getOrCreateId("WALMART", "Grocery items");
     }
     
     @Test
     public void testMapRequestToDto_StoreNameCaseInsensitive() {
         request.setStoreName("walmart");
-        ReceiptSource existingSource = new ReceiptSource();
-        existingSource.setId(2);
-        existingSource.setRetailerName("WALMART");
-        
-        when(receiptSourceRepository.findByRetailerName("WALMART")).thenReturn(Optional.of(existingSource));
+        when(receiptSourceCache.getOrCreateId(eq("WALMART"), anyString())).thenReturn(2);
         
         ReceiptDto dto = receiptDtoMapper.mapRequestToDto(request);
         
         assertEquals(2, dto.getReceiptSourceId());
-        verify(receiptSourceRepository).findByRetailerName("WALMART");
+        verify(receiptSourceCache).getOrCreateId(eq("WALMART"), anyString());
     }
     
     @Test
     public void testMapRequestToDto_ExtractYear() {
         request.setReceiptDate("2023-06-15T14:30:00Z");
         
-        ReceiptSource savedSource = new ReceiptSource();
-        savedSource.setId(1);
-        savedSource.setRetailerName("WALMART");
-        
-        when(receiptSourceRepository.findByRetailerName("WALMART")).thenReturn(Optional.empty());
-        when(receiptSourceRepository.save(any(ReceiptSource.class))).thenReturn(savedSource);
+        when(receiptSourceCache.getOrCreateId(eq("WALMART"), anyString())).thenReturn(1);
         
         ReceiptDto dto = receiptDtoMapper.mapRequestToDto(request);
         
@@ -150,12 +121,7 @@ public class ReceiptDtoMapperTest {
     public void testMapRequestToDto_InvalidDateFormat() {
         request.setReceiptDate("invalid-date");
         
-        ReceiptSource savedSource = new ReceiptSource();
-        savedSource.setId(1);
-        savedSource.setRetailerName("WALMART");
-        
-        when(receiptSourceRepository.findByRetailerName("WALMART")).thenReturn(Optional.empty());
-        when(receiptSourceRepository.save(any(ReceiptSource.class))).thenReturn(savedSource);
+        when(receiptSourceCache.getOrCreateId(eq("WALMART"), anyString())).thenReturn(1);
         
         ReceiptDto dto = receiptDtoMapper.mapRequestToDto(request);
         
@@ -167,12 +133,7 @@ public class ReceiptDtoMapperTest {
     public void testMapRequestToDto_NoProperties() {
         request.setProperties(null);
         
-        ReceiptSource savedSource = new ReceiptSource();
-        savedSource.setId(1);
-        savedSource.setRetailerName("WALMART");
-        
-        when(receiptSourceRepository.findByRetailerName("WALMART")).thenReturn(Optional.empty());
-        when(receiptSourceRepository.save(any(ReceiptSource.class))).thenReturn(savedSource);
+        when(receiptSourceCache.getOrCreateId(eq("WALMART"), anyString())).thenReturn(1);
         
         ReceiptDto dto = receiptDtoMapper.mapRequestToDto(request);
         
@@ -188,12 +149,7 @@ public class ReceiptDtoMapperTest {
         properties.add(new PropertyAllocationDto("Property 3", 25));
         request.setProperties(properties);
         
-        ReceiptSource savedSource = new ReceiptSource();
-        savedSource.setId(1);
-        savedSource.setRetailerName("WALMART");
-        
-        when(receiptSourceRepository.findByRetailerName("WALMART")).thenReturn(Optional.empty());
-        when(receiptSourceRepository.save(any(ReceiptSource.class))).thenReturn(savedSource);
+        when(receiptSourceCache.getOrCreateId(eq("WALMART"), anyString())).thenReturn(1);
         
         ReceiptDto dto = receiptDtoMapper.mapRequestToDto(request);
         
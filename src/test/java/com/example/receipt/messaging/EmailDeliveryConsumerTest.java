@@ -0,0 +1,188 @@
+package com.example.receipt.messaging;
+
+import com.example.receipt.config.RabbitMQConfig;
+import com.example.receipt.entity.EmailOutbox;
+import com.example.receipt.entity.ReportJob;
+import com.example.receipt.exception.EmailCircuitOpenException;
+import com.example.receipt.service.EmailOutboxService;
+import com.example.receipt.service.FailureReportService;
+import com.example.receipt.service.ReportJobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Drives outbox deliveries through the declared email retry topology on an in-memory broker
+ */
+@ExtendWith(MockitoExtension.class)
+public class EmailDeliveryConsumerTest {
+
+    @Mock
+    private EmailOutboxService emailOutboxService;
+
+    @Mock
+    private ReportJobService reportJobService;
+
+    @Mock
+    private FailureReportService failureReportService;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private EmailDeliveryMetrics emailDeliveryMetrics;
+
+    @Mock
+    private EmailDeliveryPause emailDeliveryPause;
+
+    @Spy
+    private ReportRetryPolicy reportRetryPolicy = new ReportRetryPolicy(3, 1000, 2.0, 300000, 0.2);
+
+    @InjectMocks
+    private EmailDeliveryConsumer emailDeliveryConsumer;
+
+    private InMemoryRabbitBroker broker;
+    private EmailOutbox entry;
+
+    @BeforeEach
+    public void setUp() {
+        RabbitMQConfig config = new RabbitMQConfig();
+        broker = new InMemoryRabbitBroker();
+
+        Queue deliveryQueue = config.emailDeliveryQueue();
+        TopicExchange reportExchange = config.reportExchange();
+        DirectExchange retryExchange = config.reportRetryExchange();
+        broker.declare(deliveryQueue, config.emailDeliveryBinding(deliveryQueue, reportExchange));
+        broker.declare(config.emailRetryQueues(retryExchange, reportRetryPolicy));
+
+        lenient().doAnswer(invocation -> {
+            MessageProperties properties = new MessageProperties();
+            MessagePostProcessor postProcessor = invocation.getArgument(3);
+            postProcessor.postProcessMessage(new Message(new byte[0], properties));
+            broker.publish(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2), properties);
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class), any(MessagePostProcessor.class));
+
+        entry = new EmailOutbox("outbox-1", "job-1", "user@example.com", "Report", "<p>Hi</p>", 0);
+        when(emailOutboxService.getEntry("outbox-1")).thenReturn(Optional.of(entry));
+        lenient().when(emailOutboxService.claim(entry)).thenReturn(List.of(entry));
+    }
+
+    /**
+     * Delivers queued outbox ids to the consumer and lets retry queues expire until the broker is idle.
+     * Returns the number of deliveries.
+     */
+    private int runUntilIdle() {
+        broker.publish(RabbitMQConfig.REPORT_EXCHANGE, RabbitMQConfig.EMAIL_DELIVERY_ROUTING_KEY, "outbox-1", new MessageProperties());
+        int deliveries = 0;
+        do {
+            InMemoryRabbitBroker.Envelope delivery;
+            while ((delivery = broker.poll(RabbitMQConfig.EMAIL_DELIVERY_QUEUE)) != null) {
+                deliveries++;
+                Integer retryCount = delivery.properties().getHeader("x-retry-count");
+                emailDeliveryConsumer.processDelivery((String) delivery.payload(), retryCount);
+            }
+        } while (broker.expireNext());
+        return deliveries;
+    }
+
+    @Test
+    public void testDeliveredEmailMarksTheJobSent() throws Exception {
+        assertEquals(1, runUntilIdle());
+
+        verify(emailOutboxService).deliver(List.of(entry));
+        verify(emailOutboxService).markSent(List.of(entry));
+        verify(reportJobService).markSent("job-1");
+        verify(emailDeliveryMetrics).sendFinished(EmailDeliveryMetrics.OUTCOME_SENT, 1);
+    }
+
+    @Test
+    public void testCoalescedEmailsAreSentTogether() throws Exception {
+        EmailOutbox other = new EmailOutbox("outbox-2", "job-2", "user@example.com", "Report 2", "<p>Hi</p>", 0);
+        List<EmailOutbox> group = List.of(entry, other);
+        when(emailOutboxService.claim(entry)).thenReturn(group);
+
+        assertEquals(1, runUntilIdle());
+
+        verify(emailOutboxService).deliver(group);
+        verify(emailOutboxService).markSent(group);
+        verify(reportJobService).markSent("job-1");
+        verify(reportJobService).markSent("job-2");
+        verify(emailDeliveryMetrics).sendFinished(EmailDeliveryMetrics.OUTCOME_SENT, 2);
+    }
+
+    @Test
+    public void testTransientFailureRetriesOnlyTheDelivery() throws Exception {
+        doThrow(new IOException("SendGrid unavailable")).doNothing().when(emailOutboxService).deliver(List.of(entry));
+
+        assertEquals(2, runUntilIdle());
+
+        verify(emailOutboxService).markRetrying(List.of(entry), "SendGrid unavailable");
+        verify(emailOutboxService).markSent(List.of(entry));
+        verify(reportJobService).markSent("job-1");
+        verify(reportJobService, never()).markFailed(any(), any());
+    }
+
+    @Test
+    public void testExhaustedRetriesFailTheEmailAndTheJob() throws Exception {
+        doThrow(new IOException("SendGrid unavailable")).when(emailOutboxService).deliver(List.of(entry));
+        when(reportJobService.getJob("job-1"))
+                .thenReturn(Optional.of(new ReportJob("job-1", "Main Building", 2024, "pdf", 1L, "user@example.com")));
+
+        assertEquals(3, runUntilIdle());
+
+        verify(emailOutboxService, times(2)).markRetrying(eq(List.of(entry)), anyString());
+        verify(emailOutboxService).markFailed(eq(List.of(entry)), contains("after 3 attempts"));
+        verify(reportJobService).markFailed(eq("job-1"), contains("SendGrid unavailable"));
+        verify(failureReportService).createFailureReport(eq("Main Building"), eq(2024), contains("SendGrid unavailable"), any());
+        for (long ttl : reportRetryPolicy.waitQueueTtls()) {
+            assertEquals(0, broker.depth(RabbitMQConfig.emailRetryQueueName(ttl)));
+        }
+    }
+
+    @Test
+    public void testRedeliveredSentEmailIsNotSentAgain() throws Exception {
+        // Already sent, or claimed by another email's delivery
+        when(emailOutboxService.claim(entry)).thenReturn(List.of());
+
+        runUntilIdle();
+
+        verify(emailOutboxService, never()).deliver(any());
+        verifyNoInteractions(reportJobService);
+    }
+
+    @Test
+    public void testOpenCircuitParksTheDeliveryWithoutUsingARetry() throws Exception {
+        doThrow(new EmailCircuitOpenException(30000)).when(emailOutboxService).deliver(List.of(entry));
+
+        assertThrows(ImmediateRequeueAmqpException.class, () -> emailDeliveryConsumer.processDelivery("outbox-1", 1));
+
+        verify(emailDeliveryPause).pause();
+        verify(emailOutboxService, never()).markRetrying(any(), any());
+        verify(emailOutboxService, never()).markFailed(any(), any());
+        verifyNoInteractions(reportJobService, emailDeliveryMetrics);
+        for (long ttl : reportRetryPolicy.waitQueueTtls()) {
+            assertEquals(0, broker.depth(RabbitMQConfig.emailRetryQueueName(ttl)));
+        }
+    }
+}
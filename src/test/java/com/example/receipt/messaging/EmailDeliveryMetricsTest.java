@@ -0,0 +1,40 @@
+package com.example.receipt.messaging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmailDeliveryMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private EmailDeliveryMetrics emailDeliveryMetrics;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        emailDeliveryMetrics = new EmailDeliveryMetrics(meterRegistry);
+    }
+
+    @Test
+    public void testCoalescedSendsCountTheCallsSaved() {
+        emailDeliveryMetrics.sendFinished(EmailDeliveryMetrics.OUTCOME_SENT, 3);
+        emailDeliveryMetrics.sendFinished(EmailDeliveryMetrics.OUTCOME_SENT, 1);
+
+        assertEquals(2, meterRegistry.get("email.sends").tag("outcome", "sent").counter().count());
+        assertEquals(4, meterRegistry.get("email.sends.emails").counter().count());
+        assertEquals(2, meterRegistry.get("email.sends.saved").counter().count());
+    }
+
+    @Test
+    public void testFailedSendsDeliverNothing() {
+        emailDeliveryMetrics.sendFinished(EmailDeliveryMetrics.OUTCOME_RETRIED, 2);
+        emailDeliveryMetrics.sendFinished(EmailDeliveryMetrics.OUTCOME_FAILED, 2);
+
+        assertEquals(1, meterRegistry.get("email.sends").tag("outcome", "retried").counter().count());
+        assertEquals(1, meterRegistry.get("email.sends").tag("outcome", "failed").counter().count());
+        assertEquals(0, meterRegistry.get("email.sends.emails").counter().count());
+        assertEquals(0, meterRegistry.get("email.sends.saved").counter().count());
+    }
+}
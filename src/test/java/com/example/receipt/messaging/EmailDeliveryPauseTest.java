@@ -0,0 +1,73 @@
+package com.example.receipt.messaging;
+
+import com.example.receipt.config.RabbitMQConfig;
+import com.example.receipt.service.EmailCircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EmailDeliveryPauseTest {
+
+    @Spy
+    private EmailCircuitBreaker emailCircuitBreaker = new EmailCircuitBreaker(1, 1500, new SimpleMeterRegistry());
+
+    @Mock
+    private RabbitListenerEndpointRegistry rabbitListenerEndpointRegistry;
+
+    @Mock
+    private MessageListenerContainer container;
+
+    @InjectMocks
+    private EmailDeliveryPause emailDeliveryPause;
+
+    @BeforeEach
+    public void setUp() {
+        when(rabbitListenerEndpointRegistry.getListenerContainer(RabbitMQConfig.EMAIL_DELIVERY_LISTENER_ID)).thenReturn(container);
+        emailDeliveryPause.afterPropertiesSet();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        emailDeliveryPause.destroy();
+    }
+
+    @Test
+    public void testOpeningTheCircuitPausesDeliveryUntilItsTimeIsUp() {
+        long start = System.nanoTime();
+        emailCircuitBreaker.recordFailure();
+
+        verify(container, timeout(1000)).stop();
+        assertTrue(emailDeliveryPause.isPaused());
+
+        verify(container, timeout(5000)).start();
+        long pausedMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(pausedMs >= 1400, "resumed after " + pausedMs + " ms");
+        assertFalse(emailDeliveryPause.isPaused());
+        InOrder inOrder = inOrder(container);
+        inOrder.verify(container).stop();
+        inOrder.verify(container).start();
+    }
+
+    @Test
+    public void testRepeatedPausesStopDeliveryOnce() {
+        emailCircuitBreaker.recordFailure();
+        emailDeliveryPause.pause();
+        emailDeliveryPause.pause();
+
+        verify(container, timeout(1000)).stop();
+        verify(container, after(200).times(1)).stop();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.receipt.messaging;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal stand-in for a RabbitMQ broker used by the retry tests.
+ *
+ * Understands direct routing on exchange + routing key, queue TTL (x-message-ttl), per-message
+ * expiration and dead-lettering (x-dead-letter-exchange / x-dead-letter-routing-key). Time is a
+ * virtual clock, and like RabbitMQ only the message at the head of a queue is expired.
+ */
+class InMemoryRabbitBroker {
+
+    record Envelope(Object payload, MessageProperties properties, long enqueuedAt) {
+    }
+
+    private final Map<String, Queue> queues = new HashMap<>();
+    private final Map<String, Deque<Envelope>> messages = new HashMap<>();
+    private final Map<String, List<Binding>> bindingsByExchange = new HashMap<>();
+    private long now;
+
+    void declare(Declarables declarables) {
+        declarables.getDeclarables().forEach(this::declare);
+    }
+
+    void declare(Declarable... declarables) {
+        for (Declarable declarable : declarables) {
+            if (declarable instanceof Queue queue) {
+                queues.put(queue.getName(), queue);
+                messages.putIfAbsent(queue.getName(), new ArrayDeque<>());
+            } else if (declarable instanceof Binding binding) {
+                bindingsByExchange.computeIfAbsent(binding.getExchange(), k -> new ArrayList<>()).add(binding);
+            }
+        }
+    }
+
+    void publish(String exchange, String routingKey, Object payload, MessageProperties properties) {
+        boolean routed = false;
+        for (Binding binding : bindingsByExchange.getOrDefault(exchange, List.of())) {
+            if (binding.getRoutingKey().equals(routingKey)) {
+                messages.get(binding.getDestination()).addLast(new Envelope(payload, properties, now));
+                routed = true;
+            }
+        }
+        if (!routed) {
+            throw new IllegalStateException("Unroutable message: " + exchange + " / " + routingKey);
+        }
+    }
+
+    long now() {
+        return now;
+    }
+
+    /**
+     * Takes the next message from a queue without a TTL, or null if it is empty
+     */
+    Envelope poll(String queueName) {
+        return messages.get(queueName).pollFirst();
+    }
+
+    int depth(String queueName) {
+        return messages.get(queueName).size();
+    }
+
+    /**
+     * Advances the clock to the next head-of-queue expiry and dead-letters that message.
+     * Returns false when nothing is waiting to expire.
+     */
+    boolean expireNext() {
+        String nextQueue = null;
+        long nextExpiry = Long.MAX_VALUE;
+        for (Map.Entry<String, Deque<Envelope>> entry : messages.entrySet()) {
+            Envelope head = entry.getValue().peekFirst();
+            Long ttl = head != null ? ttlOf(queues.get(entry.getKey()), head) : null;
+            if (ttl != null && head.enqueuedAt() + ttl < nextExpiry) {
+                nextExpiry = head.enqueuedAt() + ttl;
+                nextQueue = entry.getKey();
+            }
+        }
+        if (nextQueue == null) {
+            return false;
+        }
+
+        now = Math.max(now, nextExpiry);
+        Queue queue = queues.get(nextQueue);
+        Envelope expired = messages.get(nextQueue).pollFirst();
+        expired.properties().setExpiration(null);
+        publish((String) queue.getArguments().get("x-dead-letter-exchange"),
+                (String) queue.getArguments().get("x-dead-letter-routing-key"),
+                expired.payload(), expired.properties());
+        return true;
+    }
+
+    private Long ttlOf(Queue queue, Envelope envelope) {
+        Object queueTtl = queue.getArguments().get("x-message-ttl");
+        String messageTtl = envelope.properties().getExpiration();
+        Long ttl = queueTtl != null ? ((Number) queueTtl).longValue() : null;
+        if (messageTtl != null) {
+            ttl = ttl != null ? Math.min(ttl, Long.parseLong(messageTtl)) : Long.parseLong(messageTtl);
+        }
+        return ttl;
+    }
+}
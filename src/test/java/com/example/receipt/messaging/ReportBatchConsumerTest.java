@@ -0,0 +1,241 @@
+package com.example.receipt.messaging;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.receipt.cache.ReportArtifactCache;
+import com.example.receipt.cache.ReportArtifactStore;
+import com.example.receipt.dto.ReportBatchRequest;
+import com.example.receipt.entity.Property;
+import com.example.receipt.entity.PropertyReceipt;
+import com.example.receipt.entity.Receipt;
+import com.example.receipt.entity.ReceiptSource;
+import com.example.receipt.entity.ReportBatch;
+import com.example.receipt.factory.ReportGeneratorFactory;
+import com.example.receipt.repository.PropertyRepository;
+import com.example.receipt.repository.ReceiptRepository;
+import com.example.receipt.repository.ReceiptSourceRepository;
+import com.example.receipt.service.CsvReportGeneratorService;
+import com.example.receipt.service.EmailAttachment;
+import com.example.receipt.service.EmailOutboxService;
+import com.example.receipt.service.PdfGeneratorService;
+import com.example.receipt.service.ReportBatchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Not transactional: the batch reads and commits progress in short transactions of its own
+@DataJpaTest(properties = "app.reports.batch.bundle-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ReportBatchConsumer.class, ReportBatchService.class, ReportGeneratorFactory.class,
+        PdfGeneratorService.class, CsvReportGeneratorService.class, ReportBatchConsumerTest.Config.class})
+public class ReportBatchConsumerTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        ReportArtifactCache reportArtifactCache() {
+            return new ReportArtifactCache(mock(ReportArtifactStore.class), new SimpleMeterRegistry(), false);
+        }
+
+        @Bean
+        ReportGenerationExecutor reportGenerationExecutor() {
+            return new ReportGenerationExecutor(2, 2);
+        }
+    }
+
+    @Autowired
+    private ReportBatchConsumer reportBatchConsumer;
+
+    @Autowired
+    private ReportBatchService reportBatchService;
+
+    @Autowired
+    private PropertyRepository propertyRepository;
+
+    @Autowired
+    private ReceiptRepository receiptRepository;
+
+    @Autowired
+    private ReceiptSourceRepository receiptSourceRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private EmailOutboxService emailOutboxService;
+
+    // Attachment names of each email queued, checked while the files still exist
+    private final List<List<String>> sentBundles = new ArrayList<>();
+
+    private ReceiptSource source;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        source = new ReceiptSource();
+        source.setRetailerName("HOME DEPOT");
+        source.setDescription("Home Depot");
+        source = receiptSourceRepository.save(source);
+
+        property("Alpha House", 2024, 2);
+        property("Beta Court", 2024, 1);
+        property("Gamma Plaza", 2024, 1);
+        property("Delta Tower", 2024, 3);
+        property("Epsilon Lofts", 2024, 1);
+        property("Zeta Yard", 2023, 2);
+
+        doAnswer(invocation -> {
+            List<EmailAttachment> attachments = invocation.getArgument(4);
+            List<String> names = new ArrayList<>();
+            for (EmailAttachment attachment : attachments) {
+                assertTrue(Files.size(attachment.getPath()) > 0);
+                names.add(attachment.getFileName());
+            }
+            sentBundles.add(names);
+            return null;
+        }).when(emailOutboxService).enqueueBatched(isNull(), anyString(), anyString(), anyString(), anyList());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM property_receipts");
+        jdbcTemplate.update("DELETE FROM receipts");
+        jdbcTemplate.update("DELETE FROM properties");
+        jdbcTemplate.update("DELETE FROM receipt_sources");
+        jdbcTemplate.update("DELETE FROM report_batches");
+    }
+
+    private void property(String name, int year, int receiptCount) {
+        Property property = new Property();
+        property.setName(name);
+        property.setStreetNumber("1");
+        property.setStreetName("Main St");
+        property.setCity("Boston");
+        property.setState("MA");
+        property.setZipCode("02101");
+        property.setPropertyReceipts(new ArrayList<>());
+
+        for (int i = 1; i <= receiptCount; i++) {
+            Receipt receipt = new Receipt();
+            receipt.setDescription(name + " receipt " + i);
+            receipt.setAmount(100.0 * i);
+            receipt.setReceiptDate(year + "-01-15 10:30:00");
+            receipt.setYear(year);
+            receipt.setReceiptSource(source);
+            receipt = receiptRepository.save(receipt);
+
+            PropertyReceipt propertyReceipt = new PropertyReceipt();
+            propertyReceipt.setProperty(property);
+            propertyReceipt.setReceipt(receipt);
+            propertyReceipt.setPortion(100.0 * i);
+            propertyReceipt.setPercentage(100);
+            property.getPropertyReceipts().add(propertyReceipt);
+        }
+        propertyRepository.save(property);
+    }
+
+    private ReportBatchRequest queue(String propertyFilter, List<String> reportTypes) {
+        ReportBatchRequest request = new ReportBatchRequest(null, 2024, propertyFilter, reportTypes, "admin@example.com", 1L);
+        reportBatchService.createBatch(request);
+        return request;
+    }
+
+    private ReportBatch batch(ReportBatchRequest request) {
+        return reportBatchService.getBatch(request.getReportBatchId()).orElseThrow();
+    }
+
+    @Test
+    public void testBatchEmailsEveryPropertyOfTheYearInOrderedBundles() throws Exception {
+        ReportBatchRequest request = queue(null, List.of("pdf", "csv"));
+
+        reportBatchConsumer.processBatchRequest(request);
+
+        // Bundles of two properties, each with both formats, in property order; Zeta Yard has no 2024 receipts
+        assertEquals(List.of(
+                List.of("Alpha_House_Report_2024.pdf", "Alpha_House_Report_2024.csv",
+                        "Beta_Court_Report_2024.pdf", "Beta_Court_Report_2024.csv"),
+                List.of("Gamma_Plaza_Report_2024.pdf", "Gamma_Plaza_Report_2024.csv",
+                        "Delta_Tower_Report_2024.pdf", "Delta_Tower_Report_2024.csv"),
+                List.of("Epsilon_Lofts_Report_2024.pdf", "Epsilon_Lofts_Report_2024.csv")), sentBundles);
+        verify(emailOutboxService, times(3)).enqueueBatched(isNull(), eq("admin@example.com"), contains("2024"), anyString(), anyList());
+
+        ReportBatch batch = batch(request);
+        assertEquals(ReportBatch.STATUS_COMPLETED, batch.getStatus());
+        assertEquals(5, batch.getTotalProperties());
+        assertEquals(5, batch.getCompletedProperties());
+        assertEquals(0, batch.getFailedProperties());
+        assertEquals(3, batch.getBundlesSent());
+        assertNull(batch.getLastError());
+        assertNotNull(batch.getWallTimeMillis());
+    }
+
+    @Test
+    public void testPropertyFilterNarrowsTheBatch() throws Exception {
+        ReportBatchRequest request = queue("TA", null);
+
+        reportBatchConsumer.processBatchRequest(request);
+
+        assertEquals(List.of(List.of("Beta_Court_Report_2024.pdf", "Delta_Tower_Report_2024.pdf")), sentBundles);
+        ReportBatch batch = batch(request);
+        assertEquals(2, batch.getTotalProperties());
+        assertEquals(2, batch.getCompletedProperties());
+        assertEquals(1, batch.getBundlesSent());
+    }
+
+    @Test
+    public void testBundleThatCannotBeQueuedIsCountedAndTheBatchCarriesOn() throws Exception {
+        List<Path> attached = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<EmailAttachment> attachments = invocation.getArgument(4);
+            attachments.forEach(attachment -> attached.add(attachment.getPath()));
+            throw new IOException("Database unavailable");
+        }).doAnswer(invocation -> {
+            List<EmailAttachment> attachments = invocation.getArgument(4);
+            attachments.forEach(attachment -> attached.add(attachment.getPath()));
+            return null;
+        }).when(emailOutboxService).enqueueBatched(isNull(), anyString(), anyString(), anyString(), anyList());
+        ReportBatchRequest request = queue(null, List.of("csv"));
+
+        reportBatchConsumer.processBatchRequest(request);
+
+        ReportBatch batch = batch(request);
+        assertEquals(ReportBatch.STATUS_COMPLETED, batch.getStatus());
+        assertEquals(3, batch.getCompletedProperties());
+        assertEquals(2, batch.getFailedProperties());
+        assertEquals(2, batch.getBundlesSent());
+        assertTrue(batch.getLastError().contains("Database unavailable"));
+        // Every report file is removed, queued or not
+        assertEquals(5, attached.size());
+        for (Path path : attached) {
+            assertFalse(Files.exists(path));
+        }
+    }
+
+    @Test
+    public void testRedeliveredFinishedBatchIsNotSentAgain() throws Exception {
+        ReportBatchRequest request = queue(null, null);
+        reportBatchService.markCompleted(request.getReportBatchId(), 5, 0, 3, null);
+
+        reportBatchConsumer.processBatchRequest(request);
+
+        verify(emailOutboxService, never()).enqueueBatched(any(), anyString(), anyString(), anyString(), anyList());
+    }
+}
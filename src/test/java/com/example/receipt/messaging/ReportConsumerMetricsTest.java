@@ -0,0 +1,43 @@
+package com.example.receipt.messaging;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReportConsumerMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReportConsumerMetrics reportConsumerMetrics;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        reportConsumerMetrics = new ReportConsumerMetrics(meterRegistry);
+    }
+
+    @Test
+    public void testInFlightGaugeTracksRunningJobs() {
+        Timer.Sample first = reportConsumerMetrics.jobStarted();
+        Timer.Sample second = reportConsumerMetrics.jobStarted();
+        assertEquals(2.0, meterRegistry.get("report.jobs.in_flight").gauge().value());
+
+        reportConsumerMetrics.jobFinished(first, ReportConsumerMetrics.OUTCOME_SUCCESS);
+        assertEquals(1.0, meterRegistry.get("report.jobs.in_flight").gauge().value());
+
+        reportConsumerMetrics.jobFinished(second, ReportConsumerMetrics.OUTCOME_FAILED);
+        assertEquals(0, reportConsumerMetrics.getInFlight());
+    }
+
+    @Test
+    public void testDurationIsRecordedPerOutcome() {
+        reportConsumerMetrics.jobFinished(reportConsumerMetrics.jobStarted(), ReportConsumerMetrics.OUTCOME_SUCCESS);
+        reportConsumerMetrics.jobFinished(reportConsumerMetrics.jobStarted(), ReportConsumerMetrics.OUTCOME_SUCCESS);
+        reportConsumerMetrics.jobFinished(reportConsumerMetrics.jobStarted(), ReportConsumerMetrics.OUTCOME_RETRIED);
+
+        assertEquals(2, meterRegistry.get("report.jobs.duration").tag("outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("report.jobs.duration").tag("outcome", "retried").timer().count());
+    }
+}
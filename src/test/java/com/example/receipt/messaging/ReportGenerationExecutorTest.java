@@ -0,0 +1,85 @@
+package com.example.receipt.messaging;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ReportGenerationExecutorTest {
+
+    private final ReportGenerationExecutor executor = new ReportGenerationExecutor(2, 1);
+
+    @AfterEach
+    public void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    public void testTasksRunInParallelAndResultsKeepTaskOrder() throws Exception {
+        // Each task waits for the other, so this only completes if they run at the same time
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Callable<String> first = () -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            Thread.sleep(50);
+            return "pdf";
+        };
+        Callable<String> second = () -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            return "csv";
+        };
+
+        assertEquals(List.of("pdf", "csv"), executor.invokeAll(List.of(first, second), result -> fail("nothing to discard")));
+    }
+
+    @Test
+    public void testSingleTaskRunsOnCallingThread() throws Exception {
+        Thread caller = Thread.currentThread();
+
+        List<Thread> threads = executor.invokeAll(List.of(Thread::currentThread), result -> { });
+
+        assertSame(caller, threads.get(0));
+    }
+
+    @Test
+    public void testFailureWaitsForEveryTaskAndDiscardsTheSuccessfulResults() {
+        List<String> discarded = new ArrayList<>();
+        Callable<String> slow = () -> {
+            Thread.sleep(100);
+            return "pdf";
+        };
+        Callable<String> failing = () -> {
+            throw new IllegalStateException("CSV generation failed");
+        };
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> executor.invokeAll(List.of(slow, failing), discarded::add));
+
+        assertEquals("CSV generation failed", ex.getMessage());
+        assertEquals(List.of("pdf"), discarded);
+    }
+
+    @Test
+    public void testSaturatedPoolRunsOverflowOnCallingThread() throws Exception {
+        // Two threads and a queue of one: the fourth task runs on the caller rather than being rejected
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            tasks.add(() -> {
+                Thread.sleep(50);
+                return Thread.currentThread().getId();
+            });
+        }
+
+        List<Long> threadIds = executor.invokeAll(tasks, result -> { });
+
+        assertEquals(4, threadIds.size());
+        assertTrue(threadIds.contains(Thread.currentThread().getId()));
+    }
+}
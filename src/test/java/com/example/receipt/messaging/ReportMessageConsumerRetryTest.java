@@ -0,0 +1,158 @@
+package com.example.receipt.messaging;
+
+import com.example.receipt.config.RabbitMQConfig;
+import com.example.receipt.dto.YearlyReportRequest;
+import com.example.receipt.factory.ReportGeneratorFactory;
+import com.example.receipt.repository.PropertyRepository;
+import com.example.receipt.service.EmailOutboxService;
+import com.example.receipt.service.FailureReportService;
+import com.example.receipt.service.ReportJobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Drives failing report requests through the declared retry topology on an in-memory broker
+ * and checks when each retry arrives back on the report queue.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ReportMessageConsumerRetryTest {
+
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final double JITTER = 0.2;
+
+    @Mock
+    private PropertyRepository propertyRepository;
+
+    @Mock
+    private ReportGeneratorFactory reportGeneratorFactory;
+
+    @Mock
+    private EmailOutboxService emailOutboxService;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private FailureReportService failureReportService;
+
+    @Mock
+    private ReportConsumerMetrics reportConsumerMetrics;
+
+    @Mock
+    private ReportJobService reportJobService;
+
+    @Spy
+    private ReportRetryPolicy reportRetryPolicy = new ReportRetryPolicy(4, RETRY_DELAY_MS, 2.0, 300000, JITTER);
+
+    @InjectMocks
+    private ReportMessageConsumer reportMessageConsumer;
+
+    private InMemoryRabbitBroker broker;
+
+    @BeforeEach
+    public void setUp() {
+        RabbitMQConfig config = new RabbitMQConfig();
+        broker = new InMemoryRabbitBroker();
+
+        Queue reportQueue = config.reportQueue();
+        TopicExchange reportExchange = config.reportExchange();
+        Queue dlQueue = config.reportDLQueue();
+        TopicExchange dlExchange = config.reportDLExchange();
+        DirectExchange retryExchange = config.reportRetryExchange();
+        broker.declare(reportQueue, config.reportBinding(reportQueue, reportExchange),
+                dlQueue, config.reportDLBinding(dlQueue, dlExchange));
+        broker.declare(config.reportRetryQueues(retryExchange, reportRetryPolicy));
+
+        // Route everything the consumer publishes into the in-memory broker
+        doAnswer(invocation -> {
+            MessageProperties properties = new MessageProperties();
+            MessagePostProcessor postProcessor = invocation.getArgument(3);
+            postProcessor.postProcessMessage(new Message(new byte[0], properties));
+            broker.publish(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2), properties);
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class), any(MessagePostProcessor.class));
+
+        when(propertyRepository.findByNormalizedName(anyString()))
+                .thenThrow(new RuntimeException("Database unavailable"));
+    }
+
+    /**
+     * Delivers report queue messages to the consumer and lets retry queues expire until the broker is idle.
+     * Returns the virtual time at which each attempt was delivered.
+     */
+    private List<Long> runUntilIdle(YearlyReportRequest request) {
+        broker.publish(RabbitMQConfig.REPORT_EXCHANGE, RabbitMQConfig.REPORT_ROUTING_KEY, request, new MessageProperties());
+        List<Long> deliveries = new ArrayList<>();
+        do {
+            InMemoryRabbitBroker.Envelope delivery;
+            while ((delivery = broker.poll(RabbitMQConfig.REPORT_QUEUE)) != null) {
+                deliveries.add(broker.now());
+                Integer retryCount = delivery.properties().getHeader("x-retry-count");
+                reportMessageConsumer.processReportRequest((YearlyReportRequest) delivery.payload(),
+                        new Message(new byte[0], delivery.properties()), retryCount);
+            }
+        } while (broker.expireNext());
+        return deliveries;
+    }
+
+    @Test
+    public void testRetriesAreDelayedWithExponentialBackoff() {
+        List<Long> deliveries = runUntilIdle(new YearlyReportRequest("Main Building", 2024, "user@example.com", 1L));
+
+        assertEquals(4, deliveries.size());
+        long previousGap = 0;
+        for (int retry = 1; retry < deliveries.size(); retry++) {
+            long gap = deliveries.get(retry) - deliveries.get(retry - 1);
+            long base = RETRY_DELAY_MS << (retry - 1);
+            assertTrue(gap >= base && gap <= base + (long) (base * JITTER),
+                    "retry " + retry + " arrived after " + gap + " ms");
+            assertTrue(gap > previousGap);
+            previousGap = gap;
+        }
+        verify(reportConsumerMetrics, times(3)).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_RETRIED));
+    }
+
+    @Test
+    public void testExhaustedRetriesEndInDeadLetterQueue() {
+        runUntilIdle(new YearlyReportRequest("Main Building", 2024, "user@example.com", 1L));
+
+        assertEquals(1, broker.depth(RabbitMQConfig.REPORT_DLQ_QUEUE));
+        assertEquals(0, broker.depth(RabbitMQConfig.REPORT_QUEUE));
+        for (long ttl : reportRetryPolicy.waitQueueTtls()) {
+            assertEquals(0, broker.depth(RabbitMQConfig.retryQueueName(ttl)));
+        }
+        verify(failureReportService).createFailureReport(eq("Main Building"), eq(2024), anyString(), any());
+        verify(reportConsumerMetrics, times(1)).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_FAILED));
+    }
+
+    @Test
+    public void testConcurrentRetriesDoNotBlockEachOther() {
+        // Two requests failing at the same time share each wait queue; both must come back within their window
+        broker.publish(RabbitMQConfig.REPORT_EXCHANGE, RabbitMQConfig.REPORT_ROUTING_KEY,
+                new YearlyReportRequest("Annex", 2024, "user@example.com", 2L), new MessageProperties());
+        List<Long> deliveries = runUntilIdle(new YearlyReportRequest("Main Building", 2024, "user@example.com", 1L));
+
+        assertEquals(8, deliveries.size());
+        assertTrue(deliveries.get(deliveries.size() - 1) <= 7 * RETRY_DELAY_MS + (long) (7 * RETRY_DELAY_MS * JITTER));
+        assertEquals(2, broker.depth(RabbitMQConfig.REPORT_DLQ_QUEUE));
+    }
+}
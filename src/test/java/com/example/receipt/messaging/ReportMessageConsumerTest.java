@@ -1,26 +1,39 @@
 package com.example.receipt.messaging;
 
+import com.example.receipt.cache.ReportArtifactCache;
+import com.example.receipt.cache.ReportArtifactStore;
 import com.example.receipt.dto.YearlyReportRequest;
 import com.example.receipt.entity.Property;
 import com.example.receipt.entity.PropertyReceipt;
 import com.example.receipt.entity.Receipt;
+import com.example.receipt.entity.ReportJob;
 import com.example.receipt.enums.ReportType;
 import com.example.receipt.factory.ReportGeneratorFactory;
 import com.example.receipt.repository.PropertyRepository;
-import com.example.receipt.service.EmailService;
+import com.example.receipt.service.EmailAttachment;
+import com.example.receipt.service.EmailOutboxService;
 import com.example.receipt.service.ReportGenerator;
+import com.example.receipt.service.ReportJobService;
+import com.example.receipt.service.ReportOutput;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -39,11 +52,27 @@ public class ReportMessageConsumerTest {
     private ReportGenerator reportGenerator;
 
     @Mock
-    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
 
     @Mock
     private RabbitTemplate rabbitTemplate;
 
+    @Mock
+    private ReportConsumerMetrics reportConsumerMetrics;
+
+    @Mock
+    private ReportRetryPolicy reportRetryPolicy;
+
+    @Mock
+    private ReportJobService reportJobService;
+
+    // Disabled, so reports are always generated
+    @Spy
+    private ReportGenerationExecutor reportGenerationExecutor = new ReportGenerationExecutor(2, 4);
+
+    @Spy
+    private ReportArtifactCache reportArtifactCache = new ReportArtifactCache(mock(ReportArtifactStore.class), new SimpleMeterRegistry(), false);
+
     @InjectMocks
     private ReportMessageConsumer reportMessageConsumer;
 
@@ -93,42 +122,46 @@ public class ReportMessageConsumerTest {
         testMessage = mock(Message.class);
         MessageProperties msgProps = new MessageProperties();
         msgProps.setHeader("x-retry-count", 0);
-        when(testMessage.getMessageProperties()).thenReturn(msgProps);
+        lenient().when(testMessage.getMessageProperties()).thenReturn(msgProps);
+        lenient().when(propertyRepository.findByNormalizedName("main building")).thenReturn(List.of(testProperty));
     }
 
     @Test
     public void testProcessReportMessageSuccess() throws Exception {
         // Arrange
-        byte[] reportContent = "REPORT_CONTENT".getBytes();
-        when(propertyRepository.findAll()).thenReturn(List.of(testProperty));
+        ReportOutput reportOutput = new ReportOutput(14, "checksum");
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024)).thenReturn(List.of(testProperty));
         when(reportGeneratorFactory.getGenerator(ReportType.PDF)).thenReturn(reportGenerator);
-        when(reportGenerator.generateReport(eq(testProperty), eq(2024), any())).thenReturn(reportContent);
+        when(reportGenerator.writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class))).thenReturn(reportOutput);
         when(reportGenerator.getFileExtension()).thenReturn("pdf");
-        doNothing().when(emailService).sendReportEmail(anyString(), anyString(), anyString(), any(byte[].class), anyString());
 
         // Act
         reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
 
         // Assert
-        verify(propertyRepository, times(1)).findAll();
+        verify(propertyRepository, times(1)).findByNormalizedNameWithReceiptsForYear(anyString(), eq(2024));
+        verify(propertyRepository, never()).findAll();
         verify(reportGeneratorFactory, times(1)).getGenerator(ReportType.PDF);
-        verify(reportGenerator, times(1)).generateReport(eq(testProperty), eq(2024), any());
-        verify(emailService, times(1)).sendReportEmail(anyString(), anyString(), anyString(), any(byte[].class), anyString());
+        verify(reportGenerator, times(1)).writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class));
+        verify(emailOutboxService, times(1)).enqueue(any(), anyString(), anyString(), anyString(), anyList());
+        verify(reportConsumerMetrics).jobStarted();
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_SUCCESS));
     }
 
     @Test
     public void testProcessReportMessagePropertyNotFound() throws Exception {
         // Arrange
-        when(propertyRepository.findAll()).thenReturn(List.of());
-        doNothing().when(emailService).sendReportEmail(anyString(), anyString(), anyString());
+        when(propertyRepository.findByNormalizedName("main building")).thenReturn(List.of());
 
         // Act
         reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
 
         // Assert
-        verify(propertyRepository, times(1)).findAll();
+        verify(propertyRepository, never()).findByNormalizedNameWithReceiptsForYear(anyString(), anyInt());
+        verify(propertyRepository, never()).findAll();
         verify(reportGeneratorFactory, times(0)).getGenerator(any(ReportType.class));
-        verify(emailService, times(1)).sendReportEmail(anyString(), anyString(), anyString());
+        verify(emailOutboxService, times(1)).enqueue(isNull(), anyString(), anyString(), anyString(), eq(List.of()));
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_REJECTED));
     }
 
     @Test
@@ -139,55 +172,149 @@ public class ReportMessageConsumerTest {
         propertyWithNoReceipts.setName("Main Building");
         propertyWithNoReceipts.setPropertyReceipts(new ArrayList<>());
 
-        when(propertyRepository.findAll()).thenReturn(List.of(propertyWithNoReceipts));
-        doNothing().when(emailService).sendReportEmail(any(), any(), any());
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024)).thenReturn(List.of());
+        when(propertyRepository.findByNormalizedName("main building")).thenReturn(List.of(propertyWithNoReceipts));
 
         // Act
         reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
 
         // Assert
-        verify(propertyRepository, times(1)).findAll();
+        verify(propertyRepository, times(1)).findByNormalizedNameWithReceiptsForYear(anyString(), eq(2024));
+        verify(propertyRepository, never()).findAll();
         verify(reportGeneratorFactory, times(0)).getGenerator(any(ReportType.class));
-        verify(emailService, times(1)).sendReportEmail(anyString(), anyString(), anyString());
+        verify(emailOutboxService, times(1)).enqueue(isNull(), anyString(), anyString(), anyString(), eq(List.of()));
+    }
+
+    @Test
+    public void testProcessReportMessageAttachesStreamedReportFile() throws Exception {
+        // Arrange
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024)).thenReturn(List.of(testProperty));
+        when(reportGeneratorFactory.getGenerator(ReportType.PDF)).thenReturn(reportGenerator);
+        when(reportGenerator.getFileExtension()).thenReturn("pdf");
+        when(reportGenerator.getMimeType()).thenReturn("application/pdf");
+        when(reportGenerator.writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class))).thenAnswer(invocation -> {
+            invocation.getArgument(3, OutputStream.class).write("REPORT_CONTENT".getBytes());
+            return new ReportOutput(14, "checksum");
+        });
+        List<Path> attachedFiles = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<EmailAttachment> attachments = invocation.getArgument(4);
+            assertEquals(1, attachments.size());
+            assertEquals("Main_Building_Report_2024.pdf", attachments.get(0).getFileName());
+            assertEquals("application/pdf", attachments.get(0).getMimeType());
+            assertEquals("REPORT_CONTENT", Files.readString(attachments.get(0).getPath()));
+            attachedFiles.add(attachments.get(0).getPath());
+            return null;
+        }).when(emailOutboxService).enqueue(any(), anyString(), anyString(), anyString(), anyList());
+
+        // Act
+        reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
+
+        // Assert - the report was queued from its file, which is removed once queued
+        assertEquals(1, attachedFiles.size());
+        assertFalse(Files.exists(attachedFiles.get(0)));
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_SUCCESS));
+    }
+
+    @Test
+    public void testProcessReportMessageRendersEveryFormatIntoOneEmail() throws Exception {
+        // Arrange
+        testRequest.setReportTypes(List.of("csv", "pdf"));
+        ReportGenerator csvGenerator = mock(ReportGenerator.class);
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024)).thenReturn(List.of(testProperty));
+        when(reportGeneratorFactory.getGenerator(ReportType.PDF)).thenReturn(reportGenerator);
+        when(reportGeneratorFactory.getGenerator(ReportType.CSV)).thenReturn(csvGenerator);
+        when(reportGenerator.getFileExtension()).thenReturn("pdf");
+        when(reportGenerator.getMimeType()).thenReturn("application/pdf");
+        when(csvGenerator.getFileExtension()).thenReturn("csv");
+        when(csvGenerator.getMimeType()).thenReturn("text/csv");
+        when(reportGenerator.writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class))).thenReturn(new ReportOutput(3, "a"));
+        when(csvGenerator.writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class))).thenReturn(new ReportOutput(3, "b"));
+        List<EmailAttachment> sent = new ArrayList<>();
+        doAnswer(invocation -> {
+            sent.addAll(invocation.getArgument(4));
+            return null;
+        }).when(emailOutboxService).enqueue(any(), anyString(), contains("pdf, csv"), anyString(), anyList());
+
+        // Act
+        reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
+
+        // Assert - one data load, both reports in one email, in a fixed order
+        verify(propertyRepository, times(1)).findByNormalizedNameWithReceiptsForYear(anyString(), eq(2024));
+        verify(emailOutboxService, times(1)).enqueue(any(), anyString(), anyString(), anyString(), anyList());
+        assertEquals(List.of("Main_Building_Report_2024.pdf", "Main_Building_Report_2024.csv"),
+                sent.stream().map(EmailAttachment::getFileName).toList());
+        assertTrue(sent.stream().noneMatch(attachment -> Files.exists(attachment.getPath())));
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_SUCCESS));
+    }
+
+    @Test
+    public void testProcessReportMessageFailedFormatDiscardsTheOthers() throws Exception {
+        // Arrange
+        testRequest.setReportTypes(List.of("pdf", "csv"));
+        ReportGenerator csvGenerator = mock(ReportGenerator.class);
+        List<Path> rendered = new ArrayList<>();
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024)).thenReturn(List.of(testProperty));
+        when(reportGeneratorFactory.getGenerator(ReportType.PDF)).thenReturn(reportGenerator);
+        when(reportGeneratorFactory.getGenerator(ReportType.CSV)).thenReturn(csvGenerator);
+        when(reportGenerator.getFileExtension()).thenReturn("pdf");
+        when(csvGenerator.getFileExtension()).thenReturn("csv");
+        doAnswer(invocation -> {
+            rendered.add(invocation.getArgument(5));
+            return invocation.callRealMethod();
+        }).when(reportArtifactCache).writeReport(any(), any(), any(), eq("pdf"), any(), any());
+        when(reportGenerator.writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class))).thenReturn(new ReportOutput(3, "a"));
+        when(csvGenerator.writeReport(any(), any(), any(), any(OutputStream.class))).thenThrow(new RuntimeException("CSV generation failed"));
+
+        // Act
+        reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
+
+        // Assert - no report sent, the PDF that did render is cleaned up, and the request fails as a whole
+        verify(emailOutboxService, never()).enqueue(any(), anyString(), startsWith("Yearly Receipt Report"), anyString(), anyList());
+        assertEquals(1, rendered.size());
+        assertFalse(Files.exists(rendered.get(0)));
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_FAILED));
     }
 
     @Test
     public void testProcessReportMessagePdfGenerationError() throws Exception {
         // Arrange
-        when(propertyRepository.findAll()).thenReturn(List.of(testProperty));
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024)).thenReturn(List.of(testProperty));
         when(reportGeneratorFactory.getGenerator(ReportType.PDF)).thenReturn(reportGenerator);
-        when(reportGenerator.generateReport(any(), any(), any()))
+        when(reportGenerator.writeReport(any(), any(), any(), any(OutputStream.class)))
                 .thenThrow(new RuntimeException("Report generation failed"));
-        doNothing().when(emailService).sendReportEmail(anyString(), anyString(), anyString());
 
         // Act
         reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
 
         // Assert
-        verify(propertyRepository, times(1)).findAll();
+        verify(propertyRepository, times(1)).findByNormalizedNameWithReceiptsForYear(anyString(), eq(2024));
+        verify(propertyRepository, never()).findAll();
         verify(reportGeneratorFactory, times(1)).getGenerator(ReportType.PDF);
-        verify(reportGenerator, times(1)).generateReport(any(), any(), any());
+        verify(reportGenerator, times(1)).writeReport(any(), any(), any(), any(OutputStream.class));
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_FAILED));
     }
 
     @Test
-    public void testProcessReportMessageEmailSendingError() throws Exception {
+    public void testProcessReportMessageEmailQueueingError() throws Exception {
         // Arrange
-        byte[] reportContent = "REPORT_CONTENT".getBytes();
-        when(propertyRepository.findAll()).thenReturn(List.of(testProperty));
+        ReportOutput reportOutput = new ReportOutput(14, "checksum");
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024)).thenReturn(List.of(testProperty));
         when(reportGeneratorFactory.getGenerator(ReportType.PDF)).thenReturn(reportGenerator);
-        when(reportGenerator.generateReport(any(), any(), any())).thenReturn(reportContent);
+        when(reportGenerator.writeReport(any(), any(), any(), any(OutputStream.class))).thenReturn(reportOutput);
         when(reportGenerator.getFileExtension()).thenReturn("pdf");
-        doThrow(new RuntimeException("Email sending failed"))
-                .when(emailService).sendReportEmail(anyString(), anyString(), anyString(), any(byte[].class), anyString());
+        doThrow(new RuntimeException("Email queueing failed"))
+                .when(emailOutboxService).enqueue(any(), anyString(), anyString(), anyString(), anyList());
 
         // Act
         reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
 
         // Assert
-        verify(propertyRepository, times(1)).findAll();
+        verify(propertyRepository, times(1)).findByNormalizedNameWithReceiptsForYear(anyString(), eq(2024));
+        verify(propertyRepository, never()).findAll();
         verify(reportGeneratorFactory, times(1)).getGenerator(ReportType.PDF);
-        verify(reportGenerator, times(1)).generateReport(any(), any(), any());
-        verify(emailService, times(1)).sendReportEmail(anyString(), anyString(), anyString(), any(byte[].class), anyString());
+        verify(reportGenerator, times(1)).writeReport(any(), any(), any(), any(OutputStream.class));
+        verify(emailOutboxService, times(1)).enqueue(any(), anyString(), startsWith("Yearly Receipt Report"), anyString(), anyList());
     }
 
     @Test
@@ -205,21 +332,22 @@ public class ReportMessageConsumerTest {
         anotherProperty.setName("Downtown Office");
         anotherProperty.setPropertyReceipts(testReceipts);
 
-        byte[] reportContent = "REPORT_CONTENT".getBytes();
-        when(propertyRepository.findAll()).thenReturn(List.of(anotherProperty));
+        ReportOutput reportOutput = new ReportOutput(14, "checksum");
+        when(propertyRepository.findByNormalizedName("downtown office")).thenReturn(List.of(anotherProperty));
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("downtown office", 2024)).thenReturn(List.of(anotherProperty));
         when(reportGeneratorFactory.getGenerator(ReportType.PDF)).thenReturn(reportGenerator);
-        when(reportGenerator.generateReport(any(Property.class), eq(2024), any())).thenReturn(reportContent);
+        when(reportGenerator.writeReport(any(Property.class), eq(2024), any(), any(OutputStream.class))).thenReturn(reportOutput);
         when(reportGenerator.getFileExtension()).thenReturn("pdf");
-        doNothing().when(emailService).sendReportEmail(any(), any(), any(), any(byte[].class), any());
 
         // Act
         reportMessageConsumer.processReportRequest(anotherRequest, testMessage, 0);
 
         // Assert
-        verify(propertyRepository, times(1)).findAll();
+        verify(propertyRepository, times(1)).findByNormalizedNameWithReceiptsForYear(anyString(), eq(2024));
+        verify(propertyRepository, never()).findAll();
         verify(reportGeneratorFactory, times(1)).getGenerator(ReportType.PDF);
-        verify(reportGenerator, times(1)).generateReport(any(Property.class), eq(2024), any());
-        verify(emailService, times(1)).sendReportEmail(anyString(), anyString(), anyString(), any(byte[].class), anyString());
+        verify(reportGenerator, times(1)).writeReport(any(Property.class), eq(2024), any(), any(OutputStream.class));
+        verify(emailOutboxService, times(1)).enqueue(any(), anyString(), anyString(), anyString(), anyList());
     }
 
     @Test
@@ -244,34 +372,166 @@ public class ReportMessageConsumerTest {
         }
         testProperty.setPropertyReceipts(manyReceipts);
 
-        byte[] reportContent = "REPORT_CONTENT".getBytes();
-        when(propertyRepository.findAll()).thenReturn(List.of(testProperty));
+        ReportOutput reportOutput = new ReportOutput(14, "checksum");
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024)).thenReturn(List.of(testProperty));
         when(reportGeneratorFactory.getGenerator(ReportType.PDF)).thenReturn(reportGenerator);
-        when(reportGenerator.generateReport(eq(testProperty), eq(2024), any())).thenReturn(reportContent);
+        when(reportGenerator.writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class))).thenReturn(reportOutput);
         when(reportGenerator.getFileExtension()).thenReturn("pdf");
-        doNothing().when(emailService).sendReportEmail(any(), any(), any(), any(byte[].class), any());
 
         // Act
         reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
 
         // Assert
-        verify(propertyRepository, times(1)).findAll();
+        verify(propertyRepository, times(1)).findByNormalizedNameWithReceiptsForYear(anyString(), eq(2024));
+        verify(propertyRepository, never()).findAll();
         verify(reportGeneratorFactory, times(1)).getGenerator(ReportType.PDF);
-        verify(reportGenerator, times(1)).generateReport(eq(testProperty), eq(2024), any());
-        verify(emailService, times(1)).sendReportEmail(anyString(), anyString(), anyString(), any(byte[].class), anyString());
+        verify(reportGenerator, times(1)).writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class));
+        verify(emailOutboxService, times(1)).enqueue(any(), anyString(), anyString(), anyString(), anyList());
     }
 
     @Test
     public void testProcessReportMessageConsumerContinuesOnError() throws Exception {
         // Arrange - Setup consumer to handle exceptions
-        when(propertyRepository.findAll()).thenThrow(new RuntimeException("Database error"));
-        doNothing().when(emailService).sendReportEmail(anyString(), anyString(), anyString());
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear(anyString(), anyInt())).thenThrow(new RuntimeException("Database error"));
 
         // Act - Should not throw exception
         assertDoesNotThrow(() -> reportMessageConsumer.processReportRequest(testRequest, testMessage, 0));
 
         // Assert
-        verify(emailService, times(1)).sendReportEmail(anyString(), anyString(), anyString());
+        verify(emailOutboxService, times(1)).enqueue(isNull(), anyString(), anyString(), anyString(), eq(List.of()));
+    }
+
+    @Test
+    public void testProcessReportMessageTracksJobThroughToDelivering() throws Exception {
+        // Arrange
+        testRequest.setReportJobId("job-1");
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024)).thenReturn(List.of(testProperty));
+        when(reportGeneratorFactory.getGenerator(ReportType.PDF)).thenReturn(reportGenerator);
+        when(reportGenerator.writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class))).thenReturn(new ReportOutput(14, "checksum"));
+        when(reportGenerator.getFileExtension()).thenReturn("pdf");
+
+        // Act
+        reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
+
+        // Assert - generation is done once the email is queued; the delivery consumer marks it sent
+        verify(emailOutboxService).enqueue(eq("job-1"), eq("user@example.com"), anyString(), anyString(), anyList());
+        verify(reportJobService).markRunning("job-1");
+        verify(reportJobService).markDelivering("job-1");
+        verify(reportJobService, never()).markSent(any());
+        verify(reportJobService, never()).markFailed(anyString(), any());
+    }
+
+    @Test
+    public void testProcessReportMessageTracksRejectedJobAsFailed() throws Exception {
+        // Arrange
+        testRequest.setReportJobId("job-1");
+        when(propertyRepository.findByNormalizedName("main building")).thenReturn(List.of());
+
+        // Act
+        reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
+
+        // Assert
+        verify(reportJobService).markFailed("job-1", "Property not found with name: Main Building");
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_REJECTED));
+    }
+
+    @Test
+    public void testExactNamePicksBetweenPropertiesSharingANormalizedName() throws Exception {
+        // Arrange
+        Property shouting = new Property();
+        shouting.setId(3L);
+        shouting.setName("MAIN BUILDING");
+        shouting.setPropertyReceipts(testReceipts);
+        ReportOutput reportOutput = new ReportOutput(14, "checksum");
+        when(propertyRepository.findByNormalizedName("main building")).thenReturn(List.of(shouting, testProperty));
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024))
+                .thenReturn(List.of(shouting, testProperty));
+        when(reportGeneratorFactory.getGenerator(ReportType.PDF)).thenReturn(reportGenerator);
+        when(reportGenerator.writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class))).thenReturn(reportOutput);
+        when(reportGenerator.getFileExtension()).thenReturn("pdf");
+
+        // Act
+        reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
+
+        // Assert
+        verify(reportGenerator).writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class));
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_SUCCESS));
+    }
+
+    @Test
+    public void testAmbiguousPropertyNameIsRejected() throws Exception {
+        // Arrange
+        testRequest.setReportJobId("job-1");
+        testRequest.setPropertyName("main building");
+        Property shouting = new Property();
+        shouting.setId(3L);
+        shouting.setName("MAIN BUILDING");
+        when(propertyRepository.findByNormalizedName("main building")).thenReturn(List.of(testProperty, shouting));
+
+        // Act
+        reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
+
+        // Assert
+        verify(reportGeneratorFactory, never()).getGenerator(any(ReportType.class));
+        verify(reportJobService).markFailed(eq("job-1"), contains("matches several properties"));
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_REJECTED));
+    }
+
+    @Test
+    public void testExactNamedPropertyWithoutReceiptsIsNotServedByItsCaseVariant() throws Exception {
+        // Arrange - only the lower-case variant has receipts for the year
+        testRequest.setReportJobId("job-1");
+        Property lowerCase = new Property();
+        lowerCase.setId(3L);
+        lowerCase.setName("main building");
+        lowerCase.setPropertyReceipts(testReceipts);
+        when(propertyRepository.findByNormalizedName("main building")).thenReturn(List.of(testProperty, lowerCase));
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024)).thenReturn(List.of(lowerCase));
+
+        // Act
+        reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
+
+        // Assert
+        verify(reportGeneratorFactory, never()).getGenerator(any(ReportType.class));
+        verify(reportJobService).markFailed("job-1", "No receipts found for year 2024");
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_REJECTED));
+    }
+
+    @Test
+    public void testProcessReportMessageSkipsAlreadySentReport() throws Exception {
+        // Arrange
+        testRequest.setReportJobId("job-2");
+        ReportJob sent = new ReportJob("job-1", "Main Building", 2024, "pdf", 1L, "user@example.com");
+        sent.setStatus(ReportJob.STATUS_SENT);
+        when(reportJobService.findSentDuplicate(testRequest)).thenReturn(Optional.of(sent));
+
+        // Act
+        reportMessageConsumer.processReportRequest(testRequest, testMessage, 0);
+
+        // Assert
+        verifyNoInteractions(propertyRepository, reportGeneratorFactory, emailOutboxService);
+        verify(reportJobService).markDuplicate("job-2", "job-1");
+        verify(reportJobService, never()).markRunning(any());
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_DUPLICATE));
+    }
+
+    @Test
+    public void testJobTrackingFailureDoesNotFailReport() throws Exception {
+        // Arrange
+        testRequest.setReportJobId("job-1");
+        doThrow(new RuntimeException("Database unavailable")).when(reportJobService).markDelivering("job-1");
+        when(propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024)).thenReturn(List.of(testProperty));
+        when(reportGeneratorFactory.getGenerator(ReportType.PDF)).thenReturn(reportGenerator);
+        when(reportGenerator.writeReport(eq(testProperty), eq(2024), any(), any(OutputStream.class))).thenReturn(new ReportOutput(14, "checksum"));
+        when(reportGenerator.getFileExtension()).thenReturn("pdf");
+
+        // Act
+        assertDoesNotThrow(() -> reportMessageConsumer.processReportRequest(testRequest, testMessage, 0));
+
+        // Assert - the report was queued once and was not retried
+        verify(emailOutboxService, times(1)).enqueue(any(), anyString(), anyString(), anyString(), anyList());
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), any(Object.class), any(MessagePostProcessor.class));
+        verify(reportConsumerMetrics).jobFinished(any(), eq(ReportConsumerMetrics.OUTCOME_SUCCESS));
     }
 
     @Test
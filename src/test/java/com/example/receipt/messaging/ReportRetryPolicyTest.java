@@ -0,0 +1,45 @@
+package com.example.receipt.messaging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReportRetryPolicyTest {
+
+    @Test
+    public void testBaseDelayGrowsExponentiallyUpToCap() {
+        ReportRetryPolicy policy = new ReportRetryPolicy(6, 1000, 2.0, 5000, 0.2);
+
+        assertEquals(1000, policy.baseDelayMs(1));
+        assertEquals(2000, policy.baseDelayMs(2));
+        assertEquals(4000, policy.baseDelayMs(3));
+        assertEquals(5000, policy.baseDelayMs(4));
+        assertEquals(5000, policy.baseDelayMs(5));
+    }
+
+    @Test
+    public void testJitteredDelayStaysWithinWaitQueueTtl() {
+        ReportRetryPolicy policy = new ReportRetryPolicy(3, 1000, 2.0, 300000, 0.2);
+
+        for (int i = 0; i < 500; i++) {
+            long delay = policy.jitteredDelayMs(2);
+            assertTrue(delay >= 2000 && delay <= 2400, "delay out of range: " + delay);
+        }
+        assertEquals(2400, policy.waitQueueTtlMs(2));
+    }
+
+    @Test
+    public void testWaitQueueTtlsAreDistinctAndCoverEveryRetry() {
+        ReportRetryPolicy policy = new ReportRetryPolicy(6, 1000, 2.0, 5000, 0.2);
+
+        // Retries 1..5; retries 4 and 5 share the capped tier
+        assertEquals(List.of(1200L, 2400L, 4800L, 6000L), policy.waitQueueTtls());
+    }
+
+    @Test
+    public void testNoWaitQueuesWhenRetriesDisabled() {
+        assertTrue(new ReportRetryPolicy(1, 1000, 2.0, 5000, 0.2).waitQueueTtls().isEmpty());
+    }
+}
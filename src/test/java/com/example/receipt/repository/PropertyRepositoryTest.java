@@ -9,9 +9,13 @@ import com.example.receipt.entity.Property;
 import com.example.receipt.entity.Receipt;
 import com.example.receipt.entity.PropertyReceipt;
 import com.example.receipt.entity.ReceiptSource;
+import com.example.receipt.service.CsvReportGeneratorService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import java.util.List;
 import java.util.Optional;
 
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 public class PropertyRepositoryTest {
 
     @Autowired
@@ -123,6 +127,159 @@ public class PropertyRepositoryTest {
         assertEquals(2024, result.get().getPropertyReceipts().getFirst().getReceipt().getYear());
     }
 
+    @Test
+    public void testFindByNormalizedNameIsCaseInsensitive() {
+        // Arrange
+        Property property = new Property();
+        property.setName("Harbor View");
+        property.setStreetNumber("10");
+        property.setStreetName("Pier Rd");
+        property.setCity("Salem");
+        property.setState("MA");
+        property.setZipCode("01970");
+        entityManager.persistAndFlush(property);
+        entityManager.clear();
+
+        // Act
+        List<Property> result = propertyRepository.findByNormalizedName(Property.normalizeName("  HARBOR view "));
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals("Harbor View", result.get(0).getName());
+    }
+
+    @Test
+    public void testFindByNormalizedNameReturnsEveryPropertySharingTheName() {
+        // Arrange
+        for (String name : new String[] {"Harbor View", "HARBOR VIEW"}) {
+            Property property = new Property();
+            property.setName(name);
+            property.setStreetNumber("10");
+            property.setStreetName("Pier Rd");
+            property.setCity("Salem");
+            property.setState("MA");
+            property.setZipCode("01970");
+            entityManager.persistAndFlush(property);
+        }
+        entityManager.clear();
+
+        // Act
+        List<Property> result = propertyRepository.findByNormalizedName("harbor view");
+
+        // Assert
+        assertEquals(List.of("Harbor View", "HARBOR VIEW"), result.stream().map(Property::getName).toList());
+    }
+
+    @Test
+    public void testFindByNormalizedNameWithReceiptsForYear() {
+        // Arrange
+        Property property = new Property();
+        property.setName("Lake House");
+        property.setStreetNumber("7");
+        property.setStreetName("Shore Dr");
+        property.setCity("Worcester");
+        property.setState("MA");
+        property.setZipCode("01601");
+        entityManager.persistAndFlush(property);
+
+        ReceiptSource source = new ReceiptSource();
+        source.setRetailerName("Test Retailer 3");
+        source.setDescription("Test Retailer Description 3");
+        entityManager.persistAndFlush(source);
+
+        for (int year : new int[] {2023, 2024, 2024}) {
+            Receipt receipt = new Receipt();
+            receipt.setDescription(year + " Receipt");
+            receipt.setAmount(80.0);
+            receipt.setReceiptDate(year + "-03-01 12:00:00");
+            receipt.setYear(year);
+            receipt.setReceiptSource(source);
+            entityManager.persistAndFlush(receipt);
+
+            PropertyReceipt propertyReceipt = new PropertyReceipt();
+            propertyReceipt.setProperty(property);
+            propertyReceipt.setReceipt(receipt);
+            propertyReceipt.setPortion(80.0);
+            propertyReceipt.setPercentage(100);
+            entityManager.persistAndFlush(propertyReceipt);
+        }
+
+        entityManager.clear();
+
+        // Act
+        List<Property> result = propertyRepository.findByNormalizedNameWithReceiptsForYear("lake house", 2024);
+        List<Property> emptyYear = propertyRepository.findByNormalizedNameWithReceiptsForYear("lake house", 2022);
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals(2, result.get(0).getPropertyReceipts().size());
+        assertTrue(result.get(0).getPropertyReceipts().stream()
+                .allMatch(pr -> pr.getReceipt().getYear() == 2024));
+        assertTrue(emptyYear.isEmpty());
+    }
+
+    @Test
+    public void testReportQueryStatementCountIndependentOfReceiptCount() throws Exception {
+        // Arrange
+        seedPropertyWithReceipts("Small Property", 2);
+        seedPropertyWithReceipts("Large Property", 40);
+        entityManager.clear();
+
+        // Act
+        long smallStatements = countStatementsForReport("small property");
+        long largeStatements = countStatementsForReport("large property");
+
+        // Assert
+        assertEquals(1, smallStatements);
+        assertEquals(smallStatements, largeStatements);
+    }
+
+    private long countStatementsForReport(String normalizedName) throws Exception {
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Property property = propertyRepository.findByNormalizedNameWithReceiptsForYear(normalizedName, 2024).get(0);
+        // The CSV generator reads every receipt and its source, so any lazy load shows up here
+        new CsvReportGeneratorService().generateReport(property, 2024, property.getPropertyReceipts());
+
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void seedPropertyWithReceipts(String name, int receiptCount) {
+        Property property = new Property();
+        property.setName(name);
+        property.setStreetNumber("1");
+        property.setStreetName("Elm St");
+        property.setCity("Boston");
+        property.setState("MA");
+        property.setZipCode("02101");
+        entityManager.persist(property);
+
+        for (int i = 0; i < receiptCount; i++) {
+            ReceiptSource source = new ReceiptSource();
+            source.setRetailerName(name + " Retailer " + i);
+            source.setDescription("Retailer " + i);
+            entityManager.persist(source);
+
+            Receipt receipt = new Receipt();
+            receipt.setDescription("Receipt " + i);
+            receipt.setAmount(10.0 + i);
+            receipt.setReceiptDate("2024-02-01 09:00:00");
+            receipt.setYear(2024);
+            receipt.setReceiptSource(source);
+            entityManager.persist(receipt);
+
+            PropertyReceipt propertyReceipt = new PropertyReceipt();
+            propertyReceipt.setProperty(property);
+            propertyReceipt.setReceipt(receipt);
+            propertyReceipt.setPortion(10.0 + i);
+            propertyReceipt.setPercentage(100);
+            entityManager.persist(propertyReceipt);
+        }
+        entityManager.flush();
+    }
+
     @Test
     public void testFindPropertyNotFound() {
         // Act
@@ -0,0 +1,162 @@
+package com.example.receipt.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.receipt.entity.Property;
+import com.example.receipt.entity.PropertyReceipt;
+import com.example.receipt.entity.Receipt;
+import com.example.receipt.entity.ReceiptSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * Runs the SQL Hibernate generates for each search path through H2's EXPLAIN and fails
+ * if any table is read with a full scan instead of an index.
+ *
+ * H2 indexes foreign key columns on its own and may pick those over the declared indexes,
+ * so the declared indexes are checked separately against the schema.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+        "com.example.receipt.repository.CapturingStatementInspector")
+public class ReceiptQueryPlanTest {
+
+    @Autowired
+    private ReceiptRepository receiptRepository;
+
+    @Autowired
+    private PropertyRepository propertyRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ReceiptSource source;
+    private Property property;
+    private Receipt receipt;
+
+    @BeforeEach
+    public void setUp() {
+        property = new Property();
+        property.setName("Main Building");
+        property.setStreetNumber("1");
+        property.setStreetName("Main St");
+        property.setCity("Boston");
+        property.setState("MA");
+        property.setZipCode("02101");
+        entityManager.persist(property);
+
+        // Enough rows across sources and years that a scan is never the cheap choice
+        for (int s = 0; s < 5; s++) {
+            ReceiptSource receiptSource = entityManager.persist(new ReceiptSource("RETAILER " + s, "Retailer " + s));
+            if (s == 0) {
+                source = receiptSource;
+            }
+            for (int i = 0; i < 40; i++) {
+                Receipt r = new Receipt();
+                r.setDescription("Receipt " + s + "-" + i);
+                r.setAmount(10.0 + i);
+                r.setReceiptDate("2024-01-01 00:00:00");
+                r.setYear(2015 + i % 10);
+                r.setReceiptSource(receiptSource);
+                entityManager.persist(r);
+                if (i % 4 == 0) {
+                    PropertyReceipt allocation = new PropertyReceipt();
+                    allocation.setProperty(property);
+                    allocation.setReceipt(r);
+                    allocation.setPercentage(100);
+                    allocation.setPortion(r.getAmount());
+                    entityManager.persist(allocation);
+                }
+                receipt = r;
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        CapturingStatementInspector.clear();
+    }
+
+    @Test
+    public void testSearchIndexesAreDeclared() {
+        List<String> indexes = jdbcTemplate.queryForList(
+                "SELECT LOWER(INDEX_NAME) FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME IN ('RECEIPTS', 'PROPERTY_RECEIPTS')",
+                String.class);
+        assertTrue(indexes.containsAll(List.of(
+                "idx_receipts_year_id",
+                "idx_receipts_source_year",
+                "idx_property_receipts_property_receipt",
+                "idx_property_receipts_receipt")), "Declared indexes missing from " + indexes);
+    }
+
+    @Test
+    public void testFindByYearUsesIndex() {
+        receiptRepository.findByYear(2024);
+        assertNoTableScans();
+        assertTrue(explain(CapturingStatementInspector.statements().get(0)).contains("IDX_RECEIPTS_YEAR_ID"));
+    }
+
+    @Test
+    public void testFindByReceiptSourceIdUsesIndex() {
+        receiptRepository.findByReceiptSourceId(source.getId());
+        assertNoTableScans();
+    }
+
+    @Test
+    public void testFindByReceiptSourceIdAndYearUsesIndex() {
+        receiptRepository.findByReceiptSourceIdAndYear(source.getId(), 2024);
+        assertNoTableScans();
+    }
+
+    @Test
+    public void testPropertyReportQueryUsesIndexes() {
+        propertyRepository.findByNormalizedNameWithReceiptsForYear("main building", 2024);
+        propertyRepository.findPropertyWithAllReceipts(property.getId());
+        assertNoTableScans();
+    }
+
+    @Test
+    public void testReceiptAllocationLookupUsesIndex() {
+        entityManager.find(Receipt.class, receipt.getId()).getPropertyReceipts().size();
+        assertNoTableScans();
+    }
+
+    private void assertNoTableScans() {
+        List<String> statements = CapturingStatementInspector.statements().stream()
+                .filter(sql -> sql.trim().toLowerCase().startsWith("select"))
+                .toList();
+        assertFalse(statements.isEmpty(), "No SELECT statements were captured");
+        for (String sql : statements) {
+            String plan = explain(sql);
+            assertFalse(plan.contains("tableScan"), "Full table scan in plan:\n" + plan);
+        }
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.execute((Connection connection) -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                int parameters = statement.getParameterMetaData().getParameterCount();
+                for (int i = 1; i <= parameters; i++) {
+                    statement.setObject(i, 1);
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    StringBuilder plan = new StringBuilder();
+                    while (rs.next()) {
+                        plan.append(rs.getString(1)).append('\n');
+                    }
+                    return plan.toString();
+                }
+            }
+        });
+    }
+}
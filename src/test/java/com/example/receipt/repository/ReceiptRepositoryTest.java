@@ -10,10 +10,12 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import com.example.receipt.entity.Receipt;
 import com.example.receipt.entity.ReceiptSource;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -230,4 +232,68 @@ public class ReceiptRepositoryTest {
         assertEquals("Updated Description", updatedReceipt.getDescription());
         assertEquals(250.0, updatedReceipt.getAmount());
     }
+
+    @Test
+    public void testFindSliceAfterIdScrollsAllReceiptsInIdOrder() {
+        // Arrange
+        for (int i = 0; i < 4; i++) {
+            Receipt receipt = new Receipt();
+            receipt.setDescription("Receipt " + i);
+            receipt.setAmount(10.0 * i);
+            receipt.setReceiptDate("2023-05-01 10:00:00");
+            receipt.setYear(2023 - i);
+            receipt.setReceiptSource(testReceiptSource);
+            entityManager.persist(receipt);
+        }
+        entityManager.flush();
+
+        // Act
+        List<Long> ids = new ArrayList<>();
+        long afterId = 0L;
+        Slice<Receipt> slice;
+        do {
+            slice = receiptRepository.findSliceAfterId(afterId, PageRequest.of(0, 2));
+            slice.forEach(receipt -> ids.add(receipt.getId()));
+            afterId = ids.get(ids.size() - 1);
+        } while (slice.hasNext());
+
+        // Assert
+        assertEquals(5, ids.size());
+        assertEquals(ids.stream().sorted().toList(), ids);
+        assertEquals(5, ids.stream().distinct().count());
+    }
+
+    @Test
+    public void testFindSliceAfterYearAndIdScrollsInYearThenIdOrder() {
+        // Arrange
+        for (int year : new int[] {2022, 2024, 2022, 2023}) {
+            Receipt receipt = new Receipt();
+            receipt.setDescription("Receipt " + year);
+            receipt.setAmount(50.0);
+            receipt.setReceiptDate(year + "-03-01 10:00:00");
+            receipt.setYear(year);
+            receipt.setReceiptSource(testReceiptSource);
+            entityManager.persist(receipt);
+        }
+        entityManager.flush();
+
+        // Act
+        List<Receipt> scrolled = new ArrayList<>();
+        int afterYear = Integer.MIN_VALUE;
+        long afterId = 0L;
+        Slice<Receipt> slice;
+        do {
+            slice = receiptRepository.findSliceAfterYearAndId(afterYear, afterId, PageRequest.of(0, 2));
+            scrolled.addAll(slice.getContent());
+            Receipt last = scrolled.get(scrolled.size() - 1);
+            afterYear = last.getYear();
+            afterId = last.getId();
+        } while (slice.hasNext());
+
+        // Assert
+        assertEquals(List.of(2022, 2022, 2023, 2024, 2024), scrolled.stream().map(Receipt::getYear).toList());
+        assertTrue(scrolled.get(0).getId() < scrolled.get(1).getId());
+        assertTrue(scrolled.get(3).getId() < scrolled.get(4).getId());
+        assertNotNull(scrolled.get(0).getReceiptSource().getRetailerName());
+    }
 }
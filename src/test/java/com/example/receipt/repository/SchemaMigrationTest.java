@@ -0,0 +1,85 @@
+package com.example.receipt.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.example.receipt.entity.Property;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies the Flyway migrations to an H2 database in MySQL mode and lets hibernate
+ * validate the entity mappings against the result, so a mapping change without a
+ * matching migration fails the build instead of the deployment.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migrations;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=YEAR",
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class SchemaMigrationTest {
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testAllMigrationsApplyAndMatchEntities() {
+        // Reaching this point means hibernate validated every entity against the migrated schema
+        List<String> applied = Arrays.stream(flyway.info().applied())
+                .map(MigrationInfo::getVersion)
+                .map(Object::toString)
+                .toList();
+        assertEquals(List.of("1", "2", "2.1", "2.2", "3", "4", "5", "6", "7", "8", "9", "10"), applied);
+        assertEquals(0, flyway.info().pending().length);
+    }
+
+    @Test
+    public void testNormalizedNameBackfillMatchesEntityNormalization() throws Exception {
+        jdbcTemplate.update("INSERT INTO properties (name, street_number, street_name, city, state, zip_code) " +
+                "VALUES ('  Main Building ', '1', 'Main St', 'Boston', 'MA', '02101')");
+
+        String backfill = new ClassPathResource("db/migration/V3__backfill_property_normalized_name.sql")
+                .getContentAsString(StandardCharsets.UTF_8);
+        jdbcTemplate.update(backfill.replaceAll("(?m)^--.*$", "").trim().replaceAll(";$", ""));
+
+        assertEquals(Property.normalizeName("  Main Building "),
+                jdbcTemplate.queryForObject("SELECT normalized_name FROM properties", String.class));
+    }
+
+    @Test
+    public void testDatabaseBaselinedFromTheOldSchemaGetsTheNewColumnsAndIndexes() {
+        // A database ddl-auto=update maintained: the V1 schema with data, but no flyway history
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:baselined;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=YEAR", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V1__baseline_schema.sql")).execute(dataSource);
+        JdbcTemplate existing = new JdbcTemplate(dataSource);
+        existing.update("INSERT INTO properties (name, street_number, street_name, city, state, zip_code) " +
+                "VALUES ('Main Building', '1', 'Main St', 'Boston', 'MA', '02101')");
+
+        Flyway.configure().dataSource(dataSource).baselineOnMigrate(true).baselineVersion("1").load().migrate();
+
+        assertEquals("main building", existing.queryForObject("SELECT normalized_name FROM properties", String.class));
+        for (String index : List.of("idx_properties_normalized_name", "idx_receipts_year_id", "idx_receipts_source_year",
+                "idx_property_receipts_property_receipt", "idx_property_receipts_receipt")) {
+            assertEquals(1, existing.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.indexes WHERE LOWER(index_name) = ?", Integer.class, index), index);
+        }
+    }
+}
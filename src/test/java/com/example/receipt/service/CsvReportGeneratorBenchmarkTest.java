@@ -0,0 +1,172 @@
+package com.example.receipt.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.example.receipt.entity.Property;
+import com.example.receipt.entity.PropertyReceipt;
+import com.example.receipt.entity.Receipt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throughput and allocation of CSV report generation at 100k receipt rows, comparing the
+ * CsvReportWriter-based generator with the PrintWriter/String.format implementation it replaced.
+ * Each variant is warmed up, then timed over several iterations.
+ * Run with: mvn test -Dtest=CsvReportGeneratorBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class CsvReportGeneratorBenchmarkTest {
+
+    private static final int ROWS = 100_000;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+
+    private final CsvReportGeneratorService csvReportGeneratorService = new CsvReportGeneratorService();
+
+    private interface Run {
+        long execute() throws Exception;
+    }
+
+    @Test
+    public void benchmarkCsvGeneration() throws Exception {
+        Property property = new Property();
+        property.setId(1L);
+        property.setName("Main Building");
+        property.setStreetNumber("123");
+        property.setStreetName("Main Street");
+        property.setCity("Boston");
+        property.setState("MA");
+        property.setZipCode("02101");
+        List<PropertyReceipt> receipts = receipts(property, ROWS);
+
+        // Same report, bar the legacy generation timestamp
+        String legacy = withoutTimestamp(new String(LegacyCsvReportGenerator.generateReport(property, 2024, receipts), StandardCharsets.UTF_8));
+        String streamed = withoutTimestamp(new String(csvReportGeneratorService.generateReport(property, 2024, receipts), StandardCharsets.UTF_8));
+        assertEquals(legacy, streamed);
+
+        measure("legacy", () -> LegacyCsvReportGenerator.generateReport(property, 2024, receipts).length);
+        measure("writer", () -> {
+            PdfGeneratorBenchmarkTest.CountingOutputStream out = new PdfGeneratorBenchmarkTest.CountingOutputStream();
+            csvReportGeneratorService.generateReport(property, 2024, receipts, out);
+            return out.getCount();
+        });
+    }
+
+    private void measure(String mode, Run run) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            run.execute();
+        }
+
+        long bytes = 0;
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            bytes = run.execute();
+        }
+        double elapsedMs = (System.nanoTime() - start) / 1_000_000.0 / MEASURED_ITERATIONS;
+        long allocated = (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / MEASURED_ITERATIONS;
+
+        assertTrue(bytes > 0);
+        System.out.printf("[benchmark] %-6s rows=%,7d  time=%,8.1f ms/op  rows/sec=%,11d  csv=%,11d bytes  allocated=%,6d MB/op%n",
+                mode, ROWS, elapsedMs, (long) (ROWS * 1000L / elapsedMs), bytes, allocated / (1024 * 1024));
+    }
+
+    private static String withoutTimestamp(String report) {
+        return report.replaceAll("Report Generated,.*\\R", "");
+    }
+
+    private List<PropertyReceipt> receipts(Property property, int count) {
+        List<PropertyReceipt> receipts = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Receipt receipt = new Receipt();
+            receipt.setId((long) i);
+            receipt.setDescription(i % 10 == 0 ? "Home Depot, \"Lumber\" " + i : "Home Depot - Lumber and supplies " + i);
+            receipt.setAmount(10.0 + i % 500 + (i % 100) / 100.0);
+            receipt.setReceiptDate("2024-%02d-%02d 10:00:00".formatted(1 + i % 12, 1 + i % 28));
+            receipt.setYear(2024);
+
+            PropertyReceipt propertyReceipt = new PropertyReceipt();
+            propertyReceipt.setId((long) i);
+            propertyReceipt.setProperty(property);
+            propertyReceipt.setReceipt(receipt);
+            propertyReceipt.setPercentage(1 + i % 100);
+            propertyReceipt.setPortion(receipt.getAmount() * propertyReceipt.getPercentage() / 100.0);
+            receipts.add(propertyReceipt);
+        }
+        return receipts;
+    }
+
+    /**
+     * The CSV generator as it was before CsvReportWriter, kept as the benchmark baseline
+     */
+    private static class LegacyCsvReportGenerator {
+
+        static byte[] generateReport(Property property, Integer year, List<PropertyReceipt> receipts) throws Exception {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            OutputStreamWriter writer = new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.UTF_8);
+            PrintWriter printWriter = new PrintWriter(writer);
+
+            try {
+                printWriter.write("\ufeff");
+                printWriter.println("YEARLY RECEIPT REPORT");
+                printWriter.println();
+                printWriter.println("Property Details");
+                printWriter.println("Property Name," + escapeCSV(property.getName()));
+                printWriter.println("Address," + escapeCSV(property.getStreetNumber() + " " + property.getStreetName() +
+                        ", " + property.getCity() + ", " + property.getState() + " " + property.getZipCode()));
+                printWriter.println("Year," + year);
+                printWriter.println("Report Generated," + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+                printWriter.println();
+
+                double totalAmount = receipts.stream().mapToDouble(PropertyReceipt::getPortion).sum();
+                printWriter.println("Summary");
+                printWriter.println("Total Receipts," + receipts.size());
+                printWriter.println("Total Amount," + String.format("%.2f", totalAmount));
+                printWriter.println();
+
+                printWriter.println("Receipt Details");
+                printWriter.println("Date,Description,Amount,Portion,Receipt ID,Receipt Source");
+
+                for (PropertyReceipt receipt : receipts) {
+                    String date = receipt.getReceipt().getReceiptDate() != null ?
+                        receipt.getReceipt().getReceiptDate().toString() : "";
+                    String description = escapeCSV(receipt.getReceipt().getDescription());
+                    String amount = String.format("%.2f", receipt.getReceipt().getAmount());
+                    String portion = String.format("%.2f", receipt.getPortion());
+                    String receiptId = receipt.getReceipt().getId().toString();
+                    String source = receipt.getReceipt().getReceiptSource() != null ?
+                        escapeCSV(receipt.getReceipt().getReceiptSource().getRetailerName()) : "";
+
+                    printWriter.println(date + "," + description + "," + amount + "," + portion + "," + receiptId + "," + source);
+                }
+
+                printWriter.flush();
+                return byteArrayOutputStream.toByteArray();
+            } finally {
+                printWriter.close();
+            }
+        }
+
+        private static String escapeCSV(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+                return "\"" + value.replace("\"", "\"\"") + "\"";
+            }
+            return value;
+        }
+    }
+}
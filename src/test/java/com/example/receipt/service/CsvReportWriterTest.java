@@ -0,0 +1,113 @@
+package com.example.receipt.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+public class CsvReportWriterTest {
+
+    private static final String NL = System.lineSeparator();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+        @Override
+        public void close() {
+            fail("the writer must not close the caller's stream");
+        }
+    };
+    private final CsvReportWriter csv = new CsvReportWriter(out);
+
+    private String written() throws IOException {
+        csv.flush();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private String money(double value) throws IOException {
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        CsvReportWriter writer = new CsvReportWriter(single);
+        writer.money(value).flush();
+        return single.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFieldsAreSeparatedAndRowsTerminated() throws IOException {
+        csv.field("a").field(1L).money(2.5).endRow();
+        csv.endRow();
+        csv.field("b").endRow();
+
+        assertEquals("a,1,2.50" + NL + NL + "b" + NL, written());
+    }
+
+    @Test
+    public void testFieldsAreEscapedInOnePass() throws IOException {
+        csv.field("plain").field("a,b").field("say \"hi\"").field("two\nlines").field("cr\r").field("").field((String) null).endRow();
+
+        assertEquals("plain,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",\"cr\r\",," + NL, written());
+    }
+
+    @Test
+    public void testNullNumbersAreEmptyFields() throws IOException {
+        csv.money(null).field((Long) null).field((Integer) null).endRow();
+
+        assertEquals(",," + NL, written());
+    }
+
+    @Test
+    public void testIntegersIncludingExtremes() throws IOException {
+        csv.field(0L).field(-42L).field(Long.MAX_VALUE).field(Long.MIN_VALUE).field(7).endRow();
+
+        assertEquals("0,-42," + Long.MAX_VALUE + "," + Long.MIN_VALUE + ",7" + NL, written());
+    }
+
+    @Test
+    public void testMoneyMatchesStringFormat() throws IOException {
+        double[] edgeCases = {0.0, -0.0, 0.001, -0.001, 0.005, 0.015, 1.005, 1.115, 2.675, 0.125, 10.995,
+                99.995, 1234567.891, -5.125, 33.333333333333336, 66.66666666666667, 0.1 + 0.2,
+                999999999.99, 1e9, 1e15, -1e12, Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE};
+        for (double value : edgeCases) {
+            assertEquals(String.format(Locale.ROOT, "%.2f", value), money(value), "value " + value);
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            // Mix of typical receipt amounts, thousandths and percentage portions
+            double value = switch (i % 3) {
+                case 0 -> random.nextInt(10_000_000) / 100.0;
+                case 1 -> random.nextInt(10_000_000) / 1000.0;
+                default -> random.nextInt(1_000_000) / 100.0 * (1 + random.nextInt(100)) / 100.0;
+            };
+            assertEquals(String.format(Locale.ROOT, "%.2f", value), money(value), "value " + value);
+        }
+    }
+
+    @Test
+    public void testMoneyIgnoresDefaultLocale() throws IOException {
+        Locale previous = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            assertEquals("1234.50,1.01", money(1234.5) + "," + money(1.005));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    public void testLargeOutputAndFieldsLongerThanTheBuffer() throws IOException {
+        String longField = "x".repeat(50_000) + ",";
+        csv.raw("\ufeff");
+        for (int i = 0; i < 1_000; i++) {
+            csv.field("row " + i).money(i / 4.0).endRow();
+        }
+        csv.field(longField).endRow();
+
+        String text = written();
+        assertTrue(text.startsWith("\ufeffrow 0,0.00" + NL + "row 1,0.25" + NL));
+        assertTrue(text.contains("row 999,249.75" + NL));
+        assertTrue(text.endsWith("\"" + longField + "\"" + NL));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.receipt.service;
+
+import com.example.receipt.exception.EmailCircuitOpenException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmailCircuitBreakerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<EmailCircuitBreaker.State> transitions = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+    private EmailCircuitBreaker breaker;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        breaker = new EmailCircuitBreaker(3, 1000, meterRegistry, nanos::get);
+        breaker.addListener(transitions::add);
+    }
+
+    private void fail(int times) throws EmailCircuitOpenException {
+        for (int i = 0; i < times; i++) {
+            breaker.acquirePermission();
+            breaker.recordFailure();
+        }
+    }
+
+    private double gauge(String state) {
+        return meterRegistry.get("email.circuit.state").tag("state", state).gauge().value();
+    }
+
+    @Test
+    public void testConsecutiveFailuresOpenTheCircuit() throws Exception {
+        fail(2);
+        breaker.acquirePermission();
+        breaker.recordSuccess();
+        fail(2);
+        assertEquals(EmailCircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(1);
+
+        assertEquals(EmailCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(List.of(EmailCircuitBreaker.State.OPEN), transitions);
+        assertEquals(1.0, gauge("open"));
+        assertEquals(0.0, gauge("closed"));
+    }
+
+    @Test
+    public void testOpenCircuitRefusesSendsUntilItsTimeIsUp() throws Exception {
+        fail(3);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+
+        EmailCircuitOpenException ex = assertThrows(EmailCircuitOpenException.class, breaker::acquirePermission);
+
+        assertEquals(600, ex.getRetryAfterMs());
+        assertEquals(1, meterRegistry.get("email.circuit.rejected").counter().count());
+    }
+
+    @Test
+    public void testSuccessfulTrialClosesTheCircuit() throws Exception {
+        fail(3);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        breaker.acquirePermission();
+        assertEquals(EmailCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // One trial at a time
+        assertThrows(EmailCircuitOpenException.class, breaker::acquirePermission);
+        breaker.recordSuccess();
+
+        assertEquals(EmailCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(List.of(EmailCircuitBreaker.State.OPEN, EmailCircuitBreaker.State.HALF_OPEN,
+                EmailCircuitBreaker.State.CLOSED), transitions);
+        breaker.acquirePermission();
+    }
+
+    @Test
+    public void testReleasedTrialLetsAnotherSendTry() throws Exception {
+        fail(3);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        breaker.acquirePermission();
+
+        breaker.releasePermission();
+
+        assertEquals(EmailCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.acquirePermission();
+        breaker.recordSuccess();
+        assertEquals(EmailCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testFailedTrialOpensTheCircuitAgain() throws Exception {
+        fail(3);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        fail(1);
+
+        assertEquals(EmailCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1000, breaker.getRetryAfterMs());
+    }
+
+    @Test
+    public void testLateSuccessDoesNotCloseAnOpenCircuit() throws Exception {
+        breaker.acquirePermission();
+        fail(3);
+
+        breaker.recordSuccess();
+
+        assertEquals(EmailCircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.receipt.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import com.example.receipt.config.RabbitMQConfig;
+import com.example.receipt.entity.EmailOutbox;
+import com.example.receipt.repository.EmailOutboxAttachmentRepository;
+import com.example.receipt.repository.EmailOutboxRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@DataJpaTest(properties = {"app.email.coalesce.max-emails=3", "app.email.coalesce.max-bytes=10"})
+@Import({EmailOutboxService.class, EmailOutboxAttachmentRepository.class})
+public class EmailOutboxServiceTest {
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private EmailOutboxAttachmentRepository emailOutboxAttachmentRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @MockBean
+    private EmailService emailService;
+
+    @MockBean
+    private RabbitTemplate rabbitTemplate;
+
+    @TempDir
+    Path tempDir;
+
+    private EmailOutbox reload(String id) {
+        entityManager.flush();
+        entityManager.clear();
+        return emailOutboxService.getEntry(id).orElseThrow();
+    }
+
+    private EmailOutbox enqueueReport() throws IOException {
+        Path pdf = Files.writeString(tempDir.resolve("report.pdf"), "PDF");
+        return emailOutboxService.enqueue("job-1", "user@example.com", "Report", "<p>Hi</p>", List.of(
+                EmailAttachment.ofFile(pdf, "Main_Building_Report_2024.pdf", "application/pdf"),
+                EmailAttachment.ofBytes("a,b".getBytes(), "Main_Building_Report_2024.csv", "text/csv")));
+    }
+
+    // A queued email of the given attachment size, created the given number of seconds after the first
+    private EmailOutbox enqueue(String reportJobId, String toEmail, int attachmentBytes, int createdSecond) throws IOException {
+        EmailOutbox entry = emailOutboxService.enqueue(reportJobId, toEmail, "Report " + reportJobId,
+                "<html><body><p>Report " + reportJobId + "</p></body></html>",
+                List.of(EmailAttachment.ofBytes(new byte[attachmentBytes], reportJobId + ".csv", "text/csv")));
+        entry.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0, createdSecond));
+        return emailOutboxRepository.save(entry);
+    }
+
+    private List<String> jobIds(List<EmailOutbox> group) {
+        return group.stream().map(EmailOutbox::getReportJobId).toList();
+    }
+
+    @Test
+    public void testEnqueueStoresTheEmailAndPublishesItStraightToDelivery() throws IOException {
+        EmailOutbox entry = enqueueReport();
+        // The caller's files are no longer needed
+        Files.delete(tempDir.resolve("report.pdf"));
+
+        EmailOutbox stored = reload(entry.getId());
+        assertEquals(EmailOutbox.STATUS_PENDING, stored.getStatus());
+        assertEquals("job-1", stored.getReportJobId());
+        assertEquals(6, stored.getAttachmentBytes());
+        assertEquals("<p>Hi</p>", stored.getHtmlContent());
+        assertEquals(List.of("Main_Building_Report_2024.pdf", "Main_Building_Report_2024.csv"),
+                emailOutboxAttachmentRepository.find(entry.getId()).stream().map(EmailAttachment::getFileName).toList());
+        verify(rabbitTemplate).convertAndSend(RabbitMQConfig.REPORT_EXCHANGE, RabbitMQConfig.EMAIL_DELIVERY_ROUTING_KEY, entry.getId());
+    }
+
+    @Test
+    public void testBatchedEmailsAreParkedForTheBatchCoalescingWindow() throws IOException {
+        EmailOutbox entry = emailOutboxService.enqueueBatched(null, "user@example.com", "Batch part 1", "<p>Hi</p>",
+                List.of(EmailAttachment.ofBytes("a,b".getBytes(), "batch.csv", "text/csv")));
+
+        verify(rabbitTemplate).convertAndSend(RabbitMQConfig.REPORT_RETRY_EXCHANGE, RabbitMQConfig.emailCoalesceRoutingKey(15000), entry.getId());
+    }
+
+    @Test
+    public void testFailedPublishLeavesNothingBehind() {
+        List<String> published = new ArrayList<>();
+        doAnswer(invocation -> {
+            published.add(invocation.getArgument(2));
+            throw new AmqpException("Broker unavailable");
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class));
+
+        assertThrows(AmqpException.class, this::enqueueReport);
+
+        assertEquals(1, published.size());
+        assertTrue(emailOutboxRepository.findById(published.get(0)).isEmpty());
+    }
+
+    @Test
+    public void testDeliverSendsTheStoredCopyUntilSent() throws IOException {
+        String id = enqueueReport().getId();
+        List<String> contents = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<EmailAttachment> attachments = invocation.getArgument(3);
+            for (EmailAttachment attachment : attachments) {
+                try (InputStream content = attachment.openStream()) {
+                    contents.add(new String(content.readAllBytes()));
+                }
+            }
+            return null;
+        }).when(emailService).sendReportEmail(eq("user@example.com"), eq("Report"), eq("<p>Hi</p>"), anyList());
+
+        List<EmailOutbox> group = emailOutboxService.claim(reload(id));
+        emailOutboxService.deliver(group);
+        emailOutboxService.markSent(group);
+
+        assertEquals(List.of("PDF", "a,b"), contents);
+        EmailOutbox sent = reload(id);
+        assertEquals(EmailOutbox.STATUS_SENT, sent.getStatus());
+        assertEquals(1, sent.getAttempts());
+        assertNotNull(sent.getSentAt());
+        assertNull(sent.getHtmlContent());
+        assertTrue(emailOutboxAttachmentRepository.find(id).isEmpty());
+    }
+
+    @Test
+    public void testDeliveredAttachmentsAreReadFromTheOutboxOnlyWhenOpened() throws IOException {
+        String id = enqueueReport().getId();
+        List<EmailAttachment> sentAttachments = new ArrayList<>();
+        doAnswer(invocation -> {
+            sentAttachments.addAll(invocation.getArgument(3));
+            return null;
+        }).when(emailService).sendReportEmail(anyString(), anyString(), anyString(), anyList());
+
+        emailOutboxService.deliver(emailOutboxService.claim(reload(id)));
+
+        assertEquals(List.of(3L, 3L), List.of(sentAttachments.get(0).size(), sentAttachments.get(1).size()));
+        emailOutboxAttachmentRepository.delete(id);
+        assertThrows(IOException.class, () -> sentAttachments.get(0).openStream());
+    }
+
+    @Test
+    public void testRetryingKeepsTheContentAndFailingClearsIt() throws IOException {
+        String id = enqueueReport().getId();
+
+        emailOutboxService.markRetrying(emailOutboxService.claim(reload(id)), "SendGrid unavailable");
+        EmailOutbox retrying = reload(id);
+        assertEquals(EmailOutbox.STATUS_SENDING, retrying.getStatus());
+        assertEquals(1, retrying.getAttempts());
+        assertEquals(2, emailOutboxAttachmentRepository.find(id).size());
+
+        // The retry sends the same group again
+        List<EmailOutbox> group = emailOutboxService.claim(retrying);
+        assertEquals(List.of(id), group.stream().map(EmailOutbox::getId).toList());
+        emailOutboxService.markFailed(group, "SendGrid unavailable");
+        EmailOutbox failed = reload(id);
+        assertEquals(EmailOutbox.STATUS_FAILED, failed.getStatus());
+        assertEquals(2, failed.getAttempts());
+        assertEquals("SendGrid unavailable", failed.getLastError());
+        assertTrue(emailOutboxAttachmentRepository.find(id).isEmpty());
+    }
+
+    @Test
+    public void testTheWholeCoalescedGroupIsFinishedTogether() throws IOException {
+        EmailOutbox lead = enqueue("job-1", "user@example.com", 1, 1);
+        EmailOutbox coalesced = enqueue("job-2", "user@example.com", 1, 2);
+        List<EmailOutbox> group = emailOutboxService.claim(reload(lead.getId()));
+
+        // Only the lead's copy is passed in; the rest of the group is found by its delivery id
+        emailOutboxService.markSent(group.subList(0, 1));
+
+        for (String id : List.of(lead.getId(), coalesced.getId())) {
+            EmailOutbox sent = reload(id);
+            assertEquals(EmailOutbox.STATUS_SENT, sent.getStatus());
+            assertEquals(1, sent.getAttempts());
+            assertNull(sent.getHtmlContent());
+            assertTrue(emailOutboxAttachmentRepository.find(id).isEmpty());
+        }
+        // A late outcome for the same delivery changes nothing
+        emailOutboxService.markFailed(group, "SendGrid unavailable");
+        assertEquals(EmailOutbox.STATUS_SENT, reload(coalesced.getId()).getStatus());
+    }
+
+    @Test
+    public void testClaimCoalescesTheRecipientsPendingEmailsWithinTheLimits() throws IOException {
+        EmailOutbox lead = enqueue("job-1", "user@example.com", 4, 1);
+        enqueue("job-2", "user@example.com", 4, 2);
+        enqueue("job-3", "user@example.com", 4, 3);   // over the byte limit alongside the first two
+        enqueue("job-4", "user@example.com", 1, 4);
+        enqueue("job-5", "user@example.com", 1, 5);   // over the email limit
+        enqueue("job-6", "other@example.com", 1, 6);
+
+        List<EmailOutbox> group = emailOutboxService.claim(reload(lead.getId()));
+
+        assertEquals(List.of("job-1", "job-2", "job-4"), jobIds(group));
+        for (EmailOutbox entry : group) {
+            assertEquals(EmailOutbox.STATUS_SENDING, entry.getStatus());
+            assertEquals(lead.getId(), entry.getDeliveryId());
+        }
+        assertEquals(List.of("job-3", "job-5"), jobIds(emailOutboxRepository.findAll().stream()
+                .filter(entry -> "user@example.com".equals(entry.getToEmail()))
+                .filter(entry -> EmailOutbox.STATUS_PENDING.equals(entry.getStatus()))
+                .sorted((a, b) -> a.getCreatedAt().compareTo(b.getCreatedAt()))
+                .toList()));
+    }
+
+    @Test
+    public void testEmailsClaimedByAnotherDeliveryAreNotSentAgain() throws IOException {
+        EmailOutbox lead = enqueue("job-1", "user@example.com", 1, 1);
+        EmailOutbox coalesced = enqueue("job-2", "user@example.com", 1, 2);
+
+        emailOutboxService.claim(reload(lead.getId()));
+
+        assertTrue(emailOutboxService.claim(reload(coalesced.getId())).isEmpty());
+        assertEquals(2, emailOutboxService.claim(reload(lead.getId())).size());
+    }
+
+    @Test
+    public void testCoalescedGroupIsSentAsOneEmail() throws IOException {
+        EmailOutbox lead = enqueue("job-1", "user@example.com", 1, 1);
+        enqueue("job-2", "user@example.com", 1, 2);
+
+        List<EmailOutbox> group = emailOutboxService.claim(reload(lead.getId()));
+        emailOutboxService.deliver(group);
+
+        verify(emailService).sendReportEmail(eq("user@example.com"), eq("Receipt System - 2 report emails"),
+                argThat(html -> html.contains("<h3>Report job-1</h3><p>Report job-1</p>")
+                        && html.contains("<h3>Report job-2</h3><p>Report job-2</p>")
+                        && html.indexOf("<body") == html.lastIndexOf("<body")),
+                argThat(attachments -> attachments.stream().map(EmailAttachment::getFileName).toList()
+                        .equals(List.of("job-1.csv", "job-2.csv"))));
+    }
+
+    @Test
+    public void testStalePendingEmailsAreRelayedOnce() throws IOException {
+        EmailOutbox stale = enqueue("job-1", "user@example.com", 1, 1);
+        stale.setUpdatedAt(LocalDateTime.now().minusHours(1));
+        emailOutboxRepository.save(stale);
+        enqueue("job-2", "user@example.com", 1, 2);
+        entityManager.flush();
+        clearInvocations(rabbitTemplate);
+
+        assertEquals(1, emailOutboxService.relayStalePending(300000, 100));
+        verify(rabbitTemplate).convertAndSend(RabbitMQConfig.REPORT_EXCHANGE, RabbitMQConfig.EMAIL_DELIVERY_ROUTING_KEY, stale.getId());
+
+        // Relayed entries count as fresh again
+        assertEquals(0, emailOutboxService.relayStalePending(300000, 100));
+        verifyNoMoreInteractions(rabbitTemplate);
+    }
+
+    @Test
+    public void testAbandonedDeliveriesAreRelayedOnceAndResumeTheirGroup() throws IOException {
+        EmailOutbox lead = enqueue("job-1", "user@example.com", 1, 1);
+        EmailOutbox coalesced = enqueue("job-2", "user@example.com", 1, 2);
+        emailOutboxService.claim(reload(lead.getId()));
+        EmailOutbox fresh = enqueue("job-3", "other@example.com", 1, 3);
+        emailOutboxService.claim(reload(fresh.getId()));
+        // The lead's instance stopped mid-send an hour ago
+        for (EmailOutbox entry : emailOutboxRepository.findByDeliveryIdOrderByCreatedAtAscIdAsc(lead.getId())) {
+            entry.setUpdatedAt(LocalDateTime.now().minusHours(1));
+            emailOutboxRepository.save(entry);
+        }
+        entityManager.flush();
+        clearInvocations(rabbitTemplate);
+
+        assertEquals(1, emailOutboxService.relayStaleSending(900000, 100));
+        verify(rabbitTemplate).convertAndSend(RabbitMQConfig.REPORT_EXCHANGE, RabbitMQConfig.EMAIL_DELIVERY_ROUTING_KEY, lead.getId());
+        assertEquals(0, emailOutboxService.relayStaleSending(900000, 100));
+        verifyNoMoreInteractions(rabbitTemplate);
+
+        // The relayed delivery sends the group it claimed
+        assertEquals(List.of(lead.getId(), coalesced.getId()),
+                emailOutboxService.claim(reload(lead.getId())).stream().map(EmailOutbox::getId).toList());
+    }
+}
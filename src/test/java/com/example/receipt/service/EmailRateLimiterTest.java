@@ -0,0 +1,72 @@
+package com.example.receipt.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmailRateLimiterTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private void advanceMs(long ms) {
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+
+    private long reserveMs(EmailRateLimiter limiter) {
+        return TimeUnit.NANOSECONDS.toMillis(limiter.reserve());
+    }
+
+    @Test
+    public void testBurstIsFreeThenSendsAreSpacedAtTheRate() {
+        EmailRateLimiter limiter = new EmailRateLimiter(10, 2, meterRegistry, nanos::get);
+
+        assertEquals(0, reserveMs(limiter));
+        assertEquals(0, reserveMs(limiter));
+        // Each further send reserves the next token, a tenth of a second apart
+        assertEquals(100, reserveMs(limiter));
+        assertEquals(200, reserveMs(limiter));
+    }
+
+    @Test
+    public void testIdleTimeRefillsUpToTheBurst() {
+        EmailRateLimiter limiter = new EmailRateLimiter(10, 2, meterRegistry, nanos::get);
+        reserveMs(limiter);
+        reserveMs(limiter);
+
+        advanceMs(5000);
+
+        assertEquals(0, reserveMs(limiter));
+        assertEquals(0, reserveMs(limiter));
+        assertEquals(100, reserveMs(limiter));
+    }
+
+    @Test
+    public void testZeroRateDisablesTheLimit() {
+        EmailRateLimiter limiter = new EmailRateLimiter(0, 1, meterRegistry, nanos::get);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.reserve());
+        }
+    }
+
+    @Test
+    public void testWaitsAreRecorded() throws Exception {
+        EmailRateLimiter limiter = new EmailRateLimiter(1000, 1, meterRegistry);
+
+        limiter.acquire();
+        limiter.acquire();
+
+        assertEquals(2, meterRegistry.get("email.rate_limit.wait").timer().count());
+    }
+}
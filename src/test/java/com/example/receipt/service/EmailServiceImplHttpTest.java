@@ -0,0 +1,226 @@
+package com.example.receipt.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.receipt.config.SendGridConfig;
+import com.example.receipt.exception.EmailCircuitOpenException;
+import com.example.receipt.service.impl.EmailServiceImpl;
+import com.sendgrid.SendGrid;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EmailServiceImpl over the real SendGrid client and pooled HTTP client, against a local stub of the
+ * mail/send endpoint
+ */
+public class EmailServiceImplHttpTest {
+
+    private HttpServer server;
+    private SendGridConfig config;
+    private CloseableHttpClient httpClient;
+    private SendGrid sendGrid;
+    private EmailCircuitBreaker circuitBreaker;
+    private EmailServiceImpl emailService;
+
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private volatile int status = 202;
+    private volatile long delayMs;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v3/mail/send", exchange -> {
+            bodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] response = status == 202 ? new byte[0] : "{\"errors\":[{\"message\":\"bad request\"}]}".getBytes();
+            exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+            // Writing to the body after announcing none closes the stream, and with it the kept-alive connection
+            if (response.length > 0) {
+                exchange.getResponseBody().write(response);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        config = new SendGridConfig();
+        httpClient = config.sendGridHttpClient(4, 1000, 1000, 500, 30000);
+        // One client for the whole test: the SDK's client closes the shared HTTP client when it is finalized
+        sendGrid = config.sendGrid(httpClient, "test-api-key", "localhost:" + server.getAddress().getPort(), true);
+        circuitBreaker = new EmailCircuitBreaker(2, 60000, new SimpleMeterRegistry());
+        // No rate limit unless a test sets one
+        emailService = createEmailService(new EmailRateLimiter(0, 1, new SimpleMeterRegistry()));
+    }
+
+    private EmailServiceImpl createEmailService(EmailRateLimiter rateLimiter) {
+        EmailServiceImpl service = new EmailServiceImpl(sendGrid, httpClient,
+                rateLimiter, circuitBreaker, true, 2, 2);
+        ReflectionTestUtils.setField(service, "fromEmail", "noreply@example.com");
+        ReflectionTestUtils.setField(service, "fromName", "Receipt System");
+        return service;
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        emailService.destroy();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSendPostsEmailWithApiKey() throws IOException {
+        emailService.sendReportEmail("user@example.com", "Report", "<p>Hi</p>",
+                List.of(EmailAttachment.ofBytes("a,b".getBytes(), "report.csv", "text/csv")));
+
+        assertEquals(1, bodies.size());
+        assertEquals("Bearer test-api-key", authorizations.get(0));
+        assertTrue(bodies.get(0).contains("\"to\":[{\"email\":\"user@example.com\"}]"));
+        assertTrue(bodies.get(0).contains("\"content\":\"" + Base64.getEncoder().encodeToString("a,b".getBytes()) + "\""));
+    }
+
+    @Test
+    public void testSendsReuseOneKeepAliveConnection() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            emailService.sendReportEmail("user@example.com", "Report " + i, "<p>Hi</p>");
+        }
+
+        assertEquals(5, bodies.size());
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void testErrorStatusFailsTheSend() {
+        status = 400;
+
+        IOException ex = assertThrows(IOException.class,
+                () -> emailService.sendReportEmail("user@example.com", "Report", "<p>Hi</p>"));
+        assertTrue(ex.getMessage().contains("400"));
+    }
+
+    @Test
+    public void testSlowResponseTimesOut() {
+        delayMs = 2000;
+
+        assertThrows(IOException.class,
+                () -> emailService.sendReportEmail("user@example.com", "Report", "<p>Hi</p>"));
+    }
+
+    @Test
+    public void testAsyncSendReturnsBeforeTheUploadCompletes(@TempDir Path tempDir) throws Exception {
+        Path csv = Files.writeString(tempDir.resolve("report.csv"), "a,b");
+        delayMs = 200;
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> delivery = emailService.sendReportEmailAsync("user@example.com", "Report", "<p>Hi</p>",
+                List.of(EmailAttachment.ofFile(csv, "report.csv", "text/csv")));
+        long returnedAfterMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        delivery.get(5, TimeUnit.SECONDS);
+        assertTrue(returnedAfterMs < 200, "returned after " + returnedAfterMs + " ms");
+        assertEquals(1, bodies.size());
+        assertTrue(bodies.get(0).contains("\"content\":\"" + Base64.getEncoder().encodeToString("a,b".getBytes()) + "\""));
+        assertTrue(bodies.get(0).contains("\"filename\":\"report.csv\""));
+    }
+
+    @Test
+    public void testAsyncSendFailsTheFuture() {
+        status = 400;
+
+        CompletableFuture<Void> delivery = emailService.sendReportEmailAsync("user@example.com", "Report", "<p>Hi</p>", List.of());
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> delivery.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, ex.getCause());
+    }
+
+    @Test
+    public void testThrottlingOpensTheCircuitAndLaterSendsSkipSendGrid() {
+        status = 429;
+
+        for (int i = 0; i < 2; i++) {
+            IOException ex = assertThrows(IOException.class,
+                    () -> emailService.sendReportEmail("user@example.com", "Report", "<p>Hi</p>"));
+            assertFalse(ex instanceof EmailCircuitOpenException);
+        }
+        assertThrows(EmailCircuitOpenException.class,
+                () -> emailService.sendReportEmail("user@example.com", "Report", "<p>Hi</p>"));
+
+        assertEquals(EmailCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(2, bodies.size());
+    }
+
+    @Test
+    public void testSendsRejectedByTheOpenCircuitTakeNoRateLimitTokens() throws IOException {
+        EmailRateLimiter rateLimiter = mock(EmailRateLimiter.class);
+        emailService.destroy();
+        emailService = createEmailService(rateLimiter);
+        status = 429;
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IOException.class, () -> emailService.sendReportEmail("user@example.com", "Report", "<p>Hi</p>"));
+        }
+
+        // Only the two sends that reached SendGrid before the circuit opened were rate limited
+        verify(rateLimiter, times(2)).acquire();
+        assertEquals(2, bodies.size());
+    }
+
+    @Test
+    public void testRejectedEmailsDoNotOpenTheCircuit() {
+        status = 400;
+
+        for (int i = 0; i < 3; i++) {
+            IOException ex = assertThrows(IOException.class,
+                    () -> emailService.sendReportEmail("user@example.com", "Report", "<p>Hi</p>"));
+            assertFalse(ex instanceof EmailCircuitOpenException);
+        }
+
+        assertEquals(EmailCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(3, bodies.size());
+    }
+
+    @Test
+    public void testSendsAreHeldToTheRateLimit() throws IOException {
+        emailService.destroy();
+        emailService = createEmailService(new EmailRateLimiter(20, 1, new SimpleMeterRegistry()));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            emailService.sendReportEmail("user@example.com", "Report " + i, "<p>Hi</p>");
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // The first send takes the only token; the next two wait 50 ms each
+        assertTrue(elapsedMs >= 90, "took " + elapsedMs + " ms");
+        assertEquals(3, bodies.size());
+    }
+}
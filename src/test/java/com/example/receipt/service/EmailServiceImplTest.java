@@ -4,13 +4,26 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.example.receipt.service.impl.EmailServiceImpl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
 
 @SpringBootTest
 @TestPropertySource(properties = {
@@ -29,6 +42,15 @@ public class EmailServiceImplTest {
     private byte[] testPdfContent = "PDF Content".getBytes();
     private String testPdfFileName = "report.pdf";
 
+    private HttpEntity buildEmailEntity(String htmlContent, List<EmailAttachment> attachments) {
+        return ReflectionTestUtils.invokeMethod(emailService, "buildEmailEntity", testEmail, testSubject,
+                htmlContent, attachments);
+    }
+
+    private String buildEmailJson(String htmlContent, List<EmailAttachment> attachments) throws IOException {
+        return EntityUtils.toString(buildEmailEntity(htmlContent, attachments), StandardCharsets.UTF_8);
+    }
+
     @Test
     public void testEmailServiceInterfaceImplemented() {
         // Assert that EmailServiceImpl implements EmailService interface
@@ -60,6 +82,45 @@ public class EmailServiceImplTest {
         }
     }
 
+    @Test
+    public void testSendReportEmailMethodSignatureWithAttachments() {
+        // Verify that the send method taking a list of attachments exists
+        try {
+            EmailServiceImpl.class.getMethod("sendReportEmail",
+                String.class, String.class, String.class, List.class);
+        } catch (NoSuchMethodException e) {
+            fail("Method sendReportEmail with attachment list not found");
+        }
+    }
+
+    @Test
+    public void testStreamedAttachmentIsEncodedLikeInMemoryAttachment() throws IOException {
+        // Spans many encoder writes and does not end on a whole group of three bytes, so padding is exercised
+        byte[] content = new byte[3 * 8192 * 2 + 5];
+        new Random(42).nextBytes(content);
+
+        String json = buildEmailJson(testHtmlContent, List.of(EmailAttachment.ofBytes(content, "report.csv", "text/csv")));
+
+        assertTrue(json.contains("\"content\":\"" + Base64.getEncoder().encodeToString(content) + "\""));
+        assertTrue(json.contains("\"type\":\"text/csv\""));
+        assertTrue(json.contains("\"filename\":\"report.csv\""));
+    }
+
+    @Test
+    public void testEveryAttachmentIsIncludedInOrder(@TempDir Path tempDir) throws IOException {
+        Path csv = Files.writeString(tempDir.resolve("report.csv"), "a,b");
+
+        String json = buildEmailJson(testHtmlContent, List.of(
+                EmailAttachment.ofBytes(testPdfContent, testPdfFileName, "application/pdf"),
+                EmailAttachment.ofFile(csv, "report.csv", "text/csv")));
+
+        String pdfAttachment = "{\"content\":\"" + Base64.getEncoder().encodeToString(testPdfContent)
+                + "\",\"type\":\"application/pdf\",\"filename\":\"report.pdf\",\"disposition\":\"attachment\"}";
+        String csvAttachment = "{\"content\":\"" + Base64.getEncoder().encodeToString("a,b".getBytes())
+                + "\",\"type\":\"text/csv\",\"filename\":\"report.csv\",\"disposition\":\"attachment\"}";
+        assertTrue(json.endsWith(",\"attachments\":[" + pdfAttachment + "," + csvAttachment + "]}"));
+    }
+
     @Test
     public void testEmailServiceIsNotNull() {
         // Verify that the service is properly injected
@@ -72,4 +133,35 @@ public class EmailServiceImplTest {
         assertTrue(emailService instanceof EmailService, 
                    "EmailServiceImpl must implement EmailService interface");
     }
+
+    @Test
+    public void testEscapedContentParsesBackToTheOriginal() throws IOException {
+        String html = "<p class=\"note\">Caf\u00e9 \\ total:\t$5</p>\r\n\u0001\b\f";
+
+        JsonNode json = new ObjectMapper().readTree(buildEmailJson(html, List.of()));
+
+        assertEquals(html, json.at("/content/0/value").asText());
+        assertEquals(testSubject, json.at("/subject").asText());
+    }
+
+    @Test
+    public void testBodyLengthIsKnownUpFrontAndTheBodyCanBeWrittenAgain(@TempDir Path tempDir) throws IOException {
+        byte[] content = new byte[100_001];
+        new Random(7).nextBytes(content);
+        Path pdf = Files.write(tempDir.resolve("report.pdf"), content);
+        HttpEntity entity = buildEmailEntity("<p>R\u00e9sum\u00e9</p>", List.of(
+                EmailAttachment.ofFile(pdf, "report.pdf", "application/pdf"),
+                EmailAttachment.ofBytes("a,b".getBytes(), "report.csv", "text/csv")));
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        entity.writeTo(first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        entity.writeTo(second);
+
+        assertTrue(entity.isRepeatable());
+        assertEquals(entity.getContentLength(), first.size());
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+        JsonNode json = new ObjectMapper().readTree(first.toByteArray());
+        assertArrayEquals(content, Base64.getDecoder().decode(json.at("/attachments/0/content").asText()));
+    }
 }
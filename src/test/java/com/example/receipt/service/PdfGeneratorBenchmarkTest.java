@@ -0,0 +1,120 @@
+package com.example.receipt.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.example.receipt.entity.Property;
+import com.example.receipt.entity.PropertyReceipt;
+import com.example.receipt.entity.Receipt;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory and throughput of PDF report generation for 1k, 10k and 100k receipt rows.
+ * Compares rendering into a byte[] with streaming to an OutputStream.
+ * Run with: mvn test -Dtest=PdfGeneratorBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class PdfGeneratorBenchmarkTest {
+
+    private static final int[] ROW_COUNTS = {1_000, 10_000, 100_000};
+
+    private final PdfGeneratorService pdfGeneratorService = new PdfGeneratorService();
+
+    private interface Run {
+        long execute() throws Exception;
+    }
+
+    @Test
+    public void benchmarkPdfGeneration() throws Exception {
+        Property property = new Property();
+        property.setId(1L);
+        property.setName("Main Building");
+        property.setStreetNumber("123");
+        property.setStreetName("Main Street");
+        property.setCity("Boston");
+        property.setState("MA");
+        property.setZipCode("02101");
+
+        // Warm up class loading and JIT
+        List<PropertyReceipt> warmup = receipts(property, 2_000);
+        pdfGeneratorService.generateReport(property, 2024, warmup);
+
+        for (int rows : ROW_COUNTS) {
+            List<PropertyReceipt> receipts = receipts(property, rows);
+            measure("byte[]", rows, () -> pdfGeneratorService.generateReport(property, 2024, receipts).length);
+            measure("stream", rows, () -> {
+                CountingOutputStream out = new CountingOutputStream();
+                pdfGeneratorService.generateReport(property, 2024, receipts, out);
+                return out.getCount();
+            });
+        }
+    }
+
+    private void measure(String mode, int rows, Run run) throws Exception {
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        System.gc();
+        long baseline = heapPools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long start = System.nanoTime();
+        long bytes = run.execute();
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        long peak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+        assertTrue(bytes > 0);
+        System.out.printf("[benchmark] %-7s rows=%,7d  time=%,6d ms  rows/sec=%,9d  pdf=%,11d bytes  peak heap above baseline=%,6d MB%n",
+                mode, rows, elapsedMs, rows * 1000L / elapsedMs, bytes, Math.max(0, peak - baseline) / (1024 * 1024));
+    }
+
+    private List<PropertyReceipt> receipts(Property property, int count) {
+        List<PropertyReceipt> receipts = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Receipt receipt = new Receipt();
+            receipt.setId((long) i);
+            receipt.setDescription("Home Depot - Lumber and supplies " + i);
+            receipt.setAmount(10.0 + i % 500);
+            receipt.setReceiptDate("2024-%02d-%02d 10:00:00".formatted(1 + i % 12, 1 + i % 28));
+            receipt.setYear(2024);
+
+            PropertyReceipt propertyReceipt = new PropertyReceipt();
+            propertyReceipt.setId((long) i);
+            propertyReceipt.setProperty(property);
+            propertyReceipt.setReceipt(receipt);
+            propertyReceipt.setPercentage(50);
+            propertyReceipt.setPortion(receipt.getAmount() / 2);
+            receipts.add(propertyReceipt);
+        }
+        return receipts;
+    }
+
+    /**
+     * Counts bytes written and discards them, so no output buffer is retained
+     */
+    static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
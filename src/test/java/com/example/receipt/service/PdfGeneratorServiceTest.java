@@ -3,16 +3,22 @@ package com.example.receipt.service;
 import com.example.receipt.entity.Property;
 import com.example.receipt.entity.PropertyReceipt;
 import com.example.receipt.entity.Receipt;
-import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -58,7 +64,7 @@ public class PdfGeneratorServiceTest {
     }
 
     @Test
-    public void testGenerateYearlyReportPdfSuccess() throws DocumentException {
+    public void testGenerateYearlyReportPdfSuccess() throws Exception {
         // Act
         byte[] pdfBytes = pdfGeneratorService.generateYearlyReportPdf(testProperty, 2024, testReceipts);
 
@@ -70,7 +76,7 @@ public class PdfGeneratorServiceTest {
     }
 
     @Test
-    public void testGenerateYearlyReportPdfWithEmptyReceipts() throws DocumentException {
+    public void testGenerateYearlyReportPdfWithEmptyReceipts() throws Exception {
         // Act
         byte[] pdfBytes = pdfGeneratorService.generateYearlyReportPdf(testProperty, 2024, new ArrayList<>());
 
@@ -80,7 +86,7 @@ public class PdfGeneratorServiceTest {
     }
 
     @Test
-    public void testGenerateYearlyReportPdfWithSingleReceipt() throws DocumentException {
+    public void testGenerateYearlyReportPdfWithSingleReceipt() throws Exception {
         // Arrange
         List<PropertyReceipt> singleReceipt = new ArrayList<>();
         singleReceipt.add(testReceipts.getFirst());
@@ -94,7 +100,7 @@ public class PdfGeneratorServiceTest {
     }
 
     @Test
-    public void testGenerateYearlyReportPdfWithMultipleReceipts() throws DocumentException {
+    public void testGenerateYearlyReportPdfWithMultipleReceipts() throws Exception {
         // Act
         byte[] pdfBytes = pdfGeneratorService.generateYearlyReportPdf(testProperty, 2024, testReceipts);
 
@@ -106,7 +112,7 @@ public class PdfGeneratorServiceTest {
     }
 
     @Test
-    public void testGenerateYearlyReportPdfDifferentYears() throws DocumentException {
+    public void testGenerateYearlyReportPdfDifferentYears() throws Exception {
         // Act & Assert for different years
         byte[] pdf2024 = pdfGeneratorService.generateYearlyReportPdf(testProperty, 2024, testReceipts);
         byte[] pdf2023 = pdfGeneratorService.generateYearlyReportPdf(testProperty, 2023, testReceipts);
@@ -121,7 +127,7 @@ public class PdfGeneratorServiceTest {
     }
 
     @Test
-    public void testGenerateYearlyReportPdfWithDifferentProperties() throws DocumentException {
+    public void testGenerateYearlyReportPdfWithDifferentProperties() throws Exception {
         // Arrange
         Property anotherProperty = new Property();
         anotherProperty.setId(2L);
@@ -144,7 +150,7 @@ public class PdfGeneratorServiceTest {
     }
 
     @Test
-    public void testGenerateYearlyReportPdfWithLargeAmounts() throws DocumentException {
+    public void testGenerateYearlyReportPdfWithLargeAmounts() throws Exception {
         // Arrange
         List<PropertyReceipt> largeAmountReceipts = new ArrayList<>();
         for (int i = 1; i <= 5; i++) {
@@ -173,7 +179,7 @@ public class PdfGeneratorServiceTest {
     }
 
     @Test
-    public void testGenerateYearlyReportPdfConsistency() throws DocumentException {
+    public void testGenerateYearlyReportPdfConsistency() throws Exception {
         // Act - Generate same report twice
         byte[] pdf1 = pdfGeneratorService.generateYearlyReportPdf(testProperty, 2024, testReceipts);
         byte[] pdf2 = pdfGeneratorService.generateYearlyReportPdf(testProperty, 2024, testReceipts);
@@ -188,7 +194,7 @@ public class PdfGeneratorServiceTest {
     }
 
     @Test
-    public void testGenerateYearlyReportPdfWithSpecialCharactersInPropertyName() throws DocumentException {
+    public void testGenerateYearlyReportPdfWithSpecialCharactersInPropertyName() throws Exception {
         // Arrange
         Property specialProperty = new Property();
         specialProperty.setId(3L);
@@ -208,7 +214,7 @@ public class PdfGeneratorServiceTest {
     }
 
     @Test
-    public void testGenerateYearlyReportPdfWithBoundaryYear() throws DocumentException {
+    public void testGenerateYearlyReportPdfWithBoundaryYear() throws Exception {
         // Act
         byte[] pdf1900 = pdfGeneratorService.generateYearlyReportPdf(testProperty, 1900, testReceipts);
         byte[] pdf2100 = pdfGeneratorService.generateYearlyReportPdf(testProperty, 2100, testReceipts);
@@ -219,4 +225,85 @@ public class PdfGeneratorServiceTest {
         assertTrue(pdf1900.length > 0);
         assertTrue(pdf2100.length > 0);
     }
+
+    @Test
+    public void testStreamedReportSpansPagesAndKeepsEveryRow() throws Exception {
+        // Arrange - several flush chunks' worth of rows
+        List<PropertyReceipt> receipts = new ArrayList<>();
+        int rows = PdfGeneratorService.ROWS_PER_CHUNK * 2 + 7;
+        for (int i = 1; i <= rows; i++) {
+            Receipt receipt = new Receipt();
+            receipt.setId((long) i);
+            receipt.setDescription("Home Depot - Receipt " + i);
+            receipt.setAmount(10.0);
+            receipt.setReceiptDate("2024-01-05 10:00:00");
+            receipt.setYear(2024);
+
+            PropertyReceipt propertyReceipt = new PropertyReceipt();
+            propertyReceipt.setProperty(testProperty);
+            propertyReceipt.setReceipt(receipt);
+            propertyReceipt.setPortion(10.0);
+            receipts.add(propertyReceipt);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                fail("report generation must not close the caller's stream");
+            }
+        };
+
+        // Act
+        pdfGeneratorService.generateReport(testProperty, 2024, receipts, out);
+
+        // Assert
+        PdfReader reader = new PdfReader(out.toByteArray());
+        try {
+            int pages = reader.getNumberOfPages();
+            assertTrue(pages > 1);
+            StringBuilder text = new StringBuilder();
+            for (int page = 1; page <= pages; page++) {
+                text.append(PdfTextExtractor.getTextFromPage(reader, page)).append('\n');
+            }
+            // Every row made it out, once, in order
+            Matcher descriptions = Pattern.compile("Receipt (\\d+)").matcher(text);
+            int expected = 1;
+            while (descriptions.find()) {
+                assertEquals(expected++, Integer.parseInt(descriptions.group(1)));
+            }
+            assertEquals(rows + 1, expected);
+            // Dates are not split at their hyphens
+            assertTrue(text.toString().contains("2024-01-05"));
+            // Header row repeats on every page
+            assertTrue(PdfTextExtractor.getTextFromPage(reader, pages).contains("Receipt ID"));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testStreamedAndByteArrayReportsMatch() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pdfGeneratorService.generateReport(testProperty, 2024, testReceipts, out);
+
+        byte[] pdfBytes = pdfGeneratorService.generateReport(testProperty, 2024, testReceipts);
+
+        // Creation timestamps and document ids differ, the content does not
+        PdfReader streamed = new PdfReader(out.toByteArray());
+        PdfReader buffered = new PdfReader(pdfBytes);
+        assertEquals(PdfTextExtractor.getTextFromPage(buffered, 1).replaceAll("Report Generated: .*", ""),
+                PdfTextExtractor.getTextFromPage(streamed, 1).replaceAll("Report Generated: .*", ""));
+        streamed.close();
+        buffered.close();
+    }
+
+    @Test
+    public void testWriteReportReportsSizeAndChecksumOfBytesWritten() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ReportOutput output = pdfGeneratorService.writeReport(testProperty, 2024, testReceipts, out);
+
+        byte[] written = out.toByteArray();
+        assertEquals(written.length, output.size());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(written)), output.sha256());
+    }
 }
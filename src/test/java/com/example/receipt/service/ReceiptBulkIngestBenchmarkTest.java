@@ -0,0 +1,89 @@
+package com.example.receipt.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.example.receipt.cache.PropertyCacheInvalidationListener;
+import com.example.receipt.cache.PropertyNameCache;
+import com.example.receipt.cache.ReceiptSourceCache;
+import com.example.receipt.dto.BulkReceiptResult;
+import com.example.receipt.dto.PropertyAllocationDto;
+import com.example.receipt.dto.ReceiptDtoMapper;
+import com.example.receipt.dto.ReceiptUpsertRequest;
+import com.example.receipt.entity.Property;
+import com.example.receipt.repository.ReceiptBatchRepository;
+import com.example.receipt.service.impl.ReceiptServiceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throughput comparison of bulk ingest against one upsert per receipt.
+ * Run with: mvn test -Dtest=ReceiptBulkIngestBenchmarkTest -Dbenchmark=true
+ */
+@DataJpaTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@ImportAutoConfiguration({ValidationAutoConfiguration.class, JacksonAutoConfiguration.class})
+@Import({ReceiptBulkIngestService.class, ReceiptServiceImpl.class, ReceiptDtoMapper.class, ReceiptBatchRepository.class,
+        ReceiptSourceCache.class, PropertyNameCache.class, PropertyCacheInvalidationListener.class})
+public class ReceiptBulkIngestBenchmarkTest {
+
+    private static final int RECEIPT_COUNT = 5000;
+
+    @Autowired
+    private ReceiptBulkIngestService receiptBulkIngestService;
+
+    @Autowired
+    private ReceiptDtoMapper receiptDtoMapper;
+
+    @Autowired
+    private ReceiptService receiptService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    public void compareBulkIngestWithPerItemUpsert() {
+        for (String name : List.of("Main Building", "Downtown Office")) {
+            Property property = new Property();
+            property.setName(name);
+            property.setStreetNumber("1");
+            property.setStreetName("Main St");
+            property.setCity("Boston");
+            property.setState("MA");
+            property.setZipCode("02101");
+            entityManager.persistAndFlush(property);
+        }
+
+        List<ReceiptUpsertRequest> requests = new ArrayList<>(RECEIPT_COUNT);
+        for (int i = 0; i < RECEIPT_COUNT; i++) {
+            requests.add(new ReceiptUpsertRequest("2024-01-01T00:00:00Z", 10.0 + i, "Store " + (i % 50), null,
+                    List.of(new PropertyAllocationDto("Main Building", 60), new PropertyAllocationDto("Downtown Office", 40))));
+        }
+
+        long start = System.nanoTime();
+        for (ReceiptUpsertRequest request : requests) {
+            receiptService.upsertReceipt(receiptDtoMapper.mapRequestToDto(request));
+        }
+        entityManager.flush();
+        long perItemNanos = System.nanoTime() - start;
+        entityManager.clear();
+
+        start = System.nanoTime();
+        List<BulkReceiptResult> results = receiptBulkIngestService.ingest(requests);
+        long bulkNanos = System.nanoTime() - start;
+
+        assertTrue(results.stream().allMatch(result -> BulkReceiptResult.STATUS_CREATED.equals(result.getStatus())));
+        System.out.printf("Per-item upsert: %.0f receipts/sec%n", RECEIPT_COUNT / (perItemNanos / 1e9));
+        System.out.printf("Bulk ingest:     %.0f receipts/sec%n", RECEIPT_COUNT / (bulkNanos / 1e9));
+    }
+}
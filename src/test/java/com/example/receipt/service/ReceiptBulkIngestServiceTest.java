@@ -0,0 +1,129 @@
+package com.example.receipt.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.receipt.cache.PropertyCacheInvalidationListener;
+import com.example.receipt.cache.PropertyNameCache;
+import com.example.receipt.cache.ReceiptSourceCache;
+import com.example.receipt.dto.BulkReceiptResult;
+import com.example.receipt.dto.PropertyAllocationDto;
+import com.example.receipt.dto.ReceiptDtoMapper;
+import com.example.receipt.dto.ReceiptUpsertRequest;
+import com.example.receipt.entity.Property;
+import com.example.receipt.repository.ReceiptBatchRepository;
+import com.example.receipt.service.impl.ReceiptServiceImpl;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@DataJpaTest(properties = "app.bulk.batch-size=2")
+@ImportAutoConfiguration({ValidationAutoConfiguration.class, JacksonAutoConfiguration.class})
+@Import({ReceiptBulkIngestService.class, ReceiptServiceImpl.class, ReceiptDtoMapper.class, ReceiptBatchRepository.class,
+        ReceiptSourceCache.class, PropertyNameCache.class, PropertyCacheInvalidationListener.class})
+public class ReceiptBulkIngestServiceTest {
+
+    @Autowired
+    private ReceiptBulkIngestService receiptBulkIngestService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        for (String name : List.of("Main Building", "Downtown Office")) {
+            Property property = new Property();
+            property.setName(name);
+            property.setStreetNumber("1");
+            property.setStreetName("Main St");
+            property.setCity("Boston");
+            property.setState("MA");
+            property.setZipCode("02101");
+            entityManager.persistAndFlush(property);
+        }
+    }
+
+    @Test
+    public void testIngestReportsPerItemResults() {
+        ReceiptUpsertRequest valid = new ReceiptUpsertRequest("2024-03-01T10:00:00Z", 200.0, "Walmart", "Supplies",
+                List.of(new PropertyAllocationDto("main building", 75), new PropertyAllocationDto("Downtown Office", 25)));
+        ReceiptUpsertRequest badPercentages = new ReceiptUpsertRequest("2024-03-02T10:00:00Z", 50.0, "Target", "Paint",
+                List.of(new PropertyAllocationDto("Main Building", 90)));
+        ReceiptUpsertRequest missingStore = new ReceiptUpsertRequest("2024-03-03T10:00:00Z", 20.0, "", null, null);
+        ReceiptUpsertRequest noAllocations = new ReceiptUpsertRequest("2024-03-04T10:00:00Z", 10.0, "Walmart", null, null);
+
+        List<BulkReceiptResult> results = receiptBulkIngestService.ingest(
+                List.of(valid, badPercentages, missingStore, noAllocations));
+
+        assertEquals(4, results.size());
+        assertEquals(BulkReceiptResult.STATUS_CREATED, results.get(0).getStatus());
+        assertNotNull(results.get(0).getReceiptId());
+        assertEquals(BulkReceiptResult.STATUS_FAILED, results.get(1).getStatus());
+        assertTrue(results.get(1).getError().contains("must sum to 100"));
+        assertEquals(BulkReceiptResult.STATUS_FAILED, results.get(2).getStatus());
+        assertTrue(results.get(2).getError().contains("Store name is required"));
+        assertEquals(BulkReceiptResult.STATUS_CREATED, results.get(3).getStatus());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).getIndex());
+        }
+
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM receipts", Integer.class));
+        assertEquals(150.0, jdbcTemplate.queryForObject(
+                "SELECT pr.portion FROM property_receipts pr JOIN properties p ON p.id = pr.property_id " +
+                "WHERE pr.receipt_id = ? AND p.name = 'Main Building'", Double.class, results.get(0).getReceiptId()));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM receipt_sources WHERE retailer_name = 'WALMART'", Integer.class));
+    }
+
+    @Test
+    public void testIngestNdjsonKeepsOrderAcrossMalformedLines() throws Exception {
+        String body = """
+                {"receiptDate":"2024-05-01T09:00:00Z","total":40.0,"storeName":"Home Depot","properties":[{"propertyName":"Main Building","propertyPercentage":100}]}
+                {not json}
+
+                {"receiptDate":"2024-05-02T09:00:00Z","total":60.0,"storeName":"Home Depot"}
+                {"receiptDate":"2024-05-03T09:00:00Z","total":80.0,"storeName":"Lowes"}
+                """;
+
+        List<BulkReceiptResult> results = receiptBulkIngestService.ingestNdjson(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(4, results.size());
+        assertEquals(BulkReceiptResult.STATUS_CREATED, results.get(0).getStatus());
+        assertEquals(BulkReceiptResult.STATUS_FAILED, results.get(1).getStatus());
+        assertTrue(results.get(1).getError().startsWith("Malformed JSON"));
+        assertEquals(BulkReceiptResult.STATUS_CREATED, results.get(2).getStatus());
+        assertEquals(BulkReceiptResult.STATUS_CREATED, results.get(3).getStatus());
+        assertEquals(3, results.get(3).getIndex());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM receipts", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM property_receipts", Integer.class));
+    }
+
+    @Test
+    public void testResolveReceiptSourcesCreatesSourcesForValidRequestsOnly() {
+        ReceiptUpsertRequest valid = new ReceiptUpsertRequest("2024-03-01T10:00:00Z", 200.0, "Costco", "Bulk supplies", null);
+        ReceiptUpsertRequest missingTotal = new ReceiptUpsertRequest("2024-03-02T10:00:00Z", null, "Staples", null, null);
+
+        receiptBulkIngestService.resolveReceiptSources(List.of(valid, missingTotal));
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM receipt_sources WHERE retailer_name = 'COSTCO'", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM receipt_sources WHERE retailer_name = 'STAPLES'", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM receipts", Integer.class));
+    }
+}
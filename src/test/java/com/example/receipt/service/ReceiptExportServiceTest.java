@@ -0,0 +1,102 @@
+package com.example.receipt.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.example.receipt.dto.ReceiptDto;
+import com.example.receipt.entity.Receipt;
+import com.example.receipt.entity.ReceiptSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@DataJpaTest
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import(ReceiptExportService.class)
+public class ReceiptExportServiceTest {
+
+    @Autowired
+    private ReceiptExportService receiptExportService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ReceiptSource homeDepot;
+    private ReceiptSource lowes;
+
+    @BeforeEach
+    public void setUp() {
+        homeDepot = entityManager.persist(new ReceiptSource("HOME DEPOT", "Home Depot"));
+        lowes = entityManager.persist(new ReceiptSource("LOWES", "Lowes"));
+        persistReceipt("Lumber", 120.0, 2023, homeDepot);
+        persistReceipt("Paint", 45.5, 2024, homeDepot);
+        persistReceipt("Tiles", 300.0, 2024, lowes);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void persistReceipt(String description, Double amount, Integer year, ReceiptSource source) {
+        Receipt receipt = new Receipt();
+        receipt.setDescription(description);
+        receipt.setAmount(amount);
+        receipt.setReceiptDate(year + "-06-01 12:00:00");
+        receipt.setYear(year);
+        receipt.setReceiptSource(source);
+        entityManager.persist(receipt);
+    }
+
+    @Test
+    public void testExportJsonArrayFilteredByYear() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = receiptExportService.exportReceipts(2024, null, "json", out);
+
+        assertEquals(2, written);
+        List<ReceiptDto> receipts = List.of(objectMapper.readValue(out.toByteArray(), ReceiptDto[].class));
+        assertEquals(List.of("Paint", "Tiles"), receipts.stream().map(ReceiptDto::getDescription).toList());
+        assertEquals(lowes.getId(), receipts.get(1).getReceiptSourceId());
+        assertNotNull(receipts.get(0).getId());
+    }
+
+    @Test
+    public void testExportNdjsonFilteredBySourceAndYear() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = receiptExportService.exportReceipts(2024, homeDepot.getId(), "ndjson", out);
+
+        assertEquals(1, written);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, lines.length);
+        assertEquals("Paint", objectMapper.readValue(lines[0], ReceiptDto.class).getDescription());
+    }
+
+    @Test
+    public void testExportAllAndEmptyResults() throws Exception {
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        ByteArrayOutputStream none = new ByteArrayOutputStream();
+
+        assertEquals(3, receiptExportService.exportReceipts(null, null, "NDJSON", all));
+        assertEquals(0, receiptExportService.exportReceipts(1999, null, "JSON", none));
+
+        assertEquals(3, all.toString(StandardCharsets.UTF_8).split("\n").length);
+        assertEquals("[]", none.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUnsupportedFormatIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> receiptExportService.normalizeFormat("xml"));
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.receipt.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.receipt.cache.PropertyCacheInvalidationListener;
+import com.example.receipt.cache.PropertyNameCache;
+import com.example.receipt.cache.ReceiptSourceCache;
+import com.example.receipt.dto.ReceiptDtoMapper;
+import com.example.receipt.entity.Property;
+import com.example.receipt.entity.ReceiptImportJob;
+import com.example.receipt.exception.ImportJobInProgressException;
+import com.example.receipt.repository.ReceiptBatchRepository;
+import com.example.receipt.repository.ReceiptImportJobRepository;
+import com.example.receipt.service.impl.ReceiptServiceImpl;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+@DataJpaTest(properties = "app.import.chunk-size=2")
+@ImportAutoConfiguration({ValidationAutoConfiguration.class, JacksonAutoConfiguration.class})
+@Import({ReceiptImportService.class, ReceiptBulkIngestService.class, ReceiptServiceImpl.class, ReceiptDtoMapper.class,
+        ReceiptBatchRepository.class, ReceiptSourceCache.class, PropertyNameCache.class, PropertyCacheInvalidationListener.class})
+public class ReceiptImportServiceTest {
+
+    private static final String CSV = """
+            receiptDate,total,storeName,receiptDescription,properties
+            2024-01-05T10:00:00Z,100.00,Home Depot,"Lumber, nails and ""misc""\",Main Building:50;Annex:50
+            2024-01-06T10:00:00Z,not-a-number,Home Depot,,
+            2024-01-07T10:00:00Z,30.00,Lowes,Paint,Annex:100
+            2024-01-08T10:00:00Z,40.00,Lowes,,
+            2024-01-09T10:00:00Z,50.00,Target,Supplies,Main Building:90
+            """;
+
+    @Autowired
+    private ReceiptImportService receiptImportService;
+
+    @Autowired
+    private ReceiptImportJobRepository receiptImportJobRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        for (String name : new String[] {"Main Building", "Annex"}) {
+            Property property = new Property();
+            property.setName(name);
+            property.setStreetNumber("1");
+            property.setStreetName("Main St");
+            property.setCity("Boston");
+            property.setState("MA");
+            property.setZipCode("02101");
+            entityManager.persistAndFlush(property);
+        }
+    }
+
+    @Test
+    public void testImportNdjsonCommitsChunksAndCountsFailures() {
+        String body = """
+                {"receiptDate":"2024-02-01T09:00:00Z","total":20.0,"storeName":"Walmart","properties":[{"propertyName":"annex","propertyPercentage":100}]}
+                {broken
+                {"receiptDate":"2024-02-02T09:00:00Z","total":25.0,"storeName":"Walmart"}
+
+                {"receiptDate":"2024-02-03T09:00:00Z","total":-1.0,"storeName":"Walmart"}
+                {"receiptDate":"2024-02-04T09:00:00Z","total":35.0,"storeName":"Target"}
+                """;
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        ReceiptImportJob job = receiptImportService.importStream(new ByteArrayInputStream(bytes), "ndjson", "test");
+
+        assertEquals(ReceiptImportJob.STATUS_COMPLETED, job.getStatus());
+        assertEquals(5, job.getRowNumber());
+        assertEquals(3, job.getRowsCreated());
+        assertEquals(2, job.getRowsFailed());
+        assertEquals(bytes.length, job.getByteOffset());
+        assertTrue(job.getLastError().contains("greater than 0"));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM receipts", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM property_receipts", Integer.class));
+    }
+
+    @Test
+    public void testImportCsvParsesQuotedFieldsAndAllocations() {
+        ReceiptImportJob job = receiptImportService.importStream(
+                new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)), "csv", "test");
+
+        assertEquals(ReceiptImportJob.STATUS_COMPLETED, job.getStatus());
+        assertEquals(5, job.getRowNumber());
+        assertEquals(3, job.getRowsCreated());
+        assertEquals(2, job.getRowsFailed());
+        assertTrue(job.getLastError().contains("must sum to 100"));
+        assertEquals("Home Depot - Lumber, nails and \"misc\"", jdbcTemplate.queryForObject(
+                "SELECT description FROM receipts WHERE amount = 100.0", String.class));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM property_receipts", Integer.class));
+    }
+
+    @Test
+    public void testResumeSkipsRowsBeforeCheckpoint() {
+        byte[] bytes = CSV.getBytes(StandardCharsets.UTF_8);
+        // Simulate a crash after the first chunk (header plus two rows) was committed
+        String[] lines = CSV.split("\n");
+        long checkpoint = (lines[0] + "\n" + lines[1] + "\n" + lines[2] + "\n").getBytes(StandardCharsets.UTF_8).length;
+        ReceiptImportJob crashed = new ReceiptImportJob(ReceiptImportService.FORMAT_CSV, "backfill.csv");
+        crashed.setByteOffset(checkpoint);
+        crashed.setRowNumber(2);
+        crashed.setRowsCreated(1);
+        crashed.setRowsFailed(1);
+        crashed.setUpdatedAt(LocalDateTime.now().minusHours(1));
+        crashed = receiptImportJobRepository.saveAndFlush(crashed);
+
+        ReceiptImportJob job = receiptImportService.resumeImport(crashed.getId(), new ByteArrayInputStream(bytes));
+
+        assertEquals(ReceiptImportJob.STATUS_COMPLETED, job.getStatus());
+        assertEquals(5, job.getRowNumber());
+        assertEquals(3, job.getRowsCreated());
+        assertEquals(2, job.getRowsFailed());
+        assertEquals(bytes.length, job.getByteOffset());
+        // Only the rows after the checkpoint were inserted
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM receipts", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM receipts WHERE amount = 100.0", Integer.class));
+    }
+
+    @Test
+    public void testResumeFailsWhenInputIsShorterThanCheckpoint() {
+        ReceiptImportJob crashed = new ReceiptImportJob(ReceiptImportService.FORMAT_NDJSON, "backfill.ndjson");
+        crashed.setByteOffset(10_000);
+        crashed.setStatus(ReceiptImportJob.STATUS_FAILED);
+        crashed = receiptImportJobRepository.saveAndFlush(crashed);
+
+        ReceiptImportJob job = receiptImportService.resumeImport(crashed.getId(),
+                new ByteArrayInputStream("{}\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(ReceiptImportJob.STATUS_FAILED, job.getStatus());
+        assertEquals(10_000, job.getByteOffset());
+        assertTrue(job.getLastError().contains("before the checkpoint"));
+    }
+
+    @Test
+    public void testResumeRejectsJobStillMakingProgress() {
+        ReceiptImportJob running = receiptImportJobRepository.saveAndFlush(
+                new ReceiptImportJob(ReceiptImportService.FORMAT_NDJSON, "request-body"));
+
+        assertThrows(ImportJobInProgressException.class, () -> receiptImportService.resumeImport(running.getId(),
+                new ByteArrayInputStream("{}\n".getBytes(StandardCharsets.UTF_8))));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM receipts", Integer.class));
+    }
+
+    @Test
+    public void testImportReadsLinesLongerThanTheReadBuffer() {
+        // Unknown fields are ignored, so padding pushes the first row across several read blocks
+        String ndjson = "{\"receiptDate\":\"2024-02-01T10:00:00Z\",\"total\":12.5,\"storeName\":\"Lowes\"," +
+                "\"padding\":\"" + "x".repeat(150_000) + "\"}\r\n" +
+                "{\"receiptDate\":\"2024-02-02T10:00:00Z\",\"total\":7.5,\"storeName\":\"Lowes\"}";
+        byte[] bytes = ndjson.getBytes(StandardCharsets.UTF_8);
+
+        ReceiptImportJob job = receiptImportService.importStream(new ByteArrayInputStream(bytes), "ndjson", "test");
+
+        assertEquals(ReceiptImportJob.STATUS_COMPLETED, job.getStatus());
+        assertEquals(2, job.getRowsCreated());
+        assertEquals(0, job.getRowsFailed());
+        assertEquals(bytes.length, job.getByteOffset());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM receipts", Integer.class));
+    }
+}
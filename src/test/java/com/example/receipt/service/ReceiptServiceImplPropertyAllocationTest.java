@@ -0,0 +1,196 @@
+package com.example.receipt.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.receipt.cache.PropertyNameCache;
+import com.example.receipt.cache.ReportArtifactCache;
+import com.example.receipt.dto.PropertyAllocationDto;
+import com.example.receipt.dto.ReceiptDto;
+import com.example.receipt.entity.Property;
+import com.example.receipt.entity.PropertyReceipt;
+import com.example.receipt.entity.Receipt;
+import com.example.receipt.repository.PropertyRepository;
+import com.example.receipt.repository.ReceiptRepository;
+import com.example.receipt.repository.ReceiptSourceRepository;
+import com.example.receipt.service.impl.ReceiptServiceImpl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@ExtendWith(MockitoExtension.class)
+public class ReceiptServiceImplPropertyAllocationTest {
+
+    @Mock
+    private ReceiptRepository receiptRepository;
+
+    @Mock
+    private ReceiptSourceRepository receiptSourceRepository;
+
+    @Mock
+    private PropertyRepository propertyRepository;
+
+    @Spy
+    private PropertyNameCache propertyNameCache = new PropertyNameCache(100, 60000);
+
+    @Mock
+    private ReportArtifactCache reportArtifactCache;
+
+    @InjectMocks
+    private ReceiptServiceImpl receiptService;
+
+    @Test
+    public void testAllocationsResolvedWithSingleBatchedQuery() {
+        ReceiptDto receiptDto = receiptWithAllocations(
+                new PropertyAllocationDto("Main Building", 50),
+                new PropertyAllocationDto("downtown office", 30),
+                new PropertyAllocationDto("Unknown", 20));
+
+        when(propertyRepository.findByNormalizedNameIn(anyCollection()))
+                .thenReturn(List.of(property(1L, "Main Building"), property(2L, "Downtown Office")));
+        when(propertyRepository.getReferenceById(anyLong()))
+                .thenAnswer(invocation -> property(invocation.getArgument(0), "ref"));
+        when(receiptRepository.save(any(Receipt.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        receiptService.upsertReceipt(receiptDto);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> namesCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(propertyRepository, times(1)).findByNormalizedNameIn(namesCaptor.capture());
+        assertEquals(3, namesCaptor.getValue().size());
+        assertTrue(namesCaptor.getValue().contains("main building"));
+        verify(propertyRepository, never()).findAll();
+
+        ArgumentCaptor<Receipt> receiptCaptor = ArgumentCaptor.forClass(Receipt.class);
+        verify(receiptRepository).save(receiptCaptor.capture());
+        assertEquals(2, receiptCaptor.getValue().getPropertyReceipts().size());
+        assertEquals(50.0, receiptCaptor.getValue().getPropertyReceipts().getFirst().getPortion());
+    }
+
+    @Test
+    public void testCachedAllocationsSkipQuery() {
+        propertyNameCache.put("main building", 1L);
+        propertyNameCache.put("downtown office", 2L);
+        ReceiptDto receiptDto = receiptWithAllocations(
+                new PropertyAllocationDto("MAIN BUILDING", 60),
+                new PropertyAllocationDto("Downtown Office", 40));
+
+        when(propertyRepository.getReferenceById(anyLong()))
+                .thenAnswer(invocation -> property(invocation.getArgument(0), "ref"));
+        when(receiptRepository.save(any(Receipt.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        receiptService.upsertReceipt(receiptDto);
+
+        verify(propertyRepository, never()).findByNormalizedNameIn(anyCollection());
+        verify(propertyRepository, times(2)).getReferenceById(anyLong());
+    }
+
+    @Test
+    public void testResolvedNamesArePopulatedIntoCache() {
+        ReceiptDto receiptDto = receiptWithAllocations(new PropertyAllocationDto("Main Building", 100));
+
+        when(propertyRepository.findByNormalizedNameIn(anyCollection()))
+                .thenReturn(List.of(property(7L, "Main Building")));
+        when(propertyRepository.getReferenceById(7L)).thenReturn(property(7L, "Main Building"));
+        when(receiptRepository.save(any(Receipt.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        receiptService.upsertReceipt(receiptDto);
+
+        assertEquals(7L, propertyNameCache.get("main building"));
+    }
+
+    @Test
+    public void testCaseVariantsResolveToTheExactNameOrElseTheLowestId() {
+        ReceiptDto receiptDto = receiptWithAllocations(
+                new PropertyAllocationDto("Main Building", 50),
+                new PropertyAllocationDto("MAIN BUILDING", 30),
+                new PropertyAllocationDto("main building", 20));
+
+        when(propertyRepository.findByNormalizedNameIn(anyCollection()))
+                .thenReturn(List.of(property(9L, "Main Building"), property(4L, "MAIN BUILDING")));
+        when(propertyRepository.getReferenceById(anyLong()))
+                .thenAnswer(invocation -> property(invocation.getArgument(0), "ref"));
+        when(receiptRepository.save(any(Receipt.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        receiptService.upsertReceipt(receiptDto);
+
+        ArgumentCaptor<Receipt> receiptCaptor = ArgumentCaptor.forClass(Receipt.class);
+        verify(receiptRepository).save(receiptCaptor.capture());
+        assertEquals(List.of(9L, 4L, 4L), receiptCaptor.getValue().getPropertyReceipts().stream()
+                .map(propertyReceipt -> propertyReceipt.getProperty().getId()).toList());
+        // Which one a name picks depends on its exact spelling, so the shared name is not cached
+        assertNull(propertyNameCache.get("main building"));
+    }
+
+    @Test
+    public void testUpdateEvictsReportsForOldAndNewAllocations() {
+        Receipt existing = new Receipt();
+        existing.setId(5L);
+        existing.setAmount(100.0);
+        existing.setYear(2023);
+        PropertyReceipt oldAllocation = new PropertyReceipt();
+        oldAllocation.setReceipt(existing);
+        oldAllocation.setProperty(property(1L, "Main Building"));
+        existing.setPropertyReceipts(new ArrayList<>(List.of(oldAllocation)));
+
+        ReceiptDto receiptDto = receiptWithAllocations(new PropertyAllocationDto("Annex", 100));
+        receiptDto.setId(5L);
+        propertyNameCache.put("annex", 2L);
+        when(receiptRepository.existsById(5L)).thenReturn(true);
+        when(receiptRepository.findById(5L)).thenReturn(Optional.of(existing));
+        when(propertyRepository.getReferenceById(2L)).thenReturn(property(2L, "Annex"));
+        when(receiptRepository.save(any(Receipt.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        receiptService.upsertReceipt(receiptDto);
+
+        verify(reportArtifactCache).evict(1L, 2023);
+        verify(reportArtifactCache).evict(2L, 2024);
+        verifyNoMoreInteractions(reportArtifactCache);
+    }
+
+    @Test
+    public void testDeleteEvictsReportsForAllocations() {
+        Receipt existing = new Receipt();
+        existing.setId(5L);
+        existing.setYear(2023);
+        PropertyReceipt allocation = new PropertyReceipt();
+        allocation.setReceipt(existing);
+        allocation.setProperty(property(1L, "Main Building"));
+        existing.setPropertyReceipts(new ArrayList<>(List.of(allocation)));
+        when(receiptRepository.existsById(5L)).thenReturn(true);
+        when(receiptRepository.findById(5L)).thenReturn(Optional.of(existing));
+
+        receiptService.deleteReceipt(5L);
+
+        verify(reportArtifactCache).evict(1L, 2023);
+        verify(receiptRepository).deleteById(5L);
+    }
+
+    private ReceiptDto receiptWithAllocations(PropertyAllocationDto... allocations) {
+        ReceiptDto receiptDto = new ReceiptDto();
+        receiptDto.setDescription("Store - Items");
+        receiptDto.setAmount(100.0);
+        receiptDto.setReceiptDate("2024-03-01T10:00:00Z");
+        receiptDto.setYear(2024);
+        receiptDto.setPropertyAllocations(List.of(allocations));
+        return receiptDto;
+    }
+
+    private Property property(Long id, String name) {
+        Property property = new Property();
+        property.setId(id);
+        property.setName(name);
+        return property;
+    }
+}
@@ -57,7 +57,7 @@ public class ReceiptServiceImplReceiptSourceTest {
         savedReceipt.setAmount(100.0);
         savedReceipt.setReceiptSource(existingSource);
         
-        when(receiptSourceRepository.findById(1)).thenReturn(Optional.of(existingSource));
+        when(receiptSourceRepository.getReferenceById(1)).thenReturn(existingSource);
         when(receiptRepository.save(any(Receipt.class))).thenReturn(savedReceipt);
         
         ReceiptDto result = receiptService.upsertReceipt(receiptDto);
@@ -65,11 +65,12 @@ public class ReceiptServiceImplReceiptSourceTest {
         assertNotNull(result);
         assertEquals(100L, result.getId());
         assertEquals(1, result.getReceiptSourceId());
-        verify(receiptSourceRepository).findById(1);
+        verify(receiptSourceRepository).getReferenceById(1);
+        verify(receiptSourceRepository, never()).findById(any());
     }
     
     @Test
-    public void testUpsertReceipt_CreateNewReceiptSource() {
+    public void testUpsertReceipt_SourceResolvedByMapperIsNotLookedUpAgain() {
         ReceiptDto receiptDto = new ReceiptDto();
         receiptDto.setDescription("NewStore - Items");
         receiptDto.setAmount(150.0);
@@ -84,19 +85,19 @@ public class ReceiptServiceImplReceiptSourceTest {
         
         ReceiptSource newSource = new ReceiptSource();
         newSource.setId(2);
-        newSource.setRetailerName("NEWSTORE - ITEMS");
+        newSource.setRetailerName("NEWSTORE");
         savedReceipt.setReceiptSource(newSource);
         
-        when(receiptSourceRepository.findById(2)).thenReturn(Optional.empty());
-        when(receiptSourceRepository.save(any(ReceiptSource.class))).thenReturn(newSource);
+        when(receiptSourceRepository.getReferenceById(2)).thenReturn(newSource);
         when(receiptRepository.save(any(Receipt.class))).thenReturn(savedReceipt);
         
         ReceiptDto result = receiptService.upsertReceipt(receiptDto);
         
         assertNotNull(result);
         assertEquals(101L, result.getId());
-        verify(receiptSourceRepository).findById(2);
-        verify(receiptSourceRepository).save(any(ReceiptSource.class));
+        assertEquals(2, result.getReceiptSourceId());
+        verify(receiptSourceRepository, never()).findById(any());
+        verify(receiptSourceRepository, never()).save(any(ReceiptSource.class));
     }
     
     @Test
@@ -126,7 +127,7 @@ public class ReceiptServiceImplReceiptSourceTest {
         
         when(receiptRepository.existsById(50L)).thenReturn(true);
         when(receiptRepository.findById(50L)).thenReturn(Optional.of(existingReceipt));
-        when(receiptSourceRepository.findById(3)).thenReturn(Optional.of(source));
+        when(receiptSourceRepository.getReferenceById(3)).thenReturn(source);
         when(receiptRepository.save(any(Receipt.class))).thenReturn(updatedReceipt);
         
         ReceiptDto result = receiptService.upsertReceipt(receiptDto);
@@ -135,7 +136,7 @@ public class ReceiptServiceImplReceiptSourceTest {
         assertEquals(50L, result.getId());
         assertEquals(3, result.getReceiptSourceId());
         verify(receiptRepository).findById(50L);
-        verify(receiptSourceRepository).findById(3);
+        verify(receiptSourceRepository).getReferenceById(3);
     }
     
     @Test
@@ -161,5 +162,6 @@ public class ReceiptServiceImplReceiptSourceTest {
         assertEquals(102L, result.getId());
         assertNull(result.getReceiptSourceId());
         verify(receiptSourceRepository, never()).findById(any());
+        verify(receiptSourceRepository, never()).getReferenceById(any());
     }
 }
@@ -86,7 +86,7 @@ public class ReceiptServiceImplTest {
         newReceipt.setYear(2024);
         newReceipt.setReceiptSource(testReceiptSource);
 
-        when(receiptSourceRepository.findById(1)).thenReturn(Optional.of(testReceiptSource));
+        when(receiptSourceRepository.getReferenceById(1)).thenReturn(testReceiptSource);
         when(receiptRepository.save(any(Receipt.class))).thenReturn(newReceipt);
 
         // Act
@@ -105,7 +105,7 @@ public class ReceiptServiceImplTest {
         testReceiptDto.setDescription("Updated Receipt");
         testReceiptDto.setAmount(150.0);
 
-        when(receiptSourceRepository.findById(1)).thenReturn(Optional.of(testReceiptSource));
+        when(receiptSourceRepository.getReferenceById(1)).thenReturn(testReceiptSource);
         when(receiptRepository.existsById(1L)).thenReturn(true);
         when(receiptRepository.findById(1L)).thenReturn(Optional.of(testReceipt));
         when(receiptRepository.save(any(Receipt.class))).thenReturn(testReceipt);
@@ -0,0 +1,316 @@
+package com.example.receipt.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.receipt.dto.YearlyReportRequest;
+import com.example.receipt.entity.ReportJob;
+import com.example.receipt.repository.ReportJobRepository;
+
+import java.time.LocalDateTime;
+
+@DataJpaTest
+@Import(ReportJobService.class)
+public class ReportJobServiceTest {
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ReportJobRepository reportJobRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        // Tests that run without the rolled-back test transaction (to see constraint violations) commit their rows
+        reportJobRepository.deleteAll();
+    }
+
+    private ReportJob reload(String id) {
+        entityManager.flush();
+        entityManager.clear();
+        return reportJobService.getJob(id).orElseThrow();
+    }
+
+    // A job that got past de-duplication, e.g. one queued while de-duplication was turned off
+    private ReportJob createWithoutDedup(YearlyReportRequest request) {
+        ReflectionTestUtils.setField(reportJobService, "dedupWindowMs", 0L);
+        try {
+            return reportJobService.createJob(request);
+        } finally {
+            ReflectionTestUtils.setField(reportJobService, "dedupWindowMs", 600000L);
+        }
+    }
+
+    @Test
+    public void testCreateJobQueuesAndStampsRequest() {
+        YearlyReportRequest request = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L, "csv");
+
+        ReportJob job = reportJobService.createJob(request);
+
+        assertEquals(job.getId(), request.getReportJobId());
+        ReportJob stored = reload(job.getId());
+        assertEquals(ReportJob.STATUS_QUEUED, stored.getStatus());
+        assertEquals("Main Building", stored.getPropertyName());
+        assertEquals(2024, stored.getYear());
+        assertEquals("csv", stored.getReportType());
+        assertEquals(7L, stored.getUserId());
+        assertEquals(0, stored.getAttempts());
+        assertNull(stored.getQueuedMillis());
+    }
+
+    @Test
+    public void testRetryThenSentRecordsAttemptsAndTimings() {
+        String id = reportJobService.createJob(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L)).getId();
+
+        reportJobService.markRunning(id);
+        assertEquals(ReportJob.STATUS_RUNNING, reload(id).getStatus());
+
+        reportJobService.markRetrying(id, "SMTP timeout");
+        ReportJob retrying = reload(id);
+        assertEquals(ReportJob.STATUS_QUEUED, retrying.getStatus());
+        assertEquals("SMTP timeout", retrying.getLastError());
+
+        reportJobService.markRunning(id);
+        reportJobService.markSent(id);
+        ReportJob sent = reload(id);
+        assertEquals(ReportJob.STATUS_SENT, sent.getStatus());
+        assertEquals(2, sent.getAttempts());
+        assertNotNull(sent.getQueuedMillis());
+        assertNotNull(sent.getProcessingMillis());
+        assertTrue(sent.getProcessingMillis() >= 0);
+    }
+
+    @Test
+    public void testMarkFailedKeepsError() {
+        String id = reportJobService.createJob(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L)).getId();
+
+        reportJobService.markRunning(id);
+        reportJobService.markFailed(id, "Property not found with name: Main Building");
+
+        ReportJob failed = reload(id);
+        assertEquals(ReportJob.STATUS_FAILED, failed.getStatus());
+        assertEquals("Property not found with name: Main Building", failed.getLastError());
+    }
+
+    @Test
+    public void testTransitionsForUnknownJobsAreIgnored() {
+        assertDoesNotThrow(() -> {
+            reportJobService.markRunning(null);
+            reportJobService.markSent("00000000-0000-0000-0000-000000000000");
+        });
+        assertTrue(reportJobService.getJob("00000000-0000-0000-0000-000000000000").isEmpty());
+    }
+
+    @Test
+    public void testIdenticalRequestWithinWindowIsDuplicate() {
+        ReportJob first = reportJobService.createJob(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L));
+
+        assertEquals(first.getId(), reportJobService.findActiveDuplicate(
+                new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L)).orElseThrow().getId());
+        // Names differing only in case are different properties
+        assertTrue(reportJobService.findActiveDuplicate(
+                new YearlyReportRequest("main building", 2024, "user@example.com", 7L)).isEmpty());
+        assertTrue(reportJobService.findActiveDuplicate(
+                new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L, "csv")).isEmpty());
+        assertTrue(reportJobService.findActiveDuplicate(
+                new YearlyReportRequest("Main Building", 2023, "user@example.com", 7L)).isEmpty());
+        assertTrue(reportJobService.findActiveDuplicate(
+                new YearlyReportRequest("Main Building", 2024, "other@example.com", 8L)).isEmpty());
+    }
+
+    @Test
+    public void testFailedOrExpiredJobsAreNotDuplicates() {
+        YearlyReportRequest request = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L);
+        String failed = reportJobService.createJob(request).getId();
+        reportJobService.markFailed(failed, "Property not found");
+        assertTrue(reportJobService.findActiveDuplicate(request).isEmpty());
+
+        String old = reportJobService.createJob(request).getId();
+        entityManager.flush();
+        // created_at is not updatable through the entity
+        entityManager.getEntityManager()
+                .createNativeQuery("update report_jobs set created_at = ?1 where id = ?2")
+                .setParameter(1, LocalDateTime.now().minusHours(1))
+                .setParameter(2, old)
+                .executeUpdate();
+        entityManager.clear();
+        assertTrue(reportJobService.findActiveDuplicate(request).isEmpty());
+    }
+
+    @Test
+    public void testZeroWindowDisablesDeduplication() {
+        YearlyReportRequest request = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L);
+        reportJobService.createJob(request);
+        ReflectionTestUtils.setField(reportJobService, "dedupWindowMs", 0L);
+        try {
+            assertTrue(reportJobService.findActiveDuplicate(request).isEmpty());
+        } finally {
+            ReflectionTestUtils.setField(reportJobService, "dedupWindowMs", 600000L);
+        }
+    }
+
+    @Test
+    public void testSentDuplicateIsFoundForRedeliveryAndRacingRequests() {
+        YearlyReportRequest first = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L);
+        String firstId = reportJobService.createJob(first).getId();
+        YearlyReportRequest racing = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L);
+        String racingId = createWithoutDedup(racing).getId();
+        assertTrue(reportJobService.findSentDuplicate(first).isEmpty());
+
+        reportJobService.markRunning(firstId);
+        reportJobService.markSent(firstId);
+
+        assertEquals(firstId, reportJobService.findSentDuplicate(first).orElseThrow().getId());
+        assertEquals(firstId, reportJobService.findSentDuplicate(racing).orElseThrow().getId());
+
+        reportJobService.markDuplicate(racingId, firstId);
+        ReportJob skipped = reload(racingId);
+        assertEquals(ReportJob.STATUS_SENT, skipped.getStatus());
+        assertEquals(firstId, skipped.getDuplicateOf());
+        assertEquals(0, skipped.getAttempts());
+    }
+
+    @Test
+    public void testDuplicateOfARunningJobWaitsForItAndFailsWithIt() {
+        YearlyReportRequest first = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L);
+        String firstId = reportJobService.createJob(first).getId();
+        String racingId = createWithoutDedup(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L)).getId();
+        String otherId = createWithoutDedup(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L)).getId();
+        reportJobService.markRunning(firstId);
+
+        reportJobService.markDuplicate(racingId, firstId);
+        reportJobService.markDuplicate(otherId, firstId);
+        ReportJob waiting = reload(racingId);
+        assertEquals(ReportJob.STATUS_QUEUED, waiting.getStatus());
+        assertEquals(firstId, waiting.getDuplicateOf());
+
+        reportJobService.markFailed(firstId, "SendGrid unavailable");
+        for (String id : new String[] {racingId, otherId}) {
+            ReportJob failed = reload(id);
+            assertEquals(ReportJob.STATUS_FAILED, failed.getStatus());
+            assertEquals("Report job " + firstId + " failed: SendGrid unavailable", failed.getLastError());
+        }
+    }
+
+    @Test
+    public void testDuplicateLinkedAfterItsJobFinishedEndsTheSameWay() {
+        String firstId = reportJobService.createJob(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L)).getId();
+        String racingId = createWithoutDedup(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L)).getId();
+        reportJobService.markRunning(firstId);
+        reportJobService.markDelivering(firstId);
+        reportJobService.markSent(firstId);
+
+        reportJobService.markDuplicate(racingId, firstId);
+
+        assertEquals(ReportJob.STATUS_SENT, reload(racingId).getStatus());
+    }
+
+    @Test
+    public void testLateRetryDoesNotReopenASentJob() {
+        String id = reportJobService.createJob(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L)).getId();
+        reportJobService.markRunning(id);
+        reportJobService.markDelivering(id);
+        reportJobService.markSent(id);
+
+        reportJobService.markRetrying(id, "Timed out");
+        reportJobService.markRunning(id);
+        reportJobService.markFailed(id, "Timed out");
+
+        ReportJob sent = reload(id);
+        assertEquals(ReportJob.STATUS_SENT, sent.getStatus());
+        assertEquals(1, sent.getAttempts());
+        assertNull(sent.getLastError());
+    }
+
+    @Test
+    public void testRedeliveredRequestIsSkippedOnceItsEmailIsQueued() {
+        YearlyReportRequest request = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L);
+        String id = reportJobService.createJob(request).getId();
+        reportJobService.markRunning(id);
+
+        reportJobService.markDelivering(id);
+
+        ReportJob delivering = reload(id);
+        assertEquals(ReportJob.STATUS_DELIVERING, delivering.getStatus());
+        assertNull(delivering.getCompletedAt());
+        assertEquals(id, reportJobService.findSentDuplicate(request).orElseThrow().getId());
+        assertEquals(id, reportJobService.findActiveDuplicate(request).orElseThrow().getId());
+    }
+
+    @Test
+    public void testLateDeliveringUpdateKeepsAJobTheOutboxAlreadySent() {
+        String id = reportJobService.createJob(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L)).getId();
+        reportJobService.markRunning(id);
+        reportJobService.markSent(id);
+
+        reportJobService.markDelivering(id);
+
+        ReportJob sent = reload(id);
+        assertEquals(ReportJob.STATUS_SENT, sent.getStatus());
+        assertNotNull(sent.getCompletedAt());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testIdenticalRequestLosingTheInsertGetsTheActiveJob() {
+        // Skips findActiveDuplicate, as a request racing the first one would
+        ReportJob first = reportJobService.createJob(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L));
+        YearlyReportRequest racing = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L);
+
+        ReportJob returned = reportJobService.createJob(racing);
+
+        assertEquals(first.getId(), returned.getId());
+        assertNull(racing.getReportJobId());
+        assertEquals(1, reportJobRepository.count());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testFinishedOrExpiredJobGivesUpTheDedupKey() {
+        YearlyReportRequest request = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L);
+        String sent = reportJobService.createJob(request).getId();
+        reportJobService.markRunning(sent);
+        reportJobService.markSent(sent);
+        assertNull(reportJobRepository.findById(sent).orElseThrow().getActiveDedupKey());
+
+        String stuck = reportJobService.createJob(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L)).getId();
+        jdbcTemplate.update("update report_jobs set created_at = ? where id = ?", LocalDateTime.now().minusHours(1), stuck);
+
+        YearlyReportRequest later = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L);
+        ReportJob created = reportJobService.createJob(later);
+
+        assertNotEquals(stuck, created.getId());
+        assertEquals(created.getId(), later.getReportJobId());
+        assertNull(reportJobRepository.findById(stuck).orElseThrow().getActiveDedupKey());
+    }
+
+    @Test
+    public void testIdenticalJobInProgressElsewhereIsASentDuplicate() {
+        String running = reportJobService.createJob(new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L)).getId();
+        reportJobService.markRunning(running);
+        YearlyReportRequest other = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L);
+        createWithoutDedup(other);
+
+        assertEquals(running, reportJobService.findSentDuplicate(other).orElseThrow().getId());
+        // Its own RUNNING job (a redelivery after a crash) is not a reason to skip
+        YearlyReportRequest own = new YearlyReportRequest("Main Building", 2024, "user@example.com", 7L);
+        own.setReportJobId(running);
+        assertTrue(reportJobService.findSentDuplicate(own).isEmpty());
+    }
+}